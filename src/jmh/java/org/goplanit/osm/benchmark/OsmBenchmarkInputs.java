@@ -0,0 +1,162 @@
+package org.goplanit.osm.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Inputs used by the benchmarks: the bundled Sydney CBD extract as well as a synthetic grid network that can be scaled to any size.
+ * <p>
+ *   The synthetic network comprises a square grid of OSM nodes connected by horizontal and vertical highways of mixed types (with speed limits,
+ *   lanes, and one way restrictions) as well as a bus stop (stop position plus platform) every few intersections, so both network and zoning parsing are exercised.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmBenchmarkInputs {
+
+  /** the bundled Sydney CBD extract */
+  public static final Path SYDNEYCBD_2023_PBF = Path.of(".","src","test","resources","osm","sydney-cbd","sydneycbd_2023.osm.pbf");
+
+  /** input identifier for the bundled Sydney CBD extract */
+  public static final String SYDNEY_CBD = "SYDNEY_CBD";
+
+  /** input identifier for the synthetic grid */
+  public static final String SYNTHETIC = "SYNTHETIC";
+
+  /** spacing between grid nodes in degrees (roughly 100m) */
+  private static final double GRID_SPACING_DEGREES = 0.001;
+
+  /** longitude of the grid origin */
+  private static final double ORIGIN_LONGITUDE = 151.0;
+
+  /** latitude of the grid origin */
+  private static final double ORIGIN_LATITUDE = -33.9;
+
+  /** every this many grid lines a primary road is created rather than a residential one */
+  private static final int PRIMARY_ROAD_INTERVAL = 5;
+
+  /** every this many intersections (along both dimensions) a bus stop is created */
+  private static final int BUS_STOP_INTERVAL = 4;
+
+  /** Id of grid node
+   *
+   * @param row of the node
+   * @param column of the node
+   * @param gridSize number of nodes along each dimension
+   * @return OSM node id
+   */
+  private static long gridNodeId(int row, int column, int gridSize) {
+    return 1L + (long) row * gridSize + column;
+  }
+
+  /** Write a way along the given grid nodes
+   *
+   * @param writer to use
+   * @param wayId of the way
+   * @param nodeIds of the way
+   * @param lineIndex of the way, determines its type
+   * @throws IOException thrown if error
+   */
+  private static void writeWay(BufferedWriter writer, long wayId, long[] nodeIds, int lineIndex) throws IOException {
+    writer.write(String.format(" <way id=\"%d\" version=\"1\">%n", wayId));
+    for(long nodeId : nodeIds) {
+      writer.write(String.format("  <nd ref=\"%d\"/>%n", nodeId));
+    }
+    boolean primary = lineIndex % PRIMARY_ROAD_INTERVAL == 0;
+    writer.write(String.format("  <tag k=\"highway\" v=\"%s\"/>%n", primary ? "primary" : "residential"));
+    writer.write(String.format("  <tag k=\"maxspeed\" v=\"%d\"/>%n", primary ? 60 : 40));
+    writer.write(String.format("  <tag k=\"lanes\" v=\"%d\"/>%n", primary ? 4 : 2));
+    if(!primary && lineIndex % 2 == 1) {
+      writer.write("  <tag k=\"oneway\" v=\"yes\"/>\n");
+    }
+    writer.write(" </way>\n");
+  }
+
+  /** Create a synthetic grid network in OSM XML format in a temporary file
+   *
+   * @param gridSize number of nodes along each dimension, i.e., the network has gridSize^2 nodes and 2*gridSize ways
+   * @return path to created file, to be removed by the caller
+   * @throws IOException thrown if error
+   */
+  public static Path createSyntheticGrid(int gridSize) throws IOException {
+    Path file = Files.createTempFile("planit_osm_synthetic_" + gridSize + "_", ".osm");
+    long nextPlatformNodeId = (long) gridSize * gridSize + 1;
+    try(BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      writer.write("<osm version=\"0.6\" generator=\"planit-osm-benchmark\">\n");
+
+      /* grid nodes, bus stop positions on some intersections, platforms next to them */
+      StringBuilder platforms = new StringBuilder();
+      for(int row = 0; row < gridSize; ++row) {
+        for(int column = 0; column < gridSize; ++column) {
+          double longitude = ORIGIN_LONGITUDE + column * GRID_SPACING_DEGREES;
+          double latitude = ORIGIN_LATITUDE + row * GRID_SPACING_DEGREES;
+          long nodeId = gridNodeId(row, column, gridSize);
+          boolean busStop = row % BUS_STOP_INTERVAL == 1 && column % BUS_STOP_INTERVAL == 1;
+          if(!busStop) {
+            writer.write(String.format(Locale.US, " <node id=\"%d\" version=\"1\" lat=\"%.7f\" lon=\"%.7f\"/>%n", nodeId, latitude, longitude));
+            continue;
+          }
+          writer.write(String.format(Locale.US, " <node id=\"%d\" version=\"1\" lat=\"%.7f\" lon=\"%.7f\">%n", nodeId, latitude, longitude));
+          writer.write("  <tag k=\"public_transport\" v=\"stop_position\"/>\n  <tag k=\"bus\" v=\"yes\"/>\n </node>\n");
+          platforms.append(String.format(Locale.US, " <node id=\"%d\" version=\"1\" lat=\"%.7f\" lon=\"%.7f\">%n",
+              nextPlatformNodeId++, latitude + GRID_SPACING_DEGREES / 10, longitude + GRID_SPACING_DEGREES / 10));
+          platforms.append("  <tag k=\"highway\" v=\"bus_stop\"/>\n  <tag k=\"public_transport\" v=\"platform\"/>\n  <tag k=\"bus\" v=\"yes\"/>\n </node>\n");
+        }
+      }
+      writer.write(platforms.toString());
+
+      /* horizontal and vertical ways */
+      long[] nodeIds = new long[gridSize];
+      long wayId = 1;
+      for(int row = 0; row < gridSize; ++row) {
+        for(int column = 0; column < gridSize; ++column) {
+          nodeIds[column] = gridNodeId(row, column, gridSize);
+        }
+        writeWay(writer, wayId++, nodeIds, row);
+      }
+      for(int column = 0; column < gridSize; ++column) {
+        for(int row = 0; row < gridSize; ++row) {
+          nodeIds[row] = gridNodeId(row, column, gridSize);
+        }
+        writeWay(writer, wayId++, nodeIds, column);
+      }
+      writer.write("</osm>\n");
+    }
+    return file;
+  }
+
+  /** Resolve the input file for the given identifier
+   *
+   * @param input identifier, either {@link #SYDNEY_CBD} or {@link #SYNTHETIC}
+   * @param syntheticGridSize grid size used when synthetic
+   * @return input file
+   * @throws IOException thrown if error
+   */
+  public static Path resolve(String input, int syntheticGridSize) throws IOException {
+    switch(input) {
+      case SYDNEY_CBD:
+        return SYDNEYCBD_2023_PBF;
+      case SYNTHETIC:
+        return createSyntheticGrid(syntheticGridSize);
+      default:
+        throw new IllegalArgumentException(String.format("Unknown benchmark input %s", input));
+    }
+  }
+
+  /** Remove the input file if it is a temporary (synthetic) one
+   *
+   * @param input identifier
+   * @param inputFile to remove
+   * @throws IOException thrown if error
+   */
+  public static void release(String input, Path inputFile) throws IOException {
+    if(SYNTHETIC.equals(input) && inputFile != null) {
+      Files.deleteIfExists(inputFile);
+    }
+  }
+}
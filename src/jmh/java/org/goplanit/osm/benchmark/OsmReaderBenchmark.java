@@ -0,0 +1,143 @@
+package org.goplanit.osm.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.osm.converter.intermodal.OsmIntermodalReader;
+import org.goplanit.osm.converter.intermodal.OsmIntermodalReaderFactory;
+import org.goplanit.osm.converter.network.OsmNetworkReader;
+import org.goplanit.osm.converter.network.OsmNetworkReaderFactory;
+import org.goplanit.osm.converter.network.OsmNetworkToZoningReaderData;
+import org.goplanit.osm.converter.zoning.OsmZoningReader;
+import org.goplanit.osm.converter.zoning.OsmZoningReaderFactory;
+import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
+import org.goplanit.utils.exceptions.PlanItException;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.misc.Pair;
+import org.goplanit.zoning.Zoning;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmarks of the network, zoning, and intermodal OSM readers on the bundled Sydney CBD extract and a synthetic grid of configurable size.
+ * Each invocation parses the input from scratch, so results include I/O and (de)compression costs.
+ *
+ * @author markr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OsmReaderBenchmark {
+
+  /** input to use, see {@link OsmBenchmarkInputs} */
+  @Param({OsmBenchmarkInputs.SYDNEY_CBD, OsmBenchmarkInputs.SYNTHETIC})
+  public String input;
+
+  /** number of nodes along each dimension of the synthetic grid, ignored for other inputs */
+  @Param({"200"})
+  public int syntheticGridSize;
+
+  /** the resolved input file */
+  private Path inputFile;
+
+  /**
+   * State of the zoning benchmark, the network is parsed before each invocation since the zoning reader modifies the reference network
+   */
+  @State(Scope.Thread)
+  public static class ZoningState {
+
+    /** network parsed upfront */
+    private PlanitOsmNetwork referenceNetwork;
+
+    /** network to zoning data of the upfront parsed network */
+    private OsmNetworkToZoningReaderData network2ZoningData;
+
+    /** Parse the reference network
+     *
+     * @param benchmark providing the input
+     * @throws PlanItException thrown if error
+     */
+    @Setup(Level.Invocation)
+    public void setupReferenceNetwork(OsmReaderBenchmark benchmark) throws PlanItException {
+      OsmNetworkReader networkReader = benchmark.createNetworkReader();
+      referenceNetwork = (PlanitOsmNetwork) networkReader.read();
+      network2ZoningData = networkReader.createNetworkToZoningReaderData();
+    }
+  }
+
+  /** Create network reader on the input
+   *
+   * @return network reader
+   * @throws PlanItException thrown if error
+   */
+  private OsmNetworkReader createNetworkReader() throws PlanItException {
+    return OsmNetworkReaderFactory.create(inputFile.toString(), CountryNames.AUSTRALIA);
+  }
+
+  /** Resolve the input
+   *
+   * @throws IOException thrown if error
+   */
+  @Setup(Level.Trial)
+  public void setupInput() throws IOException {
+    inputFile = OsmBenchmarkInputs.resolve(input, syntheticGridSize);
+  }
+
+  /** Remove the input if temporary
+   *
+   * @throws IOException thrown if error
+   */
+  @TearDown(Level.Trial)
+  public void tearDownInput() throws IOException {
+    OsmBenchmarkInputs.release(input, inputFile);
+  }
+
+  /** Parse the network
+   *
+   * @return parsed network
+   * @throws PlanItException thrown if error
+   */
+  @Benchmark
+  public MacroscopicNetwork networkRead() throws PlanItException {
+    return createNetworkReader().read();
+  }
+
+  /** Parse the zoning on the network parsed during setup
+   *
+   * @param zoningState containing the parsed network
+   * @return parsed zoning
+   */
+  @Benchmark
+  public Zoning zoningRead(ZoningState zoningState) {
+    OsmZoningReader zoningReader = OsmZoningReaderFactory.create(
+        inputFile.toString(), CountryNames.AUSTRALIA, zoningState.referenceNetwork, zoningState.network2ZoningData);
+    return zoningReader.read();
+  }
+
+  /** Parse network and zoning in one go
+   *
+   * @return parsed network and zoning
+   * @throws PlanItException thrown if error
+   */
+  @Benchmark
+  public Pair<MacroscopicNetwork, Zoning> intermodalRead() throws PlanItException {
+    OsmIntermodalReader intermodalReader = OsmIntermodalReaderFactory.create(inputFile.toString(), CountryNames.AUSTRALIA);
+    return intermodalReader.read();
+  }
+}
@@ -0,0 +1,274 @@
+package org.goplanit.osm.converter.network;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.goplanit.osm.benchmark.OsmBenchmarkInputs;
+import org.goplanit.osm.converter.OsmEntityStore;
+import org.goplanit.osm.util.Osm4JUtils;
+import org.goplanit.osm.util.OsmWayUtils;
+import org.goplanit.utils.exceptions.PlanItException;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.misc.Pair;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.topobyte.osm4j.core.access.DefaultOsmHandler;
+import de.topobyte.osm4j.core.access.OsmInputException;
+import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.core.model.util.OsmModelUtil;
+
+/**
+ * Micro benchmarks of the hot paths of the network handlers: tag based classification of OSM ways, link segment type extraction, link extraction
+ * per layer, and breaking links with internal connections. The OSM entities are decoded once and replayed from memory, so results exclude I/O.
+ * <p>
+ *   Resides in the network converter package to be able to invoke the (protected) methods involved directly.
+ * </p>
+ *
+ * @author markr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OsmNetworkHandlerBenchmark {
+
+  /** input to use, see {@link OsmBenchmarkInputs} */
+  @Param({OsmBenchmarkInputs.SYDNEY_CBD, OsmBenchmarkInputs.SYNTHETIC})
+  public String input;
+
+  /** number of nodes along each dimension of the synthetic grid, ignored for other inputs */
+  @Param({"200"})
+  public int syntheticGridSize;
+
+  /** the resolved input file */
+  private Path inputFile;
+
+  /** all decoded OSM entities of the input */
+  private OsmEntityStore osmEntities;
+
+  /** reader with all OSM nodes processed by the main processing handler, but no OSM ways */
+  private PreparedReader preparedReader;
+
+  /** tags of all OSM ways */
+  private List<Map<String, String>> allOsmWayTags;
+
+  /** OSM ways (and their tags) eligible for link extraction, excluding circular ways */
+  private List<Pair<OsmWay, Map<String, String>>> eligibleOsmWays;
+
+  /**
+   * Network reader for which the pre-processing and the OSM node part of the main processing has been conducted
+   */
+  private static class PreparedReader {
+
+    /** the reader */
+    private final OsmNetworkReader networkReader;
+
+    /** main processing handler which processed all OSM nodes */
+    private final OsmNetworkMainProcessingHandler mainProcessingHandler;
+
+    /** Constructor
+     *
+     * @param networkReader the reader
+     * @param mainProcessingHandler the main processing handler
+     */
+    private PreparedReader(OsmNetworkReader networkReader, OsmNetworkMainProcessingHandler mainProcessingHandler) {
+      this.networkReader = networkReader;
+      this.mainProcessingHandler = mainProcessingHandler;
+    }
+  }
+
+  /** Create a reader on the input and replay the decoded entities such that all OSM nodes are available to the main processing handler
+   *
+   * @param inputFile of the reader
+   * @param osmEntities to replay
+   * @return prepared reader
+   * @throws PlanItException thrown if error
+   * @throws IOException thrown if error
+   */
+  private static PreparedReader prepareReader(Path inputFile, OsmEntityStore osmEntities) throws PlanItException, IOException {
+    OsmNetworkReader networkReader = OsmNetworkReaderFactory.create(inputFile.toString(), CountryNames.AUSTRALIA);
+    networkReader.initialiseBeforeParsing();
+
+    var preProcessingHandler = new OsmNetworkPreProcessingHandler(
+        networkReader.getOsmNetworkToPopulate(), networkReader.getNetworkReaderData(), networkReader.getSettings());
+    osmEntities.replay(preProcessingHandler);
+
+    var mainProcessingHandler = new OsmNetworkMainProcessingHandler(
+        networkReader.getOsmNetworkToPopulate(), networkReader.getNetworkReaderData(), networkReader.getSettings());
+    osmEntities.replayOsmNodes(mainProcessingHandler);
+    return new PreparedReader(networkReader, mainProcessingHandler);
+  }
+
+  /**
+   * State for link extraction, a fresh reader is required for each invocation since links are registered on the network
+   */
+  @State(Scope.Thread)
+  public static class LinkExtractionState {
+
+    /** reader to extract links on */
+    private PreparedReader preparedReader;
+
+    /** link segment types per layer for each eligible OSM way */
+    private List<Map<MacroscopicNetworkLayerImpl, Pair<MacroscopicLinkSegmentType, MacroscopicLinkSegmentType>>> linkSegmentTypes;
+
+    /** Prepare the reader and link segment types
+     *
+     * @param benchmark providing the input
+     * @throws PlanItException thrown if error
+     * @throws IOException thrown if error
+     */
+    @Setup(Level.Invocation)
+    public void setup(OsmNetworkHandlerBenchmark benchmark) throws PlanItException, IOException {
+      preparedReader = prepareReader(benchmark.inputFile, benchmark.osmEntities);
+      linkSegmentTypes = new ArrayList<>(benchmark.eligibleOsmWays.size());
+      for(var osmWayWithTags : benchmark.eligibleOsmWays) {
+        linkSegmentTypes.add(preparedReader.mainProcessingHandler.extractLinkSegmentTypes(osmWayWithTags.first(), osmWayWithTags.second()));
+      }
+    }
+  }
+
+  /**
+   * State for breaking links, a fresh reader with all OSM ways processed is required for each invocation since links are broken on the network
+   */
+  @State(Scope.Thread)
+  public static class BreakLinksState {
+
+    /** reader with all OSM ways processed but the parsing not yet completed */
+    private PreparedReader preparedReader;
+
+    /** Prepare the reader
+     *
+     * @param benchmark providing the input
+     * @throws PlanItException thrown if error
+     * @throws IOException thrown if error
+     */
+    @Setup(Level.Invocation)
+    public void setup(OsmNetworkHandlerBenchmark benchmark) throws PlanItException, IOException {
+      preparedReader = prepareReader(benchmark.inputFile, benchmark.osmEntities);
+      benchmark.osmEntities.replayOsmWays(preparedReader.mainProcessingHandler);
+    }
+  }
+
+  /** Decode the input once and collect the OSM ways to benchmark on
+   *
+   * @throws IOException thrown if error
+   * @throws OsmInputException thrown if error
+   * @throws PlanItException thrown if error
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException, OsmInputException, PlanItException {
+    inputFile = OsmBenchmarkInputs.resolve(input, syntheticGridSize);
+
+    osmEntities = new OsmEntityStore();
+    osmEntities.setOsmNodeFilter(osmNode -> true);
+    osmEntities.setOsmWayFilter(osmWay -> true);
+    osmEntities.setOsmRelationFilter(osmRelation -> true);
+    OsmReader osmReader = Osm4JUtils.createOsm4jReader(inputFile.toFile());
+    osmReader.setHandler(osmEntities.createCapturingHandler(null));
+    osmReader.read();
+
+    preparedReader = prepareReader(inputFile, osmEntities);
+
+    allOsmWayTags = new ArrayList<>(osmEntities.getNumberOfOsmWays());
+    eligibleOsmWays = new ArrayList<>();
+    osmEntities.replayOsmWays(new DefaultOsmHandler() {
+      @Override
+      public void handle(OsmWay osmWay) {
+        Map<String, String> tags = OsmModelUtil.getTagsAsMap(osmWay);
+        allOsmWayTags.add(tags);
+        if(preparedReader.mainProcessingHandler.isActivatedRoadRailOrWaterwayBasedInfrastructure(tags)
+            && !OsmWayUtils.isCircularOsmWay(osmWay, tags, false)) {
+          eligibleOsmWays.add(Pair.of(osmWay, tags));
+        }
+      }
+    });
+  }
+
+  /** Remove the input if temporary
+   *
+   * @throws IOException thrown if error
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    OsmBenchmarkInputs.release(input, inputFile);
+  }
+
+  /** Classify all OSM ways as (in)eligible network infrastructure based on their tags
+   *
+   * @param blackhole to consume results
+   */
+  @Benchmark
+  public void tagClassification(Blackhole blackhole) {
+    for(var tags : allOsmWayTags) {
+      blackhole.consume(preparedReader.mainProcessingHandler.isActivatedRoadRailOrWaterwayBasedInfrastructure(tags));
+    }
+  }
+
+  /** Extract the directional link segment types of all eligible OSM ways
+   *
+   * @param blackhole to consume results
+   */
+  @Benchmark
+  public void extractLinkSegmentTypes(Blackhole blackhole) {
+    for(var osmWayWithTags : eligibleOsmWays) {
+      blackhole.consume(preparedReader.mainProcessingHandler.extractLinkSegmentTypes(osmWayWithTags.first(), osmWayWithTags.second()));
+    }
+  }
+
+  /** Extract the links of all eligible OSM ways on each layer
+   *
+   * @param state with prepared reader
+   * @param blackhole to consume results
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 10)
+  public void extractPartialOsmWay(LinkExtractionState state, Blackhole blackhole) {
+    var networkData = state.preparedReader.networkReader.getNetworkReaderData();
+    for(int index = 0; index < eligibleOsmWays.size(); ++index) {
+      OsmWay osmWay = eligibleOsmWays.get(index).first();
+      Map<String, String> tags = eligibleOsmWays.get(index).second();
+      for(var entry : state.linkSegmentTypes.get(index).entrySet()) {
+        blackhole.consume(networkData.getLayerParser(entry.getKey()).extractPartialOsmWay(
+            osmWay, tags, 0, osmWay.getNumberOfNodes() - 1, false, entry.getValue()));
+      }
+    }
+  }
+
+  /** Break links with internal connections on each layer
+   *
+   * @param state with prepared reader
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 10)
+  public void breakLinksWithInternalConnections(BreakLinksState state) {
+    state.preparedReader.networkReader.getNetworkReaderData().getLayerParsers().values().forEach(
+        OsmNetworkLayerParser::breakLinksWithInternalConnections);
+  }
+}
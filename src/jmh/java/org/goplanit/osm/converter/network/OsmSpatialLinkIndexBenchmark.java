@@ -0,0 +1,199 @@
+package org.goplanit.osm.converter.network;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.goplanit.osm.benchmark.OsmBenchmarkInputs;
+import org.goplanit.osm.converter.zoning.OsmSpatialLinkIndex;
+import org.goplanit.utils.exceptions.PlanItException;
+import org.goplanit.utils.geo.PlanitJtsUtils;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLink;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinks;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.quadtree.Quadtree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Micro benchmarks of the spatial link index used during zoning parsing compared to a plain quadtree of all links: building the index, and querying
+ * it after a share of the links has been removed and re-added (as happens when links are broken to attach connectoids). Links are taken from the
+ * network parsed upfront.
+ *
+ * @author markr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OsmSpatialLinkIndexBenchmark {
+
+  /** input to use, see {@link OsmBenchmarkInputs} */
+  @Param({OsmBenchmarkInputs.SYDNEY_CBD, OsmBenchmarkInputs.SYNTHETIC})
+  public String input;
+
+  /** number of nodes along each dimension of the synthetic grid, ignored for other inputs */
+  @Param({"200"})
+  public int syntheticGridSize;
+
+  /** share of the links removed and re-added after construction of the index */
+  @Param({"0", "0.05"})
+  public double modifiedLinkShare;
+
+  /** number of search boxes queried per invocation */
+  private static final int NUMBER_OF_QUERIES = 1000;
+
+  /** the resolved input file */
+  private Path inputFile;
+
+  /** links per layer of the parsed network */
+  private Collection<MacroscopicLinks> linksCollection;
+
+  /** all links of the parsed network */
+  private List<MacroscopicLink> allLinks;
+
+  /** search boxes to query, sized like the search radius around a stop */
+  private List<Envelope> searchBoundingBoxes;
+
+  /** spatial link index with the modified links */
+  private OsmSpatialLinkIndex linkIndex;
+
+  /** plain quadtree with the modified links */
+  private Quadtree quadtree;
+
+  /** Create a plain quadtree of the links
+   *
+   * @param links to insert
+   * @return quadtree
+   */
+  private static Quadtree createQuadtree(Collection<MacroscopicLink> links) {
+    Quadtree quadtree = new Quadtree();
+    for(MacroscopicLink link : links) {
+      quadtree.insert(link.createEnvelope(), link);
+    }
+    return quadtree;
+  }
+
+  /** Parse the network, and create the indices and search boxes
+   *
+   * @throws IOException thrown if error
+   * @throws PlanItException thrown if error
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException, PlanItException {
+    inputFile = OsmBenchmarkInputs.resolve(input, syntheticGridSize);
+    var network = OsmNetworkReaderFactory.create(inputFile.toString(), CountryNames.AUSTRALIA).read();
+
+    linksCollection = new ArrayList<>();
+    allLinks = new ArrayList<>();
+    for(MacroscopicNetworkLayer layer : network.getTransportLayers()) {
+      linksCollection.add(layer.getLinks());
+      layer.getLinks().forEach(allLinks::add);
+    }
+
+    /* remove and re-add a share of the links, the geometry is unchanged so both indices remain equivalent */
+    List<MacroscopicLink> modifiedLinks = new ArrayList<>();
+    var random = new Random(1);
+    for(MacroscopicLink link : allLinks) {
+      if(random.nextDouble() < modifiedLinkShare) {
+        modifiedLinks.add(link);
+      }
+    }
+    linkIndex = new OsmSpatialLinkIndex(linksCollection);
+    linkIndex.remove(modifiedLinks);
+    linkIndex.add(modifiedLinks);
+    quadtree = createQuadtree(allLinks);
+    for(MacroscopicLink link : modifiedLinks) {
+      quadtree.remove(link.createEnvelope(), link);
+      quadtree.insert(link.createEnvelope(), link);
+    }
+
+    /* search boxes of roughly 50m around random locations within the network */
+    Envelope networkEnvelope = new Envelope();
+    allLinks.forEach(link -> networkEnvelope.expandToInclude(link.createEnvelope()));
+    searchBoundingBoxes = new ArrayList<>(NUMBER_OF_QUERIES);
+    for(int index = 0; index < NUMBER_OF_QUERIES; ++index) {
+      double x = networkEnvelope.getMinX() + random.nextDouble() * networkEnvelope.getWidth();
+      double y = networkEnvelope.getMinY() + random.nextDouble() * networkEnvelope.getHeight();
+      searchBoundingBoxes.add(new Envelope(x - 0.0005, x + 0.0005, y - 0.0005, y + 0.0005));
+    }
+  }
+
+  /** Remove the input if temporary
+   *
+   * @throws IOException thrown if error
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    OsmBenchmarkInputs.release(input, inputFile);
+  }
+
+  /** Build the spatial link index on all links
+   *
+   * @return index
+   */
+  @Benchmark
+  public OsmSpatialLinkIndex buildLinkIndex() {
+    return new OsmSpatialLinkIndex(linksCollection);
+  }
+
+  /** Build a plain quadtree on all links
+   *
+   * @return quadtree
+   */
+  @Benchmark
+  public Quadtree buildQuadtree() {
+    return createQuadtree(allLinks);
+  }
+
+  /** Query the spatial link index, including the filtering on the link geometries
+   *
+   * @param blackhole to consume results
+   */
+  @Benchmark
+  public void queryLinkIndex(Blackhole blackhole) {
+    for(Envelope searchBoundingBox : searchBoundingBoxes) {
+      blackhole.consume(linkIndex.query(searchBoundingBox));
+    }
+  }
+
+  /** Query the plain quadtree, including the same filtering on the link geometries
+   *
+   * @param blackhole to consume results
+   */
+  @Benchmark
+  public void queryQuadtree(Blackhole blackhole) {
+    for(Envelope searchBoundingBox : searchBoundingBoxes) {
+      Polygon searchArea = PlanitJtsUtils.create2DPolygon(searchBoundingBox);
+      List<MacroscopicLink> result = new ArrayList<>();
+      for(Object item : quadtree.query(searchBoundingBox)) {
+        MacroscopicLink link = (MacroscopicLink) item;
+        if(link.getGeometry() != null && searchArea.intersects(link.getGeometry())) {
+          result.add(link);
+        }
+      }
+      blackhole.consume(result);
+    }
+  }
+}
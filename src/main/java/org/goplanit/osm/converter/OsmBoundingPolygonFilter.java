@@ -0,0 +1,203 @@
+package org.goplanit.osm.converter;
+
+import org.goplanit.osm.util.OsmNodeUtils;
+import org.goplanit.utils.geo.PlanitJtsUtils;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+
+/**
+ * Compiled containment test for a bounding polygon. Verifying for each parsed OSM node whether it lies within the bounding polygon using the
+ * polygon itself is costly, as each test requires a point to be created and a full (unprepared) geometric predicate to be evaluated.
+ * <p>
+ * Instead, the envelope of the polygon is partitioned into a regular grid upon construction where each cell is classified as being fully
+ * inside the interior of the polygon, fully outside the polygon, or on its boundary. Only locations in boundary cells require a geometric test,
+ * which is then conducted on the prepared polygon. Results are identical to {@code Point.within} and {@code Point.coveredBy} on the
+ * original polygon.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmBoundingPolygonFilter {
+
+  /** cell fully in the interior of the polygon */
+  private static final byte INSIDE = 1;
+
+  /** cell fully outside the polygon */
+  private static final byte OUTSIDE = 2;
+
+  /** cell intersecting the boundary of the polygon */
+  private static final byte BOUNDARY = 3;
+
+  /** default number of grid cells along each dimension of the envelope */
+  public static final int DEFAULT_GRID_CELLS_PER_DIMENSION = 64;
+
+  /** the polygon */
+  private final Polygon boundingPolygon;
+
+  /** prepared version of the polygon used for boundary cells */
+  private final PreparedGeometry preparedBoundingPolygon;
+
+  /** envelope of the polygon */
+  private final Envelope envelope;
+
+  /** number of cells along each dimension */
+  private final int cellsPerDimension;
+
+  /** width of a cell */
+  private final double cellWidth;
+
+  /** height of a cell */
+  private final double cellHeight;
+
+  /** classification of the cells, row major */
+  private final byte[] cellClassification;
+
+  /** Classify all grid cells
+   */
+  private void classifyCells() {
+    for(int row = 0; row < cellsPerDimension; ++row) {
+      for(int column = 0; column < cellsPerDimension; ++column) {
+        double minX = envelope.getMinX() + column * cellWidth;
+        double minY = envelope.getMinY() + row * cellHeight;
+        /* last cell extends to the envelope exactly, avoids rounding gaps */
+        double maxX = column == cellsPerDimension - 1 ? envelope.getMaxX() : minX + cellWidth;
+        double maxY = row == cellsPerDimension - 1 ? envelope.getMaxY() : minY + cellHeight;
+        Polygon cell = PlanitJtsUtils.create2DPolygon(new Envelope(minX, maxX, minY, maxY));
+
+        byte classification = BOUNDARY;
+        if(preparedBoundingPolygon.containsProperly(cell)) {
+          classification = INSIDE;
+        }else if(preparedBoundingPolygon.disjoint(cell)) {
+          classification = OUTSIDE;
+        }
+        cellClassification[row * cellsPerDimension + column] = classification;
+      }
+    }
+  }
+
+  /** Collect the classification of the cell the location resides in
+   *
+   * @param x coordinate
+   * @param y coordinate
+   * @return cell classification
+   */
+  private byte getClassification(double x, double y) {
+    if(!envelope.covers(x, y)) {
+      return OUTSIDE;
+    }
+    if(cellWidth <= 0 || cellHeight <= 0) {
+      return BOUNDARY;
+    }
+    /* locations on shared cell edges may be assigned to either cell, both classifications hold for the closed cell */
+    int column = Math.min((int) ((x - envelope.getMinX()) / cellWidth), cellsPerDimension - 1);
+    int row = Math.min((int) ((y - envelope.getMinY()) / cellHeight), cellsPerDimension - 1);
+
+    /* rounding may assign a location just outside the closed cell (as constructed) to it, in which case its classification does not hold */
+    double minX = envelope.getMinX() + column * cellWidth;
+    double minY = envelope.getMinY() + row * cellHeight;
+    double maxX = column == cellsPerDimension - 1 ? envelope.getMaxX() : minX + cellWidth;
+    double maxY = row == cellsPerDimension - 1 ? envelope.getMaxY() : minY + cellHeight;
+    if(x < minX || x > maxX || y < minY || y > maxY) {
+      return BOUNDARY;
+    }
+    return cellClassification[row * cellsPerDimension + column];
+  }
+
+  /**
+   * Constructor
+   *
+   * @param boundingPolygon to compile
+   */
+  public OsmBoundingPolygonFilter(Polygon boundingPolygon) {
+    this(boundingPolygon, DEFAULT_GRID_CELLS_PER_DIMENSION);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param boundingPolygon to compile
+   * @param cellsPerDimension number of grid cells along each dimension
+   */
+  public OsmBoundingPolygonFilter(Polygon boundingPolygon, int cellsPerDimension) {
+    this.boundingPolygon = boundingPolygon;
+    this.preparedBoundingPolygon = PreparedGeometryFactory.prepare(boundingPolygon);
+    this.envelope = boundingPolygon.getEnvelopeInternal();
+    this.cellsPerDimension = Math.max(1, cellsPerDimension);
+    this.cellWidth = envelope.getWidth() / this.cellsPerDimension;
+    this.cellHeight = envelope.getHeight() / this.cellsPerDimension;
+    this.cellClassification = new byte[this.cellsPerDimension * this.cellsPerDimension];
+    if(cellWidth > 0 && cellHeight > 0) {
+      classifyCells();
+    }
+  }
+
+  /** Verify if location lies within the interior of the bounding polygon, identical to {@code Point.within}
+   *
+   * @param x coordinate
+   * @param y coordinate
+   * @return true when within, false otherwise
+   */
+  public boolean isWithin(double x, double y) {
+    byte classification = getClassification(x, y);
+    if(classification != BOUNDARY) {
+      return classification == INSIDE;
+    }
+    /* for a point, being within a polygon equals the polygon properly containing it */
+    return preparedBoundingPolygon.containsProperly(PlanitJtsUtils.createPoint(new Coordinate(x, y)));
+  }
+
+  /** Verify if OSM node lies within the interior of the bounding polygon, identical to {@code Point.within}
+   *
+   * @param osmNode to verify
+   * @return true when within, false otherwise
+   */
+  public boolean isWithin(OsmNode osmNode) {
+    return isWithin(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+  }
+
+  /** Verify if location lies within or on the bounding polygon, identical to {@code Point.coveredBy}
+   *
+   * @param x coordinate
+   * @param y coordinate
+   * @return true when covered, false otherwise
+   */
+  public boolean isCoveredBy(double x, double y) {
+    byte classification = getClassification(x, y);
+    if(classification != BOUNDARY) {
+      return classification == INSIDE;
+    }
+    return preparedBoundingPolygon.covers(PlanitJtsUtils.createPoint(new Coordinate(x, y)));
+  }
+
+  /** Verify if OSM node lies within or on the bounding polygon, identical to {@code Point.coveredBy}
+   *
+   * @param osmNode to verify
+   * @return true when covered, false otherwise
+   */
+  public boolean isCoveredBy(OsmNode osmNode) {
+    return isCoveredBy(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+  }
+
+  /** Verify if point lies within or on the bounding polygon, identical to {@code Point.coveredBy}
+   *
+   * @param point to verify
+   * @return true when covered, false otherwise
+   */
+  public boolean isCoveredBy(Point point) {
+    return isCoveredBy(point.getX(), point.getY());
+  }
+
+  /** Collect the bounding polygon this filter is compiled from
+   *
+   * @return bounding polygon
+   */
+  public Polygon getBoundingPolygon() {
+    return boundingPolygon;
+  }
+}
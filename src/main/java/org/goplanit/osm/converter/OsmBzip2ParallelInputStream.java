@@ -0,0 +1,278 @@
+package org.goplanit.osm.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Input stream that decompresses bzip2 input on a pool of worker threads, while providing the decompressed bytes in their original order. Parallel bzip2
+ * compressors (e.g. pbzip2) produce a concatenation of independent bzip2 streams, each starting at a byte aligned stream header. The compressed input is cut
+ * into segments at these stream headers, and segments are decompressed concurrently such that the consumer (the XML parser) is kept fed.
+ * <p>
+ *   The number of segments being decompressed (or awaiting consumption) at any time is bounded, such that memory use does not depend on the size of the input.
+ *   Input that does not consist of multiple streams (e.g. produced by regular bzip2) cannot be cut and is decompressed sequentially on the calling thread
+ *   instead, once no stream header has been found within {@link #MAX_SEGMENT_SIZE} bytes.
+ * </p>
+ * <p>
+ *   The worker threads are only released upon {@link #close()}, so the stream must always be closed, also when reading stops early or fails.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmBzip2ParallelInputStream extends InputStream {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmBzip2ParallelInputStream.class.getCanonicalName());
+
+  /** number of compressed bytes read from the source at once */
+  private static final int CHUNK_SIZE = 1 << 18;
+
+  /** number of compressed bytes after which a segment is cut at the latest stream header found */
+  private static final int TARGET_SEGMENT_SIZE = 1 << 20;
+
+  /** number of compressed bytes without any stream header after which input is decompressed sequentially */
+  public static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+  /** number of segments that may be in flight per worker thread */
+  private static final int SEGMENTS_IN_FLIGHT_PER_THREAD = 2;
+
+  /** magic of the first block following a stream header, i.e., the digits of pi */
+  private static final byte[] BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+
+  /** number of bytes of a stream header ("BZh" and the block size) followed by the first block magic */
+  private static final int STREAM_HEADER_LENGTH = 4 + BLOCK_MAGIC.length;
+
+  /** the compressed source */
+  private final InputStream source;
+
+  /** the decompression threads */
+  private final ExecutorService executor;
+
+  /** maximum number of segments in flight */
+  private final int maxSegmentsInFlight;
+
+  /** segments being decompressed in input order */
+  private final Deque<Future<byte[]>> segmentsInFlight;
+
+  /** compressed bytes not yet part of a segment, always starting at a stream header */
+  private byte[] pending = new byte[TARGET_SEGMENT_SIZE + CHUNK_SIZE];
+
+  /** number of pending bytes */
+  private int pendingLength = 0;
+
+  /** index of the pending bytes from which scanning for stream headers continues */
+  private int scanIndex = 1;
+
+  /** index of the latest stream header found in the pending bytes, 0 when none (other than the one at its start) */
+  private int latestStreamHeaderIndex = 0;
+
+  /** flag indicating the source is exhausted */
+  private boolean sourceExhausted = false;
+
+  /** decompressed segment being consumed */
+  private byte[] current = new byte[0];
+
+  /** position in decompressed segment being consumed */
+  private int currentPosition = 0;
+
+  /** sequential decompression of the remaining input, null unless the input could not be cut into segments */
+  private InputStream sequentialInput = null;
+
+  /** Verify if a stream header is located at the given index
+   *
+   * @param data to verify
+   * @param index to verify at, at least {@link #STREAM_HEADER_LENGTH} bytes must be available
+   * @return true when stream header, false otherwise
+   */
+  private static boolean isStreamHeader(byte[] data, int index) {
+    if(data[index] != 'B' || data[index + 1] != 'Z' || data[index + 2] != 'h' || data[index + 3] < '1' || data[index + 3] > '9') {
+      return false;
+    }
+    for(int offset = 0; offset < BLOCK_MAGIC.length; ++offset) {
+      if(data[index + 4 + offset] != BLOCK_MAGIC[offset]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Decompress a segment of one or more complete bzip2 streams
+   *
+   * @param segment to decompress
+   * @return decompressed bytes
+   * @throws IOException thrown if error
+   */
+  private static byte[] decompress(byte[] segment) throws IOException {
+    try(InputStream input = new BZip2CompressorInputStream(new ByteArrayInputStream(segment), true)){
+      return input.readAllBytes();
+    }
+  }
+
+  /** Read the next chunk of compressed bytes from the source and scan it for stream headers
+   *
+   * @throws IOException thrown if error
+   */
+  private void readChunk() throws IOException {
+    if(pendingLength + CHUNK_SIZE > pending.length) {
+      pending = Arrays.copyOf(pending, pending.length * 2);
+    }
+    int numberOfBytesRead = source.read(pending, pendingLength, CHUNK_SIZE);
+    if(numberOfBytesRead < 0) {
+      sourceExhausted = true;
+      return;
+    }
+    pendingLength += numberOfBytesRead;
+    for(; scanIndex <= pendingLength - STREAM_HEADER_LENGTH; ++scanIndex) {
+      if(isStreamHeader(pending, scanIndex)) {
+        latestStreamHeaderIndex = scanIndex;
+      }
+    }
+  }
+
+  /** Submit the first pending bytes as a segment for decompression
+   *
+   * @param length of the segment
+   */
+  private void submitSegment(int length) {
+    final byte[] segment = Arrays.copyOf(pending, length);
+    System.arraycopy(pending, length, pending, 0, pendingLength - length);
+    pendingLength -= length;
+    /* remaining bytes up to scan index were scanned before and do not contain a stream header other than the one at their start */
+    scanIndex = Math.max(1, scanIndex - length);
+    latestStreamHeaderIndex = 0;
+    segmentsInFlight.add(executor.submit(() -> decompress(segment)));
+  }
+
+  /** Submit the next segment for decompression, or switch to sequential decompression when the input cannot be cut into segments
+   *
+   * @return true when a segment was submitted, false when the input is exhausted or decompressed sequentially from here on
+   * @throws IOException thrown if error
+   */
+  private boolean submitNextSegment() throws IOException {
+    while(true) {
+      if(latestStreamHeaderIndex > 0 && pendingLength >= TARGET_SEGMENT_SIZE) {
+        submitSegment(latestStreamHeaderIndex);
+        return true;
+      }
+      if(sourceExhausted) {
+        if(pendingLength == 0) {
+          return false;
+        }
+        submitSegment(pendingLength);
+        return true;
+      }
+      if(latestStreamHeaderIndex == 0 && pendingLength >= MAX_SEGMENT_SIZE) {
+        LOGGER.fine("No bzip2 stream header found within maximum segment size, decompressing remaining input sequentially");
+        sequentialInput = new BZip2CompressorInputStream(
+            new SequenceInputStream(new ByteArrayInputStream(Arrays.copyOf(pending, pendingLength)), source), true);
+        pending = null;
+        pendingLength = 0;
+        return false;
+      }
+      readChunk();
+    }
+  }
+
+  /** Make sure decompressed bytes of a segment are available, waiting for the oldest segment in flight if needed
+   *
+   * @return true when available, false when all segments have been consumed
+   * @throws IOException thrown if error
+   */
+  private boolean ensureDecompressedAvailable() throws IOException {
+    while(currentPosition >= current.length) {
+      while(sequentialInput == null && segmentsInFlight.size() < maxSegmentsInFlight && submitNextSegment()) {
+        // keep decompression threads busy
+      }
+      if(segmentsInFlight.isEmpty()) {
+        executor.shutdown();
+        return false;
+      }
+      try {
+        current = segmentsInFlight.poll().get();
+        currentPosition = 0;
+      }catch(ExecutionException e) {
+        throw new IOException("Unable to decompress bzip2 segment", e.getCause());
+      }catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while decompressing bzip2 input");
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Constructor
+   *
+   * @param source compressed input, starting with a stream header
+   * @param numberOfDecompressionThreads number of worker threads to decompress with, at least one
+   */
+  public OsmBzip2ParallelInputStream(InputStream source, int numberOfDecompressionThreads) {
+    this.source = source;
+    final int numberOfThreads = Math.max(1, numberOfDecompressionThreads);
+    this.maxSegmentsInFlight = numberOfThreads * SEGMENTS_IN_FLIGHT_PER_THREAD;
+    this.segmentsInFlight = new ArrayDeque<>(maxSegmentsInFlight);
+
+    /* daemons such that an abandoned read does not prevent the JVM from exiting */
+    final AtomicInteger threadCounter = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+      Thread thread = new Thread(runnable, "planit-osm-bzip2-decompressor-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read() throws IOException {
+    if(!ensureDecompressedAvailable()) {
+      return sequentialInput != null ? sequentialInput.read() : -1;
+    }
+    return current[currentPosition++] & 0xff;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if(length == 0) {
+      return 0;
+    }
+    if(!ensureDecompressedAvailable()) {
+      return sequentialInput != null ? sequentialInput.read(buffer, offset, length) : -1;
+    }
+    int numberOfBytes = Math.min(length, current.length - currentPosition);
+    System.arraycopy(current, currentPosition, buffer, offset, numberOfBytes);
+    currentPosition += numberOfBytes;
+    return numberOfBytes;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    segmentsInFlight.clear();
+    if(sequentialInput != null) {
+      sequentialInput.close();
+    }else {
+      source.close();
+    }
+  }
+}
@@ -0,0 +1,400 @@
+package org.goplanit.osm.converter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import de.topobyte.osm4j.core.access.DefaultOsmHandler;
+import de.topobyte.osm4j.core.access.OsmHandler;
+import de.topobyte.osm4j.core.access.OsmInputException;
+import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmBounds;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.core.model.impl.Node;
+
+/**
+ * In-memory store of decoded OSM entities that allows one to replay them to one or more OSM handlers without decoding the OSM source again.
+ * Entities are retained in the order they were registered, which is expected to be the order in which they appear in the source, i.e.,
+ * nodes, then ways, then relations. Only entities that pass the capture filters are retained, so the store can be limited to the subset of
+ * the OSM source that is relevant for the handlers that replay it.
+ * <p>
+ *   Since OSM nodes are by far the most numerous entities, nodes without tags are stored compactly by their id and coordinates only, and recreated
+ *   when replayed. Nodes with tags, ways, and relations are retained as is.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmEntityStore {
+
+  /** initial capacity of the node arrays */
+  private static final int INITIAL_NODE_CAPACITY = 1 << 16;
+
+  /** maximum capacity of the node arrays, i.e., the largest array length supported by common JVMs */
+  private static final int MAX_NODE_CAPACITY = Integer.MAX_VALUE - 8;
+
+  /** ids of captured OSM nodes in order of registration */
+  private long[] osmNodeIds;
+
+  /** longitudes of captured OSM nodes in order of registration */
+  private double[] osmNodeLongitudes;
+
+  /** latitudes of captured OSM nodes in order of registration */
+  private double[] osmNodeLatitudes;
+
+  /** number of captured OSM nodes */
+  private int numberOfOsmNodes;
+
+  /** OSM nodes with tags are retained as is, indexed by their position in the node arrays */
+  private final Map<Integer, OsmNode> taggedOsmNodesByPosition = new HashMap<>();
+
+  /** captured OSM ways in order of registration */
+  private final List<OsmWay> osmWays = new ArrayList<>();
+
+  /** captured OSM relations in order of registration */
+  private final List<OsmRelation> osmRelations = new ArrayList<>();
+
+  /** filter for OSM nodes to capture */
+  private Predicate<OsmNode> osmNodeFilter = osmNode -> false;
+
+  /** filter for OSM ways to capture */
+  private Predicate<OsmWay> osmWayFilter = osmWay -> false;
+
+  /** filter for OSM relations to capture */
+  private Predicate<OsmRelation> osmRelationFilter = osmRelation -> false;
+
+  /**
+   * Handler that captures eligible OSM entities in this store while also delegating all entities to another handler (if any), such that
+   * capturing can take place as part of an existing pass over the OSM source.
+   */
+  private class CapturingHandler extends DefaultOsmHandler {
+
+    /** handler to delegate to, may be null */
+    private final OsmHandler delegate;
+
+    /**
+     * Constructor
+     *
+     * @param delegate to delegate to, may be null
+     */
+    CapturingHandler(OsmHandler delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void handle(OsmBounds bounds) throws IOException {
+      if(delegate != null) {
+        delegate.handle(bounds);
+      }
+    }
+
+    @Override
+    public void handle(OsmNode osmNode) throws IOException {
+      if(osmNodeFilter.test(osmNode)) {
+        registerOsmNode(osmNode);
+      }
+      if(delegate != null) {
+        delegate.handle(osmNode);
+      }
+    }
+
+    @Override
+    public void handle(OsmWay osmWay) throws IOException {
+      if(osmWayFilter.test(osmWay)) {
+        registerOsmWay(osmWay);
+      }
+      if(delegate != null) {
+        delegate.handle(osmWay);
+      }
+    }
+
+    @Override
+    public void handle(OsmRelation osmRelation) throws IOException {
+      if(osmRelationFilter.test(osmRelation)) {
+        registerOsmRelation(osmRelation);
+      }
+      if(delegate != null) {
+        delegate.handle(osmRelation);
+      }
+    }
+
+    @Override
+    public void complete() throws IOException {
+      if(delegate != null) {
+        delegate.complete();
+      }
+    }
+  }
+
+  /**
+   * OSM reader that replays the entities in this store rather than decoding an OSM source, such that it can be used in place of
+   * a regular osm4j reader
+   */
+  private class ReplayingReader implements OsmReader {
+
+    /** handler to replay to */
+    private OsmHandler handler;
+
+    @Override
+    public void setHandler(OsmHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void read() throws OsmInputException {
+      try {
+        replay(handler, OsmEntityTypeAwareHandler.getConsumedEntityTypes(handler));
+      }catch(IOException e) {
+        throw new OsmInputException("Error while replaying stored OSM entities", e);
+      }
+    }
+  }
+
+  /** Collect the OSM node at the given position
+   *
+   * @param position to collect
+   * @return OSM node
+   */
+  private OsmNode getOsmNode(int position) {
+    OsmNode osmNode = taggedOsmNodesByPosition.get(position);
+    if(osmNode == null) {
+      osmNode = new Node(osmNodeIds[position], osmNodeLongitudes[position], osmNodeLatitudes[position]);
+    }
+    return osmNode;
+  }
+
+  /**
+   * Constructor
+   */
+  public OsmEntityStore() {
+    reset();
+  }
+
+  /** Set the filter for OSM nodes to capture, by default none are captured
+   *
+   * @param osmNodeFilter to apply
+   */
+  public void setOsmNodeFilter(Predicate<OsmNode> osmNodeFilter) {
+    this.osmNodeFilter = osmNodeFilter;
+  }
+
+  /** Set the filter for OSM ways to capture, by default none are captured
+   *
+   * @param osmWayFilter to apply
+   */
+  public void setOsmWayFilter(Predicate<OsmWay> osmWayFilter) {
+    this.osmWayFilter = osmWayFilter;
+  }
+
+  /** Set the filter for OSM relations to capture, by default none are captured
+   *
+   * @param osmRelationFilter to apply
+   */
+  public void setOsmRelationFilter(Predicate<OsmRelation> osmRelationFilter) {
+    this.osmRelationFilter = osmRelationFilter;
+  }
+
+  /** Register OSM node in the store irrespective of the filter
+   *
+   * @param osmNode to register
+   */
+  public void registerOsmNode(OsmNode osmNode) {
+    if(numberOfOsmNodes == osmNodeIds.length) {
+      if(osmNodeIds.length >= MAX_NODE_CAPACITY) {
+        throw new PlanItRunTimeException("Unable to store more than %d OSM nodes", MAX_NODE_CAPACITY);
+      }
+      int newCapacity = (int) Math.min(MAX_NODE_CAPACITY, (long) osmNodeIds.length << 1);
+      osmNodeIds = Arrays.copyOf(osmNodeIds, newCapacity);
+      osmNodeLongitudes = Arrays.copyOf(osmNodeLongitudes, newCapacity);
+      osmNodeLatitudes = Arrays.copyOf(osmNodeLatitudes, newCapacity);
+    }
+    osmNodeIds[numberOfOsmNodes] = osmNode.getId();
+    osmNodeLongitudes[numberOfOsmNodes] = osmNode.getLongitude();
+    osmNodeLatitudes[numberOfOsmNodes] = osmNode.getLatitude();
+    if(osmNode.getNumberOfTags() > 0) {
+      taggedOsmNodesByPosition.put(numberOfOsmNodes, osmNode);
+    }
+    ++numberOfOsmNodes;
+  }
+
+  /** Register OSM way in the store irrespective of the filter
+   *
+   * @param osmWay to register
+   */
+  public void registerOsmWay(OsmWay osmWay) {
+    osmWays.add(osmWay);
+  }
+
+  /** Register OSM relation in the store irrespective of the filter
+   *
+   * @param osmRelation to register
+   */
+  public void registerOsmRelation(OsmRelation osmRelation) {
+    osmRelations.add(osmRelation);
+  }
+
+  /** Create a handler that captures OSM entities in this store based on the filters while delegating all entities to the given handler
+   *
+   * @param delegate to delegate to, may be null when only capturing
+   * @return capturing handler
+   */
+  public DefaultOsmHandler createCapturingHandler(OsmHandler delegate) {
+    return new CapturingHandler(delegate);
+  }
+
+  /** Create an OSM reader that replays the entities in this store (see {@link #replay(OsmHandler, Set)}) to the handler set on it upon reading. Only
+   * entities of the types consumed by the handler are replayed (see {@link OsmEntityTypeAwareHandler})
+   *
+   * @return replaying OSM reader
+   */
+  public OsmReader createReader() {
+    return new ReplayingReader();
+  }
+
+  /** Replay the captured OSM nodes to the handler in order of registration
+   *
+   * @param osmHandler to replay to
+   * @throws IOException thrown if error
+   */
+  public void replayOsmNodes(OsmHandler osmHandler) throws IOException {
+    for(int position=0;position<numberOfOsmNodes;++position) {
+      osmHandler.handle(getOsmNode(position));
+    }
+  }
+
+  /** Replay the captured OSM ways to the handler in order of registration
+   *
+   * @param osmHandler to replay to
+   * @throws IOException thrown if error
+   */
+  public void replayOsmWays(OsmHandler osmHandler) throws IOException {
+    for(var osmWay : osmWays) {
+      osmHandler.handle(osmWay);
+    }
+  }
+
+  /** Replay the captured OSM relations to the handler in order of registration
+   *
+   * @param osmHandler to replay to
+   * @throws IOException thrown if error
+   */
+  public void replayOsmRelations(OsmHandler osmHandler) throws IOException {
+    for(var osmRelation : osmRelations) {
+      osmHandler.handle(osmRelation);
+    }
+  }
+
+  /** Replay the captured entities to the handler in order of registration: nodes, ways, relations, followed by a call to complete
+   *
+   * @param osmHandler to replay to
+   * @throws IOException thrown if error
+   */
+  public void replay(OsmHandler osmHandler) throws IOException {
+    replayOsmNodes(osmHandler);
+    replayOsmWays(osmHandler);
+    replayOsmRelations(osmHandler);
+    osmHandler.complete();
+  }
+
+  /** Replay the captured entities of the given types to the handler in order of registration: nodes, ways, relations, followed by a call to complete
+   *
+   * @param osmHandler to replay to
+   * @param entityTypes to replay
+   * @throws IOException thrown if error
+   */
+  public void replay(OsmHandler osmHandler, Set<EntityType> entityTypes) throws IOException {
+    if(entityTypes.contains(EntityType.Node)) {
+      replayOsmNodes(osmHandler);
+    }
+    if(entityTypes.contains(EntityType.Way)) {
+      replayOsmWays(osmHandler);
+    }
+    if(entityTypes.contains(EntityType.Relation)) {
+      replayOsmRelations(osmHandler);
+    }
+    osmHandler.complete();
+  }
+
+  /** Number of captured OSM nodes
+   *
+   * @return number of OSM nodes
+   */
+  public int getNumberOfOsmNodes() {
+    return numberOfOsmNodes;
+  }
+
+  /** Number of captured OSM ways
+   *
+   * @return number of OSM ways
+   */
+  public int getNumberOfOsmWays() {
+    return osmWays.size();
+  }
+
+  /** Number of captured OSM relations
+   *
+   * @return number of OSM relations
+   */
+  public int getNumberOfOsmRelations() {
+    return osmRelations.size();
+  }
+
+  /** Retain only the captured OSM nodes that pass the filter, e.g., once it is known which OSM nodes the captured OSM ways reference. Since OSM nodes
+   * precede OSM ways in the source, this cannot be decided while capturing. The order of the retained OSM nodes is preserved
+   *
+   * @param osmNodeFilter to apply
+   */
+  public void retainOsmNodes(Predicate<OsmNode> osmNodeFilter) {
+    int numberOfRetainedOsmNodes = 0;
+    for(int position=0;position<numberOfOsmNodes;++position) {
+      OsmNode taggedOsmNode = taggedOsmNodesByPosition.remove(position);
+      if(!osmNodeFilter.test(taggedOsmNode != null ? taggedOsmNode : getOsmNode(position))) {
+        continue;
+      }
+      osmNodeIds[numberOfRetainedOsmNodes] = osmNodeIds[position];
+      osmNodeLongitudes[numberOfRetainedOsmNodes] = osmNodeLongitudes[position];
+      osmNodeLatitudes[numberOfRetainedOsmNodes] = osmNodeLatitudes[position];
+      if(taggedOsmNode != null) {
+        taggedOsmNodesByPosition.put(numberOfRetainedOsmNodes, taggedOsmNode);
+      }
+      ++numberOfRetainedOsmNodes;
+    }
+    numberOfOsmNodes = numberOfRetainedOsmNodes;
+
+    /* free up capacity no longer required */
+    int capacity = Math.max(INITIAL_NODE_CAPACITY, numberOfOsmNodes);
+    if(capacity < osmNodeIds.length) {
+      osmNodeIds = Arrays.copyOf(osmNodeIds, capacity);
+      osmNodeLongitudes = Arrays.copyOf(osmNodeLongitudes, capacity);
+      osmNodeLatitudes = Arrays.copyOf(osmNodeLatitudes, capacity);
+    }
+  }
+
+  /** Free up the captured OSM nodes only, e.g., when they are no longer required while ways and/or relations still are
+   */
+  public void resetOsmNodes() {
+    this.osmNodeIds = new long[INITIAL_NODE_CAPACITY];
+    this.osmNodeLongitudes = new double[INITIAL_NODE_CAPACITY];
+    this.osmNodeLatitudes = new double[INITIAL_NODE_CAPACITY];
+    this.numberOfOsmNodes = 0;
+    taggedOsmNodesByPosition.clear();
+  }
+
+  /**
+   * Free up captured entities
+   */
+  public void reset() {
+    resetOsmNodes();
+    osmWays.clear();
+    osmRelations.clear();
+  }
+}
@@ -0,0 +1,34 @@
+package org.goplanit.osm.converter;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import de.topobyte.osm4j.core.access.OsmHandler;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+
+/**
+ * OSM handler that declares which entity types it consumes. Readers may use this to avoid decoding (and delivering) entities of other
+ * types altogether, since the handler would ignore them anyway. Handlers must therefore not rely on receiving entities of types they do not declare.
+ *
+ * @author markr
+ */
+public interface OsmEntityTypeAwareHandler extends OsmHandler {
+
+  /** Entity types this handler consumes
+   *
+   * @return consumed entity types
+   */
+  Set<EntityType> getConsumedEntityTypes();
+
+  /** Collect the entity types consumed by the given handler
+   *
+   * @param osmHandler to collect for
+   * @return consumed entity types, all entity types when the handler does not declare them
+   */
+  static Set<EntityType> getConsumedEntityTypes(OsmHandler osmHandler) {
+    if(osmHandler instanceof OsmEntityTypeAwareHandler) {
+      return ((OsmEntityTypeAwareHandler) osmHandler).getConsumedEntityTypes();
+    }
+    return EnumSet.allOf(EntityType.class);
+  }
+}
@@ -0,0 +1,92 @@
+package org.goplanit.osm.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.topobyte.osm4j.core.access.OsmHandler;
+import de.topobyte.osm4j.core.access.OsmInputException;
+import de.topobyte.osm4j.core.access.OsmReader;
+
+/**
+ * OSM reader that owns the input stream of a stream based osm4j reader. osm4j readers constructed on an input stream neither own nor close it, so the
+ * stream is only opened upon reading and always closed afterwards, also when reading fails. Each read opens the input anew, such that the reader can be
+ * used for multiple passes.
+ *
+ * @author markr
+ */
+public class OsmInputStreamReader implements OsmReader {
+
+  /**
+   * Opens the input stream to read from
+   */
+  @FunctionalInterface
+  public interface InputStreamOpener {
+
+    /** Open the input stream
+     *
+     * @return opened input stream, closed by the caller
+     * @throws IOException thrown if error
+     */
+    InputStream open() throws IOException;
+  }
+
+  /**
+   * Creates the osm4j reader on an opened input stream
+   */
+  @FunctionalInterface
+  public interface StreamReaderFactory {
+
+    /** Create the reader
+     *
+     * @param input to read from
+     * @return created reader
+     * @throws IOException thrown if error
+     */
+    OsmReader create(InputStream input) throws IOException;
+  }
+
+  /** opens the input stream */
+  private final InputStreamOpener inputStreamOpener;
+
+  /** creates the reader on the input stream */
+  private final StreamReaderFactory streamReaderFactory;
+
+  /** handler to deliver entities to */
+  private OsmHandler handler;
+
+  /**
+   * Constructor
+   *
+   * @param inputStreamOpener to open the input stream with upon reading
+   * @param streamReaderFactory to create the reader on the opened input stream with
+   */
+  public OsmInputStreamReader(InputStreamOpener inputStreamOpener, StreamReaderFactory streamReaderFactory) {
+    this.inputStreamOpener = inputStreamOpener;
+    this.streamReaderFactory = streamReaderFactory;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setHandler(OsmHandler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void read() throws OsmInputException {
+    if(handler == null) {
+      throw new OsmInputException("No handler set on OSM reader");
+    }
+    try(InputStream input = inputStreamOpener.open()){
+      OsmReader osmReader = streamReaderFactory.create(input);
+      osmReader.setHandler(handler);
+      osmReader.read();
+    }catch(IOException e) {
+      throw new OsmInputException("Error while reading OSM input stream", e);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package org.goplanit.osm.converter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+/**
+ * Disk backed store of OSM node coordinates that is memory mapped, such that the coordinates of (very) many OSM nodes can be retained without
+ * them residing on the JVM heap. The operating system pages the coordinates in and out of memory as needed.
+ * <p>
+ *   Records comprise the OSM node id, longitude, and latitude and are appended in ascending order of the OSM node id (which is the order in which
+ *   they appear in sorted OSM files), so a record can be found by a binary search on the id without any index on the heap.
+ *   The backing file is temporary and removed upon closing this store.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmNodeCoordinateFile {
+
+  /** logger to use */
+  private static final Logger LOGGER = Logger.getLogger(OsmNodeCoordinateFile.class.getCanonicalName());
+
+  /** bytes per record: id, longitude, latitude */
+  private static final int RECORD_BYTES = Long.BYTES + 2 * Double.BYTES;
+
+  /** number of bits to address a record within a mapped segment */
+  private static final int SEGMENT_BITS = 22;
+
+  /** number of records per mapped segment */
+  private static final long RECORDS_PER_SEGMENT = 1L << SEGMENT_BITS;
+
+  /** mask to extract the record within a segment */
+  private static final long SEGMENT_MASK = RECORDS_PER_SEGMENT - 1;
+
+  /** the backing file */
+  private final Path file;
+
+  /** channel of the backing file */
+  private final FileChannel fileChannel;
+
+  /** mapped segments of the backing file */
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+  /** number of records */
+  private long numberOfRecords = 0;
+
+  /** Collect the segment the record resides in, mapping new segments when needed
+   *
+   * @param recordIndex to collect segment for
+   * @return segment
+   */
+  private MappedByteBuffer getSegment(long recordIndex) {
+    int segmentIndex = (int) (recordIndex >>> SEGMENT_BITS);
+    while(segmentIndex >= segments.size()) {
+      try {
+        segments.add(fileChannel.map(FileChannel.MapMode.READ_WRITE, segments.size() * RECORDS_PER_SEGMENT * RECORD_BYTES, RECORDS_PER_SEGMENT * RECORD_BYTES));
+      }catch(IOException e) {
+        throw new PlanItRunTimeException("Unable to map OSM node coordinate file %s: %s", file.toString(), e.getMessage());
+      }
+    }
+    return segments.get(segmentIndex);
+  }
+
+  /** Byte offset of the record within its segment
+   *
+   * @param recordIndex to collect offset for
+   * @return offset
+   */
+  private static int getOffset(long recordIndex) {
+    return (int) (recordIndex & SEGMENT_MASK) * RECORD_BYTES;
+  }
+
+  /**
+   * Constructor
+   *
+   * @param directory to create the temporary backing file in, when null the default temporary directory is used
+   */
+  public OsmNodeCoordinateFile(Path directory) {
+    try {
+      this.file = directory == null ? Files.createTempFile("planit_osm_nodes", ".bin") : Files.createTempFile(directory, "planit_osm_nodes", ".bin");
+      this.file.toFile().deleteOnExit();
+      this.fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }catch(IOException e) {
+      throw new PlanItRunTimeException("Unable to create OSM node coordinate file in %s: %s", String.valueOf(directory), e.getMessage());
+    }
+    LOGGER.fine(String.format("Memory mapped OSM node coordinates stored in %s", file.toString()));
+  }
+
+  /** Id of the last appended OSM node
+   *
+   * @return last OSM node id, Long.MIN_VALUE when empty
+   */
+  public long getLastOsmNodeId() {
+    return numberOfRecords == 0 ? Long.MIN_VALUE : getOsmNodeId(numberOfRecords - 1);
+  }
+
+  /** Append OSM node coordinates. Only allowed when the id exceeds the last appended id
+   *
+   * @param osmNodeId to append
+   * @param longitude to append
+   * @param latitude to append
+   * @return true when appended, false when the id is not in ascending order
+   */
+  public boolean append(long osmNodeId, double longitude, double latitude) {
+    if(numberOfRecords > 0 && osmNodeId <= getLastOsmNodeId()) {
+      return false;
+    }
+    MappedByteBuffer segment = getSegment(numberOfRecords);
+    int offset = getOffset(numberOfRecords);
+    segment.putLong(offset, osmNodeId);
+    segment.putDouble(offset + Long.BYTES, longitude);
+    segment.putDouble(offset + Long.BYTES + Double.BYTES, latitude);
+    ++numberOfRecords;
+    return true;
+  }
+
+  /** Find the record of the OSM node
+   *
+   * @param osmNodeId to find
+   * @return record index, negative when not present
+   */
+  public long find(long osmNodeId) {
+    long low = 0;
+    long high = numberOfRecords - 1;
+    if(high < 0 || osmNodeId > getOsmNodeId(high)) {
+      return -1;
+    }
+    while(low <= high) {
+      long mid = (low + high) >>> 1;
+      long midId = getOsmNodeId(mid);
+      if(midId < osmNodeId) {
+        low = mid + 1;
+      }else if(midId > osmNodeId) {
+        high = mid - 1;
+      }else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /** OSM node id of the record
+   *
+   * @param recordIndex to collect for
+   * @return OSM node id
+   */
+  public long getOsmNodeId(long recordIndex) {
+    return getSegment(recordIndex).getLong(getOffset(recordIndex));
+  }
+
+  /** Longitude of the record
+   *
+   * @param recordIndex to collect for
+   * @return longitude
+   */
+  public double getLongitude(long recordIndex) {
+    return getSegment(recordIndex).getDouble(getOffset(recordIndex) + Long.BYTES);
+  }
+
+  /** Latitude of the record
+   *
+   * @param recordIndex to collect for
+   * @return latitude
+   */
+  public double getLatitude(long recordIndex) {
+    return getSegment(recordIndex).getDouble(getOffset(recordIndex) + Long.BYTES + Double.BYTES);
+  }
+
+  /** Overwrite the coordinates of an existing record
+   *
+   * @param recordIndex to overwrite
+   * @param longitude to use
+   * @param latitude to use
+   */
+  public void setCoordinates(long recordIndex, double longitude, double latitude) {
+    MappedByteBuffer segment = getSegment(recordIndex);
+    int offset = getOffset(recordIndex);
+    segment.putDouble(offset + Long.BYTES, longitude);
+    segment.putDouble(offset + Long.BYTES + Double.BYTES, latitude);
+  }
+
+  /** Number of records
+   *
+   * @return number of records
+   */
+  public long size() {
+    return numberOfRecords;
+  }
+
+  /**
+   * Close the store and remove the backing file. Mapped memory is released once the segments are garbage collected
+   */
+  public void close() {
+    segments.clear();
+    numberOfRecords = 0;
+    try {
+      fileChannel.close();
+      Files.deleteIfExists(file);
+    }catch(IOException e) {
+      LOGGER.warning(String.format("Unable to remove OSM node coordinate file %s: %s", file.toString(), e.getMessage()));
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package org.goplanit.osm.converter;
 
 import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.impl.Node;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.Coordinate;
 
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
@@ -9,37 +13,364 @@ import java.util.logging.Logger;
 /**
  * Manage OSM nodes that are retained in memory for parsing. This is supported through a two stage process where nodes can be pre-registered
  * and then be registered at a later point.
+ * <p>
+ *   To minimise memory use, nodes are not retained as OSM node instances in a boxed map. Pre-registrations are tracked in a bit set over the node ids, while
+ *   registered nodes are stored by their coordinates in parallel primitive arrays indexed via an open addressing hash table on the node id. Only nodes that carry tags are
+ *   retained as is, all others are recreated upon request. Note that as a result, consecutive requests for the same untagged node yield equal but not identical
+ *   OSM node instances.
+ * </p>
+ * <p>
+ *   Optionally, coordinates of untagged nodes can be stored in a memory mapped file instead (see {@link #activateMemoryMappedCoordinates(Path)}), such that
+ *   the heap only holds the pre-registration bit set and nodes that could not be appended in ascending id order.
+ * </p>
  */
 public class OsmNodeData {
 
   private static final Logger LOGGER = Logger.getLogger(OsmNodeData.class.getCanonicalName());
 
-  /** temporary storage of osmNodes before converting the useful ones to actual nodes */
-  private final Map<Long, OsmNode> osmNodes = new HashMap<>();
+  /** marker for unused slot in the hash table, not a valid OSM node id */
+  private static final long EMPTY_SLOT = Long.MIN_VALUE;
 
-  /** Collect the OSM nodes (unmodifiable)
+  /** marker for a slot that was used but removed in the hash table, not a valid OSM node id */
+  private static final long REMOVED_SLOT = Long.MIN_VALUE + 1;
+
+  /** initial number of slots of the hash table, must be a power of two */
+  private static final int INITIAL_NUMBER_OF_SLOTS = 1 << 12;
+
+  /** maximum load factor of the hash table (including removed slots) */
+  private static final double MAX_LOAD_FACTOR = 0.6;
+
+  /** pre-registered OSM node ids */
+  private final OsmNodeIdBitSet preRegisteredOsmNodeIds = new OsmNodeIdBitSet();
+
+  /** hash table keys, i.e., OSM node ids of registered nodes */
+  private long[] slotOsmNodeIds;
+
+  /** hash table values, i.e., position of registered node in the coordinate arrays */
+  private int[] slotPositions;
+
+  /** number of used slots, including removed slots */
+  private int numberOfUsedSlots;
+
+  /** number of registered OSM nodes, i.e., used slots excluding removed slots */
+  private int numberOfRegisteredOsmNodes;
+
+  /** longitude of registered OSM nodes by position */
+  private double[] longitudes;
+
+  /** latitude of registered OSM nodes by position */
+  private double[] latitudes;
+
+  /** next free position in coordinate arrays */
+  private int nextPosition;
+
+  /** registered OSM nodes with tags are retained as is, by position */
+  private final Map<Integer, OsmNode> taggedOsmNodesByPosition = new HashMap<>();
+
+  /** memory mapped coordinates of untagged registered nodes, null when not (yet) created */
+  private OsmNodeCoordinateFile mappedCoordinates = null;
+
+  /** directory of the memory mapped coordinates, null for default temporary directory */
+  private Path mappedCoordinatesDirectory = null;
+
+  /** flag indicating memory mapped coordinates are activated */
+  private boolean mappedCoordinatesActivated = false;
+
+  /** read-only map view on pre-registered/registered nodes consistent with the original map based implementation */
+  private final Map<Long, OsmNode> registeredOsmNodesView = new RegisteredOsmNodesView();
+
+  /**
+   * Read only map view where all pre-registered OSM nodes are present as keys, with their value being the registered node if available,
+   * null otherwise.
+   */
+  private class RegisteredOsmNodesView extends AbstractMap<Long, OsmNode> {
+
+    @Override
+    public OsmNode get(Object key) {
+      return (key instanceof Long) ? getRegisteredOsmNode((Long) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (key instanceof Long) && containsPreregisteredOsmNode((Long) key);
+    }
+
+    @Override
+    public int size() {
+      return (int) preRegisteredOsmNodeIds.cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return preRegisteredOsmNodeIds.cardinality() == 0;
+    }
+
+    @Override
+    public Set<Entry<Long, OsmNode>> entrySet() {
+      return new AbstractSet<>() {
+
+        @Override
+        public Iterator<Entry<Long, OsmNode>> iterator() {
+          final PrimitiveIterator.OfLong idIterator = preRegisteredOsmNodeIds.iterator();
+          return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+              return idIterator.hasNext();
+            }
+
+            @Override
+            public Entry<Long, OsmNode> next() {
+              long osmNodeId = idIterator.nextLong();
+              return new SimpleImmutableEntry<>(osmNodeId, getRegisteredOsmNode(osmNodeId));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return RegisteredOsmNodesView.this.size();
+        }
+      };
+    }
+  }
+
+  /** Hash the OSM node id to a slot index
+   *
+   * @param osmNodeId to hash
+   * @param mask to apply (number of slots -1)
+   * @return slot index
+   */
+  private static int hashToSlot(long osmNodeId, int mask) {
+    /* finaliser of murmur3, spreads sequential ids evenly */
+    long h = osmNodeId;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h & mask;
+  }
+
+  /** Find slot of registered OSM node
+   *
+   * @param osmNodeId to find
+   * @return slot index, negative when not present
+   */
+  private int findSlot(long osmNodeId) {
+    int mask = slotOsmNodeIds.length - 1;
+    int slot = hashToSlot(osmNodeId, mask);
+    long slotId;
+    while((slotId = slotOsmNodeIds[slot]) != EMPTY_SLOT) {
+      if(slotId == osmNodeId) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /** Insert the id with position in the hash table, assumes it is not yet present and capacity is sufficient
+   *
+   * @param osmNodeId to insert
+   * @param position to insert
+   */
+  private void insertSlot(long osmNodeId, int position) {
+    int mask = slotOsmNodeIds.length - 1;
+    int slot = hashToSlot(osmNodeId, mask);
+    while(slotOsmNodeIds[slot] != EMPTY_SLOT) {
+      slot = (slot + 1) & mask;
+    }
+    slotOsmNodeIds[slot] = osmNodeId;
+    slotPositions[slot] = position;
+    ++numberOfUsedSlots;
+  }
+
+  /** Insert the id of a newly registered OSM node in the hash table, assumes it is not yet present and capacity is sufficient. The first removed slot on
+   * its probe sequence is reused (if any), including its position in the coordinate arrays which is no longer in use, otherwise a new position is taken
+   *
+   * @param osmNodeId to insert
+   * @return position of the OSM node in the coordinate arrays
+   */
+  private int insertRegisteredOsmNodeId(long osmNodeId) {
+    int mask = slotOsmNodeIds.length - 1;
+    int slot = hashToSlot(osmNodeId, mask);
+    long slotId;
+    while((slotId = slotOsmNodeIds[slot]) != EMPTY_SLOT) {
+      if(slotId == REMOVED_SLOT) {
+        slotOsmNodeIds[slot] = osmNodeId;
+        return slotPositions[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    slotOsmNodeIds[slot] = osmNodeId;
+    slotPositions[slot] = nextPosition;
+    ++numberOfUsedSlots;
+    return nextPosition++;
+  }
+
+  /** Grow the hash table (dropping removed slots) as well as the coordinate arrays when needed to add another node
+   */
+  private void ensureCapacity() {
+    if(numberOfUsedSlots + 1 > slotOsmNodeIds.length * MAX_LOAD_FACTOR) {
+      long[] oldSlotOsmNodeIds = slotOsmNodeIds;
+      int[] oldSlotPositions = slotPositions;
+      int newNumberOfSlots = (numberOfRegisteredOsmNodes + 1 > (oldSlotOsmNodeIds.length >>> 1) * MAX_LOAD_FACTOR) ? oldSlotOsmNodeIds.length << 1 : oldSlotOsmNodeIds.length;
+      slotOsmNodeIds = new long[newNumberOfSlots];
+      Arrays.fill(slotOsmNodeIds, EMPTY_SLOT);
+      slotPositions = new int[newNumberOfSlots];
+      numberOfUsedSlots = 0;
+      for(int slot = 0; slot < oldSlotOsmNodeIds.length; ++slot) {
+        long osmNodeId = oldSlotOsmNodeIds[slot];
+        if(osmNodeId != EMPTY_SLOT && osmNodeId != REMOVED_SLOT) {
+          insertSlot(osmNodeId, oldSlotPositions[slot]);
+        }
+      }
+    }
+
+    if(nextPosition == longitudes.length) {
+      int newCapacity = longitudes.length << 1;
+      longitudes = Arrays.copyOf(longitudes, newCapacity);
+      latitudes = Arrays.copyOf(latitudes, newCapacity);
+    }
+  }
+
+  /** Create OSM node for registered position
+   *
+   * @param osmNodeId of the node
+   * @param position of the node
+   * @return OSM node
+   */
+  private OsmNode createOsmNode(long osmNodeId, int position) {
+    OsmNode osmNode = taggedOsmNodesByPosition.get(position);
+    if(osmNode == null) {
+      osmNode = new Node(osmNodeId, longitudes[position], latitudes[position]);
+    }
+    return osmNode;
+  }
+
+  /** Find record of OSM node in memory mapped coordinates
+   *
+   * @param osmNodeId to find
+   * @return record index, negative when not present or not activated
+   */
+  private long findMappedRecord(long osmNodeId) {
+    if(mappedCoordinates == null) {
+      return -1;
+    }
+    long recordIndex = mappedCoordinates.find(osmNodeId);
+    /* removed records are marked by NaN coordinates */
+    if(recordIndex >= 0 && Double.isNaN(mappedCoordinates.getLongitude(recordIndex))) {
+      return -1;
+    }
+    return recordIndex;
+  }
+
+  /** Remove a registered OSM node (not its pre-registration)
+   *
+   * @param osmNodeId to remove
+   */
+  private void removeRegisteredOsmNode(long osmNodeId) {
+    int slot = findSlot(osmNodeId);
+    if(slot >= 0) {
+      taggedOsmNodesByPosition.remove(slotPositions[slot]);
+      slotOsmNodeIds[slot] = REMOVED_SLOT;
+      --numberOfRegisteredOsmNodes;
+    }
+    long recordIndex = findMappedRecord(osmNodeId);
+    if(recordIndex >= 0) {
+      mappedCoordinates.setCoordinates(recordIndex, Double.NaN, Double.NaN);
+    }
+  }
+
+  /** Register node in the memory mapped coordinates if possible, i.e., untagged and either already present or in ascending order
+   *
+   * @param osmNode to register
+   * @return true when registered, false otherwise
+   */
+  private boolean registerMappedOsmNode(OsmNode osmNode) {
+    if(!mappedCoordinatesActivated || osmNode.getNumberOfTags() > 0) {
+      return false;
+    }
+    if(mappedCoordinates == null) {
+      mappedCoordinates = new OsmNodeCoordinateFile(mappedCoordinatesDirectory);
+    }
+    long recordIndex = mappedCoordinates.find(osmNode.getId());
+    if(recordIndex >= 0) {
+      mappedCoordinates.setCoordinates(recordIndex, osmNode.getLongitude(), osmNode.getLatitude());
+      return true;
+    }
+    return mappedCoordinates.append(osmNode.getId(), osmNode.getLongitude(), osmNode.getLatitude());
+  }
+
+  /**
+   * Constructor
+   */
+  public OsmNodeData() {
+    reset();
+  }
+
+  /** Store coordinates of untagged registered OSM nodes in a memory mapped file rather than on the heap. Only nodes registered in ascending order of their id
+   * are stored in the file, others remain on the heap, so this is most effective for sorted OSM sources. Must be activated before any node is registered
+   *
+   * @param directory to create the (temporary) file in, when null the default temporary directory is used
+   */
+  public void activateMemoryMappedCoordinates(Path directory) {
+    PlanItRunTimeException.throwIf(nextPosition > 0 || mappedCoordinates != null, "Memory mapped OSM node coordinates can only be activated before registering OSM nodes");
+    this.mappedCoordinatesDirectory = directory;
+    this.mappedCoordinatesActivated = true;
+  }
+
+  /** Verify if memory mapped coordinates are activated
+   *
+   * @return true when activated, false otherwise
+   */
+  public boolean isMemoryMappedCoordinatesActivated() {
+    return mappedCoordinatesActivated;
+  }
+
+  /** Collect the OSM nodes (unmodifiable). All pre-registered OSM nodes are present as keys, with the value being null if
+   * the OSM node itself is not (yet) registered
    *
    * @return osm nodes
    */
   public Map<Long, OsmNode> getRegisteredOsmNodes() {
-    return Collections.unmodifiableMap(osmNodes);
+    return registeredOsmNodesView;
   }
 
   /** Add the actual OSM node to an already eligible marked OSM node entry
    * @param osmNode to register
    */
   public void registerEligibleOsmNode(OsmNode osmNode) {
-    if(!osmNodes.containsKey(osmNode.getId())) {
+    long osmNodeId = osmNode.getId();
+    if(!preRegisteredOsmNodeIds.get(osmNodeId)) {
       LOGGER.severe("Only OSM nodes that have already been marked as eligible can be complemented with the actual OSM node contents");
+      preRegisteredOsmNodeIds.set(osmNodeId);
+    }
+
+    int position;
+    int slot = findSlot(osmNodeId);
+    if(slot >= 0) {
+      /* replace existing */
+      position = slotPositions[slot];
+      taggedOsmNodesByPosition.remove(position);
+    }else if(registerMappedOsmNode(osmNode)) {
+      return;
+    }else {
+      ensureCapacity();
+      position = insertRegisteredOsmNodeId(osmNodeId);
+      ++numberOfRegisteredOsmNodes;
+    }
+
+    longitudes[position] = osmNode.getLongitude();
+    latitudes[position] = osmNode.getLatitude();
+    if(osmNode.getNumberOfTags() > 0) {
+      taggedOsmNodesByPosition.put(position, osmNode);
     }
-    osmNodes.put(osmNode.getId(), osmNode);
   }
 
   /** Pre-register an OSM node for future population with the actual node contents (see {@link #registerEligibleOsmNode(OsmNode)}
    * @param osmNodeId to pre-register
    */
   public void preRegisterEligibleOsmNode(long osmNodeId) {
-    osmNodes.put(osmNodeId, null);
+    preRegisteredOsmNodeIds.set(osmNodeId);
   }
 
   /** Collect an OSM node
@@ -47,7 +378,37 @@ public class OsmNodeData {
    * @return osm node, null if not present
    */
   public OsmNode getRegisteredOsmNode(long osmNodeId) {
-    return osmNodes.get(osmNodeId);
+    int slot = findSlot(osmNodeId);
+    if(slot >= 0) {
+      return createOsmNode(osmNodeId, slotPositions[slot]);
+    }
+    long recordIndex = findMappedRecord(osmNodeId);
+    if(recordIndex >= 0) {
+      return new Node(osmNodeId, mappedCoordinates.getLongitude(recordIndex), mappedCoordinates.getLatitude(recordIndex));
+    }
+    return null;
+  }
+
+  /** Collect the coordinates of a registered OSM node without creating an OSM node instance
+   *
+   * @param osmNodeId to collect coordinates for
+   * @param coordinate to fill with longitude (x) and latitude (y)
+   * @return true when registered and the coordinate is filled, false otherwise
+   */
+  public boolean fillCoordinate(long osmNodeId, Coordinate coordinate) {
+    int slot = findSlot(osmNodeId);
+    if(slot >= 0) {
+      coordinate.setX(longitudes[slotPositions[slot]]);
+      coordinate.setY(latitudes[slotPositions[slot]]);
+      return true;
+    }
+    long recordIndex = findMappedRecord(osmNodeId);
+    if(recordIndex >= 0) {
+      coordinate.setX(mappedCoordinates.getLongitude(recordIndex));
+      coordinate.setY(mappedCoordinates.getLatitude(recordIndex));
+      return true;
+    }
+    return false;
   }
 
   /** Verify if OSM node itself is registered and available
@@ -55,7 +416,7 @@ public class OsmNodeData {
    * @return true when available, false otherwise
    */
   public boolean containsOsmNode(long osmNodeId) {
-    return getRegisteredOsmNode(osmNodeId)!=null;
+    return findSlot(osmNodeId) >= 0 || findMappedRecord(osmNodeId) >= 0;
   }
 
   /** Verify if OSM node pre-registered while actual node may not yet be available
@@ -63,7 +424,7 @@ public class OsmNodeData {
    * @return true when pre-registered, false otherwise
    */
   public boolean containsPreregisteredOsmNode(long osmNodeId) {
-    return osmNodes.containsKey(osmNodeId);
+    return preRegisteredOsmNodeIds.get(osmNodeId);
   }
 
   /**
@@ -72,11 +433,49 @@ public class OsmNodeData {
    * @param predicate remove if this returns true for an entry
    */
   public void removeRegisteredOsmNodesIf(Predicate<Map.Entry<Long, OsmNode>> predicate) {
-    osmNodes.entrySet().removeIf(predicate);
+    /* collect first, avoid modification during iteration */
+    long[] toRemove = new long[16];
+    int numberToRemove = 0;
+    for(var entry : registeredOsmNodesView.entrySet()) {
+      if(predicate.test(entry)) {
+        if(numberToRemove == toRemove.length) {
+          toRemove = Arrays.copyOf(toRemove, toRemove.length << 1);
+        }
+        toRemove[numberToRemove++] = entry.getKey();
+      }
+    }
+
+    for(int index = 0; index < numberToRemove; ++index) {
+      preRegisteredOsmNodeIds.clear(toRemove[index]);
+      removeRegisteredOsmNode(toRemove[index]);
+    }
+  }
+
+  /** Number of bytes allocated on the heap for the hash table and coordinate arrays of registered OSM nodes, excluding pre-registrations and tagged
+   * OSM nodes
+   *
+   * @return number of allocated bytes
+   */
+  public long getNumberOfAllocatedBytes() {
+    return (long) slotOsmNodeIds.length * Long.BYTES + (long) slotPositions.length * Integer.BYTES
+        + (long) longitudes.length * Double.BYTES + (long) latitudes.length * Double.BYTES;
   }
 
   public void reset(){
-    osmNodes.clear();
+    preRegisteredOsmNodeIds.clear();
+    slotOsmNodeIds = new long[INITIAL_NUMBER_OF_SLOTS];
+    Arrays.fill(slotOsmNodeIds, EMPTY_SLOT);
+    slotPositions = new int[INITIAL_NUMBER_OF_SLOTS];
+    numberOfUsedSlots = 0;
+    numberOfRegisteredOsmNodes = 0;
+    longitudes = new double[INITIAL_NUMBER_OF_SLOTS];
+    latitudes = new double[INITIAL_NUMBER_OF_SLOTS];
+    nextPosition = 0;
+    taggedOsmNodesByPosition.clear();
+    if(mappedCoordinates != null) {
+      mappedCoordinates.close();
+      mappedCoordinates = null;
+    }
   }
 
 }
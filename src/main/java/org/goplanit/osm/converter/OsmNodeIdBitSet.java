@@ -0,0 +1,424 @@
+package org.goplanit.osm.converter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compressed set of OSM node ids. Since OSM node ids span a very large range while only a (clustered) subset is typically marked, ids are
+ * partitioned into chunks of 2^16 consecutive ids (roaring style). A chunk is only created when at least one id within its range is marked and
+ * uses one of two containers depending on its density:
+ * <ul>
+ *   <li>sparse chunks: a sorted array of the lower 16 bits of the marked ids, costing 16 bits per marked id</li>
+ *   <li>dense chunks: a bitmap of 2^16 bits, costing 8KB irrespective of the number of marked ids</li>
+ * </ul>
+ * A chunk switches container when its cardinality crosses {@link #MAX_ARRAY_CONTAINER_SIZE}, the point where both are of equal size. This allows
+ * marking OSM nodes at the cost of (at most) a few bytes per node rather than a hash entry per node.
+ *
+ * @author markr
+ */
+public class OsmNodeIdBitSet {
+
+  /** number of bits used to address an id within a chunk */
+  private static final int CHUNK_BITS = 16;
+
+  /** number of ids per chunk */
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /** mask to extract the position within a chunk */
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /** number of 64 bit words of a bitmap container */
+  private static final int BITMAP_WORDS = CHUNK_SIZE >>> 6;
+
+  /** maximum cardinality of an array container before converting it to a bitmap container (and vice versa) */
+  public static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+
+  /**
+   * Container of the marked ids within a single chunk, either array or bitmap based
+   */
+  private static abstract class Container {
+
+    /** Mark the position
+     *
+     * @param position within chunk
+     * @return container to use from now on (may be converted), null when position was already marked
+     */
+    abstract Container add(int position);
+
+    /** Verify if position is marked
+     *
+     * @param position within chunk
+     * @return true when marked
+     */
+    abstract boolean contains(int position);
+
+    /** Unmark the position
+     *
+     * @param position within chunk
+     * @return container to use from now on (may be converted), null when position was not marked
+     */
+    abstract Container remove(int position);
+
+    /** Number of marked positions
+     *
+     * @return cardinality
+     */
+    abstract int cardinality();
+
+    /** Find the first marked position at or after the given position
+     *
+     * @param fromPosition to start at
+     * @return marked position, negative when none
+     */
+    abstract int nextMarked(int fromPosition);
+
+    /** Number of bytes used
+     *
+     * @return bytes
+     */
+    abstract long getNumberOfAllocatedBytes();
+  }
+
+  /**
+   * Sparse container, sorted array of marked positions
+   */
+  private static final class ArrayContainer extends Container {
+
+    /** sorted marked positions (unsigned) */
+    private char[] positions = new char[4];
+
+    /** number of marked positions */
+    private int size = 0;
+
+    /** {@inheritDoc} */
+    @Override
+    Container add(int position) {
+      int index = Arrays.binarySearch(positions, 0, size, (char) position);
+      if(index >= 0) {
+        return null;
+      }
+      if(size == MAX_ARRAY_CONTAINER_SIZE) {
+        BitmapContainer bitmap = new BitmapContainer();
+        for(int i = 0; i < size; ++i) {
+          bitmap.add(positions[i]);
+        }
+        bitmap.add(position);
+        return bitmap;
+      }
+      index = -index - 1;
+      if(size == positions.length) {
+        positions = Arrays.copyOf(positions, Math.min(positions.length << 1, MAX_ARRAY_CONTAINER_SIZE));
+      }
+      System.arraycopy(positions, index, positions, index + 1, size - index);
+      positions[index] = (char) position;
+      ++size;
+      return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    boolean contains(int position) {
+      return Arrays.binarySearch(positions, 0, size, (char) position) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container remove(int position) {
+      int index = Arrays.binarySearch(positions, 0, size, (char) position);
+      if(index < 0) {
+        return null;
+      }
+      System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+      --size;
+      return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int cardinality() {
+      return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int nextMarked(int fromPosition) {
+      if(fromPosition >= CHUNK_SIZE) {
+        return -1;
+      }
+      int index = Arrays.binarySearch(positions, 0, size, (char) fromPosition);
+      if(index < 0) {
+        index = -index - 1;
+      }
+      return index < size ? positions[index] : -1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    long getNumberOfAllocatedBytes() {
+      return (long) positions.length * Character.BYTES;
+    }
+  }
+
+  /**
+   * Dense container, bitmap over all positions of the chunk
+   */
+  private static final class BitmapContainer extends Container {
+
+    /** the bits */
+    private final long[] words = new long[BITMAP_WORDS];
+
+    /** number of marked positions */
+    private int cardinality = 0;
+
+    /** {@inheritDoc} */
+    @Override
+    Container add(int position) {
+      long mask = 1L << position;
+      long word = words[position >>> 6];
+      if((word & mask) != 0) {
+        return null;
+      }
+      words[position >>> 6] = word | mask;
+      ++cardinality;
+      return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    boolean contains(int position) {
+      return (words[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container remove(int position) {
+      long mask = 1L << position;
+      if((words[position >>> 6] & mask) == 0) {
+        return null;
+      }
+      words[position >>> 6] &= ~mask;
+      --cardinality;
+      if(cardinality <= MAX_ARRAY_CONTAINER_SIZE / 2) {
+        /* convert back with some slack to avoid flip-flopping around the threshold */
+        ArrayContainer array = new ArrayContainer();
+        for(int next = nextMarked(0); next >= 0; next = nextMarked(next + 1)) {
+          array.add(next);
+        }
+        return array;
+      }
+      return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int nextMarked(int fromPosition) {
+      if(fromPosition >= CHUNK_SIZE) {
+        return -1;
+      }
+      int wordIndex = fromPosition >>> 6;
+      long word = words[wordIndex] & (-1L << fromPosition);
+      while(word == 0) {
+        if(++wordIndex == BITMAP_WORDS) {
+          return -1;
+        }
+        word = words[wordIndex];
+      }
+      return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    long getNumberOfAllocatedBytes() {
+      return (long) BITMAP_WORDS * Long.BYTES;
+    }
+  }
+
+  /** containers by their chunk index */
+  private final Map<Long, Container> containers = new HashMap<>();
+
+  /** chunk most recently accessed, since consecutive access typically resides in the same chunk */
+  private long lastChunkIndex = Long.MIN_VALUE;
+
+  /** container most recently accessed, null if none */
+  private Container lastContainer = null;
+
+  /** number of marked ids */
+  private long cardinality = 0;
+
+  /** Collect the container for the given chunk index
+   *
+   * @param chunkIndex to collect
+   * @return container, null if absent
+   */
+  private Container getContainer(long chunkIndex) {
+    if(lastContainer != null && chunkIndex == lastChunkIndex) {
+      return lastContainer;
+    }
+    Container container = containers.get(chunkIndex);
+    if(container != null) {
+      lastChunkIndex = chunkIndex;
+      lastContainer = container;
+    }
+    return container;
+  }
+
+  /** Replace (or remove) the container for the given chunk index
+   *
+   * @param chunkIndex to update
+   * @param container to use, null to remove
+   */
+  private void updateContainer(long chunkIndex, Container container) {
+    if(container == null) {
+      containers.remove(chunkIndex);
+    }else {
+      containers.put(chunkIndex, container);
+    }
+    lastChunkIndex = chunkIndex;
+    lastContainer = container;
+  }
+
+  /** Mark the OSM node id
+   *
+   * @param osmNodeId to mark
+   * @return true when newly marked, false when already marked
+   */
+  public boolean set(long osmNodeId) {
+    long chunkIndex = osmNodeId >> CHUNK_BITS;
+    Container container = getContainer(chunkIndex);
+    if(container == null) {
+      container = new ArrayContainer();
+      updateContainer(chunkIndex, container);
+    }
+    Container result = container.add((int) (osmNodeId & CHUNK_MASK));
+    if(result == null) {
+      return false;
+    }
+    if(result != container) {
+      updateContainer(chunkIndex, result);
+    }
+    ++cardinality;
+    return true;
+  }
+
+  /** Verify if the OSM node id is marked
+   *
+   * @param osmNodeId to verify
+   * @return true when marked, false otherwise
+   */
+  public boolean get(long osmNodeId) {
+    Container container = getContainer(osmNodeId >> CHUNK_BITS);
+    return container != null && container.contains((int) (osmNodeId & CHUNK_MASK));
+  }
+
+  /** Remove the mark of the OSM node id
+   *
+   * @param osmNodeId to unmark
+   * @return true when it was marked, false otherwise
+   */
+  public boolean clear(long osmNodeId) {
+    long chunkIndex = osmNodeId >> CHUNK_BITS;
+    Container container = getContainer(chunkIndex);
+    if(container == null) {
+      return false;
+    }
+    Container result = container.remove((int) (osmNodeId & CHUNK_MASK));
+    if(result == null) {
+      return false;
+    }
+    if(result.cardinality() == 0) {
+      updateContainer(chunkIndex, null);
+    }else if(result != container) {
+      updateContainer(chunkIndex, result);
+    }
+    --cardinality;
+    return true;
+  }
+
+  /** Number of marked OSM node ids
+   *
+   * @return number of marked ids
+   */
+  public long cardinality() {
+    return cardinality;
+  }
+
+  /** Iterate over the marked OSM node ids in ascending order. The set should not be modified during iteration
+   *
+   * @return iterator
+   */
+  public PrimitiveIterator.OfLong iterator() {
+    final long[] sortedChunkIndices = containers.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+    return new PrimitiveIterator.OfLong() {
+
+      /** position in sorted chunk indices */
+      private int chunkPosition = 0;
+
+      /** next position to consider within current chunk */
+      private int position = 0;
+
+      /** next id, only valid when hasNextId is true */
+      private long nextId;
+
+      /** flag indicating nextId is available */
+      private boolean hasNextId = false;
+
+      /** Advance to the next marked id, if any */
+      private void advance() {
+        while(!hasNextId && chunkPosition < sortedChunkIndices.length) {
+          int marked = containers.get(sortedChunkIndices[chunkPosition]).nextMarked(position);
+          if(marked >= 0) {
+            nextId = (sortedChunkIndices[chunkPosition] << CHUNK_BITS) + marked;
+            hasNextId = true;
+            position = marked + 1;
+            return;
+          }
+          ++chunkPosition;
+          position = 0;
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        advance();
+        return hasNextId;
+      }
+
+      @Override
+      public long nextLong() {
+        if(!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        hasNextId = false;
+        return nextId;
+      }
+    };
+  }
+
+  /**
+   * Remove all marks
+   */
+  public void clear() {
+    containers.clear();
+    lastContainer = null;
+    lastChunkIndex = Long.MIN_VALUE;
+    cardinality = 0;
+  }
+
+  /** Number of bytes used by the containers (approximation excluding chunk bookkeeping)
+   *
+   * @return bytes used
+   */
+  public long getNumberOfAllocatedBytes() {
+    return containers.values().stream().mapToLong(Container::getNumberOfAllocatedBytes).sum();
+  }
+}
@@ -0,0 +1,342 @@
+package org.goplanit.osm.converter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.locationtech.jts.geom.Envelope;
+
+import de.topobyte.osm4j.core.model.iface.EntityType;
+
+/**
+ * Index of the blobs of an OSM PBF file, persisted as a sidecar file next to it. For each blob it records its byte offset and length, the entity types it
+ * contains, the range of entity ids, and the envelope of its nodes. This allows readers to jump straight to the blobs that are relevant for a pass without
+ * reading, let alone inflating, the others.
+ * <p>
+ *   The index is only valid for the exact file it was created for, which is verified based on the size and last modification time of the file.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmPbfBlobIndex {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmPbfBlobIndex.class.getCanonicalName());
+
+  /** extension appended to the PBF file name to obtain the index file name */
+  public static final String INDEX_FILE_EXTENSION = ".blobidx";
+
+  /** marker at the start of an index file */
+  private static final int MAGIC = 0x504c4249; // "PLBI"
+
+  /** format version of the index file, increment upon any change to the format */
+  private static final int VERSION = 1;
+
+  /** flag of blob containing nodes */
+  private static final byte NODE_FLAG = 1;
+
+  /** flag of blob containing ways */
+  private static final byte WAY_FLAG = 1 << 1;
+
+  /** flag of blob containing relations */
+  private static final byte RELATION_FLAG = 1 << 2;
+
+  /** flag of header blob */
+  private static final byte HEADER_FLAG = 1 << 7;
+
+  /** size of the indexed file */
+  private final long fileSize;
+
+  /** last modification time of the indexed file */
+  private final long lastModified;
+
+  /** entries in file order */
+  private final List<Entry> entries;
+
+  /**
+   * Index entry of a single blob
+   */
+  public static final class Entry {
+
+    /** byte offset of the blob (including its header) */
+    private final long offset;
+
+    /** number of bytes of the blob (including its header) */
+    private final int length;
+
+    /** flags indicating blob contents */
+    private final byte flags;
+
+    /** minimum entity id in blob */
+    private final long minId;
+
+    /** maximum entity id in blob */
+    private final long maxId;
+
+    /** envelope of nodes in blob, null if none */
+    private final Envelope nodeEnvelope;
+
+    /** Convert entity type to flag
+     *
+     * @param entityType to convert
+     * @return flag
+     */
+    private static byte toFlag(EntityType entityType) {
+      switch(entityType) {
+        case Node:
+          return NODE_FLAG;
+        case Way:
+          return WAY_FLAG;
+        default:
+          return RELATION_FLAG;
+      }
+    }
+
+    /** Constructor
+     *
+     * @param offset of the blob
+     * @param length of the blob
+     * @param flags of the blob
+     * @param minId in the blob
+     * @param maxId in the blob
+     * @param nodeEnvelope of the blob
+     */
+    private Entry(long offset, int length, byte flags, long minId, long maxId, Envelope nodeEnvelope) {
+      this.offset = offset;
+      this.length = length;
+      this.flags = flags;
+      this.minId = minId;
+      this.maxId = maxId;
+      this.nodeEnvelope = nodeEnvelope;
+    }
+
+    /** Create entry for the header blob
+     *
+     * @param offset of the blob
+     * @param length of the blob
+     * @return entry
+     */
+    public static Entry createHeaderEntry(long offset, int length) {
+      return new Entry(offset, length, HEADER_FLAG, 0, 0, null);
+    }
+
+    /** Create entry for a data blob
+     *
+     * @param offset of the blob
+     * @param length of the blob
+     * @param entityTypes contained in the blob
+     * @param minId in the blob
+     * @param maxId in the blob
+     * @param nodeEnvelope of the blob, null if it has no nodes
+     * @return entry
+     */
+    public static Entry createDataEntry(long offset, int length, Set<EntityType> entityTypes, long minId, long maxId, Envelope nodeEnvelope) {
+      byte flags = 0;
+      for(EntityType entityType : entityTypes) {
+        flags |= toFlag(entityType);
+      }
+      if(nodeEnvelope == null) {
+        /* (empty) node groups without any nodes */
+        flags &= ~NODE_FLAG;
+      }
+      return new Entry(offset, length, flags, minId, maxId, nodeEnvelope);
+    }
+
+    /** Byte offset of the blob (including its header)
+     *
+     * @return offset
+     */
+    public long getOffset() {
+      return offset;
+    }
+
+    /** Number of bytes of the blob (including its header)
+     *
+     * @return length
+     */
+    public int getLength() {
+      return length;
+    }
+
+    /** Verify if this is the header blob
+     *
+     * @return true when header blob
+     */
+    public boolean isHeader() {
+      return (flags & HEADER_FLAG) != 0;
+    }
+
+    /** Verify if the blob contains entities of the given type
+     *
+     * @param entityType to verify
+     * @return true when present
+     */
+    public boolean containsEntityType(EntityType entityType) {
+      return (flags & toFlag(entityType)) != 0;
+    }
+
+    /** Minimum entity id in the blob (of any type)
+     *
+     * @return min id
+     */
+    public long getMinId() {
+      return minId;
+    }
+
+    /** Maximum entity id in the blob (of any type)
+     *
+     * @return max id
+     */
+    public long getMaxId() {
+      return maxId;
+    }
+
+    /** Envelope of the nodes in the blob
+     *
+     * @return envelope, null if blob has no nodes
+     */
+    public Envelope getNodeEnvelope() {
+      return nodeEnvelope;
+    }
+  }
+
+  /** Collect the index file of a PBF file
+   *
+   * @param pbfFile to collect for
+   * @return index file
+   */
+  public static File getIndexFile(File pbfFile) {
+    return new File(pbfFile.getPath() + INDEX_FILE_EXTENSION);
+  }
+
+  /** Load the index of a PBF file, if it exists and is valid for the file in its current state
+   *
+   * @param pbfFile to load index of
+   * @return index, null when absent, outdated, or unreadable
+   */
+  public static OsmPbfBlobIndex load(File pbfFile) {
+    File indexFile = getIndexFile(pbfFile);
+    if(!indexFile.isFile()) {
+      return null;
+    }
+
+    try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))){
+      if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+        LOGGER.info(String.format("Ignoring PBF blob index %s, unsupported format", indexFile));
+        return null;
+      }
+      long fileSize = input.readLong();
+      long lastModified = input.readLong();
+      if(fileSize != pbfFile.length() || lastModified != pbfFile.lastModified()) {
+        LOGGER.info(String.format("Ignoring PBF blob index %s, PBF file has changed since its creation", indexFile));
+        return null;
+      }
+
+      int numberOfEntries = input.readInt();
+      List<Entry> entries = new ArrayList<>(numberOfEntries);
+      for(int index = 0; index < numberOfEntries; ++index) {
+        long offset = input.readLong();
+        int length = input.readInt();
+        byte flags = input.readByte();
+        long minId = input.readLong();
+        long maxId = input.readLong();
+        Envelope nodeEnvelope = null;
+        if((flags & NODE_FLAG) != 0) {
+          double minX = input.readDouble();
+          double maxX = input.readDouble();
+          double minY = input.readDouble();
+          double maxY = input.readDouble();
+          nodeEnvelope = new Envelope(minX, maxX, minY, maxY);
+        }
+        entries.add(new Entry(offset, length, flags, minId, maxId, nodeEnvelope));
+      }
+      return new OsmPbfBlobIndex(fileSize, lastModified, entries);
+    }catch(IOException e) {
+      LOGGER.warning(String.format("Ignoring PBF blob index %s, unable to read it: %s", indexFile, e.getMessage()));
+      return null;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param fileSize of the indexed file
+   * @param lastModified time of the indexed file
+   * @param entries in file order
+   */
+  public OsmPbfBlobIndex(long fileSize, long lastModified, List<Entry> entries) {
+    this.fileSize = fileSize;
+    this.lastModified = lastModified;
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  /** Persist the index next to the PBF file. The index is written to a uniquely named temporary file in the same directory first, which is then moved
+   * in place, such that concurrent readers never observe a partial index and concurrent writers do not interfere with each other
+   *
+   * @param pbfFile the index belongs to
+   * @throws IOException thrown if error
+   */
+  public void save(File pbfFile) throws IOException {
+    Path indexFile = getIndexFile(pbfFile).toPath().toAbsolutePath();
+    Path temporaryFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+    try {
+      write(temporaryFile);
+      try {
+        Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }catch(AtomicMoveNotSupportedException e) {
+        Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /** Write the index to the given file
+   *
+   * @param file to write to
+   * @throws IOException thrown if error
+   */
+  private void write(Path file) throws IOException {
+    try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(fileSize);
+      output.writeLong(lastModified);
+      output.writeInt(entries.size());
+      for(Entry entry : entries) {
+        output.writeLong(entry.offset);
+        output.writeInt(entry.length);
+        output.writeByte(entry.flags);
+        output.writeLong(entry.minId);
+        output.writeLong(entry.maxId);
+        if((entry.flags & NODE_FLAG) != 0) {
+          output.writeDouble(entry.nodeEnvelope.getMinX());
+          output.writeDouble(entry.nodeEnvelope.getMaxX());
+          output.writeDouble(entry.nodeEnvelope.getMinY());
+          output.writeDouble(entry.nodeEnvelope.getMaxY());
+        }
+      }
+    }
+  }
+
+  /** Entries of the index in file order
+   *
+   * @return entries
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+}
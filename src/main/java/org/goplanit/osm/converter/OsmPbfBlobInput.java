@@ -0,0 +1,233 @@
+package org.goplanit.osm.converter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.topobyte.osm4j.pbf.protobuf.Fileformat;
+
+/**
+ * Sequential access to the (still compressed) blobs of a PBF file, either through regular stream I/O or through a shared memory mapping of the file,
+ * see {@link OsmPbfMappedFile}. Both support skipping forward to a given position, e.g., based on a {@link OsmPbfBlobIndex}.
+ *
+ * @author markr
+ */
+abstract class OsmPbfBlobInput implements Closeable {
+
+  /** maximum size of a blob header as per the PBF specification */
+  static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+
+  /** maximum size of a blob as per the PBF specification */
+  static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+  /** byte position of the input */
+  protected long position = 0;
+
+  /** Verify the size of a blob header is valid
+   *
+   * @param headerSize to verify
+   * @return header size
+   * @throws IOException thrown if invalid
+   */
+  protected static int validateBlobHeaderSize(int headerSize) throws IOException {
+    if(headerSize <= 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+      throw new IOException(String.format("Invalid PBF blob header size %d", headerSize));
+    }
+    return headerSize;
+  }
+
+  /** Verify the size of a blob is valid
+   *
+   * @param blobHeader of the blob
+   * @return blob size
+   * @throws IOException thrown if invalid
+   */
+  protected static int validateBlobSize(Fileformat.BlobHeader blobHeader) throws IOException {
+    int blobSize = blobHeader.getDatasize();
+    if(blobSize < 0 || blobSize > MAX_BLOB_SIZE) {
+      throw new IOException(String.format("Invalid PBF blob size %d", blobSize));
+    }
+    return blobSize;
+  }
+
+  /**
+   * Blob input based on buffered stream I/O
+   */
+  private static final class StreamBlobInput extends OsmPbfBlobInput {
+
+    /** size of the input buffer */
+    private static final int INPUT_BUFFER_SIZE = 1 << 16;
+
+    /** the input stream */
+    private final DataInputStream input;
+
+    /** Constructor
+     *
+     * @param file to read
+     * @throws IOException thrown if error
+     */
+    private StreamBlobInput(File file) throws IOException {
+      this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), INPUT_BUFFER_SIZE));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Fileformat.BlobHeader readBlobHeader() throws IOException {
+      int firstByte = input.read();
+      if(firstByte < 0) {
+        return null;
+      }
+      int headerSize = validateBlobHeaderSize(
+          (firstByte << 24) | (input.readUnsignedByte() << 16) | (input.readUnsignedByte() << 8) | input.readUnsignedByte());
+      byte[] header = new byte[headerSize];
+      input.readFully(header);
+      position += Integer.BYTES + headerSize;
+      return Fileformat.BlobHeader.parseFrom(header);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    ByteBuffer readBlob(Fileformat.BlobHeader blobHeader) throws IOException {
+      byte[] blob = new byte[validateBlobSize(blobHeader)];
+      input.readFully(blob);
+      position += blob.length;
+      return ByteBuffer.wrap(blob);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void skipTo(long targetPosition) throws IOException {
+      while(position < targetPosition) {
+        long skipped = input.skip(targetPosition - position);
+        if(skipped <= 0) {
+          throw new EOFException(String.format("Unable to skip to position %d", targetPosition));
+        }
+        position += skipped;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  /**
+   * Blob input based on a shared memory mapping of the file, blobs are zero-copy views on the mapping
+   */
+  private static final class MappedBlobInput extends OsmPbfBlobInput {
+
+    /** the mapped file */
+    private final OsmPbfMappedFile mappedFile;
+
+    /** Constructor
+     *
+     * @param file to read
+     * @throws IOException thrown if error
+     */
+    private MappedBlobInput(File file) throws IOException {
+      this.mappedFile = OsmPbfMappedFile.acquire(file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Fileformat.BlobHeader readBlobHeader() throws IOException {
+      if(position >= mappedFile.size()) {
+        return null;
+      }
+      int headerSize = validateBlobHeaderSize(mappedFile.slice(position, Integer.BYTES).getInt());
+      Fileformat.BlobHeader blobHeader = Fileformat.BlobHeader.parseFrom(mappedFile.slice(position + Integer.BYTES, headerSize));
+      position += Integer.BYTES + headerSize;
+      return blobHeader;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    ByteBuffer readBlob(Fileformat.BlobHeader blobHeader) throws IOException {
+      int blobSize = validateBlobSize(blobHeader);
+      ByteBuffer blob = mappedFile.slice(position, blobSize);
+      position += blobSize;
+      return blob;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void skipTo(long targetPosition) throws IOException {
+      if(targetPosition > mappedFile.size()) {
+        throw new EOFException(String.format("Unable to skip to position %d", targetPosition));
+      }
+      position = Math.max(position, targetPosition);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The mapping is shared and therefore not released
+     */
+    @Override
+    public void close() {
+      // nothing to release
+    }
+  }
+
+  /** Open a PBF file for reading its blobs
+   *
+   * @param file to open
+   * @param memoryMapped when true use a (shared) memory mapping of the file, otherwise stream I/O
+   * @return blob input
+   * @throws IOException thrown if error
+   */
+  static OsmPbfBlobInput open(File file, boolean memoryMapped) throws IOException {
+    return memoryMapped ? new MappedBlobInput(file) : new StreamBlobInput(file);
+  }
+
+  /** Current byte position of the input
+   *
+   * @return position
+   */
+  long getPosition() {
+    return position;
+  }
+
+  /** Read the next blob header
+   *
+   * @return blob header, null when end of input is reached
+   * @throws IOException thrown if error
+   */
+  abstract Fileformat.BlobHeader readBlobHeader() throws IOException;
+
+  /** Read the blob following the given header
+   *
+   * @param blobHeader of the blob
+   * @return blob content (still compressed)
+   * @throws IOException thrown if error
+   */
+  abstract ByteBuffer readBlob(Fileformat.BlobHeader blobHeader) throws IOException;
+
+  /** Skip forward to the given position of the input
+   *
+   * @param targetPosition to skip to
+   * @throws IOException thrown if error
+   */
+  abstract void skipTo(long targetPosition) throws IOException;
+}
@@ -0,0 +1,473 @@
+package org.goplanit.osm.converter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import com.slimjars.dist.gnu.trove.list.array.TLongArrayList;
+import org.goplanit.osm.tags.OsmTagDictionary;
+import org.locationtech.jts.geom.Envelope;
+
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmBounds;
+import de.topobyte.osm4j.core.model.iface.OsmEntity;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.impl.Bounds;
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Relation;
+import de.topobyte.osm4j.core.model.impl.RelationMember;
+import de.topobyte.osm4j.core.model.impl.Tag;
+import de.topobyte.osm4j.core.model.impl.Way;
+import de.topobyte.osm4j.pbf.protobuf.Fileformat;
+import de.topobyte.osm4j.pbf.protobuf.Osmformat;
+
+/**
+ * Decodes the blobs of an OSM PBF file into OSM entities. Each blob is self-contained (its own string table and coordinate offsets), so blobs can be
+ * decoded independently and concurrently. All methods are stateless and thread safe. Meta data (versions, timestamps, users) is not decoded.
+ * <p>
+ *   Data blobs are first scanned at the protobuf wire level, such that primitive groups of entity types that are not requested are skipped without being
+ *   decoded. Since a primitive group only contains entities of a single type, its type follows from its first field.
+ * </p>
+ *
+ * @author markr
+ */
+class OsmPbfBlockDecoder {
+
+  /** blob type of the header blob */
+  static final String BLOB_TYPE_HEADER = "OSMHeader";
+
+  /** blob type of data blobs */
+  static final String BLOB_TYPE_DATA = "OSMData";
+
+  /** optional header feature indicating entities are sorted by type and then id */
+  static final String OPTIONAL_FEATURE_SORTED_BY_TYPE_THEN_ID = "Sort.Type_then_ID";
+
+  /** canonical strings of the tag dictionary by their UTF-8 encoding, such that known keys and values are interned without being decoded at all */
+  private static final Map<ByteString, String> DICTIONARY_STRINGS = new HashMap<>();
+
+  static {
+    for(String string : OsmTagDictionary.getStrings()) {
+      DICTIONARY_STRINGS.put(ByteString.copyFromUtf8(string), string);
+    }
+  }
+
+  /** PBF coordinates are expressed in nano degrees */
+  private static final double NANO_DEGREES = 1e-9;
+
+  /** default granularity of coordinates in nano degrees */
+  private static final long DEFAULT_GRANULARITY = 100;
+
+  /* protobuf field numbers of the PBF format used to scan blocks without decoding them */
+
+  /** string table field of a primitive block */
+  private static final int PRIMITIVE_BLOCK_STRINGTABLE_FIELD = 1;
+
+  /** primitive group field of a primitive block */
+  private static final int PRIMITIVE_BLOCK_PRIMITIVEGROUP_FIELD = 2;
+
+  /** granularity field of a primitive block */
+  private static final int PRIMITIVE_BLOCK_GRANULARITY_FIELD = 17;
+
+  /** latitude offset field of a primitive block */
+  private static final int PRIMITIVE_BLOCK_LAT_OFFSET_FIELD = 19;
+
+  /** longitude offset field of a primitive block */
+  private static final int PRIMITIVE_BLOCK_LON_OFFSET_FIELD = 20;
+
+  /** nodes field of a primitive group */
+  private static final int PRIMITIVE_GROUP_NODES_FIELD = 1;
+
+  /** dense nodes field of a primitive group */
+  private static final int PRIMITIVE_GROUP_DENSE_FIELD = 2;
+
+  /** ways field of a primitive group */
+  private static final int PRIMITIVE_GROUP_WAYS_FIELD = 3;
+
+  /** relations field of a primitive group */
+  private static final int PRIMITIVE_GROUP_RELATIONS_FIELD = 4;
+
+  /**
+   * Content of a decoded header blob relevant to reading
+   */
+  static final class DecodedHeader {
+
+    /** bounds, null if absent */
+    final OsmBounds bounds;
+
+    /** flag indicating entities are sorted by type (nodes, ways, relations) and then id */
+    final boolean sortedByTypeThenId;
+
+    /** Constructor
+     *
+     * @param bounds to use
+     * @param sortedByTypeThenId flag
+     */
+    private DecodedHeader(OsmBounds bounds, boolean sortedByTypeThenId) {
+      this.bounds = bounds;
+      this.sortedByTypeThenId = sortedByTypeThenId;
+    }
+  }
+
+  /**
+   * Content of a decoded data blob
+   */
+  static final class DecodedBlock {
+
+    /** decoded entities of the requested types in file order */
+    final List<OsmEntity> entities;
+
+    /** type of the last primitive group in the blob (decoded or not), null if none */
+    final EntityType lastEntityType;
+
+    /** types of all primitive groups in the blob (decoded or not) */
+    final Set<EntityType> entityTypes;
+
+    /** minimum id of the decoded entities, {@code Long.MAX_VALUE} if none */
+    final long minId;
+
+    /** maximum id of the decoded entities, {@code Long.MIN_VALUE} if none */
+    final long maxId;
+
+    /** envelope of the decoded nodes, null if none */
+    final Envelope nodeEnvelope;
+
+    /** Constructor
+     *
+     * @param entities decoded
+     * @param lastEntityType type of last group
+     * @param entityTypes of all groups
+     */
+    private DecodedBlock(List<OsmEntity> entities, EntityType lastEntityType, Set<EntityType> entityTypes) {
+      this.entities = entities;
+      this.lastEntityType = lastEntityType;
+      this.entityTypes = entityTypes;
+
+      long minId = Long.MAX_VALUE;
+      long maxId = Long.MIN_VALUE;
+      Envelope nodeEnvelope = null;
+      for(OsmEntity entity : entities) {
+        minId = Math.min(minId, entity.getId());
+        maxId = Math.max(maxId, entity.getId());
+        if(entity instanceof OsmNode) {
+          OsmNode node = (OsmNode) entity;
+          if(nodeEnvelope == null) {
+            nodeEnvelope = new Envelope();
+          }
+          nodeEnvelope.expandToInclude(node.getLongitude(), node.getLatitude());
+        }
+      }
+      this.minId = minId;
+      this.maxId = maxId;
+      this.nodeEnvelope = nodeEnvelope;
+    }
+  }
+
+  /**
+   * Block wide decoding context shared by all its entities
+   */
+  private static final class BlockContext {
+
+    /** the decoded string table */
+    private final String[] strings;
+
+    /** granularity of coordinates in nano degrees */
+    private final long granularity;
+
+    /** latitude offset in nano degrees */
+    private final long latitudeOffset;
+
+    /** longitude offset in nano degrees */
+    private final long longitudeOffset;
+
+    /** Constructor
+     *
+     * @param strings string table
+     * @param granularity of coordinates
+     * @param latitudeOffset of coordinates
+     * @param longitudeOffset of coordinates
+     */
+    private BlockContext(String[] strings, long granularity, long latitudeOffset, long longitudeOffset) {
+      this.strings = strings;
+      this.granularity = granularity;
+      this.latitudeOffset = latitudeOffset;
+      this.longitudeOffset = longitudeOffset;
+    }
+
+    /** Convert PBF latitude to degrees
+     *
+     * @param latitude as stored
+     * @return latitude in degrees
+     */
+    private double toLatitude(long latitude) {
+      return NANO_DEGREES * (latitudeOffset + granularity * latitude);
+    }
+
+    /** Convert PBF longitude to degrees
+     *
+     * @param longitude as stored
+     * @return longitude in degrees
+     */
+    private double toLongitude(long longitude) {
+      return NANO_DEGREES * (longitudeOffset + granularity * longitude);
+    }
+  }
+
+  /** Determine the entity type of a primitive group from its first field, since a group only contains entities of a single type
+   *
+   * @param group encoded primitive group
+   * @return entity type, null when group is empty or contains change sets only
+   * @throws IOException thrown if error
+   */
+  private static EntityType getEntityType(ByteString group) throws IOException {
+    int tag = group.newCodedInput().readTag();
+    switch(WireFormat.getTagFieldNumber(tag)) {
+      case PRIMITIVE_GROUP_NODES_FIELD:
+      case PRIMITIVE_GROUP_DENSE_FIELD:
+        return EntityType.Node;
+      case PRIMITIVE_GROUP_WAYS_FIELD:
+        return EntityType.Way;
+      case PRIMITIVE_GROUP_RELATIONS_FIELD:
+        return EntityType.Relation;
+      default:
+        return null;
+    }
+  }
+
+  /** Decode tags stored as separate key and value string table indices
+   *
+   * @param keys string table indices of keys
+   * @param values string table indices of values
+   * @param strings the string table
+   * @return tags
+   */
+  private static List<Tag> decodeTags(List<Integer> keys, List<Integer> values, String[] strings) {
+    List<Tag> tags = new ArrayList<>(keys.size());
+    for(int index = 0; index < keys.size(); ++index) {
+      tags.add(new Tag(strings[keys.get(index)], strings[values.get(index)]));
+    }
+    return tags;
+  }
+
+  /** Decode a (non-dense) node
+   *
+   * @param node to decode
+   * @param context of the block
+   * @return decoded node
+   */
+  private static Node decodeNode(Osmformat.Node node, BlockContext context) {
+    return new Node(node.getId(), context.toLongitude(node.getLon()), context.toLatitude(node.getLat()),
+        decodeTags(node.getKeysList(), node.getValsList(), context.strings));
+  }
+
+  /** Decode dense nodes, where ids and coordinates are delta encoded and tags of all nodes are stored in a single (0 delimited) sequence of key value indices
+   *
+   * @param denseNodes to decode
+   * @param context of the block
+   * @param entities to add decoded nodes to
+   */
+  private static void decodeDenseNodes(Osmformat.DenseNodes denseNodes, BlockContext context, List<OsmEntity> entities) {
+    final String[] strings = context.strings;
+    long id = 0;
+    long latitude = 0;
+    long longitude = 0;
+    int keyValueIndex = 0;
+    boolean hasTags = denseNodes.getKeysValsCount() > 0;
+    for(int index = 0; index < denseNodes.getIdCount(); ++index) {
+      id += denseNodes.getId(index);
+      latitude += denseNodes.getLat(index);
+      longitude += denseNodes.getLon(index);
+
+      List<Tag> tags = new ArrayList<>(0);
+      if(hasTags) {
+        int keyIndex;
+        while((keyIndex = denseNodes.getKeysVals(keyValueIndex++)) != 0) {
+          tags.add(new Tag(strings[keyIndex], strings[denseNodes.getKeysVals(keyValueIndex++)]));
+        }
+      }
+      entities.add(new Node(id, context.toLongitude(longitude), context.toLatitude(latitude), tags));
+    }
+  }
+
+  /** Decode a way, its node references are delta encoded
+   *
+   * @param way to decode
+   * @param strings the string table
+   * @return decoded way
+   */
+  private static Way decodeWay(Osmformat.Way way, String[] strings) {
+    TLongArrayList nodeIds = new TLongArrayList(way.getRefsCount());
+    long nodeId = 0;
+    for(int index = 0; index < way.getRefsCount(); ++index) {
+      nodeId += way.getRefs(index);
+      nodeIds.add(nodeId);
+    }
+    return new Way(way.getId(), nodeIds, decodeTags(way.getKeysList(), way.getValsList(), strings));
+  }
+
+  /** Decode a relation, its member references are delta encoded
+   *
+   * @param relation to decode
+   * @param strings the string table
+   * @return decoded relation
+   */
+  private static Relation decodeRelation(Osmformat.Relation relation, String[] strings) {
+    List<RelationMember> members = new ArrayList<>(relation.getMemidsCount());
+    long memberId = 0;
+    for(int index = 0; index < relation.getMemidsCount(); ++index) {
+      memberId += relation.getMemids(index);
+      EntityType memberType;
+      switch(relation.getTypes(index)) {
+        case NODE:
+          memberType = EntityType.Node;
+          break;
+        case WAY:
+          memberType = EntityType.Way;
+          break;
+        default:
+          memberType = EntityType.Relation;
+      }
+      members.add(new RelationMember(memberId, memberType, strings[relation.getRolesSid(index)]));
+    }
+    return new Relation(relation.getId(), members, decodeTags(relation.getKeysList(), relation.getValsList(), strings));
+  }
+
+  /** Collect the uncompressed content of a blob
+   *
+   * @param blob to collect content from
+   * @return uncompressed content
+   * @throws IOException thrown if compression is not supported or data is corrupt
+   */
+  static byte[] inflate(Fileformat.Blob blob) throws IOException {
+    if(blob.hasRaw()) {
+      return blob.getRaw().toByteArray();
+    }
+    if(!blob.hasZlibData()) {
+      throw new IOException("Unsupported PBF blob compression, only raw and zlib compressed blobs are supported");
+    }
+
+    byte[] content = new byte[blob.getRawSize()];
+    Inflater inflater = new Inflater();
+    try {
+      /* inflate directly from the (possibly memory mapped) blob content without copying it first */
+      inflater.setInput(blob.getZlibData().asReadOnlyByteBuffer());
+      int inflated = inflater.inflate(content);
+      if(inflated != content.length || !inflater.finished()) {
+        throw new IOException(String.format("Corrupt PBF blob, inflated %d bytes while %d were expected", inflated, content.length));
+      }
+    }catch(DataFormatException e) {
+      throw new IOException("Corrupt zlib data in PBF blob", e);
+    }finally {
+      inflater.end();
+    }
+    return content;
+  }
+
+  /** Decode the header blob
+   *
+   * @param content uncompressed content of header blob
+   * @return decoded header
+   * @throws InvalidProtocolBufferException thrown if content is corrupt
+   */
+  static DecodedHeader decodeHeader(byte[] content) throws InvalidProtocolBufferException {
+    Osmformat.HeaderBlock headerBlock = Osmformat.HeaderBlock.parseFrom(content);
+    OsmBounds bounds = null;
+    if(headerBlock.hasBbox()) {
+      Osmformat.HeaderBBox bbox = headerBlock.getBbox();
+      bounds = new Bounds(
+          bbox.getLeft() * NANO_DEGREES, bbox.getRight() * NANO_DEGREES, bbox.getTop() * NANO_DEGREES, bbox.getBottom() * NANO_DEGREES);
+    }
+    return new DecodedHeader(bounds, headerBlock.getOptionalFeaturesList().contains(OPTIONAL_FEATURE_SORTED_BY_TYPE_THEN_ID));
+  }
+
+  /** Decode all entities of the requested types of a data blob in the order they appear. Primitive groups of other types are skipped without being decoded
+   *
+   * @param content uncompressed content of data blob
+   * @param entityTypes to decode
+   * @return decoded block
+   * @throws IOException thrown if content is corrupt
+   */
+  static DecodedBlock decodePrimitiveBlock(byte[] content, Set<EntityType> entityTypes) throws IOException {
+    /* scan block without decoding its groups */
+    ByteString encodedStringTable = ByteString.EMPTY;
+    List<ByteString> encodedGroups = new ArrayList<>();
+    long granularity = DEFAULT_GRANULARITY;
+    long latitudeOffset = 0;
+    long longitudeOffset = 0;
+    CodedInputStream input = CodedInputStream.newInstance(content);
+    int tag;
+    while((tag = input.readTag()) != 0) {
+      switch(WireFormat.getTagFieldNumber(tag)) {
+        case PRIMITIVE_BLOCK_STRINGTABLE_FIELD:
+          encodedStringTable = input.readBytes();
+          break;
+        case PRIMITIVE_BLOCK_PRIMITIVEGROUP_FIELD:
+          encodedGroups.add(input.readBytes());
+          break;
+        case PRIMITIVE_BLOCK_GRANULARITY_FIELD:
+          granularity = input.readInt32();
+          break;
+        case PRIMITIVE_BLOCK_LAT_OFFSET_FIELD:
+          latitudeOffset = input.readInt64();
+          break;
+        case PRIMITIVE_BLOCK_LON_OFFSET_FIELD:
+          longitudeOffset = input.readInt64();
+          break;
+        default:
+          input.skipField(tag);
+      }
+    }
+
+    List<OsmEntity> entities = new ArrayList<>();
+    Set<EntityType> groupEntityTypes = EnumSet.noneOf(EntityType.class);
+    EntityType lastEntityType = null;
+    BlockContext context = null;
+    for(ByteString encodedGroup : encodedGroups) {
+      EntityType groupEntityType = getEntityType(encodedGroup);
+      if(groupEntityType == null) {
+        continue;
+      }
+      lastEntityType = groupEntityType;
+      groupEntityTypes.add(groupEntityType);
+      if(!entityTypes.contains(groupEntityType)) {
+        continue;
+      }
+
+      if(context == null) {
+        /* strings are shared by many entities within a block, decode each only once and only when needed, known tags are interned */
+        Osmformat.StringTable stringTable = Osmformat.StringTable.parseFrom(encodedStringTable);
+        String[] strings = new String[stringTable.getSCount()];
+        for(int index = 0; index < strings.length; ++index) {
+          ByteString encodedString = stringTable.getS(index);
+          String dictionaryString = DICTIONARY_STRINGS.get(encodedString);
+          strings[index] = dictionaryString != null ? dictionaryString : encodedString.toStringUtf8();
+        }
+        context = new BlockContext(strings, granularity, latitudeOffset, longitudeOffset);
+      }
+
+      Osmformat.PrimitiveGroup group = Osmformat.PrimitiveGroup.parseFrom(encodedGroup);
+      for(Osmformat.Node node : group.getNodesList()) {
+        entities.add(decodeNode(node, context));
+      }
+      if(group.hasDense()) {
+        decodeDenseNodes(group.getDense(), context, entities);
+      }
+      for(Osmformat.Way way : group.getWaysList()) {
+        entities.add(decodeWay(way, context.strings));
+      }
+      for(Osmformat.Relation relation : group.getRelationsList()) {
+        entities.add(decodeRelation(relation, context.strings));
+      }
+    }
+    return new DecodedBlock(entities, lastEntityType, groupEntityTypes);
+  }
+}
@@ -0,0 +1,119 @@
+package org.goplanit.osm.converter;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Read only memory mapping of a local PBF file, shared by all reads of the same (unchanged) file such that the multiple passes of the network and
+ * zoning readers map the file only once and read directly from the page cache. Blobs are provided as zero-copy {@link ByteBuffer} slices of the mapping.
+ * <p>
+ *   Since a single mapping is limited to 2GB, the file is mapped in segments. Consecutive segments overlap by the maximum size of a blob (including its
+ *   header), such that every blob is fully contained in the segment its offset resides in.
+ * </p>
+ * <p>
+ *   Mappings are retained through soft references, so they remain available across passes while the mapped file is (briefly) not in use, yet can be
+ *   reclaimed under memory pressure.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmPbfMappedFile {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmPbfMappedFile.class.getCanonicalName());
+
+  /** distance between the start of consecutive segments */
+  private static final long SEGMENT_STRIDE = 1L << 30;
+
+  /** overlap of consecutive segments, the maximum number of bytes of a blob including its header */
+  private static final long SEGMENT_OVERLAP = Integer.BYTES + (long) OsmPbfBlobInput.MAX_BLOB_HEADER_SIZE + OsmPbfBlobInput.MAX_BLOB_SIZE;
+
+  /** mapped files by canonical path */
+  private static final Map<String, SoftReference<OsmPbfMappedFile>> MAPPED_FILES = new HashMap<>();
+
+  /** size of the file at the time of mapping */
+  private final long size;
+
+  /** last modification time of the file at the time of mapping */
+  private final long lastModified;
+
+  /** the mapped segments */
+  private final MappedByteBuffer[] segments;
+
+  /**
+   * Constructor, maps the file
+   *
+   * @param file to map
+   * @throws IOException thrown if error
+   */
+  private OsmPbfMappedFile(File file) throws IOException {
+    this.lastModified = file.lastModified();
+    try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+      this.size = channel.size();
+      int numberOfSegments = (int) Math.max(1, (size + SEGMENT_STRIDE - 1) / SEGMENT_STRIDE);
+      this.segments = new MappedByteBuffer[numberOfSegments];
+      for(int index = 0; index < numberOfSegments; ++index) {
+        long start = index * SEGMENT_STRIDE;
+        segments[index] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_STRIDE + SEGMENT_OVERLAP, size - start));
+      }
+    }
+  }
+
+  /** Collect the mapping of the given file, mapping it when not yet (or no longer) mapped or when it changed since it was mapped
+   *
+   * @param file to collect mapping for
+   * @return mapped file
+   * @throws IOException thrown if error
+   */
+  public static synchronized OsmPbfMappedFile acquire(File file) throws IOException {
+    String key = file.getCanonicalPath();
+    SoftReference<OsmPbfMappedFile> reference = MAPPED_FILES.get(key);
+    OsmPbfMappedFile mappedFile = reference != null ? reference.get() : null;
+    if(mappedFile == null || mappedFile.size != file.length() || mappedFile.lastModified != file.lastModified()) {
+      LOGGER.fine(String.format("Memory mapping PBF file %s", file));
+      mappedFile = new OsmPbfMappedFile(file);
+      MAPPED_FILES.put(key, new SoftReference<>(mappedFile));
+    }
+    return mappedFile;
+  }
+
+  /** Size of the mapped file
+   *
+   * @return size in bytes
+   */
+  public long size() {
+    return size;
+  }
+
+  /** Create a zero-copy view on a range of the mapped file. Thread safe
+   *
+   * @param position of the range
+   * @param length of the range, at most the maximum size of a blob including its header
+   * @return view on range, positioned at its start
+   * @throws IOException thrown when range exceeds the file
+   */
+  public ByteBuffer slice(long position, int length) throws IOException {
+    if(position < 0 || length < 0 || length > SEGMENT_OVERLAP) {
+      throw new IOException(String.format("Invalid range [%d, %d) of mapped PBF file", position, position + length));
+    }
+    if(position + length > size) {
+      throw new EOFException(String.format("Range [%d, %d) exceeds mapped PBF file of %d bytes", position, position + length, size));
+    }
+    int segmentIndex = (int) (position / SEGMENT_STRIDE);
+    int segmentOffset = (int) (position - segmentIndex * SEGMENT_STRIDE);
+    /* duplicate such that concurrent slicing does not interfere, segment positions themselves are never changed */
+    ByteBuffer view = segments[segmentIndex].duplicate();
+    view.position(segmentOffset);
+    view.limit(segmentOffset + length);
+    return view.slice();
+  }
+}
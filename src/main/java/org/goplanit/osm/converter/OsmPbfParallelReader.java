@@ -0,0 +1,390 @@
+package org.goplanit.osm.converter;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.locationtech.jts.geom.Envelope;
+
+import de.topobyte.osm4j.core.access.OsmHandler;
+import de.topobyte.osm4j.core.access.OsmInputException;
+import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmEntity;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.pbf.protobuf.Fileformat;
+
+/**
+ * OSM PBF reader that inflates and decodes blobs concurrently on a pool of worker threads, while delivering the decoded entities to the handler
+ * on the calling thread in the original file order. Handlers therefore observe exactly the same sequence of callbacks as with a sequential reader and
+ * need not be thread safe, while the (dominant) decoding cost is spread over the available cores.
+ * <p>
+ *   The number of blobs being decoded (or awaiting delivery) at any time is bounded, such that memory use does not depend on the size of the input.
+ * </p>
+ * <p>
+ *   When the handler declares the entity types it consumes (see {@link OsmEntityTypeAwareHandler}), entities of other types are neither decoded nor delivered.
+ *   When the file is moreover sorted by type (as indicated in its header), reading stops as soon as no more entities of a consumed type can follow.
+ * </p>
+ * <p>
+ *   Optionally a {@link OsmPbfBlobIndex} is persisted next to the file. The first read creates it, subsequent reads use it to skip all blobs without
+ *   consumed entity types, as well as node only blobs outside the node envelope (if set), without reading them from disk at all.
+ * </p>
+ * <p>
+ *   Optionally the file is read through a memory mapping shared by all reads of the file (see {@link OsmPbfMappedFile}), rather than stream I/O.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmPbfParallelReader implements OsmReader {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmPbfParallelReader.class.getCanonicalName());
+
+  /** number of blobs that may be in flight per worker thread */
+  private static final int BLOBS_IN_FLIGHT_PER_THREAD = 4;
+
+  /** the PBF file to read */
+  private final File inputFile;
+
+  /** number of worker threads used for decoding */
+  private final int numberOfDecodingThreads;
+
+  /** handler to deliver entities to */
+  private OsmHandler handler;
+
+  /** entity types consumed by the handler */
+  private Set<EntityType> consumedEntityTypes;
+
+  /** flag indicating the file is sorted by entity type, set upon parsing its header */
+  private boolean sortedByType;
+
+  /** flag indicating a blob index is to be used, and created when absent or outdated */
+  private boolean useBlobIndex = false;
+
+  /** nodes outside this envelope are not required by the handler, null if all nodes are required */
+  private Envelope nodeEnvelope = null;
+
+  /** flag indicating the file is read through a (shared) memory mapping rather than stream I/O */
+  private boolean memoryMapped = false;
+
+  /**
+   * A data blob being decoded
+   */
+  private static final class BlobInFlight {
+
+    /** byte offset of the blob (including its header) */
+    private final long offset;
+
+    /** number of bytes of the blob (including its header) */
+    private final int length;
+
+    /** the decoding result */
+    private final Future<OsmPbfBlockDecoder.DecodedBlock> decodedBlock;
+
+    /** Constructor
+     *
+     * @param offset of the blob
+     * @param length of the blob
+     * @param decodedBlock future result
+     */
+    private BlobInFlight(long offset, int length, Future<OsmPbfBlockDecoder.DecodedBlock> decodedBlock) {
+      this.offset = offset;
+      this.length = length;
+      this.decodedBlock = decodedBlock;
+    }
+  }
+
+  /** Rank of entity type in a file sorted by type
+   *
+   * @param entityType to rank
+   * @return rank
+   */
+  private static int getSortedRank(EntityType entityType) {
+    switch(entityType) {
+      case Node:
+        return 0;
+      case Way:
+        return 1;
+      default:
+        return 2;
+    }
+  }
+
+  /** Verify if an indexed data blob contains entities relevant to the handler
+   *
+   * @param entry of the blob
+   * @return true when relevant, false otherwise
+   */
+  private boolean isRelevant(OsmPbfBlobIndex.Entry entry) {
+    for(EntityType consumedEntityType : consumedEntityTypes) {
+      if(!entry.containsEntityType(consumedEntityType)) {
+        continue;
+      }
+      if(consumedEntityType == EntityType.Node && nodeEnvelope != null && !nodeEnvelope.intersects(entry.getNodeEnvelope())) {
+        continue;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /** Create the pool of decoding threads, threads are daemons such that an abandoned read does not prevent the JVM from exiting
+   *
+   * @return executor
+   */
+  private ExecutorService createDecodingExecutor() {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    return Executors.newFixedThreadPool(numberOfDecodingThreads, runnable -> {
+      Thread thread = new Thread(runnable, "planit-osm-pbf-decoder-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /** Verify if entities of a consumed type can still follow after a blob containing the given entity type
+   *
+   * @param entityType last entity type encountered
+   * @return true when consumed entity types may follow, false otherwise
+   */
+  private boolean isConsumedEntityTypeRemaining(EntityType entityType) {
+    if(!sortedByType || entityType == null) {
+      return true;
+    }
+    for(EntityType consumedEntityType : consumedEntityTypes) {
+      if(getSortedRank(consumedEntityType) >= getSortedRank(entityType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Deliver decoded entities to the handler
+   *
+   * @param decodedBlock to deliver
+   * @return true when reading should continue, false when no more entities of consumed types can follow
+   * @throws IOException thrown if error
+   */
+  private boolean deliver(OsmPbfBlockDecoder.DecodedBlock decodedBlock) throws IOException {
+    /* when creating an index all types are decoded, so filter on consumed types */
+    final boolean consumesNodes = consumedEntityTypes.contains(EntityType.Node);
+    final boolean consumesWays = consumedEntityTypes.contains(EntityType.Way);
+    final boolean consumesRelations = consumedEntityTypes.contains(EntityType.Relation);
+    for(OsmEntity entity : decodedBlock.entities) {
+      if(entity instanceof OsmNode) {
+        if(consumesNodes) {
+          handler.handle((OsmNode) entity);
+        }
+      }else if(entity instanceof OsmWay) {
+        if(consumesWays) {
+          handler.handle((OsmWay) entity);
+        }
+      }else if(entity instanceof OsmRelation) {
+        if(consumesRelations) {
+          handler.handle((OsmRelation) entity);
+        }
+      }
+    }
+    return isConsumedEntityTypeRemaining(decodedBlock.lastEntityType);
+  }
+
+  /** Wait for the oldest blob in flight to be decoded and deliver its entities
+   *
+   * @param blobsInFlight queue of blobs in flight in file order
+   * @param indexEntries to register the blob on when an index is being created, null otherwise
+   * @return true when reading should continue, false when no more entities of consumed types can follow
+   * @throws IOException thrown if error
+   * @throws InterruptedException thrown if interrupted
+   * @throws ExecutionException thrown if decoding failed
+   */
+  private boolean deliverOldest(Deque<BlobInFlight> blobsInFlight, List<OsmPbfBlobIndex.Entry> indexEntries)
+      throws IOException, InterruptedException, ExecutionException {
+    BlobInFlight blobInFlight = blobsInFlight.poll();
+    OsmPbfBlockDecoder.DecodedBlock decodedBlock = blobInFlight.decodedBlock.get();
+    boolean continueReading = deliver(decodedBlock);
+    if(indexEntries != null) {
+      indexEntries.add(OsmPbfBlobIndex.Entry.createDataEntry(
+          blobInFlight.offset, blobInFlight.length, decodedBlock.entityTypes, decodedBlock.minId, decodedBlock.maxId, decodedBlock.nodeEnvelope));
+      /* the index must cover the entire file */
+      continueReading = true;
+    }
+    return continueReading;
+  }
+
+  /** Persist a newly created index, failure to do so is not fatal since the index is optional
+   *
+   * @param indexEntries of the index
+   * @param fileSize of the input at the start of reading
+   * @param lastModified of the input at the start of reading
+   */
+  private void saveBlobIndex(List<OsmPbfBlobIndex.Entry> indexEntries, long fileSize, long lastModified) {
+    try {
+      new OsmPbfBlobIndex(fileSize, lastModified, indexEntries).save(inputFile);
+      LOGGER.info(String.format("Created PBF blob index %s", OsmPbfBlobIndex.getIndexFile(inputFile)));
+    }catch(IOException e) {
+      LOGGER.warning(String.format("Unable to persist PBF blob index for %s: %s", inputFile, e.getMessage()));
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param inputFile PBF file to read
+   * @param numberOfDecodingThreads number of worker threads to decode with, at least one
+   */
+  public OsmPbfParallelReader(File inputFile, int numberOfDecodingThreads) {
+    this.inputFile = inputFile;
+    this.numberOfDecodingThreads = Math.max(1, numberOfDecodingThreads);
+  }
+
+  /** Activate the use of a blob index persisted next to the input file, which is created upon reading when absent or outdated
+   *
+   * @param useBlobIndex when true use (and create) blob index
+   */
+  public void setUseBlobIndex(boolean useBlobIndex) {
+    this.useBlobIndex = useBlobIndex;
+  }
+
+  /** Set the envelope outside of which nodes are not required by the handler. When a blob index is available, blobs with only nodes outside this envelope
+   * are skipped. Nodes in blobs that are read are delivered regardless of their location, so the handler remains responsible for filtering them
+   *
+   * @param nodeEnvelope to use, null if all nodes are required
+   */
+  public void setNodeEnvelope(Envelope nodeEnvelope) {
+    this.nodeEnvelope = nodeEnvelope;
+  }
+
+  /** Read the file through a memory mapping rather than stream I/O. The mapping is shared by all reads of the same file, such that repeated passes
+   * read directly from the page cache and blobs are handed to the decoding threads without copying
+   *
+   * @param memoryMapped when true use memory mapping
+   */
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setHandler(OsmHandler handler) {
+    this.handler = handler;
+    this.consumedEntityTypes = EnumSet.noneOf(EntityType.class);
+    this.consumedEntityTypes.addAll(OsmEntityTypeAwareHandler.getConsumedEntityTypes(handler));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void read() throws OsmInputException {
+    if(handler == null) {
+      throw new OsmInputException("No handler set on OSM PBF reader");
+    }
+
+    final long fileSize = inputFile.length();
+    final long lastModified = inputFile.lastModified();
+    final OsmPbfBlobIndex blobIndex = useBlobIndex ? OsmPbfBlobIndex.load(inputFile) : null;
+    final Iterator<OsmPbfBlobIndex.Entry> indexIter = blobIndex != null ? blobIndex.getEntries().iterator() : null;
+    /* an index is created while reading when requested but not available, this requires decoding all entity types */
+    final List<OsmPbfBlobIndex.Entry> newIndexEntries = useBlobIndex && blobIndex == null ? new ArrayList<>() : null;
+    final Set<EntityType> entityTypesToDecode = newIndexEntries != null ? EnumSet.allOf(EntityType.class) : consumedEntityTypes;
+
+    final int maxBlobsInFlight = numberOfDecodingThreads * BLOBS_IN_FLIGHT_PER_THREAD;
+    final Deque<BlobInFlight> blobsInFlight = new ArrayDeque<>(maxBlobsInFlight);
+    final ExecutorService executor = createDecodingExecutor();
+    int numberOfSkippedBlobs = 0;
+    sortedByType = false;
+    try(OsmPbfBlobInput input = OsmPbfBlobInput.open(inputFile, memoryMapped)){
+
+      boolean continueReading = !consumedEntityTypes.isEmpty() || newIndexEntries != null;
+      while(continueReading) {
+        if(indexIter != null) {
+          /* jump to next relevant blob */
+          if(!indexIter.hasNext()) {
+            break;
+          }
+          OsmPbfBlobIndex.Entry entry = indexIter.next();
+          if(!entry.isHeader() && !isRelevant(entry)) {
+            ++numberOfSkippedBlobs;
+            continue;
+          }
+          input.skipTo(entry.getOffset());
+        }
+
+        final long blobOffset = input.getPosition();
+        final Fileformat.BlobHeader blobHeader = input.readBlobHeader();
+        if(blobHeader == null) {
+          break;
+        }
+        final ByteBuffer blob = input.readBlob(blobHeader);
+        final int blobLength = (int) (input.getPosition() - blobOffset);
+
+        if(OsmPbfBlockDecoder.BLOB_TYPE_DATA.equals(blobHeader.getType())) {
+          blobsInFlight.add(new BlobInFlight(blobOffset, blobLength, executor.submit(() -> OsmPbfBlockDecoder.decodePrimitiveBlock(
+              OsmPbfBlockDecoder.inflate(Fileformat.Blob.parseFrom(blob)), entityTypesToDecode))));
+          if(blobsInFlight.size() >= maxBlobsInFlight) {
+            continueReading = deliverOldest(blobsInFlight, newIndexEntries);
+          }
+        }else if(OsmPbfBlockDecoder.BLOB_TYPE_HEADER.equals(blobHeader.getType())) {
+          /* header precedes all data in practice, but preserve order regardless */
+          while(continueReading && !blobsInFlight.isEmpty()) {
+            continueReading = deliverOldest(blobsInFlight, newIndexEntries);
+          }
+          var decodedHeader = OsmPbfBlockDecoder.decodeHeader(OsmPbfBlockDecoder.inflate(Fileformat.Blob.parseFrom(blob)));
+          sortedByType = decodedHeader.sortedByTypeThenId;
+          if(decodedHeader.bounds != null) {
+            handler.handle(decodedHeader.bounds);
+          }
+          if(newIndexEntries != null) {
+            newIndexEntries.add(OsmPbfBlobIndex.Entry.createHeaderEntry(blobOffset, blobLength));
+          }
+        }else {
+          LOGGER.fine(String.format("Skipping unknown PBF blob type %s", blobHeader.getType()));
+        }
+      }
+
+      while(continueReading && !blobsInFlight.isEmpty()) {
+        continueReading = deliverOldest(blobsInFlight, newIndexEntries);
+      }
+      if(!continueReading) {
+        LOGGER.fine(String.format("Stopped reading sorted PBF file %s early, no more entities of types %s follow", inputFile, consumedEntityTypes));
+      }
+      if(numberOfSkippedBlobs > 0) {
+        LOGGER.fine(String.format("Skipped %d of %d PBF blobs based on blob index", numberOfSkippedBlobs, blobIndex.getEntries().size()));
+      }
+      handler.complete();
+
+      if(newIndexEntries != null) {
+        saveBlobIndex(newIndexEntries, fileSize, lastModified);
+      }
+
+    }catch(EOFException e) {
+      throw new OsmInputException(String.format("Unexpected end of PBF file %s", inputFile), e);
+    }catch(IOException e) {
+      throw new OsmInputException(String.format("Unable to read PBF file %s", inputFile), e);
+    }catch(ExecutionException e) {
+      throw new OsmInputException(String.format("Unable to decode PBF file %s", inputFile), e.getCause());
+    }catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OsmInputException(String.format("Interrupted while reading PBF file %s", inputFile), e);
+    }finally {
+      executor.shutdownNow();
+    }
+  }
+}
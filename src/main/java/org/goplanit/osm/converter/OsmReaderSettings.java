@@ -1,6 +1,7 @@
 package org.goplanit.osm.converter;
 
 import java.net.URL;
+import java.nio.file.Path;
 
 import org.goplanit.converter.ConverterReaderSettings;
 import org.goplanit.utils.exceptions.PlanItException;
@@ -27,6 +28,45 @@ public abstract class OsmReaderSettings implements ConverterReaderSettings {
   
   /** allow to restrict parsing to only within the bounding polygon, when null entire input is parsed */
   private Polygon boundingPolygon = null;
+
+  /** compiled containment test for the bounding polygon, created upon first use */
+  private OsmBoundingPolygonFilter boundingPolygonFilter = null;
+
+  /** number of threads used to decode PBF input and decompress bzip2 compressed OSM XML input, when 1 or less decoding takes place on the calling thread */
+  private int numberOfDecodingThreads = DEFAULT_NUMBER_OF_DECODING_THREADS;
+
+  /** by default input is decoded sequentially on the calling thread: 1 */
+  public static final int DEFAULT_NUMBER_OF_DECODING_THREADS = 1;
+
+  /** flag indicating a blob index is persisted next to PBF input (and used upon subsequent reads) */
+  private boolean persistPbfBlobIndex = DEFAULT_PERSIST_PBF_BLOB_INDEX;
+
+  /** by default no blob index is persisted for PBF input */
+  public static final boolean DEFAULT_PERSIST_PBF_BLOB_INDEX = false;
+
+  /** flag indicating local PBF input is read through a memory mapping shared by all passes, rather than stream I/O */
+  private boolean memoryMappedPbfInput = DEFAULT_MEMORY_MAPPED_PBF_INPUT;
+
+  /** by default PBF input is read through stream I/O */
+  public static final boolean DEFAULT_MEMORY_MAPPED_PBF_INPUT = false;
+
+  /** flag indicating remote input is downloaded once into a local cache from which all passes are served */
+  private boolean cacheRemoteInputSource = DEFAULT_CACHE_REMOTE_INPUT_SOURCE;
+
+  /** by default remote input is not cached, but streamed on each pass */
+  public static final boolean DEFAULT_CACHE_REMOTE_INPUT_SOURCE = false;
+
+  /** directory of the cache of remote input */
+  private Path remoteInputSourceCacheDirectory = DEFAULT_REMOTE_INPUT_SOURCE_CACHE_DIRECTORY;
+
+  /** by default remote input is cached in a dedicated directory in the default temporary directory, i.e., ${java.io.tmpdir}/planit-osm-cache */
+  public static final Path DEFAULT_REMOTE_INPUT_SOURCE_CACHE_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "planit-osm-cache");
+
+  /** maximum total size in bytes of the cache of remote input */
+  private long maxRemoteInputSourceCacheSize = DEFAULT_MAX_REMOTE_INPUT_SOURCE_CACHE_SIZE;
+
+  /** by default the cache of remote input is limited to 4GB */
+  public static final long DEFAULT_MAX_REMOTE_INPUT_SOURCE_CACHE_SIZE = 4L * 1024 * 1024 * 1024;
   
   /**
    * Default constructor with default locale (Global)
@@ -141,6 +181,7 @@ public abstract class OsmReaderSettings implements ConverterReaderSettings {
    */
   public final void setBoundingPolygon(Polygon boundingPolygon) {
     this.boundingPolygon = boundingPolygon;
+    this.boundingPolygonFilter = null;
   } 
   
   /** Set a polygon based bounding box to restrict parsing to
@@ -158,5 +199,138 @@ public abstract class OsmReaderSettings implements ConverterReaderSettings {
   public final boolean hasBoundingPolygon() {
     return this.boundingPolygon!=null;
   }   
+
+  /** Collect the compiled containment test for the bounding polygon, which is considerably faster than testing against the polygon directly
+   *
+   * @return bounding polygon filter, null when no bounding polygon is set
+   */
+  public final OsmBoundingPolygonFilter getBoundingPolygonFilter() {
+    if(boundingPolygonFilter == null && hasBoundingPolygon()) {
+      boundingPolygonFilter = new OsmBoundingPolygonFilter(boundingPolygon);
+    }
+    return boundingPolygonFilter;
+  }
    
+
+  /** Number of threads used to decode PBF input and decompress bzip2 compressed OSM XML input (*.osm.bz2). Decoded entities are always delivered in file
+   * order on the calling thread
+   *
+   * @return number of decoding threads, 1 or less when decoding takes place on the calling thread
+   */
+  public final int getNumberOfDecodingThreads() {
+    return numberOfDecodingThreads;
+  }
+
+  /** Set the number of threads used to decode PBF input and decompress bzip2 compressed OSM XML input (*.osm.bz2). Decoded entities are always delivered
+   * in file order on the calling thread. Other formats are decoded on the calling thread regardless
+   *
+   * @param numberOfDecodingThreads to use, 1 or less to decode on the calling thread
+   */
+  public final void setNumberOfDecodingThreads(int numberOfDecodingThreads) {
+    if(numberOfDecodingThreads < 0) {
+      throw new PlanItRunTimeException("Number of decoding threads cannot be negative, found %d", numberOfDecodingThreads);
+    }
+    this.numberOfDecodingThreads = numberOfDecodingThreads;
+  }
+
+  /** Verify if a blob index is persisted next to (local) PBF input, see {@link #setPersistPbfBlobIndex(boolean)}
+   *
+   * @return true when activated, false otherwise
+   */
+  public final boolean isPersistPbfBlobIndex() {
+    return persistPbfBlobIndex;
+  }
+
+  /** When activated, the first read of (local) PBF input creates an index of its blobs next to the input file (extension
+   * {@link OsmPbfBlobIndex#INDEX_FILE_EXTENSION}). Subsequent reads of the unchanged file use it to only read the blobs with OSM entities of relevance to
+   * each pass, which is beneficial when the same input is converted repeatedly. The index is recreated when the input file changes
+   *
+   * @param persistPbfBlobIndex when true activate
+   */
+  public final void setPersistPbfBlobIndex(boolean persistPbfBlobIndex) {
+    this.persistPbfBlobIndex = persistPbfBlobIndex;
+  }
+
+  /** Verify if local PBF input is read through a memory mapping, see {@link #setMemoryMappedPbfInput(boolean)}
+   *
+   * @return true when activated, false otherwise
+   */
+  public final boolean isMemoryMappedPbfInput() {
+    return memoryMappedPbfInput;
+  }
+
+  /** When activated, local PBF input is memory mapped once and all passes over it read its blobs directly from the mapping (and thus the page cache),
+   * rather than through buffered stream I/O for each pass. Blobs are handed to the decoding threads without being copied
+   *
+   * @param memoryMappedPbfInput when true activate
+   */
+  public final void setMemoryMappedPbfInput(boolean memoryMappedPbfInput) {
+    this.memoryMappedPbfInput = memoryMappedPbfInput;
+  }
+
+  /** Verify if remote input is cached, see {@link #setCacheRemoteInputSource(boolean)}
+   *
+   * @return true when activated, false otherwise
+   */
+  public final boolean isCacheRemoteInputSource() {
+    return cacheRemoteInputSource;
+  }
+
+  /** When activated, remote (non-local) input is downloaded once into a local cache (see {@link OsmRemoteSourceCache}) and all passes are served from the
+   * cached file, rather than each pass streaming the remote input. This is also required to read remote input in formats other than OSM XML, e.g. PBF.
+   * Default is {@link #DEFAULT_CACHE_REMOTE_INPUT_SOURCE}. When activated, cached files are retained across conversions in
+   * {@link #DEFAULT_REMOTE_INPUT_SOURCE_CACHE_DIRECTORY} (java.io.tmpdir/planit-osm-cache) unless another directory is set, up to
+   * {@link #DEFAULT_MAX_REMOTE_INPUT_SOURCE_CACHE_SIZE} bytes (4GB) unless another maximum is set
+   *
+   * @param cacheRemoteInputSource when true activate
+   */
+  public final void setCacheRemoteInputSource(boolean cacheRemoteInputSource) {
+    this.cacheRemoteInputSource = cacheRemoteInputSource;
+  }
+
+  /** Directory of the cache of remote input
+   *
+   * @return directory
+   */
+  public final Path getRemoteInputSourceCacheDirectory() {
+    return remoteInputSourceCacheDirectory;
+  }
+
+  /** Set the directory of the cache of remote input, created when it does not exist. Default is {@link #DEFAULT_REMOTE_INPUT_SOURCE_CACHE_DIRECTORY}
+   *
+   * @param remoteInputSourceCacheDirectory to use
+   */
+  public final void setRemoteInputSourceCacheDirectory(Path remoteInputSourceCacheDirectory) {
+    this.remoteInputSourceCacheDirectory = remoteInputSourceCacheDirectory;
+  }
+
+  /** Maximum total size of the cache of remote input
+   *
+   * @return maximum size in bytes
+   */
+  public final long getMaxRemoteInputSourceCacheSize() {
+    return maxRemoteInputSourceCacheSize;
+  }
+
+  /** Set the maximum total size of the cache of remote input, least recently used files are evicted when it is exceeded. Default is
+   * {@link #DEFAULT_MAX_REMOTE_INPUT_SOURCE_CACHE_SIZE}
+   *
+   * @param maxRemoteInputSourceCacheSize maximum size in bytes
+   */
+  public final void setMaxRemoteInputSourceCacheSize(long maxRemoteInputSourceCacheSize) {
+    if(maxRemoteInputSourceCacheSize < 0) {
+      throw new PlanItRunTimeException("Maximum size of remote input cache cannot be negative, found %d", maxRemoteInputSourceCacheSize);
+    }
+    this.maxRemoteInputSourceCacheSize = maxRemoteInputSourceCacheSize;
+  }
+
+  /** Envelope outside of which OSM nodes are guaranteed to be discarded by the reader these settings belong to, such that they need not be read at all.
+   * By default all OSM nodes may be required, e.g., because geometries that are partially outside the bounding polygon are retained
+   *
+   * @return envelope, null when OSM nodes outside the bounding polygon may be required
+   */
+  public Envelope getOsmNodeRetentionEnvelope() {
+    return null;
+  }
+
 }
@@ -0,0 +1,385 @@
+package org.goplanit.osm.converter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.goplanit.osm.util.Osm4JUtils;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+/**
+ * Local cache of remote OSM sources, such that a remote source is downloaded once and all passes of the readers are served from the cached file. This also
+ * allows remote sources in formats that require random or repeated access (e.g. PBF) to be read.
+ * <p>
+ *   Cached files are keyed by the remote location and the version of its content as reported by the server (ETag, or otherwise Last-Modified), so a changed
+ *   remote source results in a new download rather than outdated content being used. Each download is written to a temporary file of its own first; an
+ *   interrupted download is retained as partial file and resumed from where it stopped through an HTTP range request, provided the server supports it and
+ *   the content did not change in the meantime.
+ * </p>
+ * <p>
+ *   The total size of the cache is bounded, least recently used files are evicted first. Only files created by the cache (and their sidecars, e.g. a PBF
+ *   blob index) are subject to eviction, so other files in the cache directory are left untouched. Cached files of remote sources for which the server does not
+ *   report a version expire after a day.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmRemoteSourceCache {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmRemoteSourceCache.class.getCanonicalName());
+
+  /** extension of partially downloaded files */
+  public static final String PARTIAL_FILE_EXTENSION = ".part";
+
+  /** supported file name suffixes, retained for cached files such that the reader for their format is selected, most specific first */
+  private static final String[] SUPPORTED_SUFFIXES = {
+      "." + Osm4JUtils.OSM_XML_EXTENSION + "." + Osm4JUtils.OSM_PBF_EXTENSION,
+      "." + Osm4JUtils.OSM_XML_EXTENSION + "." + Osm4JUtils.GZIP_EXTENSION,
+      "." + Osm4JUtils.OSM_XML_EXTENSION + "." + Osm4JUtils.BZIP2_EXTENSION,
+      "." + Osm4JUtils.OSM_PBF_EXTENSION,
+      "." + Osm4JUtils.OSM_O5M_EXTENSION,
+      "." + Osm4JUtils.OSM_XML_EXTENSION};
+
+  /** number of hexadecimal characters of the key used in the file name */
+  private static final int KEY_LENGTH = 16;
+
+  /** time in milliseconds a cached file of a remote source without a reported version remains valid, since it cannot be verified to be up to date */
+  private static final long MAX_UNVERSIONED_AGE_MILLISECONDS = 24 * 60 * 60 * 1000L;
+
+  /** timeout in milliseconds for connecting to, and reading from, the remote source */
+  private static final int TIMEOUT_MILLISECONDS = 60 * 1000;
+
+  /** the directory of the cache */
+  private final Path cacheDirectory;
+
+  /** maximum total size of the cache in bytes */
+  private final long maxCacheSize;
+
+  /** Suffix of the cached file of a remote source, remote sources without a supported suffix (e.g. API queries) are assumed to provide OSM XML
+   *
+   * @param remoteSource to collect suffix for
+   * @return suffix
+   */
+  private static String getCachedFileSuffix(URL remoteSource) {
+    String path = remoteSource.getPath().toLowerCase();
+    for(String suffix : SUPPORTED_SUFFIXES) {
+      if(path.endsWith(suffix)) {
+        return suffix;
+      }
+    }
+    return "." + Osm4JUtils.OSM_XML_EXTENSION;
+  }
+
+  /** Create the key of a remote source in a given version
+   *
+   * @param remoteSource to create key for
+   * @param version of its content, empty when unknown
+   * @return key
+   */
+  private static String createKey(URL remoteSource, String version) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+          (remoteSource.toExternalForm() + '\n' + version).getBytes(StandardCharsets.UTF_8));
+      var key = new StringBuilder();
+      for(int index = 0; key.length() < KEY_LENGTH; ++index) {
+        key.append(String.format("%02x", digest[index]));
+      }
+      return key.toString();
+    }catch(NoSuchAlgorithmException e) {
+      throw new PlanItRunTimeException("Unable to create key of remote OSM source %s", remoteSource);
+    }
+  }
+
+  /** Collect the version of the content of a remote source from the server without downloading it
+   *
+   * @param remoteSource to collect version for
+   * @return version, empty when not reported by the server (or not an HTTP source)
+   * @throws IOException thrown if error
+   */
+  private static String requestVersion(URL remoteSource) throws IOException {
+    URLConnection connection = remoteSource.openConnection();
+    if(!(connection instanceof HttpURLConnection)) {
+      return "";
+    }
+    HttpURLConnection httpConnection = (HttpURLConnection) connection;
+    try {
+      httpConnection.setRequestMethod("HEAD");
+      httpConnection.setConnectTimeout(TIMEOUT_MILLISECONDS);
+      httpConnection.setReadTimeout(TIMEOUT_MILLISECONDS);
+      int responseCode = httpConnection.getResponseCode();
+      if(responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+        throw new IOException(String.format("Remote OSM source %s not available (HTTP %d)", remoteSource, responseCode));
+      }
+      String version = httpConnection.getHeaderField("ETag");
+      if(version == null) {
+        version = httpConnection.getHeaderField("Last-Modified");
+      }
+      return version == null ? "" : version;
+    }finally {
+      httpConnection.disconnect();
+    }
+  }
+
+  /** Transfer the content of a remote source into the download file, resuming from the bytes already in the download file when possible
+   *
+   * @param remoteSource to download
+   * @param version of its content, empty when unknown
+   * @param downloadFile to download to, possibly holding the first bytes of the content already
+   * @throws IOException thrown if error
+   */
+  private static void transfer(URL remoteSource, String version, Path downloadFile) throws IOException {
+    long resumePosition = Files.size(downloadFile);
+
+    URLConnection connection = remoteSource.openConnection();
+    connection.setConnectTimeout(TIMEOUT_MILLISECONDS);
+    connection.setReadTimeout(TIMEOUT_MILLISECONDS);
+    boolean resume = false;
+    if(connection instanceof HttpURLConnection) {
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      if(resumePosition > 0) {
+        httpConnection.setRequestProperty("Range", "bytes=" + resumePosition + "-");
+        /* server responds with the entire content when it changed since */
+        httpConnection.setRequestProperty("If-Range", version);
+      }
+      int responseCode = httpConnection.getResponseCode();
+      if(responseCode == 416 /* range not satisfiable, i.e., partial content is complete or invalid */) {
+        httpConnection.disconnect();
+        Files.write(downloadFile, new byte[0]);
+        transfer(remoteSource, version, downloadFile);
+        return;
+      }
+      if(responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+        throw new IOException(String.format("Remote OSM source %s not available (HTTP %d)", remoteSource, responseCode));
+      }
+      resume = responseCode == HttpURLConnection.HTTP_PARTIAL;
+    }
+
+    if(resume) {
+      LOGGER.info(String.format("Resuming download of remote OSM source %s at byte %d", remoteSource, resumePosition));
+    }else {
+      LOGGER.info(String.format("Downloading remote OSM source %s", remoteSource));
+    }
+    long expectedLength = connection.getContentLengthLong();
+    long length;
+    try(InputStream input = connection.getInputStream(); OutputStream output = new FileOutputStream(downloadFile.toFile(), resume)){
+      length = input.transferTo(output);
+    }
+    if(expectedLength >= 0 && length != expectedLength) {
+      throw new IOException(String.format("Incomplete download of remote OSM source %s, %d of %d bytes received", remoteSource, length, expectedLength));
+    }
+  }
+
+  /** Move a file in place, atomically when supported by the file system
+   *
+   * @param source to move
+   * @param target to move to, replaced when it exists
+   * @throws IOException thrown if error
+   */
+  private static void moveInPlace(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }catch(AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Download a remote source, resuming a previously interrupted download when possible. Each download writes to a uniquely named temporary file in the
+   * cache directory which is moved in place once complete, such that concurrent downloads of the same remote source never write into the same file. The
+   * partial file of an interrupted download is claimed (moved) by a single download to resume from, and a download that fails is retained as partial file
+   *
+   * @param remoteSource to download
+   * @param version of its content, empty when unknown
+   * @param cachedFile to download to
+   * @throws IOException thrown if error
+   */
+  private static void download(URL remoteSource, String version, File cachedFile) throws IOException {
+    Path partialFile = Path.of(cachedFile.getPath() + PARTIAL_FILE_EXTENSION);
+    Path downloadFile = Files.createTempFile(cachedFile.toPath().toAbsolutePath().getParent(), cachedFile.getName(), PARTIAL_FILE_EXTENSION);
+    try {
+      if(version.isEmpty()) {
+        /* without a known version the partial content cannot be verified to belong to the same content, so start over */
+        Files.deleteIfExists(partialFile);
+      }else {
+        try {
+          moveInPlace(partialFile, downloadFile);
+        }catch(NoSuchFileException e) {
+          /* no interrupted download, or claimed by a concurrent download */
+        }
+      }
+
+      try {
+        transfer(remoteSource, version, downloadFile);
+      }catch(IOException e) {
+        if(!version.isEmpty() && Files.size(downloadFile) > 0) {
+          try {
+            Files.move(downloadFile, partialFile);
+          }catch(IOException moveException) {
+            LOGGER.fine(String.format("Unable to retain partial download of remote OSM source %s", remoteSource));
+          }
+        }
+        throw e;
+      }
+      moveInPlace(downloadFile, cachedFile.toPath());
+    }finally {
+      Files.deleteIfExists(downloadFile);
+    }
+  }
+
+  /** Time a file was last used
+   *
+   * @param file to collect for
+   * @return last access time, or last modification time when not available
+   */
+  private static long getLastUsed(File file) {
+    try {
+      return Files.readAttributes(file.toPath(), BasicFileAttributes.class).lastAccessTime().toMillis();
+    }catch(IOException e) {
+      return file.lastModified();
+    }
+  }
+
+  /** Verify if a file is a cached file of this cache, i.e., named by a key followed by a supported suffix
+   *
+   * @param fileName to verify
+   * @return true when cached file, false otherwise
+   */
+  private static boolean isCachedFile(String fileName) {
+    if(fileName.length() <= KEY_LENGTH) {
+      return false;
+    }
+    for(int index = 0; index < KEY_LENGTH; ++index) {
+      char c = fileName.charAt(index);
+      if(!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+        return false;
+      }
+    }
+    String suffix = fileName.substring(KEY_LENGTH);
+    return Arrays.asList(SUPPORTED_SUFFIXES).contains(suffix);
+  }
+
+  /** Collect the sidecar files of a cached file, e.g., a PBF blob index or OSM subset created next to it, excluding (partial) downloads
+   *
+   * @param cachedFile to collect sidecars for
+   * @param files in the cache directory
+   * @return sidecar files
+   */
+  private static List<File> getSidecarFiles(File cachedFile, File[] files) {
+    String prefix = cachedFile.getName() + ".";
+    List<File> sidecarFiles = new ArrayList<>();
+    for(File file : files) {
+      if(file.getName().startsWith(prefix) && !file.getName().endsWith(PARTIAL_FILE_EXTENSION) && !file.getName().endsWith(".tmp")) {
+        sidecarFiles.add(file);
+      }
+    }
+    return sidecarFiles;
+  }
+
+  /** Evict least recently used cached files (and their sidecars) until the cache no longer exceeds its maximum size. Only files created by this cache are
+   * considered, other files in the cache directory as well as (partial) downloads in progress are never counted nor evicted
+   *
+   * @param retainedFile file that is never evicted
+   */
+  private void evict(File retainedFile) {
+    File[] files = cacheDirectory.toFile().listFiles(File::isFile);
+    if(files == null) {
+      return;
+    }
+    File[] cachedFiles = Arrays.stream(files).filter(file -> isCachedFile(file.getName())).toArray(File[]::new);
+    Map<File, List<File>> sidecarsByCachedFile = new HashMap<>();
+    long cacheSize = 0;
+    for(File cachedFile : cachedFiles) {
+      List<File> sidecarFiles = getSidecarFiles(cachedFile, files);
+      sidecarsByCachedFile.put(cachedFile, sidecarFiles);
+      cacheSize += cachedFile.length() + sidecarFiles.stream().mapToLong(File::length).sum();
+    }
+
+    Arrays.sort(cachedFiles, Comparator.comparingLong(OsmRemoteSourceCache::getLastUsed));
+    for(File cachedFile : cachedFiles) {
+      if(cacheSize <= maxCacheSize) {
+        break;
+      }
+      if(cachedFile.equals(retainedFile)) {
+        continue;
+      }
+      long fileSize = cachedFile.length();
+      if(cachedFile.delete()) {
+        LOGGER.fine(String.format("Evicted %s from remote OSM source cache", cachedFile));
+        cacheSize -= fileSize;
+        for(File sidecarFile : sidecarsByCachedFile.get(cachedFile)) {
+          long sidecarSize = sidecarFile.length();
+          if(sidecarFile.delete()) {
+            cacheSize -= sidecarSize;
+          }
+        }
+      }
+    }
+    if(cacheSize > maxCacheSize) {
+      LOGGER.warning(String.format("Remote OSM source cache %s exceeds its maximum size of %d bytes", cacheDirectory, maxCacheSize));
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param cacheDirectory directory of the cache, created when it does not exist
+   * @param maxCacheSize maximum total size of the cache in bytes
+   */
+  public OsmRemoteSourceCache(Path cacheDirectory, long maxCacheSize) {
+    this.cacheDirectory = cacheDirectory;
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  /** Collect the cached file of a remote source, downloading it when not (or no longer) cached
+   *
+   * @param remoteSource to collect
+   * @return cached file, in the same format as the remote source
+   * @throws IOException thrown if error
+   */
+  public File collect(URL remoteSource) throws IOException {
+    Files.createDirectories(cacheDirectory);
+    String version = requestVersion(remoteSource);
+    File cachedFile = cacheDirectory.resolve(createKey(remoteSource, version) + getCachedFileSuffix(remoteSource)).toFile();
+
+    if(cachedFile.isFile() && version.isEmpty() && System.currentTimeMillis() - cachedFile.lastModified() > MAX_UNVERSIONED_AGE_MILLISECONDS) {
+      LOGGER.fine(String.format("Cached remote OSM source %s without version expired", cachedFile));
+      Files.delete(cachedFile.toPath());
+    }
+
+    if(cachedFile.isFile()) {
+      LOGGER.fine(String.format("Using cached remote OSM source %s", cachedFile));
+      /* mark as recently used, the modification time is left untouched since it identifies the file state for PBF blob indices */
+      try {
+        Files.setAttribute(cachedFile.toPath(), "lastAccessTime", FileTime.fromMillis(System.currentTimeMillis()));
+      }catch(IOException | UnsupportedOperationException e) {
+        LOGGER.fine(String.format("Unable to mark %s as recently used", cachedFile));
+      }
+    }else {
+      download(remoteSource, version, cachedFile);
+      evict(cachedFile);
+    }
+    return cachedFile;
+  }
+}
@@ -0,0 +1,252 @@
+package org.goplanit.osm.converter;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+
+/**
+ * Compact in-memory store of the node ids of OSM ways. Allows one to collect the node ids of an OSM way after the OSM way itself has been parsed
+ * without retaining the OSM way instances. This is useful when it is only known that an OSM way is relevant after it has been parsed, for
+ * example when it is referenced by a relation (which are parsed after ways).
+ * <p>
+ *   Node ids are stored as zig-zag encoded deltas in variable length byte format, which typically requires 2-3 bytes per node reference
+ *   rather than the 8 bytes of a long (or far more when retaining the OSM way itself). The encoded bytes are stored in fixed size pages, rather than a single
+ *   contiguous array, such that the store is not limited by the maximum array size for (very) large extracts, and growing it does not require copying.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmWayNodeIdsStore {
+
+  /** logger to use */
+  private static final Logger LOGGER = Logger.getLogger(OsmWayNodeIdsStore.class.getCanonicalName());
+
+  /** initial capacity of way entries */
+  private static final int INITIAL_WAY_CAPACITY = 1 << 12;
+
+  /** number of bits of the offset within a page */
+  private static final int PAGE_BITS = 20;
+
+  /** size of a page of encoded node ids in bytes, the encoding of a single OSM way never spans multiple pages */
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+  /** maximum array length supported by the JVM */
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+  /** ids of registered OSM ways in order of registration */
+  private long[] osmWayIds;
+
+  /** start of the encoded bytes per registered OSM way, the page index in the upper bits, the offset within the page in the lower {@link #PAGE_BITS} bits */
+  private long[] offsets;
+
+  /** pages of encoded node ids of all registered OSM ways */
+  private byte[][] pages;
+
+  /** number of used pages */
+  private int numberOfPages;
+
+  /** the page currently written to, i.e., the last used page */
+  private byte[] currentPage;
+
+  /** number of used bytes of the current page */
+  private int currentPageLength;
+
+  /** number of registered OSM ways */
+  private int numberOfOsmWays;
+
+  /** number of used bytes of the encoded node ids */
+  private long numberOfEncodedBytes;
+
+  /** flag indicating if OSM ways were registered in ascending order of their id (as is the case for sorted OSM files) */
+  private boolean registeredInAscendingOrder;
+
+  /** positions of the registered OSM ways sorted by their id, only created when not registered in ascending order */
+  private int[] sortedPositions;
+
+  /** Grow the capacity of an array from its current length
+   *
+   * @param length current length
+   * @return new length, capped at the maximum array length
+   */
+  private static int grow(int length) {
+    if(length >= MAX_ARRAY_LENGTH) {
+      throw new PlanItRunTimeException("Maximum number of OSM ways in OSM way node ids store exceeded");
+    }
+    return (int) Math.min(MAX_ARRAY_LENGTH, ((long) length) << 1);
+  }
+
+  /** Make sure the current page can hold the given number of additional bytes, starting a new page if not
+   *
+   * @param additionalBytes to support
+   */
+  private void ensureByteCapacity(int additionalBytes) {
+    /* start offsets must fit within the page bits, so a (dedicated) page is never filled beyond the regular page size */
+    if(currentPage != null && currentPageLength + additionalBytes <= PAGE_SIZE) {
+      return;
+    }
+    if(numberOfPages == pages.length) {
+      pages = Arrays.copyOf(pages, grow(pages.length));
+    }
+    /* a way with an exceptional number of nodes is given a dedicated page of its own size */
+    currentPage = new byte[Math.max(PAGE_SIZE, additionalBytes)];
+    currentPageLength = 0;
+    pages[numberOfPages++] = currentPage;
+  }
+
+  /** Encode the value as variable length zig-zag encoded bytes
+   *
+   * @param value to encode
+   */
+  private void writeSignedVarLong(long value) {
+    long zigZag = (value << 1) ^ (value >> 63);
+    while((zigZag & ~0x7FL) != 0) {
+      currentPage[currentPageLength++] = (byte) ((zigZag & 0x7F) | 0x80);
+      zigZag >>>= 7;
+    }
+    currentPage[currentPageLength++] = (byte) zigZag;
+  }
+
+  /** Find position of the OSM way in the registered entries
+   *
+   * @param osmWayId to find
+   * @return position, negative when not present
+   */
+  private int findPosition(long osmWayId) {
+    if(registeredInAscendingOrder) {
+      return Arrays.binarySearch(osmWayIds, 0, numberOfOsmWays, osmWayId);
+    }
+
+    if(sortedPositions == null) {
+      final long[] ids = osmWayIds;
+      sortedPositions = IntStream.range(0, numberOfOsmWays).boxed().sorted(
+          (p1, p2) -> Long.compare(ids[p1], ids[p2])).mapToInt(Integer::intValue).toArray();
+    }
+    int low = 0;
+    int high = numberOfOsmWays - 1;
+    while(low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = osmWayIds[sortedPositions[mid]];
+      if(midId < osmWayId) {
+        low = mid + 1;
+      }else if(midId > osmWayId) {
+        high = mid - 1;
+      }else {
+        return sortedPositions[mid];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Constructor
+   */
+  public OsmWayNodeIdsStore() {
+    reset();
+  }
+
+  /** Register the node ids of the OSM way
+   *
+   * @param osmWay to register
+   */
+  public void register(OsmWay osmWay) {
+    if(numberOfOsmWays == osmWayIds.length) {
+      int newCapacity = grow(osmWayIds.length);
+      osmWayIds = Arrays.copyOf(osmWayIds, newCapacity);
+      offsets = Arrays.copyOf(offsets, newCapacity);
+    }
+    if(numberOfOsmWays > 0 && osmWayIds[numberOfOsmWays-1] >= osmWay.getId()) {
+      registeredInAscendingOrder = false;
+    }
+    sortedPositions = null;
+
+    int numberOfNodes = osmWay.getNumberOfNodes();
+    /* worst case 10 bytes per value, plus the count */
+    ensureByteCapacity(10 * (numberOfNodes + 1));
+
+    osmWayIds[numberOfOsmWays] = osmWay.getId();
+    offsets[numberOfOsmWays] = (((long) (numberOfPages - 1)) << PAGE_BITS) | currentPageLength;
+    final int startLength = currentPageLength;
+    writeSignedVarLong(numberOfNodes);
+    long previousNodeId = 0;
+    for(int index=0;index<numberOfNodes;++index) {
+      long nodeId = osmWay.getNodeId(index);
+      writeSignedVarLong(nodeId - previousNodeId);
+      previousNodeId = nodeId;
+    }
+    numberOfEncodedBytes += currentPageLength - startLength;
+    ++numberOfOsmWays;
+  }
+
+  /** Collect the node ids of a registered OSM way
+   *
+   * @param osmWayId to collect node ids for
+   * @return node ids in order, null when OSM way is not registered
+   */
+  public long[] getNodeIds(long osmWayId) {
+    int position = findPosition(osmWayId);
+    if(position < 0) {
+      return null;
+    }
+
+    final byte[] page = pages[(int) (offsets[position] >>> PAGE_BITS)];
+    int byteIndex = (int) (offsets[position] & (PAGE_SIZE - 1));
+    long[] result = null;
+    long previousValue = 0;
+    int valueIndex = -1;
+    while(result == null || valueIndex < result.length) {
+      /* decode next value */
+      long zigZag = 0;
+      int shift = 0;
+      byte current;
+      do {
+        current = page[byteIndex++];
+        zigZag |= ((long)(current & 0x7F)) << shift;
+        shift += 7;
+      }while((current & 0x80) != 0);
+      long value = (zigZag >>> 1) ^ -(zigZag & 1);
+
+      if(result == null) {
+        result = new long[(int) value];
+      }else {
+        previousValue += value;
+        result[valueIndex] = previousValue;
+      }
+      ++valueIndex;
+    }
+    return result;
+  }
+
+  /** Number of registered OSM ways
+   *
+   * @return number of OSM ways
+   */
+  public int size() {
+    return numberOfOsmWays;
+  }
+
+  /** Log the memory footprint of this store
+   */
+  public void logStats() {
+    LOGGER.fine(String.format("OSM way node ids store: %d OSM ways, %d bytes of encoded node ids in %d pages", numberOfOsmWays, numberOfEncodedBytes, numberOfPages));
+  }
+
+  /**
+   * Reset the store, freeing up memory
+   */
+  public void reset() {
+    this.osmWayIds = new long[INITIAL_WAY_CAPACITY];
+    this.offsets = new long[INITIAL_WAY_CAPACITY];
+    this.pages = new byte[16][];
+    this.numberOfPages = 0;
+    this.currentPage = null;
+    this.currentPageLength = 0;
+    this.numberOfOsmWays = 0;
+    this.numberOfEncodedBytes = 0;
+    this.registeredInAscendingOrder = true;
+    this.sortedPositions = null;
+  }
+}
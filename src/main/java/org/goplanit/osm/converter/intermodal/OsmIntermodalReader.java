@@ -6,6 +6,7 @@ import java.util.logging.Logger;
 import org.goplanit.converter.intermodal.IntermodalReader;
 import org.goplanit.network.MacroscopicNetwork;
 import org.goplanit.network.ServiceNetwork;
+import org.goplanit.osm.converter.OsmEntityStore;
 import org.goplanit.osm.converter.network.OsmNetworkReader;
 import org.goplanit.osm.converter.network.OsmNetworkReaderFactory;
 import org.goplanit.osm.converter.network.OsmNetworkReaderSettings;
@@ -164,8 +165,12 @@ public class OsmIntermodalReader implements IntermodalReader<ServiceNetwork, Rou
       return null;
     }
             
+    /* SHARED DECODED ENTITIES (if any), decoded by the network reader since what to retain depends on its (initialised) settings */
+    OsmEntityStore sharedOsmEntities = getSettings().isShareDecodedOsmEntities() ? new OsmEntityStore() : null;
+
     /* NETWORK READER */
     OsmNetworkReader osmNetworkReader = OsmNetworkReaderFactory.create(getSettings().getNetworkSettings());
+    osmNetworkReader.setSharedOsmEntities(sharedOsmEntities, true);
     
     /* disable removing dangling subnetworks, until zoning has been parsed as well */
     boolean originalRemoveDanglingSubNetworks = osmNetworkReader.getSettings().isRemoveDanglingSubnetworks();
@@ -193,7 +198,13 @@ public class OsmIntermodalReader implements IntermodalReader<ServiceNetwork, Rou
       osmZoningReader.getSettings().setRemoveDanglingTransferZoneGroups(false);      
     }            
                
+    osmZoningReader.setSharedOsmEntities(sharedOsmEntities);
     Zoning zoning = osmZoningReader.read();
+
+    /* free memory */
+    if(sharedOsmEntities != null) {
+      sharedOsmEntities.reset();
+    }
     
     /* now remove dangling entities if indicated */
     osmNetworkReader.getSettings().setRemoveDanglingSubnetworks(originalRemoveDanglingSubNetworks);
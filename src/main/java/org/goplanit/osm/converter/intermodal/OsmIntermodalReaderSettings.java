@@ -26,6 +26,12 @@ public class OsmIntermodalReaderSettings implements ConverterReaderSettings {
   
   /** the zoning PT settings to use */
   protected final OsmPublicTransportReaderSettings zoningPtSettings;
+
+  /** flag indicating if the input source is decoded once and shared across the network and zoning readers */
+  protected boolean shareDecodedOsmEntities = DEFAULT_SHARE_DECODED_OSM_ENTITIES;
+
+  /** by default each of the network and zoning readers parses the input source itself rather than sharing (in memory) decoded entities: false */
+  public static boolean DEFAULT_SHARE_DECODED_OSM_ENTITIES = false;
   
   /**
    * Constructor
@@ -93,6 +99,28 @@ public class OsmIntermodalReaderSettings implements ConverterReaderSettings {
     zoningPtSettings.logSettings();
   }
 
+  /** Verify if the input source is decoded once and the decoded entities are shared across the network and zoning readers
+   *
+   * @return true when shared, false otherwise
+   */
+  public boolean isShareDecodedOsmEntities() {
+    return shareDecodedOsmEntities;
+  }
+
+  /** Indicate whether to decode the input source once and share the decoded entities across the network and zoning readers. This avoids
+   * parsing the input source multiple times, at the cost of retaining the relevant OSM ways (activated infrastructure and public transport infrastructure),
+   * their OSM nodes, and public transport relations in memory during parsing, so it is only advisable for inputs that comfortably fit in memory. Default is {@link #DEFAULT_SHARE_DECODED_OSM_ENTITIES}.
+   * <p>
+   *   When sharing, the network reader parses the shared entities rather than the input source, so the network reader's OSM subset cache
+   *   (see {@link OsmNetworkReaderSettings#setCacheOsmSubset(boolean)}) is not used, irrespective of its setting
+   * </p>
+   *
+   * @param shareDecodedOsmEntities when true share, otherwise each reader parses the input source itself
+   */
+  public void setShareDecodedOsmEntities(boolean shareDecodedOsmEntities) {
+    this.shareDecodedOsmEntities = shareDecodedOsmEntities;
+  }
+
   // GETTERS/SETTERS
   
   /** Provide access to the network reader settings
@@ -0,0 +1,144 @@
+package org.goplanit.osm.converter.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.goplanit.osm.tags.*;
+import org.goplanit.utils.misc.Pair;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
+
+/**
+ * Bounded cache of the resolved directional link segment types of OSM ways on a single layer. The resolution of the forward and backward link segment
+ * type only depends on the default link segment type of the way and its access relevant tags, i.e., tags on mode access, one way, lanes, cycle and bus ways,
+ * side walks, junctions, and the way type itself. Real data has relatively few distinct combinations of these, so the resolution is keyed by a canonical
+ * fingerprint of the access relevant tags and the default link segment type. Least recently used entries are evicted once the maximum size is reached.
+ * <p>
+ *   A tag is considered access relevant when any of the components of its (colon separated) key is access relevant, e.g., oneway:bicycle, or
+ *   lanes:bus:forward. This is deliberately broad, including a tag that does not affect the resolution only lowers the hit rate, not the result.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmLinkSegmentTypeResolutionCache {
+
+  /** default maximum number of cached resolutions */
+  public static final int DEFAULT_MAX_SIZE = 1 << 14;
+
+  /** key components that make a tag access relevant */
+  private static final Set<String> ACCESS_RELEVANT_KEY_COMPONENTS = new HashSet<>();
+
+  static {
+    Collections.addAll(ACCESS_RELEVANT_KEY_COMPONENTS,
+        OsmAccessTags.ACCESS, OsmOneWayTags.ONEWAY, OsmJunctionTags.JUNCTION, OsmLaneTags.LANES, OsmBicycleTags.CYCLEWAY, OsmBusWayTags.BUSWAY,
+        OsmPedestrianTags.SIDEWALK, OsmPedestrianTags.FOOTWAY, OsmDirectionTags.DIRECTION, OsmHighwayTags.getHighwayKeyTag(),
+        OsmRailwayTags.getRailwayKeyTag(), OsmWaterwayTags.ROUTE, OsmWaterwayTags.FERRY, OsmRoadModeCategoryTags.VEHICLE,
+        OsmRoadModeCategoryTags.MOTOR_VEHICLE, OsmRoadModeCategoryTags.PUBLIC_SERVICE_VEHICLE, OsmRoadModeCategoryTags.HIGH_OCCUPANCY_VEHICLE);
+    ACCESS_RELEVANT_KEY_COMPONENTS.addAll(OsmRoadModeTags.getSupportedRoadModeTags());
+    ACCESS_RELEVANT_KEY_COMPONENTS.addAll(OsmRailModeTags.getSupportedRailModeTags());
+    ACCESS_RELEVANT_KEY_COMPONENTS.addAll(OsmWaterModeTags.getSupportedWaterModeTags());
+  }
+
+  /** cached resolutions by fingerprint, in access order */
+  private final Map<String, Pair<MacroscopicLinkSegmentType, MacroscopicLinkSegmentType>> resolutionsByFingerprint;
+
+  /** reusable container of the access relevant keys of the tags being fingerprinted */
+  private final List<String> accessRelevantKeys = new ArrayList<>();
+
+  /** reusable builder of fingerprints */
+  private final StringBuilder fingerprintBuilder = new StringBuilder();
+
+  /** Verify if a key is access relevant
+   *
+   * @param key to verify
+   * @return true when any of its components is access relevant, false otherwise
+   */
+  private static boolean isAccessRelevantKey(String key) {
+    int componentStart = 0;
+    for(int index = 0; index <= key.length(); ++index) {
+      if(index == key.length() || key.charAt(index) == ':') {
+        if(index > componentStart && ACCESS_RELEVANT_KEY_COMPONENTS.contains(key.substring(componentStart, index))) {
+          return true;
+        }
+        componentStart = index + 1;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxSize maximum number of cached resolutions
+   */
+  public OsmLinkSegmentTypeResolutionCache(final int maxSize) {
+    this.resolutionsByFingerprint = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Pair<MacroscopicLinkSegmentType, MacroscopicLinkSegmentType>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /** Create the canonical fingerprint of the access relevant tags of an OSM way and its default link segment type, i.e., the access relevant tags in key order
+   *
+   * @param tags of the OSM way
+   * @param defaultLinkSegmentType of the OSM way
+   * @return fingerprint
+   */
+  public String createFingerprint(final Map<String, String> tags, final MacroscopicLinkSegmentType defaultLinkSegmentType) {
+    accessRelevantKeys.clear();
+    for(String key : tags.keySet()) {
+      if(isAccessRelevantKey(key)) {
+        accessRelevantKeys.add(key);
+      }
+    }
+    Collections.sort(accessRelevantKeys);
+
+    fingerprintBuilder.setLength(0);
+    fingerprintBuilder.append(defaultLinkSegmentType.getId());
+    for(String key : accessRelevantKeys) {
+      /* separators cannot be part of OSM tags */
+      fingerprintBuilder.append('\u0000').append(key).append('\u0001').append(tags.get(key));
+    }
+    return fingerprintBuilder.toString();
+  }
+
+  /** Collect the cached resolution for a fingerprint
+   *
+   * @param fingerprint to collect for
+   * @return forward and backward link segment type, null when not cached
+   */
+  public Pair<MacroscopicLinkSegmentType, MacroscopicLinkSegmentType> get(final String fingerprint) {
+    return resolutionsByFingerprint.get(fingerprint);
+  }
+
+  /** Register the resolution for a fingerprint
+   *
+   * @param fingerprint to register for
+   * @param linkSegmentTypes forward and backward link segment type
+   */
+  public void put(final String fingerprint, final Pair<MacroscopicLinkSegmentType, MacroscopicLinkSegmentType> linkSegmentTypes) {
+    resolutionsByFingerprint.put(fingerprint, linkSegmentTypes);
+  }
+
+  /** Number of cached resolutions
+   *
+   * @return size
+   */
+  public int size() {
+    return resolutionsByFingerprint.size();
+  }
+
+  /** Remove all cached resolutions
+   */
+  public void clear() {
+    resolutionsByFingerprint.clear();
+  }
+}
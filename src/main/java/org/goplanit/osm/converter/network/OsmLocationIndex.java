@@ -0,0 +1,359 @@
+package org.goplanit.osm.converter.network;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.goplanit.osm.util.OsmNodeUtils;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Point;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+
+/**
+ * Index of values by location, where locations are identified by their exact coordinates rather than by a JTS point. Each coordinate is keyed by its
+ * double bits (see {@link Double#doubleToLongBits(double)}) and both are hashed into an open addressing table of primitives. This avoids creating a point
+ * and hashing it via the geometry equality path for each lookup, and allows lookups directly from an OSM node, while locations match exactly as they did
+ * with point keys, i.e., nearby locations are never merged.
+ * <p>
+ *   The (first) point registered for a location is retained such that point based views remain available for compatibility.
+ *   Entries cannot be removed individually, only cleared altogether.
+ * </p>
+ *
+ * @param <V> type of value
+ * @author markr
+ */
+public class OsmLocationIndex<V> {
+
+  /** marker for unused slot, cannot be a valid key since these are the bits of -0.0, which is keyed as 0.0 instead */
+  private static final long EMPTY_SLOT = Long.MIN_VALUE;
+
+  /** initial number of slots, must be a power of two */
+  private static final int INITIAL_NUMBER_OF_SLOTS = 1 << 10;
+
+  /** maximum load factor */
+  private static final double MAX_LOAD_FACTOR = 0.6;
+
+  /** longitude (x) keys by slot */
+  private long[] slotXKeys;
+
+  /** latitude (y) keys by slot */
+  private long[] slotYKeys;
+
+  /** locations by slot */
+  private Point[] slotLocations;
+
+  /** values by slot */
+  private Object[] slotValues;
+
+  /** number of entries */
+  private int size;
+
+  /** read-only point based view */
+  private final Map<Point, V> pointView = new PointView();
+
+  /**
+   * Read only point based map view on this index
+   */
+  private class PointView extends AbstractMap<Point, V> {
+
+    @Override
+    public V get(Object key) {
+      return (key instanceof Point) ? OsmLocationIndex.this.get((Point) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (key instanceof Point) && OsmLocationIndex.this.containsKey((Point) key);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Set<Entry<Point, V>> entrySet() {
+      return new AbstractSet<>() {
+
+        @Override
+        public Iterator<Entry<Point, V>> iterator() {
+          return new Iterator<>() {
+
+            /** next slot to consider */
+            private int slot = nextUsedSlot(0);
+
+            @Override
+            public boolean hasNext() {
+              return slot < slotXKeys.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Entry<Point, V> next() {
+              if(!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              var entry = new SimpleImmutableEntry<>(slotLocations[slot], (V) slotValues[slot]);
+              slot = nextUsedSlot(slot + 1);
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+  }
+
+  /** Find the first used slot at or after the given slot
+   *
+   * @param fromSlot to start at
+   * @return used slot, number of slots when none
+   */
+  private int nextUsedSlot(int fromSlot) {
+    int slot = fromSlot;
+    while(slot < slotXKeys.length && slotXKeys[slot] == EMPTY_SLOT) {
+      ++slot;
+    }
+    return slot;
+  }
+
+  /** Create the key of a coordinate, equal for coordinates that are equal (-0.0 and 0.0 included)
+   *
+   * @param coordinate to create key for
+   * @return key
+   */
+  private static long createKey(double coordinate) {
+    /* adding 0.0 maps -0.0 to 0.0 */
+    return Double.doubleToLongBits(coordinate + 0.0);
+  }
+
+  /** Hash the keys to a slot
+   *
+   * @param xKey to hash
+   * @param yKey to hash
+   * @param mask to apply (number of slots -1)
+   * @return slot
+   */
+  private static int hashToSlot(long xKey, long yKey, int mask) {
+    /* combine, followed by the finaliser of murmur3, spreads nearby locations evenly */
+    long h = xKey * 0x9e3779b97f4a7c15L + yKey;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h & mask;
+  }
+
+  /** Find the slot of the keys, or the empty slot where they would be inserted
+   *
+   * @param xKey to find
+   * @param yKey to find
+   * @return slot
+   */
+  private int findSlot(long xKey, long yKey) {
+    int mask = slotXKeys.length - 1;
+    int slot = hashToSlot(xKey, yKey, mask);
+    long slotXKey;
+    while((slotXKey = slotXKeys[slot]) != EMPTY_SLOT && (slotXKey != xKey || slotYKeys[slot] != yKey)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /** Find the slot of the location, or the empty slot where it would be inserted
+   *
+   * @param x longitude
+   * @param y latitude
+   * @return slot
+   */
+  private int findSlot(double x, double y) {
+    return findSlot(createKey(x), createKey(y));
+  }
+
+  /** Double the number of slots
+   */
+  private void grow() {
+    long[] oldSlotXKeys = slotXKeys;
+    long[] oldSlotYKeys = slotYKeys;
+    Point[] oldSlotLocations = slotLocations;
+    Object[] oldSlotValues = slotValues;
+    allocate(oldSlotXKeys.length << 1);
+    for(int oldSlot = 0; oldSlot < oldSlotXKeys.length; ++oldSlot) {
+      if(oldSlotXKeys[oldSlot] != EMPTY_SLOT) {
+        int slot = findSlot(oldSlotXKeys[oldSlot], oldSlotYKeys[oldSlot]);
+        slotXKeys[slot] = oldSlotXKeys[oldSlot];
+        slotYKeys[slot] = oldSlotYKeys[oldSlot];
+        slotLocations[slot] = oldSlotLocations[oldSlot];
+        slotValues[slot] = oldSlotValues[oldSlot];
+      }
+    }
+  }
+
+  /** Allocate empty slots
+   *
+   * @param numberOfSlots to allocate
+   */
+  private void allocate(int numberOfSlots) {
+    slotXKeys = new long[numberOfSlots];
+    Arrays.fill(slotXKeys, EMPTY_SLOT);
+    slotYKeys = new long[numberOfSlots];
+    slotLocations = new Point[numberOfSlots];
+    slotValues = new Object[numberOfSlots];
+  }
+
+  /**
+   * Constructor
+   */
+  public OsmLocationIndex() {
+    clear();
+  }
+
+  /** Collect value for the location
+   *
+   * @param x longitude
+   * @param y latitude
+   * @return value, null when absent
+   */
+  @SuppressWarnings("unchecked")
+  public V get(double x, double y) {
+    int slot = findSlot(x, y);
+    return slotXKeys[slot] == EMPTY_SLOT ? null : (V) slotValues[slot];
+  }
+
+  /** Collect value for the location of the OSM node
+   *
+   * @param osmNode to collect for
+   * @return value, null when absent
+   */
+  public V get(OsmNode osmNode) {
+    return get(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+  }
+
+  /** Collect value for the location
+   *
+   * @param location to collect for
+   * @return value, null when absent
+   */
+  public V get(Point location) {
+    Coordinate coordinate = location.getCoordinate();
+    return get(coordinate.x, coordinate.y);
+  }
+
+  /** Collect the registered point for the location
+   *
+   * @param x longitude
+   * @param y latitude
+   * @return point, null when absent
+   */
+  public Point getLocation(double x, double y) {
+    int slot = findSlot(x, y);
+    return slotXKeys[slot] == EMPTY_SLOT ? null : slotLocations[slot];
+  }
+
+  /** Verify if location is present
+   *
+   * @param x longitude
+   * @param y latitude
+   * @return true when present, false otherwise
+   */
+  public boolean containsKey(double x, double y) {
+    return slotXKeys[findSlot(x, y)] != EMPTY_SLOT;
+  }
+
+  /** Verify if location of the OSM node is present
+   *
+   * @param osmNode to verify
+   * @return true when present, false otherwise
+   */
+  public boolean containsKey(OsmNode osmNode) {
+    return containsKey(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+  }
+
+  /** Verify if location is present
+   *
+   * @param location to verify
+   * @return true when present, false otherwise
+   */
+  public boolean containsKey(Point location) {
+    Coordinate coordinate = location.getCoordinate();
+    return containsKey(coordinate.x, coordinate.y);
+  }
+
+  /** Register value for the location, replacing the existing value (if any). The point is only registered when the location is not yet present
+   *
+   * @param x longitude
+   * @param y latitude
+   * @param location point of the location
+   * @param value to register
+   * @return previous value, null if none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(double x, double y, Point location, V value) {
+    long xKey = createKey(x);
+    long yKey = createKey(y);
+    int slot = findSlot(xKey, yKey);
+    if(slotXKeys[slot] != EMPTY_SLOT) {
+      V previous = (V) slotValues[slot];
+      slotValues[slot] = value;
+      return previous;
+    }
+
+    if(size + 1 > slotXKeys.length * MAX_LOAD_FACTOR) {
+      grow();
+      slot = findSlot(xKey, yKey);
+    }
+    slotXKeys[slot] = xKey;
+    slotYKeys[slot] = yKey;
+    slotLocations[slot] = location;
+    slotValues[slot] = value;
+    ++size;
+    return null;
+  }
+
+  /** Register value for the location, replacing the existing value (if any)
+   *
+   * @param location to register
+   * @param value to register
+   * @return previous value, null if none
+   */
+  public V put(Point location, V value) {
+    Coordinate coordinate = location.getCoordinate();
+    return put(coordinate.x, coordinate.y, location, value);
+  }
+
+  /** Number of registered locations
+   *
+   * @return number of locations
+   */
+  public int size() {
+    return size;
+  }
+
+  /** Read only point based map view of this index
+   *
+   * @return map view
+   */
+  public Map<Point, V> asMap() {
+    return pointView;
+  }
+
+  /**
+   * Remove all entries
+   */
+  public void clear() {
+    allocate(INITIAL_NUMBER_OF_SLOTS);
+    size = 0;
+  }
+}
@@ -1,15 +1,19 @@
 package org.goplanit.osm.converter.network;
 
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 
+import org.goplanit.osm.converter.OsmEntityTypeAwareHandler;
 import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
 import org.goplanit.osm.tags.*;
+import org.goplanit.osm.util.OsmTagView;
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import de.topobyte.osm4j.core.access.DefaultOsmHandler;
+import de.topobyte.osm4j.core.model.iface.EntityType;
 import de.topobyte.osm4j.core.model.iface.OsmWay;
-import de.topobyte.osm4j.core.model.util.OsmModelUtil;
 
 /**
  * Base handler for networks with common functionality. Requires derived hanlder for concrete implementation.
@@ -18,7 +22,7 @@ import de.topobyte.osm4j.core.model.util.OsmModelUtil;
  * 
  *
  */
-public abstract class OsmNetworkBaseHandler extends DefaultOsmHandler {
+public abstract class OsmNetworkBaseHandler extends DefaultOsmHandler implements OsmEntityTypeAwareHandler {
 
   /**
    * The logger for this class
@@ -33,6 +37,26 @@ public abstract class OsmNetworkBaseHandler extends DefaultOsmHandler {
   
   /** the settings to adhere to */
   private final OsmNetworkReaderSettings settings;  
+
+  /** reusable view on the tags of the OSM entity being handled, avoids creating a map for each entity that is rejected */
+  private final OsmTagView tagView = new OsmTagView();
+
+  /** OSM way most recently classified */
+  private OsmWay classifiedOsmWay = null;
+
+  /** activated type of the OSM way most recently classified, null if none */
+  private OsmWayClassifier.OsmWayType classifiedOsmWayType = null;
+
+  /** Collect the classifier of OSM ways, compiling it when the network data has not been initialised with one (e.g., when handlers are used directly)
+   *
+   * @return classifier
+   */
+  private OsmWayClassifier getOsmWayClassifier() {
+    if(networkData.getOsmWayClassifier() == null) {
+      networkData.setOsmWayClassifier(new OsmWayClassifier(settings, networkToPopulate));
+    }
+    return networkData.getOsmWayClassifier();
+  }
   
   /**
    * Constructor
@@ -55,17 +79,31 @@ public abstract class OsmNetworkBaseHandler extends DefaultOsmHandler {
    * @return true when activated and highway or railway (not an area), false otherwise
    */
   protected boolean isActivatedRoadRailOrWaterwayBasedInfrastructure(Map<String, String> tags) {
-    
-    if(!OsmTags.isArea(tags)) {
-      if(settings.isHighwayParserActive() && OsmHighwayTags.hasHighwayKeyTag(tags)) {
-        return settings.getHighwaySettings().isOsmHighwayTypeActivated(tags.get(OsmHighwayTags.getHighwayKeyTag()));
-      }else if(settings.isRailwayParserActive() && OsmRailwayTags.hasRailwayKeyTag(tags)) {
-        return settings.getRailwaySettings().isOsmRailwayTypeActivated(tags.get(OsmRailwayTags.getRailwayKeyTag()));
-      }else if(settings.isWaterwayParserActive() && OsmWaterwayTags.isWaterBasedWay(tags)) {
-        return settings.getWaterwaySettings().isOsmWaterwayTypeActivated(tags.get(OsmWaterwayTags.getUsedKeyTag(tags)));
-      }
+    return getOsmWayClassifier().classify(tags) != null;
+  }
+
+  /** Classify an OSM way into its activated type, the result is retained such that subsequent classification of the same OSM way (e.g. to collect its
+   * default link segment types after verifying its eligibility) does not require classifying it again
+   *
+   * @param osmWay to classify
+   * @param tags of the OSM way
+   * @return activated type, null if OSM way is not of an activated type
+   */
+  protected OsmWayClassifier.OsmWayType classifyOsmWay(OsmWay osmWay, Map<String, String> tags) {
+    if(osmWay != classifiedOsmWay || osmWay.getId() != classifiedOsmWay.getId()) {
+      classifiedOsmWayType = getOsmWayClassifier().classify(tags);
+      classifiedOsmWay = osmWay;
     }
-    return false;
+    return classifiedOsmWayType;
+  }
+
+  /** Collect the key that determines the type of an OSM way, see {@link OsmWayClassifier#getOsmWayKey(Map)}
+   *
+   * @param tags of the OSM way
+   * @return key, null when OSM way is an area or no active parser applies
+   */
+  protected String getOsmWayKey(Map<String, String> tags) {
+    return getOsmWayClassifier().getOsmWayKey(tags);
   }
 
 
@@ -78,12 +116,12 @@ public abstract class OsmNetworkBaseHandler extends DefaultOsmHandler {
         
     if(!settings.isOsmWayExcluded(osmWay.getId())) {
       
-      Map<String, String> tags = OsmModelUtil.getTagsAsMap(osmWay);          
+      Map<String, String> tags = tagView.wrap(osmWay);
       try {                      
         
-        /* only parse ways that are potentially road/rail/ferry infrastructure */
-        if(isActivatedRoadRailOrWaterwayBasedInfrastructure(tags)) {
-          osmWayConsumer.accept(osmWay, tags);
+        /* only parse ways that are potentially road/rail/ferry infrastructure, consumer may retain tags, so provide a copy */
+        if(classifyOsmWay(osmWay, tags) != null) {
+          osmWayConsumer.accept(osmWay, tagView.copy());
         }
         
       } catch (PlanItRunTimeException e) {
@@ -94,6 +132,24 @@ public abstract class OsmNetworkBaseHandler extends DefaultOsmHandler {
   }
  
 
+  /**
+   * {@inheritDoc}
+   *
+   * Network handlers never consume OSM relations
+   */
+  @Override
+  public Set<EntityType> getConsumedEntityTypes() {
+    return EnumSet.of(EntityType.Node, EntityType.Way);
+  }
+
+  /** Reusable view on the tags of an OSM entity, only to be used for verifying the tags of the entity being handled, see {@link OsmTagView}
+   *
+   * @return tag view
+   */
+  protected OsmTagView getTagView() {
+    return tagView;
+  }
+
   protected OsmNetworkReaderSettings getSettings() {
     return settings;
   }
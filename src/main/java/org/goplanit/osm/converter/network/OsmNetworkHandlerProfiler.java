@@ -35,6 +35,12 @@ public class OsmNetworkHandlerProfiler {
   
   /** track how many osmways have no lane defined */
   private LongAdder missingLaneCounter = new LongAdder();  
+  
+  /** track how many directional link segment type resolutions were served from cache */
+  private LongAdder linkSegmentTypeResolutionCacheHitCounter = new LongAdder();
+  
+  /** track how many directional link segment type resolutions were not served from cache */
+  private LongAdder linkSegmentTypeResolutionCacheMissCounter = new LongAdder();
     
   /**
    * for logging we log each x number of entities parsed, this is done smartly to minimise number of lines
@@ -90,6 +96,12 @@ public class OsmNetworkHandlerProfiler {
     double percentageDefaultLanes = 100*(missingLaneCounter.longValue()/totalCount);
     LOGGER.info(String.format("%s [STATS] Applied default speed limits to %.1f%% of link(segments) -  %.1f%% explicitly set", NetworkLayer.createLayerLogPrefix(networkLayer), percentageDefaultspeedLimits, 100-percentageDefaultspeedLimits));
     LOGGER.info(String.format("%s [STATS] Applied default lane numbers to %.1f%% of link(segments) -  %.1f%% explicitly set", NetworkLayer.createLayerLogPrefix(networkLayer), percentageDefaultLanes, 100-percentageDefaultLanes));
+
+    long resolutionCount = linkSegmentTypeResolutionCacheHitCounter.longValue() + linkSegmentTypeResolutionCacheMissCounter.longValue();
+    if(resolutionCount > 0) {
+      LOGGER.info(String.format("%s [STATS] Resolved %d directional link segment types, %.1f%% served from cache", NetworkLayer.createLayerLogPrefix(networkLayer),
+          resolutionCount, (100.0*linkSegmentTypeResolutionCacheHitCounter.longValue())/resolutionCount));
+    }
   }
 
   /**
@@ -154,4 +166,27 @@ public class OsmNetworkHandlerProfiler {
     missingLaneCounter.increment();    
   }
 
+  /**
+   * increment counter for directional link segment type resolutions served from cache
+   */
+  public void incrementLinkSegmentTypeResolutionCacheHitCounter() {
+    linkSegmentTypeResolutionCacheHitCounter.increment();
+  }
+
+  /**
+   * increment counter for directional link segment type resolutions not served from cache
+   */
+  public void incrementLinkSegmentTypeResolutionCacheMissCounter() {
+    linkSegmentTypeResolutionCacheMissCounter.increment();
+  }
+
+  /** Collect hit rate of the directional link segment type resolution cache
+   *
+   * @return fraction of resolutions served from cache, 0 when no resolutions took place
+   */
+  public double getLinkSegmentTypeResolutionCacheHitRate() {
+    long resolutionCount = linkSegmentTypeResolutionCacheHitCounter.longValue() + linkSegmentTypeResolutionCacheMissCounter.longValue();
+    return resolutionCount == 0 ? 0 : linkSegmentTypeResolutionCacheHitCounter.longValue() / (double) resolutionCount;
+  }
+
 }
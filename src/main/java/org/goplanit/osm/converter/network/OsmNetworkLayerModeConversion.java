@@ -12,6 +12,7 @@ import org.goplanit.osm.tags.*;
 import org.goplanit.osm.util.OsmModeUtils;
 import org.goplanit.osm.util.OsmTagUtils;
 import org.goplanit.osm.util.OsmWayUtils;
+import org.goplanit.osm.util.PlanitModeSet;
 import org.goplanit.utils.locale.DrivingDirectionDefaultByCountry;
 import org.goplanit.utils.mode.Mode;
 import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
@@ -32,6 +33,9 @@ public class OsmNetworkLayerModeConversion extends OsmModeConversionBase {
   
   /** helper class to deal with parsing tags under the modeLanes tagging scheme for eligible modes */
   private OsmModeLanesTaggingSchemeHelper modeLanesSchemeHelper = null;  
+  
+  /** compact representation of the modes supported by the layer */
+  private final PlanitModeSet supportedModeSet;
 
   /** All modes that are explicitly made (un)available in a particular direction (without any further details are identified via this method, e.g. bus:forward=yes
    * @param tags to verify
@@ -377,6 +381,7 @@ public class OsmNetworkLayerModeConversion extends OsmModeConversionBase {
     super(settings, networkLayer.getSupportedModes());
     
     this.networkLayer = networkLayer;
+    this.supportedModeSet = PlanitModeSet.of(networkLayer.getSupportedModes());
     
     /* initialise the tagging scheme helpers based on the registered modes */
     if(OsmLanesModeTaggingSchemeHelper.requireLanesModeSchemeHelper(settings, networkLayer)) {
@@ -502,7 +507,7 @@ public class OsmNetworkLayerModeConversion extends OsmModeConversionBase {
    */
   public void updateAccessKeyBasedModeRestrictions(final Map<String, String> tags, final Set<Mode> includedModesToUpdate, final Set<Mode> excludedModesToUpdate) {
     
-    String accessValue = tags.get(OsmAccessTags.ACCESS).replaceAll(OsmTagUtils.VALUETAG_SPECIALCHAR_STRIP_REGEX, "");
+    String accessValue = OsmTagUtils.normaliseValueTag(tags.get(OsmAccessTags.ACCESS));
     
     /* access=<positive>*/
     if(OsmTagUtils.matchesAnyValueTag(accessValue, OsmAccessTags.getPositiveAccessValueTags())) {
@@ -543,4 +548,12 @@ public class OsmNetworkLayerModeConversion extends OsmModeConversionBase {
     
   }      
   
+  /** Collect the modes supported by the layer as compact mode set
+   * 
+   * @return supported modes
+   */
+  public PlanitModeSet getSupportedModeSet() {
+    return supportedModeSet;
+  }
+  
 }
@@ -9,10 +9,10 @@ import org.goplanit.graph.directed.modifier.event.handler.SyncXmlIdToIdBreakEdge
 import org.goplanit.network.layer.macroscopic.AccessGroupPropertiesFactory;
 import org.goplanit.osm.physical.network.macroscopic.ModifiedLinkSegmentTypes;
 import org.goplanit.osm.tags.*;
+import org.goplanit.osm.util.OsmNumericTagValueParser;
 import org.goplanit.osm.util.OsmWayUtils;
+import org.goplanit.osm.util.PlanitModeSet;
 import org.goplanit.osm.util.PlanitNetworkLayerUtils;
-import org.goplanit.osm.util.PlanitOsmUtils;
-import org.goplanit.utils.arrays.ArrayUtils;
 import org.goplanit.utils.exceptions.PlanItException;
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.geo.PlanitJtsCrsUtils;
@@ -52,6 +52,13 @@ public class OsmNetworkLayerParser {
   /** track all modified link segment types compared to the original defaults used in OSM, for efficient updates of the PLANit link segment types while parsing */
   private final ModifiedLinkSegmentTypes modifiedLinkSegmentTypes = new ModifiedLinkSegmentTypes();  
   
+  /** compact allowed modes by link segment type, the allowed modes of a type do not change once it is used for resolving OSM ways */
+  private final Map<MacroscopicLinkSegmentType, PlanitModeSet> allowedModeSetsByLinkSegmentType = new HashMap<>();
+  
+  /** memoized directional link segment types by fingerprint of the access relevant tags of OSM ways, since few distinct combinations exist in practice,
+   * null when deactivated */
+  private final OsmLinkSegmentTypeResolutionCache linkSegmentTypeResolutionCache;
+  
   // references
   
   /** reference to network wide tracked network reader data */
@@ -88,6 +95,15 @@ public class OsmNetworkLayerParser {
     networkLayer.getLayerModifier().addListener(syncXmlIdToIdOnBreakLinkSegment);
   }
 
+  /** Collect the allowed modes of a link segment type as compact mode set
+   * 
+   * @param linkSegmentType to collect for
+   * @return allowed modes
+   */
+  private PlanitModeSet getAllowedModeSet(MacroscopicLinkSegmentType linkSegmentType) {
+    return allowedModeSetsByLinkSegmentType.computeIfAbsent(linkSegmentType, type -> PlanitModeSet.of(type.getAllowedModes()));
+  }
+
   /** Check if geometry is near network bounding box
    * 
    * @param geometry to check
@@ -101,26 +117,29 @@ public class OsmNetworkLayerParser {
   /** update the passed in existing link segment type based on proposed changes in added and/or removed modes (if any) and possible changes to the default speeds based on
    * the available tags. The updated link segment type is returned, which in turn is registered properly on the network if it is indeed changed from the passed in existing one
    * 
-   * @param toBeAddedModes modes to add
-   * @param toBeRemovedModes modes to remove
+   * @param toBeAddedModeSet modes to add
+   * @param toBeRemovedModeSet modes to remove
    * @param tags to extract speed limit information from
    * @param linkSegmentType existing link segment type deemed appropriate
    * @return updated link segment type, which if different is not a modification of the existing one but a unique copy with the required changes that is considered a modification of the original, 
    * yet its own unique new type
    */
   private MacroscopicLinkSegmentType updateExistingLinkSegmentType(
-      final Set<Mode> toBeAddedModes, final Set<Mode> toBeRemovedModes, Map<String, String> tags, MacroscopicLinkSegmentType linkSegmentType){
+      final PlanitModeSet toBeAddedModeSet, final PlanitModeSet toBeRemovedModeSet, Map<String, String> tags, MacroscopicLinkSegmentType linkSegmentType){
     
-    if(toBeAddedModes.isEmpty() && toBeRemovedModes.isEmpty()) {
+    if(toBeAddedModeSet.isEmpty() && toBeRemovedModeSet.isEmpty()) {
       return linkSegmentType;
     }
 
-    if(linkSegmentType.getAllowedModes().size() + toBeAddedModes.size() - toBeRemovedModes.size() <= 0){
+    if(getAllowedModeSet(linkSegmentType).size() + toBeAddedModeSet.size() - toBeRemovedModeSet.size() <= 0){
       return linkSegmentType;
     }
 
-    MacroscopicLinkSegmentType finalLinkSegmentType = modifiedLinkSegmentTypes.getModifiedLinkSegmentType(linkSegmentType, toBeAddedModes, toBeRemovedModes);
+    MacroscopicLinkSegmentType finalLinkSegmentType = modifiedLinkSegmentTypes.getModifiedLinkSegmentType(linkSegmentType, toBeAddedModeSet, toBeRemovedModeSet);
     if(finalLinkSegmentType==null) {
+      /* only now the actual modes are required, all of which are supported by the layer */
+      final Set<Mode> toBeAddedModes = toBeAddedModeSet.toSet(networkLayer.getSupportedModes());
+      final Set<Mode> toBeRemovedModes = toBeRemovedModeSet.toSet(networkLayer.getSupportedModes());
 
       /* even though the segment type is modified, the modified version does not yet exist on the PLANit network, so create it */
       finalLinkSegmentType = networkLayer.getLinkSegmentTypes().getFactory().createUniqueDeepCopyOf(linkSegmentType);
@@ -159,7 +178,7 @@ public class OsmNetworkLayerParser {
       }
 
       /* register modification */
-      modifiedLinkSegmentTypes.addModifiedLinkSegmentType(linkSegmentType, finalLinkSegmentType, toBeAddedModes, toBeRemovedModes);
+      modifiedLinkSegmentTypes.addModifiedLinkSegmentType(linkSegmentType, finalLinkSegmentType, toBeAddedModeSet, toBeRemovedModeSet);
     }
     
     return finalLinkSegmentType;
@@ -290,8 +309,9 @@ public class OsmNetworkLayerParser {
   private MacroscopicLinkSegmentType extractDirectionalLinkSegmentTypeByOsmWay(
       OsmWay osmWay, Map<String, String> tags, MacroscopicLinkSegmentType linkSegmentType, boolean forwardDirection){
 
-    Set<Mode> toBeAddedModes = null;
-    Set<Mode> toBeRemovedModes = null;
+    PlanitModeSet toBeAddedModes = null;
+    PlanitModeSet toBeRemovedModes = null;
+    final PlanitModeSet allowedModes = getAllowedModeSet(linkSegmentType);
     
     /* check if modes are overwritten by user settings directly */
     if(settings.isModeAccessOverwrittenByOsmWayId(osmWay.getId())) {
@@ -303,8 +323,9 @@ public class OsmNetworkLayerParser {
         allowedPlanitModes.retainAll(networkLayer.getSupportedModes().stream().filter(m -> m.isPredefinedModeType()).collect(Collectors.toList()));
       }
 
-      toBeAddedModes = linkSegmentType.getDisallowedModesFrom(allowedPlanitModes);
-      toBeRemovedModes = linkSegmentType.getAllowedModesNotIn(allowedPlanitModes);
+      var allowedPlanitModeSet = PlanitModeSet.of(allowedPlanitModes);
+      toBeAddedModes = allowedPlanitModeSet.difference(allowedModes);
+      toBeRemovedModes = allowedModes.difference(allowedPlanitModeSet);
       
     }else {
       /*regular approach based on available tags */
@@ -326,13 +347,11 @@ public class OsmNetworkLayerParser {
       }
       
       /* reduce included modes to only the modes supported by the layer the link segment type resides on*/
-      if(!includedModes.isEmpty()) {
-        includedModes.retainAll(networkLayer.getSupportedModes());
-      }
+      var includedModeSet = PlanitModeSet.of(includedModes).intersection(modeParser.getSupportedModeSet());
       
       /* identify differences with default link segment type in terms of mode access */
-      toBeAddedModes = linkSegmentType.getDisallowedModesFrom(includedModes);
-      toBeRemovedModes = linkSegmentType.getAllowedModesFrom(excludedModes);        
+      toBeAddedModes = includedModeSet.difference(allowedModes);
+      toBeRemovedModes = allowedModes.intersection(PlanitModeSet.of(excludedModes));        
     }
 
     /* use the identified changes to the modes to update the link segment type (and register it if needed) */
@@ -351,7 +370,7 @@ public class OsmNetworkLayerParser {
    * @throws PlanItException throw if error
    */
   private LineString extractPartialLinkGeometry(OsmWay osmWay, int startNodeIndex, int endNodeIndex) throws PlanItException {
-    LineString lineString = OsmWayUtils.extractLineStringNoThrow(osmWay, startNodeIndex, endNodeIndex, networkData.getOsmNodeData().getRegisteredOsmNodes());
+    LineString lineString = OsmWayUtils.extractLineStringNoThrow(osmWay, startNodeIndex, endNodeIndex, networkData.getOsmNodeData());
     lineString = PlanitJtsUtils.createCopyWithoutAdjacentDuplicateCoordinates(lineString);
     
     return lineString;
@@ -369,50 +388,47 @@ public class OsmNetworkLayerParser {
     Double nonDirectionalSpeedLimitKmh = null;
     boolean useNonDirectionalDefault = false;
     
-    try {
-      /* (lane specific) backward or forward speed limits */
-      if(tags.containsKey(OsmSpeedTags.MAX_SPEED_BACKWARD)|| tags.containsKey(OsmSpeedTags.MAX_SPEED_BACKWARD_LANES)) {
-        /* check for backward speed limit */
-        if(tags.containsKey(OsmSpeedTags.MAX_SPEED_BACKWARD)) {
-          speedLimitBackwardKmh = PlanitOsmUtils.parseMaxSpeedValueKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_BACKWARD));        
-        }
-        /* check for backward speed limit per lane */
-        if(tags.containsKey(OsmSpeedTags.MAX_SPEED_BACKWARD_LANES)) {
-          double[] maxSpeedLimitLanes = PlanitOsmUtils.parseMaxSpeedValueLanesKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_BACKWARD_LANES)); 
-          speedLimitBackwardKmh = ArrayUtils.getMaximum(maxSpeedLimitLanes);           
-        }
-      }
-      if( tags.containsKey(OsmSpeedTags.MAX_SPEED_FORWARD) || tags.containsKey(OsmSpeedTags.MAX_SPEED_FORWARD_LANES)){
-        /* check for forward speed limit */
-        if(tags.containsKey(OsmSpeedTags.MAX_SPEED_FORWARD)) {
-          speedLimitForwardKmh = PlanitOsmUtils.parseMaxSpeedValueKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_FORWARD));  
-        }
-        /* check for forward speed limit per lane */
-        if(tags.containsKey(OsmSpeedTags.MAX_SPEED_FORWARD_LANES)) {
-          double[] maxSpeedLimitLanes = PlanitOsmUtils.parseMaxSpeedValueLanesKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_FORWARD_LANES)); 
-          speedLimitForwardKmh = ArrayUtils.getMaximum(maxSpeedLimitLanes);   
-        }
+    /* (lane specific) backward or forward speed limits, per lane PLANit does not support lane specific speeds at the moment, maximum speed across lanes is selected */
+    String invalidSpeedLimitKey = null;
+    if(tags.containsKey(OsmSpeedTags.MAX_SPEED_BACKWARD_LANES)) {
+      speedLimitBackwardKmh = OsmNumericTagValueParser.parseMaxSpeedLanesMaximumKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_BACKWARD_LANES));
+      invalidSpeedLimitKey = OsmNumericTagValueParser.isValid(speedLimitBackwardKmh) ? null : OsmSpeedTags.MAX_SPEED_BACKWARD_LANES;
+    }else if(tags.containsKey(OsmSpeedTags.MAX_SPEED_BACKWARD)) {
+      speedLimitBackwardKmh = OsmNumericTagValueParser.parseMaxSpeedKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_BACKWARD));
+      invalidSpeedLimitKey = OsmNumericTagValueParser.isValid(speedLimitBackwardKmh) ? null : OsmSpeedTags.MAX_SPEED_BACKWARD;
+    }
+    if(invalidSpeedLimitKey == null) {
+      if(tags.containsKey(OsmSpeedTags.MAX_SPEED_FORWARD_LANES)) {
+        speedLimitForwardKmh = OsmNumericTagValueParser.parseMaxSpeedLanesMaximumKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_FORWARD_LANES));
+        invalidSpeedLimitKey = OsmNumericTagValueParser.isValid(speedLimitForwardKmh) ? null : OsmSpeedTags.MAX_SPEED_FORWARD_LANES;
+      }else if(tags.containsKey(OsmSpeedTags.MAX_SPEED_FORWARD)) {
+        speedLimitForwardKmh = OsmNumericTagValueParser.parseMaxSpeedKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_FORWARD));
+        invalidSpeedLimitKey = OsmNumericTagValueParser.isValid(speedLimitForwardKmh) ? null : OsmSpeedTags.MAX_SPEED_FORWARD;
       }
+    }
       
-      /* if any of the two are not yet found, find general speed limit information not tied to direction */
-      if(speedLimitBackwardKmh==null || speedLimitForwardKmh==null) {
-        if(tags.containsKey(OsmSpeedTags.MAX_SPEED)) {
-          /* regular speed limit for all available directions and across all modes */
-          nonDirectionalSpeedLimitKmh = PlanitOsmUtils.parseMaxSpeedValueKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED));
-        }else if(tags.containsKey(OsmSpeedTags.MAX_SPEED_LANES)) {
-          /* check for lane specific speed limit */
-          double[] maxSpeedLimitLanes = PlanitOsmUtils.parseMaxSpeedValueLanesKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_LANES));
-          /* Note: PLANit does not support lane specific speeds at the moment, maximum speed across lanes is selected */      
-          nonDirectionalSpeedLimitKmh = ArrayUtils.getMaximum(maxSpeedLimitLanes);
-        }else { 
-          /* no speed limit information, revert to defaults */
-          useNonDirectionalDefault = true;
-        }        
-      }
-    }catch(PlanItException e) {
-      LOGGER.warning(e.getMessage());
+    /* if any of the two are not yet found, find general speed limit information not tied to direction */
+    if(invalidSpeedLimitKey == null && (speedLimitBackwardKmh==null || speedLimitForwardKmh==null)) {
+      if(tags.containsKey(OsmSpeedTags.MAX_SPEED)) {
+        /* regular speed limit for all available directions and across all modes */
+        nonDirectionalSpeedLimitKmh = OsmNumericTagValueParser.parseMaxSpeedKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED));
+        invalidSpeedLimitKey = OsmNumericTagValueParser.isValid(nonDirectionalSpeedLimitKmh) ? null : OsmSpeedTags.MAX_SPEED;
+      }else if(tags.containsKey(OsmSpeedTags.MAX_SPEED_LANES)) {
+        /* check for lane specific speed limit */
+        nonDirectionalSpeedLimitKmh = OsmNumericTagValueParser.parseMaxSpeedLanesMaximumKmPerHour(tags.get(OsmSpeedTags.MAX_SPEED_LANES));
+        invalidSpeedLimitKey = OsmNumericTagValueParser.isValid(nonDirectionalSpeedLimitKmh) ? null : OsmSpeedTags.MAX_SPEED_LANES;
+      }else { 
+        /* no speed limit information, revert to defaults */
+        useNonDirectionalDefault = true;
+      }        
+    }
+    
+    if(invalidSpeedLimitKey != null) {
+      LOGGER.warning(String.format("invalid value string encountered for %s: %s",invalidSpeedLimitKey, tags.get(invalidSpeedLimitKey)));
       // something went wrong revert to defaults
       LOGGER.info(String.format("Reverting to default speed limit for OSM way (id:%s)",link.getExternalId()));
+      speedLimitForwardKmh = (speedLimitForwardKmh != null && OsmNumericTagValueParser.isValid(speedLimitForwardKmh)) ? speedLimitForwardKmh : null;
+      speedLimitBackwardKmh = (speedLimitBackwardKmh != null && OsmNumericTagValueParser.isValid(speedLimitBackwardKmh)) ? speedLimitBackwardKmh : null;
       useNonDirectionalDefault = true;
     }
     
@@ -438,7 +454,7 @@ public class OsmNetworkLayerParser {
    * parse the number of lanes on the road based on provided tags in forward and backward direction (if explicitly set), when not available defaults are used
    *
    * @param tags containing lane information
-   * @return forward backwards lanes, null if not defined
+   * @return forward backwards lanes, null if malformed
    */
   private Pair<Integer, Integer> extractDirectionalHighwayLanes(Map<String, String> tags) {
     Integer totalLanes = null;
@@ -446,13 +462,20 @@ public class OsmNetworkLayerParser {
     Integer lanesBackward = null;
 
     if(tags.containsKey(OsmLaneTags.LANES)) {
-      totalLanes = Integer.parseInt(tags.get(OsmLaneTags.LANES));
+      totalLanes = OsmNumericTagValueParser.parseInteger(tags.get(OsmLaneTags.LANES));
     }
     if(tags.containsKey(OsmLaneTags.LANES_FORWARD)) {
-      lanesForward = Integer.parseInt(tags.get(OsmLaneTags.LANES_FORWARD));
+      lanesForward = OsmNumericTagValueParser.parseInteger(tags.get(OsmLaneTags.LANES_FORWARD));
     }
     if(tags.containsKey(OsmLaneTags.LANES_BACKWARD)) {
-      lanesBackward = Integer.parseInt(tags.get(OsmLaneTags.LANES_BACKWARD));
+      lanesBackward = OsmNumericTagValueParser.parseInteger(tags.get(OsmLaneTags.LANES_BACKWARD));
+    }
+    
+    /* any malformed lane information renders all of it unreliable */
+    if((totalLanes != null && !OsmNumericTagValueParser.isValid(totalLanes)) || 
+        (lanesForward != null && !OsmNumericTagValueParser.isValid(lanesForward)) || 
+        (lanesBackward != null && !OsmNumericTagValueParser.isValid(lanesBackward))) {
+      return null;
     }
 
     /* one way exceptions or implicit directional lanes */
@@ -477,14 +500,19 @@ public class OsmNetworkLayerParser {
    * parse the number of lanes on the rail based on provided tags in forward and backward direction (if explicitly set), when not available defaults are used
    *
    * @param tags containing lane information
-   * @return forward backwards lanes, null if not defined
+   * @return forward backwards lanes, null if malformed
    */
   private Pair<Integer, Integer> extractDirectionalRailwayLanes(Map<String, String> tags) {
     Integer lanesForward = null;
     Integer lanesBackward = null;
     if(tags.containsKey(OsmRailFeatureTags.TRACKS)) {
       /* assumption is that same rail is used in both directions */
-      lanesForward = Integer.parseInt(tags.get(OsmRailFeatureTags.TRACKS));
+      int tracks = OsmNumericTagValueParser.parseInteger(tags.get(OsmRailFeatureTags.TRACKS));
+      if(!OsmNumericTagValueParser.isValid(tracks)) {
+        /* malformed track information */
+        return null;
+      }
+      lanesForward = tracks;
       lanesBackward = lanesForward;
     }
     return Pair.of(lanesForward, lanesBackward);
@@ -516,21 +544,23 @@ public class OsmNetworkLayerParser {
 
     Pair<Integer, Integer> result = null;
     String osmWayKey = null;
-    try {
-      /* collect total and direction specific road based lane information */
-      if(tags.containsKey(OsmHighwayTags.getHighwayKeyTag())) {
-        osmWayKey = OsmHighwayTags.getHighwayKeyTag();
-        result = extractDirectionalHighwayLanes(tags);
-
-      /* convert number of tracks to lanes */
-      }else if(tags.containsKey(OsmRailwayTags.getRailwayKeyTag())) {
-        osmWayKey = OsmRailwayTags.getRailwayKeyTag();
-        result =  extractDirectionalRailwayLanes(tags);
-      }else if(OsmWaterwayTags.isWaterBasedWay(tags)) {
-        osmWayKey = OsmWaterwayTags.getUsedKeyTag(tags);
-        result =  extractDirectionalWaterwayLanes(tags);
-      }
-    }catch(Exception e) {
+    boolean malformedLaneInformation = false;
+    /* collect total and direction specific road based lane information */
+    if(tags.containsKey(OsmHighwayTags.getHighwayKeyTag())) {
+      osmWayKey = OsmHighwayTags.getHighwayKeyTag();
+      result = extractDirectionalHighwayLanes(tags);
+      malformedLaneInformation = result == null;
+
+    /* convert number of tracks to lanes */
+    }else if(tags.containsKey(OsmRailwayTags.getRailwayKeyTag())) {
+      osmWayKey = OsmRailwayTags.getRailwayKeyTag();
+      result =  extractDirectionalRailwayLanes(tags);
+      malformedLaneInformation = result == null;
+    }else if(OsmWaterwayTags.isWaterBasedWay(tags)) {
+      osmWayKey = OsmWaterwayTags.getUsedKeyTag(tags);
+      result =  extractDirectionalWaterwayLanes(tags);
+    }
+    if(malformedLaneInformation) {
       LOGGER.warning(String.format("Something went wrong when parsing number of lanes for OSM way (id:%s), possible tagging error, reverting to default bi-direactional configuration",link.getExternalId()));
     }
     
@@ -745,12 +775,29 @@ public class OsmNetworkLayerParser {
    */
   protected Pair<MacroscopicLinkSegmentType, MacroscopicLinkSegmentType> updatedLinkSegmentTypeBasedOnOsmWay(final OsmWay osmWay, final Map<String, String> tags, final MacroscopicLinkSegmentType linkSegmentType){
     
+    /* user overwrites are by OSM way id rather than by tags, so they cannot be memoized (they are rare anyway) */
+    final boolean memoizable = linkSegmentTypeResolutionCache != null && !settings.isModeAccessOverwrittenByOsmWayId(osmWay.getId());
+    String fingerprint = null;
+    if(memoizable) {
+      fingerprint = linkSegmentTypeResolutionCache.createFingerprint(tags, linkSegmentType);
+      var cachedLinkSegmentTypes = linkSegmentTypeResolutionCache.get(fingerprint);
+      if(cachedLinkSegmentTypes != null) {
+        layerData.getProfiler().incrementLinkSegmentTypeResolutionCacheHitCounter();
+        return cachedLinkSegmentTypes;
+      }
+      layerData.getProfiler().incrementLinkSegmentTypeResolutionCacheMissCounter();
+    }
+    
     /* collect the link segment types for the two possible directions (forward, i.e., in direction of the geometry, and backward, i.e., the opposite of the geometry)*/
     boolean forwardDirection = true;
     var  forwardDirectionLinkSegmentType = extractDirectionalLinkSegmentTypeByOsmWay(osmWay, tags, linkSegmentType, forwardDirection);
     var  backwardDirectionLinkSegmentType = extractDirectionalLinkSegmentTypeByOsmWay(osmWay, tags, linkSegmentType, !forwardDirection);
 
-    return Pair.of(forwardDirectionLinkSegmentType, backwardDirectionLinkSegmentType);    
+    var linkSegmentTypes = Pair.of(forwardDirectionLinkSegmentType, backwardDirectionLinkSegmentType);
+    if(memoizable) {
+      linkSegmentTypeResolutionCache.put(fingerprint, linkSegmentTypes);
+    }
+    return linkSegmentTypes;    
   }    
   
   /** Constructor
@@ -768,6 +815,8 @@ public class OsmNetworkLayerParser {
     
     this.layerData = new OsmNetworkReaderLayerData();    
     this.modeParser = new OsmNetworkLayerModeConversion(settings, networkLayer);
+    this.linkSegmentTypeResolutionCache = settings.getLinkSegmentTypeResolutionCacheSize() > 0 ?
+        new OsmLinkSegmentTypeResolutionCache(settings.getLinkSegmentTypeResolutionCacheSize()) : null;
     
     initialiseEventListeners();        
   }
@@ -913,6 +962,10 @@ public class OsmNetworkLayerParser {
   public void reset() {
     layerData.reset();
     modifiedLinkSegmentTypes.reset();  
+    if(linkSegmentTypeResolutionCache != null) {
+      linkSegmentTypeResolutionCache.clear();
+    }
+    allowedModeSetsByLinkSegmentType.clear();
     initialiseEventListeners();
   }
     
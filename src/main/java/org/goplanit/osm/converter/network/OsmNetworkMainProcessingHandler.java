@@ -3,7 +3,6 @@ package org.goplanit.osm.converter.network;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.function.Function;
 import java.util.logging.Logger;
 
 import org.goplanit.network.layer.macroscopic.MacroscopicNetworkLayerImpl;
@@ -19,7 +18,6 @@ import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
 
 import de.topobyte.osm4j.core.model.iface.OsmNode;
 import de.topobyte.osm4j.core.model.iface.OsmWay;
-import de.topobyte.osm4j.core.model.util.OsmModelUtil;
 
 /**
  * Handler that handles, i.e., converts, nodes, ways, and relations. We parse these entities in distinct order, first all nodes, then all ways, and then all relations. this allows
@@ -56,8 +54,7 @@ public class OsmNetworkMainProcessingHandler extends OsmNetworkBaseHandler {
   private void handleRawCircularWay(final OsmWay circularOsmWay) throws PlanItException {
         
     Map<NetworkLayer, Set<MacroscopicLink>> createdLinksByLayer;
-    Map<String, String> tags = OsmModelUtil.getTagsAsMap(circularOsmWay);
-    if(isActivatedRoadRailOrWaterwayBasedInfrastructure(tags)) {
+    if(isActivatedRoadRailOrWaterwayBasedInfrastructure(getTagView().wrap(circularOsmWay))) {
       
       /* only process circular ways that are complete, e.g. not near bounding box causing some nodes to be missing
        * in which case we do not parse the entire circular way to avoid issues */
@@ -65,6 +62,7 @@ public class OsmNetworkMainProcessingHandler extends OsmNetworkBaseHandler {
         return;
       }
       
+      Map<String, String> tags = getTagView().copy();
       createdLinksByLayer = handleRawCircularWay(circularOsmWay, tags, 0 /* start at initial index */);
       
       if(createdLinksByLayer!=null) {
@@ -243,55 +241,43 @@ public class OsmNetworkMainProcessingHandler extends OsmNetworkBaseHandler {
    * @return the link segment types per layer if available, otherwise null is returned
    */
   protected Map<NetworkLayer, MacroscopicLinkSegmentType> getDefaultLinkSegmentTypeByOsmWayType(OsmWay osmWay, Map<String, String> tags) {
-    String osmTypeKeyToUse = null;
-    
-    /* exclude ways that are areas and in fact not ways */
-    boolean isExplicitArea = OsmTags.isArea(tags);   
-    if(isExplicitArea) {
-      return null;
-    }
-    
-    var settings = getSettings();
-        
-    /* highway (road), railway (rail), or water way */
-    Function<String, Boolean> isWayActivatedLambda = osmTypeValueToUse -> false;
-    Function<String, Boolean> isTypeConfigurationMissingLambda = osmTypeValueToUse -> false;
-    if (OsmHighwayTags.hasHighwayKeyTag(tags) && settings.isHighwayParserActive()) {
-      osmTypeKeyToUse = OsmHighwayTags.getHighwayKeyTag();
-      isWayActivatedLambda = osmTypeValueToUse -> settings.getHighwaySettings().isOsmHighwayTypeDeactivated(osmTypeValueToUse);
-      isTypeConfigurationMissingLambda = osmTypeValueToUse -> OsmHighwayTags.isNonRoadBasedHighwayValueTag(osmTypeValueToUse);
-    }else if(OsmRailwayTags.hasRailwayKeyTag(tags) && settings.isRailwayParserActive()) {
-      osmTypeKeyToUse = OsmRailwayTags.getRailwayKeyTag();
-      isWayActivatedLambda = osmTypeValueToUse -> settings.getRailwaySettings().isOsmRailwayTypeDeactivated(osmTypeValueToUse);
-      isTypeConfigurationMissingLambda = osmTypeValueToUse -> OsmRailwayTags.isNonRailBasedRailway(osmTypeValueToUse);
-    }else if(OsmWaterwayTags.isWaterBasedWay(tags) && settings.isWaterwayParserActive()) {
-      osmTypeKeyToUse = OsmWaterwayTags.getUsedKeyTag(tags);
-      isWayActivatedLambda = osmTypeValueToUse -> settings.getWaterwaySettings().isOsmWaterwayTypeActivated(osmTypeValueToUse);
-      isTypeConfigurationMissingLambda = osmTypeValueToUse -> true; // not yet aware of situations for waterways where this happens
+
+    /* highway (road), railway (rail), or water way, areas are never classified */
+    var osmWayType = classifyOsmWay(osmWay, tags);
+    Map<NetworkLayer,MacroscopicLinkSegmentType> linkSegmentTypes = osmWayType != null ? osmWayType.getDefaultLinkSegmentTypes() : null;
+    if(linkSegmentTypes != null) {
+      for(var entry : linkSegmentTypes.entrySet()) {
+        if(entry.getValue() != null) {
+          getNetworkData().getLayerParser((MacroscopicNetworkLayerImpl)entry.getKey()).getLayerData().getProfiler().incrementOsmTagCounter(osmWayType.getOsmWayValue());
+        }
+      }
+      return linkSegmentTypes;
     }
-    
+
     /* without mapping no type */
+    String osmTypeKeyToUse = getOsmWayKey(tags);
     if(osmTypeKeyToUse==null) {
       return null;
     }
-        
-    String osmTypeValueToUse = tags.get(osmTypeKeyToUse);        
-    Map<NetworkLayer,MacroscopicLinkSegmentType> linkSegmentTypes =
-        getNetwork().getDefaultLinkSegmentTypeByOsmTag( osmTypeKeyToUse, osmTypeValueToUse);
-    if(linkSegmentTypes != null) {
-      linkSegmentTypes.forEach( (layer, linkSegmentType)  -> {
-        if(linkSegmentType != null) {
-          getNetworkData().getLayerParser((MacroscopicNetworkLayerImpl)layer).getLayerData().getProfiler().incrementOsmTagCounter(osmTypeValueToUse);
-        } });
-    }
+
     /* determine if we should inform the user on not finding a mapped type, i.e., is this of concern or legitimate because we do not want or it cannot be mapped in the first place*/
     /*... not available even though it is not marked as deactivated AND it appears to be a type that can be converted into a link, so something is not properly configured*/
-    else if(isWayActivatedLambda.apply(osmTypeValueToUse) && isTypeConfigurationMissingLambda.apply(osmTypeValueToUse)){
+    var settings = getSettings();
+    String osmTypeValueToUse = tags.get(osmTypeKeyToUse);
+    boolean informUser;
+    if(osmTypeKeyToUse.equals(OsmHighwayTags.getHighwayKeyTag())) {
+      informUser = settings.getHighwaySettings().isOsmHighwayTypeDeactivated(osmTypeValueToUse) && OsmHighwayTags.isNonRoadBasedHighwayValueTag(osmTypeValueToUse);
+    }else if(osmTypeKeyToUse.equals(OsmRailwayTags.getRailwayKeyTag())) {
+      informUser = settings.getRailwaySettings().isOsmRailwayTypeDeactivated(osmTypeValueToUse) && OsmRailwayTags.isNonRailBasedRailway(osmTypeValueToUse);
+    }else {
+      informUser = settings.getWaterwaySettings().isOsmWaterwayTypeActivated(osmTypeValueToUse); // not yet aware of situations for waterways where this is not of concern
+    }
+    if(informUser){
       LOGGER.warning(String.format(
           "No link segment type available for : %s:%s (id:%d) --> ignored. Consider explicitly supporting or unsupporting this type", osmTypeKeyToUse, osmTypeValueToUse, osmWay.getId()));
     }
-        
-    return linkSegmentTypes;
+
+    return null;
   }  
   
   /** process all registered circular ways after parsing of basic nodes and ways is complete. Because circular ways are transformed into multiple
@@ -426,7 +412,7 @@ public class OsmNetworkMainProcessingHandler extends OsmNetworkBaseHandler {
     if(getNetworkData().getOsmNodeData().containsPreregisteredOsmNode(osmNode.getId()) &&
         (   !settings.hasBoundingPolygon() ||
             keepOutsideBoundingPolygon ||
-            OsmNodeUtils.createPoint(osmNode).within(settings.getBoundingPolygon()))) {
+            settings.getBoundingPolygonFilter().isWithin(osmNode))) {
       
       /* store actual OSM node for later processing in memory */
       getNetworkData().getOsmNodeData().registerEligibleOsmNode(osmNode);
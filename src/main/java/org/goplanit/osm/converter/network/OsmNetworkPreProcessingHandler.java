@@ -1,10 +1,13 @@
 package org.goplanit.osm.converter.network;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
+import de.topobyte.osm4j.core.model.iface.EntityType;
 import de.topobyte.osm4j.core.model.iface.OsmNode;
 import de.topobyte.osm4j.core.model.iface.OsmWay;
 import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
@@ -69,7 +72,17 @@ public class OsmNetworkPreProcessingHandler extends OsmNetworkBaseHandler {
   }  
   
   /**
-   * Count total number of nodes in OSM file
+   * {@inheritDoc}
+   *
+   * Only OSM ways are required to identify the OSM nodes to retain, OSM nodes are merely counted when provided
+   */
+  @Override
+  public Set<EntityType> getConsumedEntityTypes() {
+    return EnumSet.of(EntityType.Way);
+  }
+
+  /**
+   * Count total number of nodes in OSM file (if provided by the reader)
    */
   @Override
   public void handle(OsmNode node) {
@@ -96,8 +109,13 @@ public class OsmNetworkPreProcessingHandler extends OsmNetworkBaseHandler {
     super.complete();
     int totalOsmNodes = (int) nodeCounter.sum();
     int preRegisteredOsmNodes = getNetworkData().getOsmNodeData().getRegisteredOsmNodes().size();
-    LOGGER.info(String.format("Total OSM nodes in source: %d",totalOsmNodes));
-    LOGGER.info(String.format("Total OSM nodes identified as part of network: %d (%.2f%%)",preRegisteredOsmNodes, preRegisteredOsmNodes/(double)totalOsmNodes));
+    if(totalOsmNodes > 0) {
+      LOGGER.info(String.format("Total OSM nodes in source: %d",totalOsmNodes));
+      LOGGER.info(String.format("Total OSM nodes identified as part of network: %d (%.2f%%)",preRegisteredOsmNodes, preRegisteredOsmNodes/(double)totalOsmNodes));
+    }else {
+      /* nodes skipped by reader since they are not consumed */
+      LOGGER.info(String.format("Total OSM nodes identified as part of network: %d",preRegisteredOsmNodes));
+    }
   }
 
 
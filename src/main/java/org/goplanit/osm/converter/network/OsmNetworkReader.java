@@ -1,12 +1,16 @@
 package org.goplanit.osm.converter.network;
 
+import java.io.IOException;
 import java.net.URL;
+import java.util.EnumSet;
 import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import org.goplanit.converter.network.NetworkReader;
 import org.goplanit.network.MacroscopicNetwork;
 import org.goplanit.network.MacroscopicNetworkLayerConfigurator;
+import org.goplanit.osm.converter.OsmEntityStore;
+import org.goplanit.osm.converter.OsmNodeIdBitSet;
 import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
 import org.goplanit.osm.util.Osm4JUtils;
 import org.goplanit.utils.exceptions.PlanItException;
@@ -23,6 +27,9 @@ import org.goplanit.zoning.modifier.event.handler.UpdateConnectoidsOnVertexRemov
 import de.topobyte.osm4j.core.access.DefaultOsmHandler;
 import de.topobyte.osm4j.core.access.OsmInputException;
 import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
 
 /**
  * Parse OSM input in either *.osm or *.osm.pbf format and return PLANit network instance
@@ -43,6 +50,12 @@ public class OsmNetworkReader implements NetworkReader {
   
   /** settings to use */
   private final OsmNetworkReaderSettings settings;
+
+  /** already decoded OSM entities to use instead of parsing the input source, if any */
+  private OsmEntityStore sharedOsmEntities = null;
+
+  /** when true, the shared OSM entities are yet to be decoded by this reader from the input source */
+  private boolean decodeSharedOsmEntities = false;
   
   /**
    * Call this BEFORE we parse the OSM network to initialise the handler(s) properly
@@ -77,9 +90,15 @@ public class OsmNetworkReader implements NetworkReader {
     /* when modes are deactivated causing supported osm way types to have no active modes, add them to unsupported way types to avoid warnings during parsing */
     settings.excludeOsmWayTypesWithoutActivatedModes();
     settings.logUnsupportedOsmWayTypes();
+
+    /* settings and link segment types are final, so compile classification of OSM ways into activated types */
+    networkData.setOsmWayClassifier(new OsmWayClassifier(settings, getOsmNetworkToPopulate()));
         
     /* initialise layer specific parsers */
     networkData.initialiseLayerParsers(getOsmNetworkToPopulate(), settings, geoUtils);
+
+    /* initialise storage of OSM nodes (heap or memory mapped) */
+    networkData.initialiseOsmNodeData(settings);
   }  
            
   /** Read based on reader and handler where the reader performs a callback to the handler provided
@@ -99,6 +118,85 @@ public class OsmNetworkReader implements NetworkReader {
     }
   }
 
+  /** Create the OSM reader to use for a pass over the OSM entities. When shared OSM entities are available, these are replayed rather than
+   * parsing the input source. When a cached OSM subset is available, it is parsed instead of the input source
+   *
+   * @return OSM reader, null if not possible to create
+   */
+  private OsmReader createOsm4jReader() {
+    if(sharedOsmEntities != null) {
+      return sharedOsmEntities.createReader();
+    }
+    if(networkData.getOsmSubsetSource() != null) {
+      return Osm4JUtils.createOsm4jReader(networkData.getOsmSubsetSource(), settings, settings.getOsmNodeRetentionEnvelope());
+    }
+    return Osm4JUtils.createOsm4jReader(settings);
+  }
+
+  /** When requested, decode the input source once into the shared OSM entities, retaining the entities relevant to the network and zoning readers,
+   * i.e., the OSM ways and relations retained by a cached OSM subset in their own right (see {@link OsmNetworkSubsetHandler}). Since OSM nodes precede the
+   * OSM ways referencing them, all OSM nodes are captured, after which only those referenced by a retained OSM way or relation, or representing public
+   * transport infrastructure, are kept. Unlike the OSM subset, OSM ways that are solely a member of a public transport relation are not retained, because
+   * OSM relations follow OSM ways in the input source
+   */
+  private void prepareSharedOsmEntities() {
+    if(!decodeSharedOsmEntities) {
+      return;
+    }
+    LOGGER.info("Decoding OSM entities to share between network and zoning reader");
+
+    /* shared entities are replayed to the zoning reader as well, which may require OSM nodes outside the network's bounding polygon */
+    OsmReader osmReader = Osm4JUtils.createOsm4jReader(settings.getInputSource(), settings, null);
+    if(osmReader == null) {
+      throw new PlanItRunTimeException("Unable to create OSM reader for decoding shared OSM entities");
+    }
+
+    var subsetHandler = new OsmNetworkSubsetHandler(getOsmNetworkToPopulate(), networkData, settings);
+    sharedOsmEntities.setOsmNodeFilter(osmNode -> true);
+    sharedOsmEntities.setOsmWayFilter(subsetHandler::isRetainedOsmWay);
+    sharedOsmEntities.setOsmRelationFilter(subsetHandler::isRetainedOsmRelation);
+    read(osmReader, sharedOsmEntities.createCapturingHandler(null));
+
+    /* OSM nodes referenced by retained OSM ways and relations */
+    var referencedOsmNodes = new OsmNodeIdBitSet();
+    try {
+      sharedOsmEntities.replay(new DefaultOsmHandler() {
+        @Override
+        public void handle(OsmWay osmWay) {
+          for(int index = 0; index < osmWay.getNumberOfNodes(); ++index) {
+            referencedOsmNodes.set(osmWay.getNodeId(index));
+          }
+        }
+
+        @Override
+        public void handle(OsmRelation osmRelation) {
+          for(int index = 0; index < osmRelation.getNumberOfMembers(); ++index) {
+            if(osmRelation.getMember(index).getType() == EntityType.Node) {
+              referencedOsmNodes.set(osmRelation.getMember(index).getId());
+            }
+          }
+        }
+      }, EnumSet.of(EntityType.Way, EntityType.Relation));
+    }catch(IOException e) {
+      throw new PlanItRunTimeException("Error while identifying referenced shared OSM nodes", e);
+    }
+    sharedOsmEntities.retainOsmNodes(osmNode -> referencedOsmNodes.get(osmNode.getId()) || subsetHandler.isRetainedOsmNode(osmNode));
+    decodeSharedOsmEntities = false;
+
+    LOGGER.info(String.format("Decoded %d OSM nodes, %d OSM ways, and %d OSM relations to share",
+        sharedOsmEntities.getNumberOfOsmNodes(), sharedOsmEntities.getNumberOfOsmWays(), sharedOsmEntities.getNumberOfOsmRelations()));
+  }
+
+  /** When activated, collect the cached subset of the input source to parse instead, creating the subset first when not yet available
+   */
+  private void prepareOsmSubset() {
+    if(!settings.isCacheOsmSubset() || sharedOsmEntities != null) {
+      return;
+    }
+    var subsetHandler = new OsmNetworkSubsetHandler(getOsmNetworkToPopulate(), networkData, settings);
+    networkData.setOsmSubsetSource(new OsmNetworkSubsetCache(settings).collectOrCreate(subsetHandler));
+  }
+
   /**
    * Log some information about this reader's configuration
    */
@@ -117,7 +215,7 @@ public class OsmNetworkReader implements NetworkReader {
     LOGGER.info("Preprocessing: reducing memory footprint, identifying required OSM nodes");
 
     /* reader to parse the actual file or source location */
-    OsmReader osmReader = Osm4JUtils.createOsm4jReader(settings.getInputSource());
+    OsmReader osmReader = createOsm4jReader();
     if(osmReader == null) {
       LOGGER.severe("Unable to create OSM reader for preprocessing network, aborting");
       return;
@@ -132,7 +230,7 @@ public class OsmNetworkReader implements NetworkReader {
    */
   private void doMainProcessing() {
 
-    OsmReader osmReader = Osm4JUtils.createOsm4jReader(settings.getInputSource());
+    OsmReader osmReader = createOsm4jReader();
     if(osmReader == null) {
       LOGGER.severe("Unable to create OSM reader for network, aborting");
       return;
@@ -141,6 +239,21 @@ public class OsmNetworkReader implements NetworkReader {
     read(osmReader, osmHandler);     
   }
   
+  /** Perform pre-processing and main processing in a single pass over the OSM source, only used when activated in the settings
+   */
+  private void doSinglePassProcessing() {
+
+    LOGGER.info("Single pass processing: buffering OSM nodes and eligible OSM ways");
+
+    OsmReader osmReader = createOsm4jReader();
+    if(osmReader == null) {
+      LOGGER.severe("Unable to create OSM reader for network, aborting");
+      return;
+    }
+    OsmNetworkSinglePassHandler osmHandler = new OsmNetworkSinglePassHandler(getOsmNetworkToPopulate(), networkData, settings);
+    read(osmReader, osmHandler);
+  }
+
   /** Collect the network data gathered
    * 
    * @return network data
@@ -285,12 +398,23 @@ public class OsmNetworkReader implements NetworkReader {
     
     /* initialise */
     initialiseBeforeParsing();    
+
+    /* shared decoded entities (if requested) */
+    prepareSharedOsmEntities();
+
+    /* cached subset of input source (if activated) */
+    prepareOsmSubset();
     
-    /* preprocessing (if needed)*/
-    doPreprocessing();
-    
-    /* main processing  (always)*/
-    doMainProcessing();    
+    if(getSettings().isSinglePassProcessing()) {
+      /* preprocessing and main processing combined */
+      doSinglePassProcessing();
+    }else {
+      /* preprocessing (if needed)*/
+      doPreprocessing();
+
+      /* main processing  (always)*/
+      doMainProcessing();
+    }
       
     /* dangling subnetworks */
     if(getSettings().isRemoveDanglingSubnetworks()) {
@@ -315,6 +439,28 @@ public class OsmNetworkReader implements NetworkReader {
     return settings;
   }
 
+  /** Provide OSM entities that have already been decoded from the input source. When set, the reader replays these rather than parsing the input
+   * source itself. The entities are expected to comprise at least all entities this reader relies upon, e.g., as provided by the intermodal reader
+   * which shares a single decode of the input source across its network and zoning readers
+   *
+   * @param sharedOsmEntities to use, null to parse the input source
+   */
+  public void setSharedOsmEntities(final OsmEntityStore sharedOsmEntities) {
+    setSharedOsmEntities(sharedOsmEntities, false);
+  }
+
+  /** Provide a store for OSM entities decoded from the input source. When decoding is requested, the reader decodes the input source into the (empty) store
+   * upon reading, retaining the entities relevant to both the network and zoning readers, after which the store can be shared with a zoning reader.
+   * Otherwise, the store is expected to be populated already, see {@link #setSharedOsmEntities(OsmEntityStore)}
+   *
+   * @param sharedOsmEntities to use, null to parse the input source
+   * @param decode when true this reader decodes the input source into the store upon reading, otherwise the store is used as is
+   */
+  public void setSharedOsmEntities(final OsmEntityStore sharedOsmEntities, boolean decode) {
+    this.sharedOsmEntities = sharedOsmEntities;
+    this.decodeSharedOsmEntities = sharedOsmEntities != null && decode;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -1,5 +1,6 @@
 package org.goplanit.osm.converter.network;
 
+import java.net.URL;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -43,6 +44,12 @@ public class OsmNetworkReaderData {
    */
   private Set<Long> discardedOsmWays = new HashSet<>();
 
+  /** cached subset of the OSM source to parse instead of the OSM source itself, null if none */
+  private URL osmSubsetSource = null;
+
+  /** classifier of OSM ways compiled from the settings, null until initialised */
+  private OsmWayClassifier osmWayClassifier = null;
+
   
   /** track layer specific information and handler to delegate processing the parts of osm ways assigned to a layer */
   private final Map<MacroscopicNetworkLayer, OsmNetworkLayerParser> osmLayerParsers = new HashMap<>();
@@ -66,11 +73,24 @@ public class OsmNetworkReaderData {
     }
   }    
 
+  /**
+   * initialise the OSM node data based on the settings
+   *
+   * @param settings to use
+   */
+  protected void initialiseOsmNodeData(OsmNetworkReaderSettings settings) {
+    if(settings.isMemoryMappedOsmNodeCoordinates() && !osmNodeData.isMemoryMappedCoordinatesActivated()) {
+      osmNodeData.activateMemoryMappedCoordinates(settings.getMemoryMappedOsmNodeCoordinatesDirectory());
+    }
+  }
+
   /**
    * reset
    */
   public void reset() {
     clearOsmCircularWays();    
+    osmSubsetSource = null;
+    osmWayClassifier = null;
     osmNodeData.reset();
     
     /* reset layer handlers as well */
@@ -149,6 +169,38 @@ public class OsmNetworkReaderData {
     return discardedOsmWays.contains(osmWayId);
   }
   
+  /** Collect the cached subset of the OSM source that is parsed instead of the OSM source itself
+   *
+   * @return OSM subset source, null if the OSM source is parsed directly
+   */
+  public URL getOsmSubsetSource() {
+    return osmSubsetSource;
+  }
+
+  /** Set the cached subset of the OSM source to parse instead of the OSM source itself
+   *
+   * @param osmSubsetSource to use, null to parse the OSM source directly
+   */
+  public void setOsmSubsetSource(URL osmSubsetSource) {
+    this.osmSubsetSource = osmSubsetSource;
+  }
+
+  /** Collect the classifier of OSM ways compiled from the settings
+   *
+   * @return classifier, null if not yet initialised
+   */
+  public OsmWayClassifier getOsmWayClassifier() {
+    return osmWayClassifier;
+  }
+
+  /** Set the classifier of OSM ways compiled from the settings
+   *
+   * @param osmWayClassifier to use
+   */
+  public void setOsmWayClassifier(OsmWayClassifier osmWayClassifier) {
+    this.osmWayClassifier = osmWayClassifier;
+  }
+
   /** provide reference to a layer parser
    * 
    * @param networkLayer to collect parser for
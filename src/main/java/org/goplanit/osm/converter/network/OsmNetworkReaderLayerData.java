@@ -1,7 +1,6 @@
 package org.goplanit.osm.converter.network;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -106,7 +105,7 @@ public class OsmNetworkReaderLayerData {
    * track the PLANit nodes created on this layer by their location (which reflects either an OSM node, or an auto-generated stop_location, not related to an osm node
    * in the latter case, no osm node is available) so they can be collected when needed, for example when breaking planit links
    */
-  protected final Map<Point, Pair<Node, OsmNode>> planitNodesByLocation = new HashMap<>();
+  protected final OsmLocationIndex<Pair<Node, OsmNode>> planitNodesByLocation = new OsmLocationIndex<>();
   
   /** Mapping from locations (representing known OSM nodes or auto-generated PLANit nodes without OSM node, in the latter case, no OSM node is stored in the pair) to the links they are internal to. When initial parsing is done, 
    * we verify if any entry in the map contains more than one link in which case the two link intersect at a point other than the extremes
@@ -116,7 +115,35 @@ public class OsmNetworkReaderLayerData {
    * we use a separate mapping via {@link #osmWaysWithMultiplePlanitLinks} to track how original osm ways (links) are now split allowing us to map any previously registered
    * location to the correct planit link even after breaking of links
    */
-  protected Map<Point, Pair<List<MacroscopicLink>,OsmNode>> originalLinkInternalAvailableLocations = new HashMap<>();
+  protected final OsmLocationIndex<Pair<List<MacroscopicLink>,OsmNode>> originalLinkInternalAvailableLocations = new OsmLocationIndex<>();
+
+  /** add a mapping from location to the (initial) PLANit link it is internal to
+   *
+   * @param x longitude of the location
+   * @param y latitude of the location
+   * @param location point of the location, only used when the location is new
+   * @param osmNode at the location, may be null
+   * @param planitLink to register as location being internal to
+   */
+  private void registerLocationAsInternalToPlanitLink(double x, double y, Point location, OsmNode osmNode, MacroscopicLink planitLink) {
+    var knownLinksForLocation = originalLinkInternalAvailableLocations.get(x, y);
+    if(knownLinksForLocation == null) {
+      knownLinksForLocation = Pair.of(new ArrayList<>(), osmNode);
+      originalLinkInternalAvailableLocations.put(x, y, location, knownLinksForLocation);
+    }else if(osmNode != null && knownLinksForLocation.second() != null && knownLinksForLocation.second().getId() != osmNode.getId()){
+      // this is a bug on our end and will cause breaking links to attach too many planit links, for example when two metro lines above each other have two nodes in the same location but at a different layer
+      // they do not touch and when breaking at this location should occur at a particular layer, upon which only one of the nodes' and its links should be broken and not the other, currently
+      // we only consider location and not layer --> WRONG
+      LOGGER.warning(String.format("Found two OSM nodes on top of each other: %s  and %s, likely layer based situation --> requires refactoring of code to support properly!", osmNode.getId(), knownLinksForLocation.second().getId()));
+    }
+
+    if(!knownLinksForLocation.first().isEmpty() && knownLinksForLocation.first().contains(planitLink)){
+      LOGGER.fine(String.format("Registering same PLANit link (OSM way: %s) twice on having current location (%s) as internal, ignoring, tagging error unless OSM way is self intersecting",
+          planitLink.getExternalId(), originalLinkInternalAvailableLocations.getLocation(x, y)));
+      return;
+    }
+    knownLinksForLocation.first().add(planitLink);
+  }
                  
   
   /** Collect the PLANit node available for this osm node (if any)
@@ -126,7 +153,8 @@ public class OsmNetworkReaderLayerData {
    */
   public Node getPlanitNodeByOsmNode(OsmNode osmNode){
     if(osmNode != null) {
-      Node planitNode = getPlanitNodeByLocation(OsmNodeUtils.createPoint(osmNode));
+      Pair<Node, OsmNode> result = planitNodesByLocation.get(osmNode);
+      Node planitNode = result != null ? result.first() : null;
       if(planitNode!=null && osmNode.getId() != Long.valueOf(planitNode.getExternalId())) {
         /* match found, but different osm ids for same location, meaning that separate nodes reside in same location */
         LOGGER.warning(String.format("OsmNodes %d and %s, reside on same location, likely tagging error", osmNode.getId(), planitNode.getExternalId()));
@@ -175,7 +203,7 @@ public class OsmNetworkReaderLayerData {
    * @return mapping of locations for which planit nodes are created, potentially based on OSM node
    */
   public Map<Point, Pair<Node, OsmNode>> getCreatedPlanitNodesByLocation() {
-    return Collections.unmodifiableMap(planitNodesByLocation);
+    return planitNodesByLocation.asMap();
   }
   
   /** Register a PLANit node based on an OSM node for this layer
@@ -184,8 +212,8 @@ public class OsmNetworkReaderLayerData {
    * @param planitNode to register
    */
   public void registerPlanitNodeByOsmNode(OsmNode osmNode, Node planitNode){
-    Point osmNodeLocation = OsmNodeUtils.createPoint(osmNode);
-    planitNodesByLocation.put(osmNodeLocation, Pair.of(planitNode, osmNode));
+    Point osmNodeLocation = planitNodesByLocation.containsKey(osmNode) ? null : OsmNodeUtils.createPoint(osmNode);
+    planitNodesByLocation.put(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode), osmNodeLocation, Pair.of(planitNode, osmNode));
   }
   
   /** register a PLANit node based on a location only, instead of based on an OSM node
@@ -203,16 +231,9 @@ public class OsmNetworkReaderLayerData {
    * @param planitLink to register as OSM node being internal to
    */
   public void registerOsmNodeAsInternalToPlanitLink(OsmNode osmNode, MacroscopicLink planitLink){
-    Point location = OsmNodeUtils.createPoint(osmNode);
-    originalLinkInternalAvailableLocations.putIfAbsent(location, Pair.of(new ArrayList<>(), osmNode ));
-    var knownLinksForOsmNode = originalLinkInternalAvailableLocations.get(location);
-    if(knownLinksForOsmNode.second() != null && knownLinksForOsmNode.second().getId() != osmNode.getId()){
-      // this is a bug on our end and will cause breaking links to attach too many planit links, for example when two metro lines above each other have two nodes in the same location but at a different layer
-      // they do not touch and when breaking at this location should occur at a particular layer, upon which only one of the nodes' and its links should be broken and not the other, currently
-      // we only consider location and not layer --> WRONG
-      LOGGER.warning(String.format("Found two OSM nodes on top of each other: %s  and %s, likely layer based situation --> requires refactoring of code to support properly!", osmNode.getId(), knownLinksForOsmNode.second().getId()));
-    }
-    registerLocationAsInternalToPlanitLink(location, planitLink);
+    /* only create point when location is new */
+    Point location = originalLinkInternalAvailableLocations.containsKey(osmNode) ? null : OsmNodeUtils.createPoint(osmNode);
+    registerLocationAsInternalToPlanitLink(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode), location, osmNode, planitLink);
   }  
   
   /** add a mapping from location to the (initial) PLANit link it is internal to
@@ -221,14 +242,7 @@ public class OsmNetworkReaderLayerData {
    * @param planitLink to register as location being internal to (location either being a known osm node, or, for example, an auto-generated stop_position, not absed on a planit node)
    */  
   public void registerLocationAsInternalToPlanitLink(Point location, MacroscopicLink planitLink) {
-    originalLinkInternalAvailableLocations.putIfAbsent(location, Pair.of(new ArrayList<>(), null /* no node */));
-    var knownLinksForLocation = originalLinkInternalAvailableLocations.get(location);
-    if(!knownLinksForLocation.first().isEmpty() && knownLinksForLocation.first().contains(planitLink)){
-      LOGGER.fine(String.format("Registering same PLANit link (OSM way: %s) twice on having current location (%s) as internal, ignoring, tagging error unless OSM way is self intersecting", planitLink.getExternalId(),location));
-      return;
-    }
-
-    originalLinkInternalAvailableLocations.get(location).first().add(planitLink);
+    registerLocationAsInternalToPlanitLink(location.getX(), location.getY(), location, null /* no node */, planitLink);
   }  
   
   /** update all known OSM ways with multiple PLANit links. To use whenever a PLANit link is broken and split into multiple
@@ -282,7 +296,7 @@ public class OsmNetworkReaderLayerData {
    * @return true when part of a geometry in the layer, false otherwise
    */
   public boolean isOsmNodePresentInLayer(OsmNode osmNode){
-    return isLocationPresentInLayer(OsmNodeUtils.createPoint(osmNode));
+    return planitNodesByLocation.containsKey(osmNode) || originalLinkInternalAvailableLocations.containsKey(osmNode);
   }     
   
   /** verify if location is registered on this layer either as an internal location on a planit link or as an extreme node
@@ -300,7 +314,7 @@ public class OsmNetworkReaderLayerData {
    * @return found locations
    */
   public Set<Point> getRegisteredLocationsInternalToAnyPlanitLink() {
-    return Collections.unmodifiableSet(originalLinkInternalAvailableLocations.keySet());
+    return originalLinkInternalAvailableLocations.asMap().keySet();
   }  
   
   /** collect all registered locations that are internal to at least the given number of planit links
@@ -310,7 +324,7 @@ public class OsmNetworkReaderLayerData {
    */
   public Set<Point> getRegisteredLocationsInternalToAnyPlanitLink(int numberOfLinksNodeMustAtLeastBeInternalTo) {
     Set<Point> foundLocations = new HashSet<>();
-    for( Entry<Point, Pair<List<MacroscopicLink>,OsmNode>> entry : originalLinkInternalAvailableLocations.entrySet()) {
+    for( Entry<Point, Pair<List<MacroscopicLink>,OsmNode>> entry : originalLinkInternalAvailableLocations.asMap().entrySet()) {
       if(entry.getValue().first().size() >= numberOfLinksNodeMustAtLeastBeInternalTo) {
         foundLocations.add(entry.getKey());
       }
@@ -325,7 +339,7 @@ public class OsmNetworkReaderLayerData {
    */  
   public Set<OsmNode> getRegisteredOsmNodesInternalToAnyPlanitLink(int numberOfLinksNodeMustAtLeastBeInternalTo) {
     Set<OsmNode> foundOsmNodes = new HashSet<>();
-    for( Entry<Point, Pair<List<MacroscopicLink>,OsmNode>> entry : originalLinkInternalAvailableLocations.entrySet()) {
+    for( Entry<Point, Pair<List<MacroscopicLink>,OsmNode>> entry : originalLinkInternalAvailableLocations.asMap().entrySet()) {
       List<MacroscopicLink> planitLinks = entry.getValue().first();
       OsmNode osmNode = entry.getValue().second();
       if(planitLinks.size() >= numberOfLinksNodeMustAtLeastBeInternalTo && osmNode!=null) {
@@ -21,6 +21,7 @@ import org.goplanit.utils.geo.PlanitJtsCrsUtils;
 import org.goplanit.utils.locale.CountryNames;
 import org.goplanit.utils.misc.UrlUtils;
 import org.goplanit.utils.mode.PredefinedModeType;
+import org.locationtech.jts.geom.Envelope;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
@@ -100,6 +101,39 @@ public class OsmNetworkReaderSettings extends OsmReaderSettings{
    * not adhere to the criteria of {@code discardSubNetworkBelowSize} and/or {@code discardSubNetworkAbovesize} 
    */
   protected boolean alwaysKeepLargestsubNetwork = DEFAULT_ALWAYS_KEEP_LARGEST_SUBNETWORK;
+
+  /**
+   * When true, the network is parsed in a single pass over the OSM source by buffering node coordinates and eligible OSM ways in memory, rather than
+   * decoding the source twice (pre-processing and main processing). The result is identical, but memory use is higher during parsing.
+   */
+  protected boolean singlePassProcessing = DEFAULT_SINGLE_PASS_PROCESSING;
+
+  /**
+   * When true, coordinates of the OSM nodes retained during parsing are stored in a memory mapped (temporary) file rather than on the heap, which
+   * allows very large inputs to be parsed with a small heap at the cost of relying on the operating system to page coordinates in and out of memory
+   */
+  protected boolean memoryMappedOsmNodeCoordinates = DEFAULT_MEMORY_MAPPED_OSM_NODE_COORDINATES;
+
+  /**
+   * Directory to create the memory mapped OSM node coordinates file in, when null the default temporary directory is used
+   */
+  protected Path memoryMappedOsmNodeCoordinatesDirectory = null;
+
+  /**
+   * When true, the subset of the OSM source relevant to the network and zoning readers is written to a (much smaller) cache file upon the first
+   * conversion, which is parsed instead of the OSM source in subsequent conversions with the same OSM source and way type configuration
+   */
+  protected boolean cacheOsmSubset = DEFAULT_CACHE_OSM_SUBSET;
+
+  /**
+   * Directory to create the OSM subset cache file in, when null the directory of the (local) OSM source is used
+   */
+  protected Path osmSubsetCacheDirectory = null;
+
+  /**
+   * Maximum number of resolved link segment types of OSM ways cached per layer by their access relevant tags, 0 disables the cache
+   */
+  protected int linkSegmentTypeResolutionCacheSize = DEFAULT_LINK_SEGMENT_TYPE_RESOLUTION_CACHE_SIZE;
       
   /**
    * Conduct general initialisation for any instance of this class
@@ -132,6 +166,18 @@ public class OsmNetworkReaderSettings extends OsmReaderSettings{
   /** by default we always keep the largest subnetwork */
   public static boolean DEFAULT_ALWAYS_KEEP_LARGEST_SUBNETWORK = true;
 
+  /** by default we parse the OSM source in two passes (pre-processing and main processing) to minimise memory use: false */
+  public static boolean DEFAULT_SINGLE_PASS_PROCESSING = false;
+
+  /** by default OSM node coordinates are retained on the heap: false */
+  public static boolean DEFAULT_MEMORY_MAPPED_OSM_NODE_COORDINATES = false;
+
+  /** by default the OSM source is parsed directly without caching the relevant subset: false */
+  public static boolean DEFAULT_CACHE_OSM_SUBSET = false;
+
+  /** by default resolved link segment types are cached per layer: {@link OsmLinkSegmentTypeResolutionCache#DEFAULT_MAX_SIZE} */
+  public static int DEFAULT_LINK_SEGMENT_TYPE_RESOLUTION_CACHE_SIZE = OsmLinkSegmentTypeResolutionCache.DEFAULT_MAX_SIZE;
+
   /**
    * Default constructor. Here no specific locale is provided, meaning that all defaults will use global settings. This is especially relevant for
    * speed limits and mdoe access restrictions (unless manually adjusted by the user)
@@ -210,6 +256,31 @@ public class OsmNetworkReaderSettings extends OsmReaderSettings{
     if(hasBoundingPolygon()) {
       LOGGER.info(String.format("Bounding polygon set to: %s", getBoundingPolygon().toString()));
     }
+    if(isSinglePassProcessing()) {
+      LOGGER.info("Single pass processing of OSM source activated");
+    }
+    LOGGER.info(String.format("Number of decoding threads: %d", getNumberOfDecodingThreads()));
+    if(isPersistPbfBlobIndex()) {
+      LOGGER.info("Persisting PBF blob index activated");
+    }
+    if(isMemoryMappedPbfInput()) {
+      LOGGER.info("Memory mapped PBF input activated");
+    }
+    if(isCacheRemoteInputSource() && getInputSource() != null && !UrlUtils.isLocal(getInputSource())) {
+      LOGGER.info(String.format("Remote input cache activated (directory: %s, max size: %d bytes)",
+          getRemoteInputSourceCacheDirectory(), getMaxRemoteInputSourceCacheSize()));
+    }
+    if(isMemoryMappedOsmNodeCoordinates()) {
+      LOGGER.info(String.format("Memory mapped OSM node coordinates activated (directory: %s)",
+          getMemoryMappedOsmNodeCoordinatesDirectory() == null ? "default temporary directory" : getMemoryMappedOsmNodeCoordinatesDirectory().toString()));
+    }
+    if(isCacheOsmSubset()) {
+      LOGGER.info(String.format("OSM subset cache activated (directory: %s)",
+          getOsmSubsetCacheDirectory() == null ? "directory of OSM source" : getOsmSubsetCacheDirectory().toString()));
+    }
+    if(getLinkSegmentTypeResolutionCacheSize() <= 0) {
+      LOGGER.info("Link segment type resolution cache deactivated");
+    }
 
     getHighwaySettings().logSettings();
     getRailwaySettings().logSettings();
@@ -533,6 +604,108 @@ public class OsmNetworkReaderSettings extends OsmReaderSettings{
     this.alwaysKeepLargestsubNetwork = alwaysKeepLargestSubnetwork;
   }  
 
+  /** Verify if the network is parsed in a single pass over the OSM source
+   *
+   * @return true when single pass, false when two passes are used
+   */
+  public boolean isSinglePassProcessing() {
+    return singlePassProcessing;
+  }
+
+  /** Indicate whether to parse the network in a single pass over the OSM source. This avoids decoding the source twice at the cost of
+   * buffering node coordinates and eligible OSM ways in memory during parsing. The resulting network is identical.
+   *
+   * @param singlePassProcessing when true use single pass, otherwise two passes
+   */
+  public void setSinglePassProcessing(boolean singlePassProcessing) {
+    this.singlePassProcessing = singlePassProcessing;
+  }
+
+  /** Verify if OSM node coordinates are stored in a memory mapped file rather than on the heap during parsing
+   *
+   * @return true when memory mapped, false otherwise
+   */
+  public boolean isMemoryMappedOsmNodeCoordinates() {
+    return memoryMappedOsmNodeCoordinates;
+  }
+
+  /** Indicate whether to store OSM node coordinates in a memory mapped (temporary) file rather than on the heap during parsing. Useful for very large
+   * inputs, most effective for OSM sources sorted by id (which is the norm)
+   *
+   * @param memoryMappedOsmNodeCoordinates when true use memory mapped file, otherwise heap
+   */
+  public void setMemoryMappedOsmNodeCoordinates(boolean memoryMappedOsmNodeCoordinates) {
+    this.memoryMappedOsmNodeCoordinates = memoryMappedOsmNodeCoordinates;
+  }
+
+  /** Collect the directory used for the memory mapped OSM node coordinates file
+   *
+   * @return directory, null when the default temporary directory is used
+   */
+  public Path getMemoryMappedOsmNodeCoordinatesDirectory() {
+    return memoryMappedOsmNodeCoordinatesDirectory;
+  }
+
+  /** Set the directory to use for the memory mapped OSM node coordinates file (only relevant when activated)
+   *
+   * @param memoryMappedOsmNodeCoordinatesDirectory to use, when null the default temporary directory is used
+   */
+  public void setMemoryMappedOsmNodeCoordinatesDirectory(Path memoryMappedOsmNodeCoordinatesDirectory) {
+    this.memoryMappedOsmNodeCoordinatesDirectory = memoryMappedOsmNodeCoordinatesDirectory;
+  }
+
+  /** Verify if the subset of the OSM source relevant to the network and zoning readers is cached, see {@link #setCacheOsmSubset(boolean)}
+   *
+   * @return true when cached, false otherwise
+   */
+  public boolean isCacheOsmSubset() {
+    return cacheOsmSubset;
+  }
+
+  /** Indicate whether to cache the subset of the (local) OSM source relevant to the network and zoning readers, i.e., activated OSM ways, public
+   * transport infrastructure and relations, and their OSM nodes. The first conversion creates the cache file, subsequent conversions of the same unchanged
+   * OSM source with the same activated OSM way types parse the (much smaller) cache file instead. Useful when converting the same extract repeatedly
+   * with different settings
+   *
+   * @param cacheOsmSubset when true cache the OSM subset, otherwise always parse the OSM source
+   */
+  public void setCacheOsmSubset(boolean cacheOsmSubset) {
+    this.cacheOsmSubset = cacheOsmSubset;
+  }
+
+  /** Collect the directory used for the OSM subset cache file
+   *
+   * @return directory, null when the directory of the OSM source is used
+   */
+  public Path getOsmSubsetCacheDirectory() {
+    return osmSubsetCacheDirectory;
+  }
+
+  /** Set the directory to use for the OSM subset cache file (only relevant when activated)
+   *
+   * @param osmSubsetCacheDirectory to use, when null the directory of the OSM source is used
+   */
+  public void setOsmSubsetCacheDirectory(Path osmSubsetCacheDirectory) {
+    this.osmSubsetCacheDirectory = osmSubsetCacheDirectory;
+  }
+
+  /** Collect the maximum number of resolved link segment types of OSM ways cached per layer
+   *
+   * @return maximum number of cached resolutions, 0 when deactivated
+   */
+  public int getLinkSegmentTypeResolutionCacheSize() {
+    return linkSegmentTypeResolutionCacheSize;
+  }
+
+  /** Set the maximum number of resolved link segment types of OSM ways cached per layer by their access relevant tags. The resulting network is
+   * identical irrespective of the cache, except that warnings on the tags of an OSM way are only logged upon resolving it, not upon a cache hit
+   *
+   * @param linkSegmentTypeResolutionCacheSize maximum number of cached resolutions, 0 deactivates the cache
+   */
+  public void setLinkSegmentTypeResolutionCacheSize(int linkSegmentTypeResolutionCacheSize) {
+    this.linkSegmentTypeResolutionCacheSize = linkSegmentTypeResolutionCacheSize;
+  }
+
   /**
    * deactivate all types for both rail and highway
    */
@@ -760,6 +933,18 @@ public class OsmNetworkReaderSettings extends OsmReaderSettings{
     return includedOutsideBoundingPolygonOsmNodes!=null && !includedOutsideBoundingPolygonOsmNodes.isEmpty();
   }   
   
+  /** OSM nodes outside the bounding polygon are discarded unless they are explicitly kept, or belong to OSM ways that are explicitly kept
+   *
+   * @return envelope of the bounding polygon, null when there is none or OSM entities are kept outside of it
+   */
+  @Override
+  public Envelope getOsmNodeRetentionEnvelope() {
+    if(!hasBoundingPolygon() || hasKeepOsmNodesOutsideBoundingPolygon() || hasKeepOsmWaysOutsideBoundingPolygon()) {
+      return null;
+    }
+    return getBoundingPolygon().getEnvelopeInternal();
+  }
+
   /** check if OSM node is marked for keeping outside bounding polygon
    * 
    * @param osmNodeId to verify (int or long)
@@ -0,0 +1,128 @@
+package org.goplanit.osm.converter.network;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.goplanit.osm.converter.OsmEntityStore;
+import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+
+/**
+ * Handler that allows the network to be parsed in a single pass over the OSM source rather than the regular pre-processing and main processing
+ * pass. Since OSM nodes are provided before the OSM ways that reference them, we cannot know which nodes are required at the time they are parsed. Therefore,
+ * this handler buffers the nodes (compactly) as well as the eligible OSM ways. Upon completion, the buffered entities are replayed, in their
+ * original order, through the regular pre-processing and main processing handlers, such that the result is identical to the two pass approach.
+ * <p>
+ * This trades memory for avoiding a second decode of the OSM source, which is beneficial for large (compressed) inputs, e.g. PBF files, where decoding
+ * dominates the parsing time.
+ * </p>
+ *
+ * @author markr
+ *
+ */
+public class OsmNetworkSinglePassHandler extends OsmNetworkBaseHandler {
+
+  /**
+   * The logger for this class
+   */
+  private static final Logger LOGGER = Logger.getLogger(OsmNetworkSinglePassHandler.class.getCanonicalName());
+
+  /** pre-processing handler to replay the buffered entities through first */
+  private final OsmNetworkPreProcessingHandler preProcessingHandler;
+
+  /** main processing handler to replay the buffered entities through second */
+  private final OsmNetworkMainProcessingHandler mainProcessingHandler;
+
+  /** buffered OSM nodes and eligible OSM ways in order of parsing */
+  private final OsmEntityStore bufferedEntities = new OsmEntityStore();
+
+  /** Verify if the OSM node can never be used by the main processing, in which case there is no need to buffer it. This is only the case when
+   * it falls outside the bounding polygon and it cannot be marked to be kept outside the bounding polygon
+   *
+   * @param osmNode to verify
+   * @return true when it can be discarded, false otherwise
+   */
+  private boolean isDiscardableOsmNode(OsmNode osmNode) {
+    var settings = getSettings();
+    if(!settings.hasBoundingPolygon() || settings.hasKeepOsmWaysOutsideBoundingPolygon() || settings.isKeepOsmNodeOutsideBoundingPolygon(osmNode.getId())) {
+      return false;
+    }
+    return !settings.getBoundingPolygonFilter().isWithin(osmNode);
+  }
+
+  /** Buffer eligible OSM way, eligibility is identical to the regular handlers
+   *
+   * @param osmWay to buffer
+   * @param tags of the OSM way
+   */
+  protected void bufferEligibleOsmWay(OsmWay osmWay, Map<String, String> tags) {
+    bufferedEntities.registerOsmWay(osmWay);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param networkToPopulate the network to populate
+   * @param networkData to populate
+   * @param settings for the handler
+   */
+  public OsmNetworkSinglePassHandler(final PlanitOsmNetwork networkToPopulate, final OsmNetworkReaderData networkData, final OsmNetworkReaderSettings settings) {
+    super(networkToPopulate, networkData, settings);
+    this.preProcessingHandler = new OsmNetworkPreProcessingHandler(networkToPopulate, networkData, settings);
+    this.mainProcessingHandler = new OsmNetworkMainProcessingHandler(networkToPopulate, networkData, settings);
+  }
+
+  /**
+   * Count and buffer OSM node unless it can never be part of the network
+   */
+  @Override
+  public void handle(OsmNode osmNode) {
+    /* count */
+    preProcessingHandler.handle(osmNode);
+
+    if(!isDiscardableOsmNode(osmNode)) {
+      bufferedEntities.registerOsmNode(osmNode);
+    }
+  }
+
+  /**
+   * Buffer eligible OSM ways
+   */
+  @Override
+  public void handle(OsmWay osmWay) {
+    wrapHandleOsmWay(osmWay, this::bufferEligibleOsmWay);
+  }
+
+  /** Replay buffered entities through the pre-processing and main processing handlers in the same order the two pass approach would
+   */
+  @Override
+  public void complete() throws IOException {
+    LOGGER.info(String.format("Single pass: buffered %d OSM nodes and %d eligible OSM ways, replaying",
+        bufferedEntities.getNumberOfOsmNodes(), bufferedEntities.getNumberOfOsmWays()));
+
+    /* pre-processing, ways only */
+    bufferedEntities.replayOsmWays(preProcessingHandler);
+    preProcessingHandler.complete();
+
+    /* main processing, nodes then ways */
+    bufferedEntities.replayOsmNodes(mainProcessingHandler);
+    /* free up node buffer, no longer needed */
+    bufferedEntities.resetOsmNodes();
+    bufferedEntities.replayOsmWays(mainProcessingHandler);
+    bufferedEntities.reset();
+
+    mainProcessingHandler.complete();
+  }
+
+  /**
+   * reset the contents, mainly to free up unused resources
+   */
+  public void reset() {
+    super.reset();
+    bufferedEntities.reset();
+  }
+
+}
@@ -0,0 +1,218 @@
+package org.goplanit.osm.converter.network;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import org.goplanit.osm.util.Osm4JUtils;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.misc.UrlUtils;
+
+import de.topobyte.osm4j.core.access.OsmInputException;
+import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.pbf.seq.PbfWriter;
+
+/**
+ * Cache of the subset of a (local) OSM source that is relevant to the network and zoning readers. Most of a raw extract consists of buildings, land use,
+ * points of interest, etc., that are discarded on every conversion. The subset, see {@link OsmNetworkSubsetHandler}, is written in PBF format to a
+ * cache file upon the first conversion and parsed instead of the OSM source by subsequent conversions.
+ * <p>
+ *   The cache file is keyed by a fingerprint of the OSM source (location, size, and last modification time) and the settings that determine the
+ *   subset (the activated OSM way types), so any change to either results in a new cache file rather than an outdated subset being used. Once a new cache
+ *   file has been created, cache files of the same OSM source with another fingerprint are outdated and removed.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmNetworkSubsetCache {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmNetworkSubsetCache.class.getCanonicalName());
+
+  /** suffix of OSM subset cache files */
+  public static final String SUBSET_FILE_SUFFIX = ".subset.osm." + Osm4JUtils.OSM_PBF_EXTENSION;
+
+  /** version of the subset rules, increment upon any change to which OSM entities are retained to invalidate existing cache files */
+  private static final int SUBSET_VERSION = 1;
+
+  /** number of hexadecimal characters of the fingerprint used in the file name */
+  private static final int FINGERPRINT_LENGTH = 16;
+
+  /** the settings to use */
+  private final OsmNetworkReaderSettings settings;
+
+  /** Append the activated OSM way types of a parser in a canonical (sorted) form
+   *
+   * @param description to append to
+   * @param parserName to use
+   * @param activatedTypes activated types by key, null when parser is inactive
+   */
+  private static void appendActivatedTypes(StringBuilder description, String parserName, Map<String, Set<String>> activatedTypes) {
+    description.append(parserName).append('=');
+    if(activatedTypes == null) {
+      description.append("inactive");
+    }else {
+      var sortedActivatedTypes = new TreeMap<String, Set<String>>();
+      activatedTypes.forEach((key, types) -> sortedActivatedTypes.put(key, new TreeSet<>(types)));
+      description.append(sortedActivatedTypes);
+    }
+    description.append(';');
+  }
+
+  /** Create the fingerprint of the OSM source and the settings that determine the subset
+   *
+   * @param inputFile the OSM source
+   * @return fingerprint
+   * @throws IOException thrown if error
+   */
+  private String createFingerprint(File inputFile) throws IOException {
+    var description = new StringBuilder();
+    description.append("version=").append(SUBSET_VERSION).append(';');
+    description.append("source=").append(inputFile.getCanonicalPath()).append(';');
+    description.append("size=").append(inputFile.length()).append(';');
+    description.append("modified=").append(inputFile.lastModified()).append(';');
+    appendActivatedTypes(description, "highway", settings.getHighwaySettings().getSetOfActivatedOsmWayLikeTypes());
+    appendActivatedTypes(description, "railway", settings.getRailwaySettings().getSetOfActivatedOsmWayLikeTypes());
+    appendActivatedTypes(description, "waterway", settings.getWaterwaySettings().getSetOfActivatedOsmWayLikeTypes());
+
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.toString().getBytes(StandardCharsets.UTF_8));
+      var fingerprint = new StringBuilder();
+      for(int index = 0; fingerprint.length() < FINGERPRINT_LENGTH; ++index) {
+        fingerprint.append(String.format("%02x", digest[index]));
+      }
+      return fingerprint.toString();
+    }catch(NoSuchAlgorithmException e) {
+      throw new PlanItRunTimeException("Unable to create fingerprint of OSM source %s", inputFile);
+    }
+  }
+
+  /** Conduct a pass over the OSM source with the subset handler
+   *
+   * @param inputFile the OSM source
+   * @param subsetHandler to use
+   * @throws OsmInputException thrown if error
+   */
+  private void read(File inputFile, OsmNetworkSubsetHandler subsetHandler) throws OsmInputException {
+    /* subset is independent of bounding polygon, so all OSM nodes are required */
+    OsmReader osmReader = Osm4JUtils.createOsm4jReader(inputFile, settings, null);
+    if(osmReader == null) {
+      throw new OsmInputException(String.format("Unable to create OSM reader for %s", inputFile));
+    }
+    osmReader.setHandler(subsetHandler);
+    osmReader.read();
+  }
+
+  /** Create the subset cache file. The subset is written to a temporary file first, such that an aborted conversion never leaves a partial subset behind
+   *
+   * @param inputFile the OSM source
+   * @param subsetFile to create
+   * @param subsetHandler to use
+   * @throws IOException thrown if error
+   * @throws OsmInputException thrown if error
+   */
+  private void createSubset(File inputFile, File subsetFile, OsmNetworkSubsetHandler subsetHandler) throws IOException, OsmInputException {
+    LOGGER.info(String.format("Creating OSM subset cache file %s", subsetFile));
+
+    subsetHandler.setStage(OsmNetworkSubsetHandler.Stage.IDENTIFY_PT_RELATION_MEMBERS, null);
+    read(inputFile, subsetHandler);
+    subsetHandler.setStage(OsmNetworkSubsetHandler.Stage.IDENTIFY_OSM_WAYS, null);
+    read(inputFile, subsetHandler);
+
+    Path absoluteSubsetFile = subsetFile.toPath().toAbsolutePath();
+    Path temporaryFile = Files.createTempFile(absoluteSubsetFile.getParent(), absoluteSubsetFile.getFileName().toString(), ".tmp");
+    try {
+      try(OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporaryFile))){
+        subsetHandler.setStage(OsmNetworkSubsetHandler.Stage.WRITE_SUBSET, new PbfWriter(output, false));
+        read(inputFile, subsetHandler);
+      }finally {
+        subsetHandler.reset();
+      }
+      try {
+        Files.move(temporaryFile, absoluteSubsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }catch(AtomicMoveNotSupportedException e) {
+        Files.move(temporaryFile, absoluteSubsetFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /** Remove the cache files of the OSM source in the directory other than the given (current) one, i.e., those with an outdated fingerprint
+   *
+   * @param inputFile the OSM source
+   * @param subsetFile the current cache file to retain
+   */
+  private void removeOutdatedSubsets(File inputFile, File subsetFile) {
+    String prefix = inputFile.getName() + ".";
+    File[] outdatedSubsetFiles = subsetFile.getAbsoluteFile().getParentFile().listFiles( file ->
+        file.isFile() && !file.getName().equals(subsetFile.getName()) && file.getName().startsWith(prefix) && file.getName().endsWith(SUBSET_FILE_SUFFIX) &&
+        file.getName().length() == prefix.length() + FINGERPRINT_LENGTH + SUBSET_FILE_SUFFIX.length());
+    if(outdatedSubsetFiles == null) {
+      return;
+    }
+    for(File outdatedSubsetFile : outdatedSubsetFiles) {
+      try {
+        Files.deleteIfExists(outdatedSubsetFile.toPath());
+        LOGGER.info(String.format("Removed outdated OSM subset cache file %s", outdatedSubsetFile));
+      }catch(IOException e) {
+        LOGGER.warning(String.format("Unable to remove outdated OSM subset cache file %s: %s", outdatedSubsetFile, e.getMessage()));
+      }
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param settings to use
+   */
+  public OsmNetworkSubsetCache(final OsmNetworkReaderSettings settings) {
+    this.settings = settings;
+  }
+
+  /** Collect the subset cache file of the OSM source in the settings, creating it when it does not exist yet. Settings are expected to be final, i.e.,
+   * OSM way types without activated modes should already have been excluded
+   *
+   * @param subsetHandler to create the subset with if needed
+   * @return subset cache file to parse instead of the OSM source, null when not available (e.g. non-local OSM source)
+   */
+  public URL collectOrCreate(OsmNetworkSubsetHandler subsetHandler) {
+    if(!UrlUtils.isLocal(settings.getInputSource())) {
+      LOGGER.warning(String.format("OSM subset cache only supported for local OSM sources, parsing %s directly", settings.getInputSource()));
+      return null;
+    }
+
+    File inputFile = null;
+    try {
+      inputFile = Paths.get(settings.getInputSource().toURI()).toFile();
+      File directory = settings.getOsmSubsetCacheDirectory() != null ? settings.getOsmSubsetCacheDirectory().toFile() : inputFile.getAbsoluteFile().getParentFile();
+      File subsetFile = new File(directory, inputFile.getName() + "." + createFingerprint(inputFile) + SUBSET_FILE_SUFFIX);
+
+      if(subsetFile.isFile()) {
+        LOGGER.info(String.format("Using OSM subset cache file %s", subsetFile));
+      }else {
+        createSubset(inputFile, subsetFile, subsetHandler);
+        removeOutdatedSubsets(inputFile, subsetFile);
+      }
+      return subsetFile.toURI().toURL();
+    }catch(Exception e) {
+      LOGGER.warning(String.format("Unable to use OSM subset cache for %s, parsing it directly: %s", inputFile, e.getMessage()));
+    }
+    return null;
+  }
+}
@@ -0,0 +1,262 @@
+package org.goplanit.osm.converter.network;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.goplanit.osm.converter.OsmNodeIdBitSet;
+import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
+import org.goplanit.osm.tags.OsmPtv2Tags;
+import org.goplanit.osm.tags.OsmRelationTypeTags;
+import org.goplanit.osm.util.OsmPtVersionScheme;
+import org.goplanit.osm.util.OsmPtVersionSchemeUtils;
+
+import de.topobyte.osm4j.core.access.OsmOutputStream;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmBounds;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+
+/**
+ * Handler that identifies the subset of OSM entities relevant to the network and zoning readers and writes it to an output stream, see
+ * {@link OsmNetworkSubsetCache}. Retained are:
+ * <ul>
+ *   <li>OSM ways that represent activated road, rail, or waterway infrastructure, as well as OSM ways that represent public transport infrastructure</li>
+ *   <li>public transport relations, and all OSM ways and nodes that are their members</li>
+ *   <li>all OSM nodes of retained OSM ways, as well as OSM nodes that represent public transport infrastructure</li>
+ * </ul>
+ * Since OSM nodes precede OSM ways which precede OSM relations, this requires three stages (passes), each consuming a single entity type except the last.
+ * The retained OSM ways and nodes do not depend on the bounding polygon, so the subset remains valid for any bounding polygon.
+ *
+ * @author markr
+ */
+public class OsmNetworkSubsetHandler extends OsmNetworkBaseHandler {
+
+  /**
+   * The logger for this class
+   */
+  private static final Logger LOGGER = Logger.getLogger(OsmNetworkSubsetHandler.class.getCanonicalName());
+
+  /**
+   * The stage of identifying (and writing) the subset
+   */
+  public enum Stage {
+    /** identify OSM ways and nodes that are members of public transport relations */
+    IDENTIFY_PT_RELATION_MEMBERS,
+    /** identify retained OSM ways and their OSM nodes */
+    IDENTIFY_OSM_WAYS,
+    /** write all retained OSM entities */
+    WRITE_SUBSET
+  }
+
+  /** the current stage */
+  private Stage stage;
+
+  /** ids of retained OSM ways */
+  private final Set<Long> retainedOsmWays = new HashSet<>();
+
+  /** ids of retained OSM nodes, excluding those representing public transport infrastructure (which are identified while writing) */
+  private final OsmNodeIdBitSet retainedOsmNodes = new OsmNodeIdBitSet();
+
+  /** output to write retained entities to in the final stage */
+  private OsmOutputStream output = null;
+
+  /** number of OSM nodes written */
+  private long numberOfWrittenOsmNodes = 0;
+
+  /** number of OSM ways written */
+  private long numberOfWrittenOsmWays = 0;
+
+  /** number of OSM relations written */
+  private long numberOfWrittenOsmRelations = 0;
+
+  /** Verify if tags represent a (potentially) supported public transport relation
+   *
+   * @param tags to verify
+   * @return true when public transport relation, false otherwise
+   */
+  private static boolean isPublicTransportRelation(Map<String, String> tags) {
+    return tags.containsKey(OsmRelationTypeTags.TYPE) && OsmPtv2Tags.hasPublicTransportKeyTag(tags);
+  }
+
+  /** Verify if tags represent public transport infrastructure of any PT scheme
+   *
+   * @param tags to verify
+   * @return true when public transport infrastructure, false otherwise
+   */
+  private static boolean isPublicTransportInfrastructure(Map<String, String> tags) {
+    return OsmPtVersionSchemeUtils.isPublicTransportBasedInfrastructure(tags) != OsmPtVersionScheme.NONE;
+  }
+
+  /** Verify if an OSM way is retained in its own right, i.e., it represents activated road, rail, or waterway infrastructure, or public transport
+   * infrastructure
+   *
+   * @param osmWay to verify
+   * @return true when retained, false otherwise
+   */
+  boolean isRetainedOsmWay(OsmWay osmWay) {
+    var tags = getTagView().wrap(osmWay);
+    return isActivatedRoadRailOrWaterwayBasedInfrastructure(tags) || isPublicTransportInfrastructure(tags);
+  }
+
+  /** Verify if an OSM node is retained in its own right, i.e., it represents public transport infrastructure
+   *
+   * @param osmNode to verify
+   * @return true when retained, false otherwise
+   */
+  boolean isRetainedOsmNode(OsmNode osmNode) {
+    return osmNode.getNumberOfTags() > 0 && isPublicTransportInfrastructure(getTagView().wrap(osmNode));
+  }
+
+  /** Verify if an OSM relation is retained, i.e., it represents a (potentially) supported public transport relation
+   *
+   * @param osmRelation to verify
+   * @return true when retained, false otherwise
+   */
+  boolean isRetainedOsmRelation(OsmRelation osmRelation) {
+    return isPublicTransportRelation(getTagView().wrap(osmRelation));
+  }
+
+  /** Retain the members of a public transport relation
+   *
+   * @param osmRelation to retain members of
+   */
+  private void retainRelationMembers(OsmRelation osmRelation) {
+    for(int index = 0; index < osmRelation.getNumberOfMembers(); ++index) {
+      var member = osmRelation.getMember(index);
+      if(member.getType() == EntityType.Way) {
+        retainedOsmWays.add(member.getId());
+      }else if(member.getType() == EntityType.Node) {
+        retainedOsmNodes.set(member.getId());
+      }
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param networkToPopulate the network to populate
+   * @param networkData to use
+   * @param settings for the handler
+   */
+  public OsmNetworkSubsetHandler(final PlanitOsmNetwork networkToPopulate, final OsmNetworkReaderData networkData, final OsmNetworkReaderSettings settings) {
+    super(networkToPopulate, networkData, settings);
+    this.stage = Stage.IDENTIFY_PT_RELATION_MEMBERS;
+  }
+
+  /** Move to the next stage
+   *
+   * @param stage to move to
+   * @param output to write the subset to, only used in the final stage
+   */
+  public void setStage(Stage stage, OsmOutputStream output) {
+    this.stage = stage;
+    this.output = output;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Each identification stage consumes a single entity type, writing the subset requires all
+   */
+  @Override
+  public Set<EntityType> getConsumedEntityTypes() {
+    switch(stage) {
+      case IDENTIFY_PT_RELATION_MEMBERS:
+        return EnumSet.of(EntityType.Relation);
+      case IDENTIFY_OSM_WAYS:
+        return EnumSet.of(EntityType.Way);
+      default:
+        return EnumSet.allOf(EntityType.class);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void handle(OsmBounds bounds) throws IOException {
+    if(stage == Stage.WRITE_SUBSET) {
+      output.write(bounds);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void handle(OsmNode osmNode) throws IOException {
+    if(stage != Stage.WRITE_SUBSET) {
+      return;
+    }
+    if(retainedOsmNodes.get(osmNode.getId()) || isRetainedOsmNode(osmNode)) {
+      output.write(osmNode);
+      ++numberOfWrittenOsmNodes;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void handle(OsmWay osmWay) throws IOException {
+    if(stage == Stage.IDENTIFY_OSM_WAYS) {
+      if(!retainedOsmWays.contains(osmWay.getId())) {
+        if(!isRetainedOsmWay(osmWay)) {
+          return;
+        }
+        retainedOsmWays.add(osmWay.getId());
+      }
+      for(int index = 0; index < osmWay.getNumberOfNodes(); ++index) {
+        retainedOsmNodes.set(osmWay.getNodeId(index));
+      }
+    }else if(stage == Stage.WRITE_SUBSET && retainedOsmWays.contains(osmWay.getId())) {
+      output.write(osmWay);
+      ++numberOfWrittenOsmWays;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void handle(OsmRelation osmRelation) throws IOException {
+    if(stage == Stage.IDENTIFY_OSM_WAYS || !isRetainedOsmRelation(osmRelation)) {
+      return;
+    }
+    if(stage == Stage.IDENTIFY_PT_RELATION_MEMBERS) {
+      retainRelationMembers(osmRelation);
+    }else {
+      output.write(osmRelation);
+      ++numberOfWrittenOsmRelations;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void complete() throws IOException {
+    if(stage == Stage.WRITE_SUBSET) {
+      output.complete();
+      LOGGER.info(String.format("OSM subset: %d OSM nodes, %d OSM ways, %d OSM relations",
+          numberOfWrittenOsmNodes, numberOfWrittenOsmWays, numberOfWrittenOsmRelations));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    retainedOsmWays.clear();
+    retainedOsmNodes.clear();
+    numberOfWrittenOsmNodes = 0;
+    numberOfWrittenOsmWays = 0;
+    numberOfWrittenOsmRelations = 0;
+  }
+}
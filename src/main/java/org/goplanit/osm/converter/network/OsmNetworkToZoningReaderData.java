@@ -1,5 +1,6 @@
 package org.goplanit.osm.converter.network;
 
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -74,6 +75,14 @@ public class OsmNetworkToZoningReaderData {
     return networkData.getBoundingBox();
   }
   
+  /** Cached subset of the OSM source used by the network reader, which comprises all OSM entities relevant to the zoning reader as well
+   *
+   * @return OSM subset source, null if the network reader parsed the OSM source directly
+   */
+  public URL getOsmSubsetSource() {
+    return networkData.getOsmSubsetSource();
+  }
+
   /** network reader settings as used for populating the planti network absed on osm data
    * @return network reader settings used
    */
@@ -0,0 +1,172 @@
+package org.goplanit.osm.converter.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
+import org.goplanit.osm.tags.OsmHighwayTags;
+import org.goplanit.osm.tags.OsmRailwayTags;
+import org.goplanit.osm.tags.OsmTags;
+import org.goplanit.osm.tags.OsmWaterwayTags;
+import org.goplanit.utils.network.layer.NetworkLayer;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
+
+/**
+ * Classifier of OSM ways into the activated OSM way types of the network reader, compiled once from the settings and the default link segment types of the
+ * network after they have been created (and settings are final). For each activated type it precomputes whether it is activated and its default link
+ * segment type per layer, such that a single (allocation free) classification of the tags of an OSM way decides both its eligibility and its default
+ * link segment types.
+ * <p>
+ *   The parser precedence is that of the network reader, i.e., highway before railway before waterway, where the first parser whose key is present
+ *   determines the type, and areas are never classified.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmWayClassifier {
+
+  /**
+   * Activated OSM way type, e.g., highway=primary, with its default link segment type per layer
+   */
+  public static final class OsmWayType {
+
+    /** key of the type, e.g. highway */
+    private final String osmWayKey;
+
+    /** value of the type, e.g. primary */
+    private final String osmWayValue;
+
+    /** default link segment type per layer, null if none */
+    private final Map<NetworkLayer, MacroscopicLinkSegmentType> defaultLinkSegmentTypes;
+
+    /** Constructor
+     *
+     * @param osmWayKey of the type
+     * @param osmWayValue of the type
+     * @param defaultLinkSegmentTypes per layer, null if none
+     */
+    private OsmWayType(String osmWayKey, String osmWayValue, Map<NetworkLayer, MacroscopicLinkSegmentType> defaultLinkSegmentTypes) {
+      this.osmWayKey = osmWayKey;
+      this.osmWayValue = osmWayValue;
+      this.defaultLinkSegmentTypes = defaultLinkSegmentTypes;
+    }
+
+    /** Key of the type
+     *
+     * @return key, e.g. highway
+     */
+    public String getOsmWayKey() {
+      return osmWayKey;
+    }
+
+    /** Value of the type
+     *
+     * @return value, e.g. primary
+     */
+    public String getOsmWayValue() {
+      return osmWayValue;
+    }
+
+    /** Default link segment type per layer of this type
+     *
+     * @return default link segment types, null if none are available
+     */
+    public Map<NetworkLayer, MacroscopicLinkSegmentType> getDefaultLinkSegmentTypes() {
+      return defaultLinkSegmentTypes;
+    }
+  }
+
+  /** flag indicating highway parser is active */
+  private final boolean highwayParserActive;
+
+  /** flag indicating railway parser is active */
+  private final boolean railwayParserActive;
+
+  /** flag indicating waterway parser is active */
+  private final boolean waterwayParserActive;
+
+  /** activated types by value by key */
+  private final Map<String, Map<String, OsmWayType>> osmWayTypesByValueByKey = new HashMap<>();
+
+  /** Register the activated types of a parser for the given key
+   *
+   * @param osmWayKey to register for
+   * @param activatedTypes activated types of the parser by key, null if parser is inactive
+   * @param network with the default link segment types
+   */
+  private void registerActivatedTypes(String osmWayKey, Map<String, Set<String>> activatedTypes, PlanitOsmNetwork network) {
+    if(activatedTypes == null) {
+      return;
+    }
+    var osmWayTypesByValue = osmWayTypesByValueByKey.computeIfAbsent(osmWayKey, key -> new HashMap<>());
+    /* activation is determined by value only, regardless of the key it is registered under */
+    for(Set<String> activatedValues : activatedTypes.values()) {
+      for(String osmWayValue : activatedValues) {
+        osmWayTypesByValue.put(osmWayValue, new OsmWayType(osmWayKey, osmWayValue, network.getDefaultLinkSegmentTypeByOsmTag(osmWayKey, osmWayValue)));
+      }
+    }
+  }
+
+  /**
+   * Constructor, compiles the classifier
+   *
+   * @param settings to compile from, expected to be final
+   * @param network to compile from, with its (OSM compatible) default link segment types already created
+   */
+  public OsmWayClassifier(final OsmNetworkReaderSettings settings, final PlanitOsmNetwork network) {
+    this.highwayParserActive = settings.isHighwayParserActive();
+    this.railwayParserActive = settings.isRailwayParserActive();
+    this.waterwayParserActive = settings.isWaterwayParserActive();
+
+    if(highwayParserActive) {
+      registerActivatedTypes(OsmHighwayTags.getHighwayKeyTag(), settings.getHighwaySettings().getSetOfActivatedOsmWayLikeTypes(), network);
+    }
+    if(railwayParserActive) {
+      registerActivatedTypes(OsmRailwayTags.getRailwayKeyTag(), settings.getRailwaySettings().getSetOfActivatedOsmWayLikeTypes(), network);
+    }
+    if(waterwayParserActive) {
+      /* water ways are either tagged as route=ferry, or as ferry=<highway type> */
+      var activatedWaterwayTypes = settings.getWaterwaySettings().getSetOfActivatedOsmWayLikeTypes();
+      registerActivatedTypes(OsmWaterwayTags.ROUTE, activatedWaterwayTypes, network);
+      registerActivatedTypes(OsmWaterwayTags.FERRY, activatedWaterwayTypes, network);
+    }
+  }
+
+  /** Collect the key that determines the type of an OSM way, i.e., the key of the first active parser that applies
+   *
+   * @param tags of the OSM way
+   * @return key, null when OSM way is an area or no active parser applies
+   */
+  public String getOsmWayKey(Map<String, String> tags) {
+    if(OsmTags.isArea(tags)) {
+      return null;
+    }
+    if(highwayParserActive && OsmHighwayTags.hasHighwayKeyTag(tags)) {
+      return OsmHighwayTags.getHighwayKeyTag();
+    }else if(railwayParserActive && OsmRailwayTags.hasRailwayKeyTag(tags)) {
+      return OsmRailwayTags.getRailwayKeyTag();
+    }else if(waterwayParserActive && OsmWaterwayTags.isWaterBasedWay(tags)) {
+      return OsmWaterwayTags.getUsedKeyTag(tags);
+    }
+    return null;
+  }
+
+  /** Classify an OSM way
+   *
+   * @param tags of the OSM way
+   * @return activated type of the OSM way, null when it is not of an activated type (or an area)
+   */
+  public OsmWayType classify(Map<String, String> tags) {
+    String osmWayKey = getOsmWayKey(tags);
+    if(osmWayKey == null) {
+      return null;
+    }
+    var osmWayTypesByValue = osmWayTypesByValueByKey.get(osmWayKey);
+    if(osmWayTypesByValue == null) {
+      return null;
+    }
+    String osmWayValue = tags.get(osmWayKey);
+    return osmWayValue == null ? null : osmWayTypesByValue.get(osmWayValue);
+  }
+}
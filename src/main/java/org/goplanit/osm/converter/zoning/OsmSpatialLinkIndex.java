@@ -0,0 +1,134 @@
+package org.goplanit.osm.converter.zoning;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.goplanit.utils.geo.PlanitJtsUtils;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLink;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinks;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.quadtree.Quadtree;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * Spatial index of PLANit links used during zoning parsing. The vast majority of links is known upfront and never changes, while a comparatively small number
+ * of links is removed and (re)created when links are broken to attach connectoids. Therefore the index is hybrid:
+ * <ul>
+ *   <li>base: an immutable packed R-tree (STR) bulk-loaded with the links of the reference network upon construction</li>
+ *   <li>overlay: a small mutable quadtree for links added (or re-added with a modified geometry) afterwards</li>
+ *   <li>tombstones: links removed from the base, which are ignored when found in the base</li>
+ * </ul>
+ * Query results are filtered on the actual link geometry intersecting the search area, so false positives due to the coarseness of the envelopes are removed.
+ *
+ * @author markr
+ */
+public class OsmSpatialLinkIndex {
+
+  /** immutable bulk loaded index of the original links */
+  private final STRtree baseLinks;
+
+  /** links removed since construction that are present in the base index */
+  private final Set<MacroscopicLink> removedBaseLinks = new HashSet<>();
+
+  /** mutable index of links added since construction */
+  private final Quadtree overlayLinks = new Quadtree();
+
+  /** envelope used upon insertion of each link in the overlay, required for removal since the geometry of a link may change in the meantime */
+  private final Map<MacroscopicLink, Envelope> overlayLinkEnvelopes = new HashMap<>();
+
+  /** Add the link to the result when its geometry intersects the search area
+   *
+   * @param link to verify
+   * @param searchArea to intersect with
+   * @param result to populate
+   */
+  private static void addIfIntersecting(MacroscopicLink link, Polygon searchArea, Collection<MacroscopicLink> result) {
+    if(link.getGeometry() != null && searchArea.intersects(link.getGeometry())) {
+      result.add(link);
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param linksCollection links to bulk load into the base index
+   */
+  public OsmSpatialLinkIndex(Collection<MacroscopicLinks> linksCollection) {
+    this.baseLinks = new STRtree();
+    for(MacroscopicLinks links : linksCollection) {
+      for(MacroscopicLink link : links) {
+        baseLinks.insert(link.createEnvelope(), link);
+      }
+    }
+    /* pack the tree, no insertions possible from here on */
+    baseLinks.build();
+  }
+
+  /** Remove links from the index
+   *
+   * @param links to remove
+   */
+  public void remove(Collection<MacroscopicLink> links) {
+    for(MacroscopicLink link : links) {
+      Envelope overlayEnvelope = overlayLinkEnvelopes.remove(link);
+      if(overlayEnvelope != null) {
+        overlayLinks.remove(overlayEnvelope, link);
+      }else {
+        removedBaseLinks.add(link);
+      }
+    }
+  }
+
+  /** Add links to the index based on their current geometry. Links already present are replaced
+   *
+   * @param links to add
+   */
+  public void add(Collection<MacroscopicLink> links) {
+    for(MacroscopicLink link : links) {
+      Envelope overlayEnvelope = overlayLinkEnvelopes.remove(link);
+      if(overlayEnvelope != null) {
+        overlayLinks.remove(overlayEnvelope, link);
+      }else {
+        /* base version (if any) is stale */
+        removedBaseLinks.add(link);
+      }
+      Envelope envelope = link.createEnvelope();
+      overlayLinks.insert(envelope, link);
+      overlayLinkEnvelopes.put(link, envelope);
+    }
+  }
+
+  /** Find links whose geometry intersects the bounding box
+   *
+   * @param searchBoundingBox to use
+   * @return links found intersecting or within bounding box provided
+   */
+  public Collection<MacroscopicLink> query(Envelope searchBoundingBox) {
+    final Set<MacroscopicLink> result = new HashSet<>();
+    final Polygon searchArea = PlanitJtsUtils.create2DPolygon(searchBoundingBox);
+
+    baseLinks.query(searchBoundingBox, item -> {
+      MacroscopicLink link = (MacroscopicLink) item;
+      if(!removedBaseLinks.contains(link)) {
+        addIfIntersecting(link, searchArea, result);
+      }
+    });
+
+    if(!overlayLinkEnvelopes.isEmpty()) {
+      overlayLinks.query(searchBoundingBox, item -> addIfIntersecting((MacroscopicLink) item, searchArea, result));
+    }
+    return result;
+  }
+
+  /** Number of links added or removed since construction
+   *
+   * @return number of modified links
+   */
+  public int getNumberOfModifiedLinks() {
+    return removedBaseLinks.size() + overlayLinkEnvelopes.size();
+  }
+}
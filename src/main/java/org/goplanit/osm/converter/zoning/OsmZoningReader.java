@@ -1,9 +1,11 @@
 package org.goplanit.osm.converter.zoning;
 
+import java.io.IOException;
 import java.net.URL;
 import java.util.logging.Logger;
 
 import org.goplanit.converter.zoning.ZoningReader;
+import org.goplanit.osm.converter.OsmEntityStore;
 import org.goplanit.osm.converter.network.OsmNetworkToZoningReaderData;
 import org.goplanit.osm.converter.zoning.handler.OsmZoningHandlerBase;
 import org.goplanit.osm.converter.zoning.handler.OsmZoningHandlerProfiler;
@@ -12,6 +14,7 @@ import org.goplanit.osm.converter.zoning.handler.OsmZoningPreProcessingHandler;
 import org.goplanit.osm.converter.zoning.handler.OsmZoningPreProcessingHandler.Stage;
 import org.goplanit.osm.converter.zoning.handler.OsmZoningMainProcessingHandler;
 import org.goplanit.osm.physical.network.macroscopic.PlanitOsmNetwork;
+import org.goplanit.osm.tags.OsmRelationTypeTags;
 import org.goplanit.osm.util.Osm4JUtils;
 import org.goplanit.osm.util.PlanitZoningUtils;
 import org.goplanit.utils.exceptions.PlanItException;
@@ -19,8 +22,10 @@ import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.misc.StringUtils;
 import org.goplanit.zoning.Zoning;
 
+import de.topobyte.osm4j.core.access.OsmHandler;
 import de.topobyte.osm4j.core.access.OsmInputException;
 import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.core.model.util.OsmModelUtil;
 
 /**
  * Parse OSM input in either *.osm or *.osm.pbf format and return PLANit zoning instance comprising of the identified transfer zones.
@@ -53,6 +58,12 @@ public class OsmZoningReader implements ZoningReader {
   /** the (temporary) data gathered during parsing of OSM (transfer) zones */
   private OsmZoningReaderData zoningReaderData;
 
+  /** OSM entities retained during main processing to conduct post-processing on without parsing the OSM source again */
+  private final OsmEntityStore postProcessingEntities = new OsmEntityStore();
+
+  /** already decoded OSM entities to use instead of parsing the input source, if any */
+  private OsmEntityStore sharedOsmEntities = null;
+
   /**
    * the network data required to perform successful parsing of zones, passed in exogenously from an OSM network reader
    * after parsing the reference network
@@ -67,6 +78,22 @@ public class OsmZoningReader implements ZoningReader {
   /** zoning to populate */
   private Zoning zoning;
        
+  /** Create the OSM reader to use for a pass over the OSM entities. When shared OSM entities are available, these are replayed rather than
+   * parsing the input source. When the network reader parsed a cached OSM subset of the same input source, this subset is parsed instead
+   *
+   * @return OSM reader, null if not possible to create
+   */
+  private OsmReader createOsm4jReader() {
+    if(sharedOsmEntities != null) {
+      return sharedOsmEntities.createReader();
+    }
+    URL osmSubsetSource = network2ZoningData.getOsmSubsetSource();
+    if(osmSubsetSource != null && getSettings().getInputSource().toString().equals(network2ZoningData.getNetworkSettings().getInputSource().toString())) {
+      return Osm4JUtils.createOsm4jReader(osmSubsetSource, getSettings(), getSettings().getOsmNodeRetentionEnvelope());
+    }
+    return Osm4JUtils.createOsm4jReader(getSettings());
+  }
+
   /**
    * Log some information about this reader's configuration 
    */
@@ -116,40 +143,17 @@ public class OsmZoningReader implements ZoningReader {
   }
 
   /**
-   * conduct pre-processing pass to identify the platform relation OSM ways that we should mark to register (its nodes) to be available
-   * in memory when conducting the actual parsing of features later on. 
-   * @param profiler to use
-   */
-  private void preProcessPlatformRelations(final OsmZoningHandlerProfiler profiler) {
-    /* reader to parse the actual file for preprocessing  */
-    OsmReader osmReader = Osm4JUtils.createOsm4jReader(getSettings().getInputSource());
-    if(osmReader == null) {
-      LOGGER.severe("Unable to create OSM reader for pre-processing platforms modelled as polygons, aborting");
-    }else {    
-      osmPreProcessingHandler = new OsmZoningPreProcessingHandler(
-          this.getReferenceNetwork(),
-          this.zoning,
-          this.transferSettings,
-          this.zoningReaderData,
-          this.network2ZoningData,
-          Stage.IDENTIFY_PLATFORM_AS_RELATIONS,
-          profiler);
-      read(osmReader, osmPreProcessingHandler);     
-    }
-  }
-
-  /**
-   * Conduct pre-processing pass to identify the nodes required to perform platform parsing of platforms
-   * identified earlier as being coded as relations, see {@link #preProcessPlatformRelations(OsmZoningHandlerProfiler)}
+   * Conduct pre-processing pass to identify the platform relation OSM ways that we should mark to register (its nodes) to be available
+   * in memory when conducting the actual parsing of features later on, as well as identifying the nodes required to perform parsing of
+   * (platform) OSM ways and relations during the main processing pass. Both are combined in a single pass over the OSM source.
    *
    * @param profiler to use
-   *
    */
-  private void preProcessPtNodePreregistration(final OsmZoningHandlerProfiler profiler) {
+  private void preProcessPlatformRelationsAndPtNodes(final OsmZoningHandlerProfiler profiler) {
     /* reader to parse the actual file for preprocessing  */
-    OsmReader osmReader = Osm4JUtils.createOsm4jReader(getSettings().getInputSource());
+    OsmReader osmReader = createOsm4jReader();
     if(osmReader == null) {
-      LOGGER.severe("Unable to create OSM reader for pre-processing public transport node pre-registration, aborting");
+      LOGGER.severe("Unable to create OSM reader for pre-processing platforms and public transport nodes, aborting");
     }else {
       osmPreProcessingHandler = new OsmZoningPreProcessingHandler(
           this.getReferenceNetwork(),
@@ -157,11 +161,11 @@ public class OsmZoningReader implements ZoningReader {
           this.transferSettings,
           this.zoningReaderData,
           this.network2ZoningData,
-          Stage.IDENTIFY_PT_NODES,
+          Stage.IDENTIFY_PLATFORM_AS_RELATIONS_AND_PT_NODES,
           profiler);
       read(osmReader, osmPreProcessingHandler);
     }
-  }  
+  }
 
   /**
    * Conduct pre-processing step of zoning reader that cannot be conducted as part of the regular processing due to 
@@ -172,16 +176,14 @@ public class OsmZoningReader implements ZoningReader {
   private void doPreprocessing(final OsmZoningHandlerProfiler profiler){
     
     /* identify all relations that represent a (single) platform either as a single polygon, or multi-polygon 
-     * and mark their ways to be kept, which then in the next pass ensures these way's nodes are pre-registered to be kept as well */
-    LOGGER.info("Pre-processing: Identifying relations representing public transport platforms");
-    preProcessPlatformRelations(profiler);
+     * and mark their ways to be kept, which ensures these way's nodes are pre-registered to be kept as well, together with all other
+     * nodes required for public transport */
+    LOGGER.info("Pre-processing: Identifying relations representing public transport platforms and OSM nodes for public transport");
+    preProcessPlatformRelationsAndPtNodes(profiler);
     if(zoningReaderData.getOsmData().hasOsmRelationOuterRoleOsmWays()) {
       LOGGER.info(String.format("Identified %d OSM ways that are outer roles of osm relations and eligible to be converted to platforms",zoningReaderData.getOsmData().getNumberOfOuterRoleOsmWays()));
     }
 
-    LOGGER.info("Pre-processing: Identifying OSM nodes for public transport");
-    preProcessPtNodePreregistration(profiler);
-
   }  
   
   /**
@@ -191,7 +193,7 @@ public class OsmZoningReader implements ZoningReader {
    */
   private void doMainProcessing(OsmZoningHandlerProfiler profiler) {
     /* reader to parse the actual file */
-    OsmReader osmReader = Osm4JUtils.createOsm4jReader(getSettings().getInputSource());
+    OsmReader osmReader = createOsm4jReader();
     if(osmReader == null) {
       LOGGER.severe("unable to create OSM reader for zones, aborting");
     }else {
@@ -204,32 +206,41 @@ public class OsmZoningReader implements ZoningReader {
           getReferenceNetwork(),
           this.zoning, 
           profiler);
-      read(osmReader, osmHandler);
+
+      /* retain the public transport relations during this pass, so post-processing does not require another pass over the OSM source */
+      postProcessingEntities.setOsmRelationFilter(
+          osmRelation -> OsmRelationTypeTags.PUBLIC_TRANSPORT.equals(OsmModelUtil.getTagsAsMap(osmRelation).get(OsmRelationTypeTags.TYPE)));
+      osmHandler.initialiseBeforeParsing();
+      read(osmReader, postProcessingEntities.createCapturingHandler(osmHandler));
     } 
   }   
   
   /**
-   * conduct post-processing processing step of zoning reader given the information available from pre-processing
+   * conduct post-processing processing step of zoning reader given the information available from pre-processing. Rather than parsing the
+   * OSM source again, the post-processing is applied to the OSM entities retained during main processing
    *  
    * @param profiler  to use
    */
   private void doPostProcessing(OsmZoningHandlerProfiler profiler) {
-    /* reader to parse the actual file */
-    OsmReader osmReader = Osm4JUtils.createOsm4jReader(getSettings().getInputSource());
-    if(osmReader == null) {
-      LOGGER.severe("unable to create OSM reader for post-processing zones, aborting");
-    }else {
 
-      /* handler to deal with callbacks from osm4j */
-      osmPostProcessingHandler = new OsmZoningPostProcessingHandler(
-          this.transferSettings, 
-          this.zoningReaderData,
-          this.network2ZoningData,
-          getReferenceNetwork(),
-          this.zoning,
-          profiler);
-      read(osmReader, osmPostProcessingHandler);        
-    } 
+    /* handler to deal with callbacks from retained OSM entities */
+    osmPostProcessingHandler = new OsmZoningPostProcessingHandler(
+        this.transferSettings, 
+        this.zoningReaderData,
+        this.network2ZoningData,
+        getReferenceNetwork(),
+        this.zoning,
+        profiler);
+    try {
+      osmPostProcessingHandler.initialiseBeforeParsing();
+      postProcessingEntities.replay(osmPostProcessingHandler);
+    }catch (IOException e) {
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Error during post-processing of retained OSM entities",e);
+    }finally {
+      /* free memory */
+      postProcessingEntities.reset();
+    }
   }
 
   protected PlanitOsmNetwork getReferenceNetwork(){
@@ -242,16 +253,25 @@ public class OsmZoningReader implements ZoningReader {
    * @param osmHandler to use
    */
   protected void read(OsmReader osmReader, OsmZoningHandlerBase osmHandler){
-    try {  
-      osmHandler.initialiseBeforeParsing();
+    osmHandler.initialiseBeforeParsing();
+    read(osmReader, (OsmHandler) osmHandler);
+  }
+
+  /** conduct reading of data with given reader and (initialised) handler
+   *
+   * @param osmReader to use
+   * @param osmHandler to use
+   */
+  private void read(OsmReader osmReader, OsmHandler osmHandler){
+    try {
       /* register handler */
       osmReader.setHandler(osmHandler);
       /* conduct parsing which will call back the handler*/
-      osmReader.read();  
+      osmReader.read();
     }catch (OsmInputException e) {
       LOGGER.severe(e.getMessage());
       throw new PlanItRunTimeException("Error during parsing of OSMfile",e);
-    }       
+    }
   }
 
   /**
@@ -303,7 +323,7 @@ public class OsmZoningReader implements ZoningReader {
     OsmZoningHandlerProfiler handlerProfiler = new OsmZoningHandlerProfiler();
     logInfo();
                 
-    /* preprocessing (multi-polygon relation: OSM way identification)*/
+    /* preprocessing (multi-polygon relation: OSM way identification and OSM node pre-registration)*/
     doPreprocessing(handlerProfiler);
     
     /* main processing  (all but stop_positions)*/
@@ -341,9 +361,20 @@ public class OsmZoningReader implements ZoningReader {
     this.osmHandler.reset();
     this.osmPreProcessingHandler.reset();
     this.osmPostProcessingHandler.reset();
+    this.postProcessingEntities.reset();
     this.zoningReaderData.reset();
   }  
 
+  /** Provide OSM entities that have already been decoded from the input source. When set, the reader replays these rather than parsing the input
+   * source itself. The entities are expected to comprise at least all entities this reader relies upon, e.g., as provided by the intermodal reader
+   * which shares a single decode of the input source across its network and zoning readers
+   *
+   * @param sharedOsmEntities to use, null to parse the input source
+   */
+  public void setSharedOsmEntities(final OsmEntityStore sharedOsmEntities) {
+    this.sharedOsmEntities = sharedOsmEntities;
+  }
+
   /**
    * Collect the settings which can be used to configure the reader
    * 
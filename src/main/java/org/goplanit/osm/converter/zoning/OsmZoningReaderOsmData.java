@@ -324,6 +324,13 @@ public class OsmZoningReaderOsmData {
     return osmOuterRoleOsmWaysToKeep.get(osmWayId);
   }
   
+  /** Collect the ids of all OSM ways marked as outer role of a relation, irrespective of whether the OSM way itself is available already
+   * @return unmodifiable set of OSM way ids marked as outer role
+   */
+  public Set<Long> getOuterRoleOsmWayIds() {
+    return Collections.unmodifiableSet(osmOuterRoleOsmWaysToKeep.keySet());
+  }
+
   /** check if outer role marked osm ways exist
    * @return true when present false otherwise
    */
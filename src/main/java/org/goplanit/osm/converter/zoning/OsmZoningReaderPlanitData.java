@@ -12,7 +12,6 @@ import org.goplanit.osm.tags.OsmTags;
 import org.goplanit.osm.util.Osm4JUtils;
 import org.goplanit.osm.util.OsmTagUtils;
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
-import org.goplanit.utils.geo.GeoContainerUtils;
 import org.goplanit.utils.geo.PlanitJtsIntersectZoneVisitor;
 import org.goplanit.utils.geo.PlanitJtsUtils;
 import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
@@ -70,7 +69,7 @@ public class OsmZoningReaderPlanitData {
   
   /** to be able to map stand-alone stations and platforms to connectoids in the network, we must be able to spatially find close by created
    * links, this is what we do here. */
-  private Quadtree spatiallyIndexedPlanitLinks = null; 
+  private OsmSpatialLinkIndex spatiallyIndexedPlanitLinks = null; 
   
   
   /** initialise based on links in provided network
@@ -82,7 +81,7 @@ public class OsmZoningReaderPlanitData {
     for(MacroscopicNetworkLayer layer : osmNetwork.getTransportLayers()) {
       linksCollection.add(layer.getLinks());
     }
-    spatiallyIndexedPlanitLinks = GeoContainerUtils.toGeoIndexed(linksCollection);
+    spatiallyIndexedPlanitLinks = new OsmSpatialLinkIndex(linksCollection);
   }
       
         
@@ -317,7 +316,7 @@ public class OsmZoningReaderPlanitData {
     transferZonesByOsmEntityId.clear();
     directedConnectoidsByLocation.clear();
     connectoidsByTransferZone.clear();
-    spatiallyIndexedPlanitLinks = new Quadtree();
+    spatiallyIndexedPlanitLinks = new OsmSpatialLinkIndex(Collections.emptyList());
   }
 
   /* SPATIAL LINK INDEX RELATED METHODS */
@@ -328,7 +327,7 @@ public class OsmZoningReaderPlanitData {
    */
   public void removeLinksFromSpatialLinkIndex(Collection<MacroscopicLink> links) {
     if(links != null) {
-      links.forEach( link -> spatiallyIndexedPlanitLinks.remove(link.createEnvelope(), link));
+      spatiallyIndexedPlanitLinks.remove(links);
     }
   }  
   
@@ -338,7 +337,7 @@ public class OsmZoningReaderPlanitData {
    */  
   public void addLinksToSpatialLinkIndex(Collection<MacroscopicLink> links) {
     if(links != null) {
-      links.forEach( link -> spatiallyIndexedPlanitLinks.insert(link.createEnvelope(), link));
+      spatiallyIndexedPlanitLinks.add(links);
     }
   }   
     
@@ -348,7 +347,7 @@ public class OsmZoningReaderPlanitData {
    * @return links found intersecting or within bounding box provided
    */
   public Collection<MacroscopicLink> findLinksSpatially(Envelope searchBoundingBox) {
-    return GeoContainerUtils.queryEdgeQuadtree(spatiallyIndexedPlanitLinks, searchBoundingBox);
+    return spatiallyIndexedPlanitLinks.query(searchBoundingBox);
   }
 
   /**
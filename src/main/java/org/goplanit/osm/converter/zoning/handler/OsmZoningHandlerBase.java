@@ -1,10 +1,13 @@
 package org.goplanit.osm.converter.zoning.handler;
 
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 
 import de.topobyte.osm4j.core.model.iface.*;
+import org.goplanit.osm.converter.OsmEntityTypeAwareHandler;
 import org.goplanit.osm.converter.network.OsmNetworkReaderData;
 import org.goplanit.osm.converter.network.OsmNetworkToZoningReaderData;
 import org.goplanit.osm.converter.zoning.OsmPublicTransportReaderSettings;
@@ -24,7 +27,6 @@ import org.goplanit.zoning.Zoning;
 import org.locationtech.jts.geom.Geometry;
 
 import de.topobyte.osm4j.core.access.DefaultOsmHandler;
-import de.topobyte.osm4j.core.model.util.OsmModelUtil;
 
 /**
  * Base Handler for all zoning handlers. Contains shared functionality that is used across the different zoning handlers 
@@ -32,7 +34,7 @@ import de.topobyte.osm4j.core.model.util.OsmModelUtil;
  * @author markr
  * 
  */
-public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
+public abstract class OsmZoningHandlerBase extends DefaultOsmHandler implements OsmEntityTypeAwareHandler {
 
   /**
    * The logger for this class
@@ -79,6 +81,9 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
   
   /** parser functionality regarding the creation of PLANit connectoids from OSM entities */
   private final OsmConnectoidHelper connectoidHelper;
+
+  /** reusable view on the tags of the OSM entity being handled, avoids creating a map for each entity that is rejected */
+  private final OsmTagView tagView = new OsmTagView();
       
   /** Skip OSM pt entity when marked for exclusion in settings
    * 
@@ -93,6 +98,16 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
         (entityType.equals(EntityType.Way) && getSettings().isExcludedOsmWay(osmId)); 
   }    
 
+  /**
+   * {@inheritDoc}
+   *
+   * By default all entity types are consumed, handlers that ignore some entity types should override this
+   */
+  @Override
+  public Set<EntityType> getConsumedEntityTypes() {
+    return EnumSet.allOf(EntityType.class);
+  }
+
   protected PlanitOsmNetwork getReferenceNetwork(){
     return referenceNetwork;
   }
@@ -134,7 +149,7 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
     if(!getSettings().hasBoundingPolygon()) {
       return true;
     }else {
-      return OsmBoundingAreaUtils.isCoveredByZoningBoundingPolygon(osmNode, getSettings().getBoundingPolygon());
+      return OsmBoundingAreaUtils.isCoveredByZoningBoundingPolygon(osmNode, getSettings().getBoundingPolygonFilter());
     }
   }
 
@@ -162,7 +177,7 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
       return true;
     }else {
       return OsmBoundingAreaUtils.isCoveredByZoningBoundingPolygon(
-              osmWay, zoningReaderData.getOsmData().getOsmNodeData().getRegisteredOsmNodes(), getSettings().getBoundingPolygon());
+              osmWay, zoningReaderData.getOsmData().getOsmNodeData().getRegisteredOsmNodes(), getSettings().getBoundingPolygonFilter());
     }
   }  
   
@@ -206,7 +221,7 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
    * @param osmWayConsumer to apply to eligible OSM way
    */
   protected void wrapHandlePtOsmWay(OsmWay osmWay, TriConsumer<OsmWay, OsmPtVersionScheme, Map<String, String>> osmWayConsumer) {
-    Map<String, String> tags = OsmModelUtil.getTagsAsMap(osmWay);  
+    Map<String, String> tags = tagView.wrap(osmWay);
     
     try {       
       
@@ -219,8 +234,8 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
           return;
         }                    
         
-        // Delegate, deemed eligible
-        osmWayConsumer.accept(osmWay, ptVersion, tags);
+        // Delegate, deemed eligible, consumer may retain tags, so provide a copy
+        osmWayConsumer.accept(osmWay, ptVersion, tagView.copy());
         
       }      
     } catch (PlanItRunTimeException e) {
@@ -237,7 +252,7 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
    * @param osmRelationConsumer to apply when relation is has Ptv2 public transport tags and is either a stop area or multipolygon transport platform
    */
   protected void wrapHandlePtOsmRelation(OsmRelation osmRelation, BiConsumer<OsmRelation, Map<String, String>> osmRelationConsumer){
-    Map<String, String> tags = OsmModelUtil.getTagsAsMap(osmRelation);
+    Map<String, String> tags = tagView.wrap(osmRelation);
     try {
 
       /* only parse when parser is active and type is available */
@@ -262,8 +277,8 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
           return;
         }
 
-        /* when not returned, it represents a potentially supported OSM Pt relation */
-        osmRelationConsumer.accept(osmRelation, tags);
+        /* when not returned, it represents a potentially supported OSM Pt relation, consumer may retain tags, so provide a copy */
+        osmRelationConsumer.accept(osmRelation, tagView.copy());
       }
 
     } catch (PlanItRunTimeException e) {
@@ -279,7 +294,7 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
    */
   protected void wrapHandlePtOsmNode(OsmNode osmNode, TriConsumer<OsmNode, OsmPtVersionScheme, Map<String, String>> osmNodeConsumer) {
 
-    Map<String, String> tags = OsmModelUtil.getTagsAsMap(osmNode);
+    Map<String, String> tags = tagView.wrap(osmNode);
     try {
 
       /* only parse nodes that are potentially used for (PT) transfers*/
@@ -297,7 +312,8 @@ public abstract class OsmZoningHandlerBase extends DefaultOsmHandler {
           return;
         }
 
-        osmNodeConsumer.accept(osmNode,ptVersion, tags);
+        /* consumer may retain tags, so provide a copy */
+        osmNodeConsumer.accept(osmNode,ptVersion, tagView.copy());
       }
 
     } catch (PlanItRunTimeException e) {
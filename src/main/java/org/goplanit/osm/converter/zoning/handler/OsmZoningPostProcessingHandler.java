@@ -1300,6 +1300,16 @@ public class OsmZoningPostProcessingHandler extends OsmZoningHandlerBase {
     initialiseSpatiallyIndexedOsmNodesInternalToPlanitLinks();
   }  
 
+  /**
+   * {@inheritDoc}
+   *
+   * Only OSM relations are consumed during post-processing
+   */
+  @Override
+  public Set<EntityType> getConsumedEntityTypes() {
+    return EnumSet.of(EntityType.Relation);
+  }
+
   /**
    * {@inheritDoc}
    */  
@@ -1,10 +1,13 @@
 package org.goplanit.osm.converter.zoning.handler;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import de.topobyte.osm4j.core.model.iface.*;
+import org.goplanit.osm.converter.OsmWayNodeIdsStore;
 import org.goplanit.osm.converter.network.OsmNetworkToZoningReaderData;
 import org.goplanit.osm.converter.zoning.OsmPublicTransportReaderSettings;
 import org.goplanit.osm.converter.zoning.OsmZoningReaderData;
@@ -30,6 +33,11 @@ import org.goplanit.zoning.Zoning;
  *     will pre-register all remaining unregistered OSM nodes part of relations that are not part of the physical network, such as
  *     station nodes
  * </p>
+ * <p>
+ *     Alternatively, run pre-processing once with IDENTIFY_PLATFORM_AS_RELATIONS_AND_PT_NODES which combines both stages in a single pass. Since
+ *     relations are parsed after ways, the node ids of all OSM ways are retained in a compact store such that the nodes of OSM ways identified
+ *     as platform outer roles can be pre-registered upon completion.
+ * </p>
  * 
  * @author markr
  * 
@@ -43,6 +51,7 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
   public enum Stage {
     IDENTIFY_PLATFORM_AS_RELATIONS,
     IDENTIFY_PT_NODES,
+    IDENTIFY_PLATFORM_AS_RELATIONS_AND_PT_NODES,
   }
 
   /**
@@ -53,6 +62,9 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
   /** track processing stage within pre-processor */
   private final Stage stage;
 
+  /** node ids of parsed OSM ways, only used when combining stages, to be able to pre-register nodes of OSM ways identified as outer role afterwards */
+  private final OsmWayNodeIdsStore osmWayNodeIdsStore;
+
   /** Determine if relation represents a platform worth retaining
    * @param osmRelation to verify
    * @param tags of relation
@@ -104,6 +116,23 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
     }
   }
 
+  /** pre-register all nodes of OSM ways marked as outer role of a platform relation based on the stored node ids of all parsed OSM ways. Only
+   * used when combining stages where OSM ways are parsed before the relations that mark them
+   */
+  private void preRegisterOuterRoleNodesFromStore() {
+    var osmData = getZoningReaderData().getOsmData();
+    for(long osmWayId : osmData.getOuterRoleOsmWayIds()) {
+      long[] osmNodeIds = osmWayNodeIdsStore.getNodeIds(osmWayId);
+      if(osmNodeIds == null) {
+        /* not available in source, same as not encountering the OSM way in a separate pass */
+        continue;
+      }
+      for(int index=0;index<osmNodeIds.length;++index) {
+        osmData.getOsmNodeData().preRegisterEligibleOsmNode(osmNodeIds[index]);
+      }
+    }
+  }
+
   /**
    * Identify ways identified as platforms part of a relation and pre-register its nodes for in-memory retainment
    *
@@ -173,6 +202,7 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
       OsmZoningHandlerProfiler profiler) {
     super(transferSettings, zoningReaderData, network2ZoningData, referenceNetwork,zoningToPopulate, profiler);
     this.stage = stage;
+    this.osmWayNodeIdsStore = stage == Stage.IDENTIFY_PLATFORM_AS_RELATIONS_AND_PT_NODES ? new OsmWayNodeIdsStore() : null;
   }
   
   /**
@@ -183,6 +213,23 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
     reset(); 
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * OSM nodes are never consumed, OSM ways only when identifying PT nodes, and OSM relations only when identifying platforms as relations
+   */
+  @Override
+  public Set<EntityType> getConsumedEntityTypes() {
+    switch(stage) {
+      case IDENTIFY_PLATFORM_AS_RELATIONS:
+        return EnumSet.of(EntityType.Relation);
+      case IDENTIFY_PT_NODES:
+        return EnumSet.of(EntityType.Way);
+      default:
+        return EnumSet.of(EntityType.Way, EntityType.Relation);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -193,10 +240,15 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
       int bla = 4;
     }
 
-    if(stage != Stage.IDENTIFY_PT_NODES){
+    if(stage == Stage.IDENTIFY_PLATFORM_AS_RELATIONS){
       return;
     }
 
+    if(stage == Stage.IDENTIFY_PLATFORM_AS_RELATIONS_AND_PT_NODES){
+      /* outer roles not yet known, retain node ids so they can be pre-registered once relations have been parsed */
+      osmWayNodeIdsStore.register(osmWay);
+    }
+
     /* identify nodes of way that would normally not be considered PT but has been identified as such in preceding pre-processing pass */
     identifyPlatformOuterRoleNodes(osmWay);
 
@@ -210,9 +262,8 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
   @Override
   public void handle(OsmRelation osmRelation) throws IOException {
 
-    if(stage != Stage.IDENTIFY_PLATFORM_AS_RELATIONS){
+    if(stage == Stage.IDENTIFY_PT_NODES){
       return;
-
     }
 
     /* delegate to identifyPlatformAsRelation when eligible */
@@ -228,6 +279,12 @@ public class OsmZoningPreProcessingHandler extends OsmZoningHandlerBase {
    */
   @Override
   public void complete() throws IOException {         
+
+    if(stage == Stage.IDENTIFY_PLATFORM_AS_RELATIONS_AND_PT_NODES){
+      osmWayNodeIdsStore.logStats();
+      preRegisterOuterRoleNodesFromStore();
+      osmWayNodeIdsStore.reset();
+    }
     
     LOGGER.fine(" OSM zone pre-parsing...DONE");
 
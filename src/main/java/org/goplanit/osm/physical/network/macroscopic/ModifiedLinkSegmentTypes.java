@@ -1,13 +1,12 @@
 package org.goplanit.osm.physical.network.macroscopic;
 
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import org.apache.commons.collections4.map.HashedMap;
+import org.goplanit.osm.util.PlanitModeSet;
 import org.goplanit.utils.mode.Mode;
 import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
 
@@ -37,23 +36,17 @@ public class ModifiedLinkSegmentTypes {
     
     protected final MacroscopicLinkSegmentType original;
     
-    /** the segment types with added modes compared to the original */
-    protected final Map<Set<Mode>, Set<MacroscopicLinkSegmentType> > linkSegmentTypesWithAddedModes = new HashMap<Set<Mode>, Set<MacroscopicLinkSegmentType>>();
-    
-    /** the segment types with removed modes compared to the original */
-    protected final Map<Set<Mode>, Set<MacroscopicLinkSegmentType>> linkSegmentTypesWithRemovedModes = new HashMap<Set<Mode>, Set<MacroscopicLinkSegmentType>>();
+    /** the segment types by their removed modes by their added modes compared to the original, mode sets are compact such that lookups do not
+     * hash and compare entire sets of modes */
+    protected final Map<PlanitModeSet, Map<PlanitModeSet, MacroscopicLinkSegmentType>> linkSegmentTypesByRemovedByAddedModes = new HashMap<>();
     
     /** constructor 
      * @param original original link segment type
      */
     ModifiedLinkSegmentTypesModes(MacroscopicLinkSegmentType original){
       this.original=original;
-      /* populate empty entries with no added or removed modes */
-      linkSegmentTypesWithAddedModes.put(null, new HashSet<>());
-      linkSegmentTypesWithRemovedModes.put(null, new HashSet<>());
     }
     
-    
     /** Verify if a modified link segment type with the provided added/removed modes exist
      * @param addedModes the added modes, can be null or empty in case no modes were added
      * @param removedModes the removed modes, can be null or empty in case no modes were added
@@ -62,32 +55,36 @@ public class ModifiedLinkSegmentTypes {
     public boolean containsModifiedLinkSegmentType(final Set<Mode> addedModes, final Set<Mode> removedModes){
       return getModifiedLinkSegmentType(addedModes, removedModes)!= null;
     }
-    
+
+    /** Verify if a modified link segment type with the provided added/removed modes exist
+     * @param addedModes the added modes, can be null or empty in case no modes were added
+     * @param removedModes the removed modes, can be null or empty in case no modes were added
+     * @return true when a modified link segment type exists with these mode modifications
+     */
+    public boolean containsModifiedLinkSegmentType(final PlanitModeSet addedModes, final PlanitModeSet removedModes){
+      return getModifiedLinkSegmentType(addedModes, removedModes)!= null;
+    }
+
     /** collect a modified link segment type with the provided added/removed modes exist
      * @param addedModes the added modes, can be null or empty in case no modes were added
      * @param removedModes the removed modes, can be null or empty in case no modes were added
      * @return the link segment type when found, null otherwise
      */
     public MacroscopicLinkSegmentType getModifiedLinkSegmentType(final Set<Mode> addedModes, final Set<Mode> removedModes){
-      Set<Mode> theAddedModes = (addedModes == null) ? new HashSet<>() : addedModes;
-      Set<Mode> theRemovedModes = (removedModes == null) ? new HashSet<>() : removedModes;
-      
-      if(linkSegmentTypesWithAddedModes.containsKey(theAddedModes)) {
-        Set<MacroscopicLinkSegmentType> candidateLinkSegmentTypes = linkSegmentTypesWithAddedModes.get(theAddedModes);
-        if(!candidateLinkSegmentTypes.isEmpty()) {
-          candidateLinkSegmentTypes  = new HashSet<MacroscopicLinkSegmentType>(candidateLinkSegmentTypes);
-          Set<MacroscopicLinkSegmentType> otherCandidateLinkSegmentTypes = linkSegmentTypesWithRemovedModes.get(theRemovedModes);
-          if(otherCandidateLinkSegmentTypes != null) {
-            candidateLinkSegmentTypes.retainAll(otherCandidateLinkSegmentTypes);
-            if(candidateLinkSegmentTypes.size() > 1) {
-              LOGGER.warning(String.format("at most one (unique) modified link segment type expected based on added/removed modes compared to the original (id:%d), but multiple found",original));
-            }else if(candidateLinkSegmentTypes.size() == 1) {
-              return candidateLinkSegmentTypes.iterator().next();
-            }
-          }
-        }
+      return getModifiedLinkSegmentType(PlanitModeSet.of(addedModes), PlanitModeSet.of(removedModes));
+    }
+
+    /** collect a modified link segment type with the provided added/removed modes exist
+     * @param addedModes the added modes, can be null or empty in case no modes were added
+     * @param removedModes the removed modes, can be null or empty in case no modes were added
+     * @return the link segment type when found, null otherwise
+     */
+    public MacroscopicLinkSegmentType getModifiedLinkSegmentType(final PlanitModeSet addedModes, final PlanitModeSet removedModes){
+      var linkSegmentTypesByRemovedModes = linkSegmentTypesByRemovedByAddedModes.get(addedModes == null ? PlanitModeSet.EMPTY : addedModes);
+      if(linkSegmentTypesByRemovedModes == null) {
+        return null;
       }
-      return null;
+      return linkSegmentTypesByRemovedModes.get(removedModes == null ? PlanitModeSet.EMPTY : removedModes);
     } 
     
     /** Add a modified link segment type based on the changes in mode support. It is assumed the provided added and removed modes are consistent with the mode properties
@@ -99,17 +96,26 @@ public class ModifiedLinkSegmentTypes {
      * @return true when successfully added, false if not
      */
     public boolean addModifiedLinkSegmentType(MacroscopicLinkSegmentType modifiedLinkSegmentType, final Set<Mode> addedModes, final Set<Mode> removedModes) {
-      Set<Mode> theAddedModes = (addedModes == null) ? new HashSet<Mode>() : addedModes;
-      Set<Mode> theRemovedModes = (removedModes == null) ? new HashSet<Mode>() : removedModes;
-      
-      if(!containsModifiedLinkSegmentType(theAddedModes, theRemovedModes)) {
-        linkSegmentTypesWithAddedModes.putIfAbsent(Collections.unmodifiableSet(addedModes), new HashSet<MacroscopicLinkSegmentType>());     
-        linkSegmentTypesWithAddedModes.get(addedModes).add(modifiedLinkSegmentType);
-        linkSegmentTypesWithRemovedModes.putIfAbsent(Collections.unmodifiableSet(theRemovedModes), new HashSet<MacroscopicLinkSegmentType>());        
-        linkSegmentTypesWithRemovedModes.get(theRemovedModes).add(modifiedLinkSegmentType);
-        return true;
+      return addModifiedLinkSegmentType(modifiedLinkSegmentType, PlanitModeSet.of(addedModes), PlanitModeSet.of(removedModes));
+    }
+
+    /** Add a modified link segment type based on the changes in mode support. It is assumed the provided added and removed modes are consistent with the mode properties
+     * in the link segment type, as this is not verified by by this method
+     * 
+     * @param modifiedLinkSegmentType the link segment type that is a modification of the original based on the passed in added and removed modes
+     * @param addedModes the added modes
+     * @param removedModes the removed modes
+     * @return true when successfully added, false if not
+     */
+    public boolean addModifiedLinkSegmentType(MacroscopicLinkSegmentType modifiedLinkSegmentType, final PlanitModeSet addedModes, final PlanitModeSet removedModes) {
+      var linkSegmentTypesByRemovedModes = 
+          linkSegmentTypesByRemovedByAddedModes.computeIfAbsent(addedModes == null ? PlanitModeSet.EMPTY : addedModes, modes -> new HashMap<>());
+      var existingLinkSegmentType = 
+          linkSegmentTypesByRemovedModes.putIfAbsent(removedModes == null ? PlanitModeSet.EMPTY : removedModes, modifiedLinkSegmentType);
+      if(existingLinkSegmentType != null && existingLinkSegmentType != modifiedLinkSegmentType) {
+        LOGGER.warning(String.format("at most one (unique) modified link segment type expected based on added/removed modes compared to the original (id:%d), but multiple found",original.getId()));
       }
-      return false;
+      return existingLinkSegmentType == null;
     }
       
   }
@@ -125,12 +131,20 @@ public class ModifiedLinkSegmentTypes {
    * @return true when a modified link segment type exists with these mode modifications
    */
   public boolean containsModifiedLinkSegmentType(final MacroscopicLinkSegmentType original, final Set<Mode> addedModes, final Set<Mode> removedModes) {
-    if(modifiedLinkSegmentTypeModes.containsKey(original)) {
-      return modifiedLinkSegmentTypeModes.get(original).containsModifiedLinkSegmentType(addedModes, removedModes);
-    }
-    return false;
+    return containsModifiedLinkSegmentType(original, PlanitModeSet.of(addedModes), PlanitModeSet.of(removedModes));
   }
   
+  /** Verify if a modified link segment type with the provided added/removed modes exist for the given original link segment type
+   * 
+   * @param original original type
+   * @param addedModes the added modes, can be null or empty in case no modes were added
+   * @param removedModes the removed modes, can be null or empty in case no modes were added
+   * @return true when a modified link segment type exists with these mode modifications
+   */
+  public boolean containsModifiedLinkSegmentType(final MacroscopicLinkSegmentType original, final PlanitModeSet addedModes, final PlanitModeSet removedModes) {
+    return getModifiedLinkSegmentType(original, addedModes, removedModes) != null;
+  }  
+  
   /** Collect a modified link segment type with the provided added/removed modes if it exists
    * 
    * @param original original type
@@ -139,12 +153,21 @@ public class ModifiedLinkSegmentTypes {
    * @return the modified link segment type if it exists, null otherwise
    */
   public MacroscopicLinkSegmentType getModifiedLinkSegmentType(final MacroscopicLinkSegmentType original, final Set<Mode> addedModes, final Set<Mode> removedModes) {
-    if(modifiedLinkSegmentTypeModes.containsKey(original)) {
-      return modifiedLinkSegmentTypeModes.get(original).getModifiedLinkSegmentType(addedModes, removedModes);
-    }
-    return null;
+    return getModifiedLinkSegmentType(original, PlanitModeSet.of(addedModes), PlanitModeSet.of(removedModes));
   }
   
+  /** Collect a modified link segment type with the provided added/removed modes if it exists
+   * 
+   * @param original original type
+   * @param addedModes the added modes, can be null or empty in case no modes were added
+   * @param removedModes the removed modes, can be null or empty in case no modes were added
+   * @return the modified link segment type if it exists, null otherwise
+   */
+  public MacroscopicLinkSegmentType getModifiedLinkSegmentType(final MacroscopicLinkSegmentType original, final PlanitModeSet addedModes, final PlanitModeSet removedModes) {
+    var modifiedModes = modifiedLinkSegmentTypeModes.get(original);
+    return modifiedModes != null ? modifiedModes.getModifiedLinkSegmentType(addedModes, removedModes) : null;
+  }  
+  
   /** Add a modified link segment type based on the changes in mode support. It is assumed the provided added and removed modes are consistent with the mode properties
    * in the link segment type, as this is not verified by by this method
    * 
@@ -155,9 +178,23 @@ public class ModifiedLinkSegmentTypes {
    * @return true when successfully added, false if not
    */  
   public boolean addModifiedLinkSegmentType(final MacroscopicLinkSegmentType original, MacroscopicLinkSegmentType modifiedLinkSegmentType, final Set<Mode> addedModes, final Set<Mode> removedModes) {
-    modifiedLinkSegmentTypeModes.putIfAbsent(original, new ModifiedLinkSegmentTypesModes(original));
-    return modifiedLinkSegmentTypeModes.get(original).addModifiedLinkSegmentType(modifiedLinkSegmentType, addedModes, removedModes);
+    return addModifiedLinkSegmentType(original, modifiedLinkSegmentType, PlanitModeSet.of(addedModes), PlanitModeSet.of(removedModes));
   }
+  
+  /** Add a modified link segment type based on the changes in mode support. It is assumed the provided added and removed modes are consistent with the mode properties
+   * in the link segment type, as this is not verified by by this method
+   * 
+   * @param original original link segment type the modified type is a modification of
+   * @param modifiedLinkSegmentType the link segment type that is a modification of the original based on the passed in added and removed modes
+   * @param addedModes the added modes
+   * @param removedModes the removed modes
+   * @return true when successfully added, false if not
+   */  
+  public boolean addModifiedLinkSegmentType(
+      final MacroscopicLinkSegmentType original, MacroscopicLinkSegmentType modifiedLinkSegmentType, final PlanitModeSet addedModes, final PlanitModeSet removedModes) {
+    return modifiedLinkSegmentTypeModes.computeIfAbsent(original, ModifiedLinkSegmentTypesModes::new).addModifiedLinkSegmentType(
+        modifiedLinkSegmentType, addedModes, removedModes);
+  }  
 
   /**
    * remove all identified modified link segment types available
@@ -0,0 +1,89 @@
+package org.goplanit.osm.tags;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Global dictionary of the OSM tag keys and values known to PLANit, i.e., all string constants of the OSM tag classes in this package. Each known string has a
+ * single canonical instance.
+ * <p>
+ *   Readers intern decoded keys and values at decode time, such that tags of different entities share the canonical instances. This de-duplicates the
+ *   memory of retained tags, comparing a tag against a constant succeeds on reference equality without inspecting characters, and hash codes of keys are
+ *   computed once rather than for every map lookup.
+ * </p>
+ *
+ * @author markr
+ */
+public final class OsmTagDictionary {
+
+  /** the logger */
+  private static final Logger LOGGER = Logger.getLogger(OsmTagDictionary.class.getCanonicalName());
+
+  /** tag classes whose string constants constitute the dictionary */
+  private static final Class<?>[] TAG_CLASSES = {
+      OsmTags.class, OsmAccessTags.class, OsmBicycleTags.class, OsmBusWayTags.class, OsmDirectionTags.class, OsmHighwayTags.class,
+      OsmJunctionTags.class, OsmLaneTags.class, OsmMultiPolygonTags.class, OsmOneWayTags.class, OsmPedestrianTags.class, OsmPtv1Tags.class,
+      OsmPtv2Tags.class, OsmRailFeatureTags.class, OsmRailModeTags.class, OsmRailwayTags.class, OsmRelationTypeTags.class,
+      OsmRoadModeCategoryTags.class, OsmRoadModeTags.class, OsmSpeedTags.class, OsmWaterModeTags.class, OsmWaterwayTags.class};
+
+  /** canonical strings in order of registration */
+  private static final List<String> STRINGS;
+
+  /** canonical instance by string */
+  private static final Map<String, String> CANONICAL_STRINGS;
+
+  static {
+    List<String> strings = new ArrayList<>();
+    Map<String, String> canonicalStrings = new HashMap<>();
+    for(Class<?> tagClass : TAG_CLASSES) {
+      for(Field field : tagClass.getFields()) {
+        int modifiers = field.getModifiers();
+        if(field.getType() != String.class || !Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)) {
+          continue;
+        }
+        try {
+          String value = (String) field.get(null);
+          if(value != null && !canonicalStrings.containsKey(value)) {
+            canonicalStrings.put(value, value);
+            strings.add(value);
+          }
+        }catch(IllegalAccessException e) {
+          LOGGER.warning(String.format("Unable to add %s.%s to OSM tag dictionary", tagClass.getSimpleName(), field.getName()));
+        }
+      }
+    }
+    STRINGS = Collections.unmodifiableList(strings);
+    CANONICAL_STRINGS = canonicalStrings;
+  }
+
+  /** Constructor, not instantiable */
+  private OsmTagDictionary() {
+  }
+
+  /** Collect the canonical instance of a string
+   *
+   * @param string to intern
+   * @return canonical instance when in dictionary, the string itself otherwise
+   */
+  public static String intern(String string) {
+    if(string == null) {
+      return null;
+    }
+    String canonicalString = CANONICAL_STRINGS.get(string);
+    return canonicalString == null ? string : canonicalString;
+  }
+
+  /** All canonical strings in the dictionary
+   *
+   * @return strings
+   */
+  public static List<String> getStrings() {
+    return STRINGS;
+  }
+}
@@ -1,19 +1,32 @@
 package org.goplanit.osm.util;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Paths;
 import java.util.Comparator;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.goplanit.osm.converter.OsmBzip2ParallelInputStream;
+import org.goplanit.osm.converter.OsmInputStreamReader;
+import org.goplanit.osm.converter.OsmPbfParallelReader;
+import org.goplanit.osm.converter.OsmReaderSettings;
+import org.goplanit.osm.converter.OsmRemoteSourceCache;
 import org.goplanit.utils.misc.FileUtils;
 import org.goplanit.utils.misc.UrlUtils;
+import org.locationtech.jts.geom.Envelope;
 
 import de.topobyte.osm4j.core.access.OsmReader;
 import de.topobyte.osm4j.core.model.iface.EntityType;
 import de.topobyte.osm4j.core.model.iface.OsmEntity;
 import de.topobyte.osm4j.core.model.iface.OsmNode;
 import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.o5m.seq.O5mReader;
 import de.topobyte.osm4j.pbf.seq.PbfReader;
 import de.topobyte.osm4j.xml.dynsax.OsmXmlReader;
 
@@ -33,13 +46,66 @@ public class Osm4JUtils {
   
   /** osm PBF extension string */
   public static final String OSM_PBF_EXTENSION = "pbf";
+
+  /** osm o5m extension string */
+  public static final String OSM_O5M_EXTENSION = "o5m";
+
+  /** gzip compressed extension string, supported for osm XML only, i.e., *.osm.gz */
+  public static final String GZIP_EXTENSION = "gz";
+
+  /** bzip2 compressed extension string, supported for osm XML only, i.e., *.osm.bz2 */
+  public static final String BZIP2_EXTENSION = "bz2";
+
+  /** size of the buffer of compressed (or o5m) input */
+  private static final int COMPRESSED_INPUT_BUFFER_SIZE = 1 << 16;
+
+  /** Collect the compression extension of a compressed osm XML source
+   * 
+   * @param name of the source (file name or path)
+   * @return compression extension, null when not a (supported) compressed osm XML source
+   */
+  private static String getCompressedOsmXmlExtension(String name) {
+    for(String compressionExtension : new String[] {GZIP_EXTENSION, BZIP2_EXTENSION}) {
+      if(name.toLowerCase().endsWith("." + OSM_XML_EXTENSION + "." + compressionExtension)) {
+        return compressionExtension;
+      }
+    }
+    return null;
+  }
+
+  /** Wrap compressed osm XML input such that it is decompressed while streaming, without any temporary file
+   * 
+   * @param compressedInput to wrap
+   * @param compressionExtension of the input
+   * @param numberOfDecompressionThreads number of threads to decompress bzip2 input with, when 1 or less decompression takes place on the calling thread
+   * @return decompressed input
+   * @throws IOException thrown if error
+   */
+  private static InputStream createDecompressedInputStream(
+      InputStream compressedInput, String compressionExtension, int numberOfDecompressionThreads) throws IOException {
+    InputStream bufferedInput = new BufferedInputStream(compressedInput, COMPRESSED_INPUT_BUFFER_SIZE);
+    if(GZIP_EXTENSION.equals(compressionExtension)) {
+      return new GZIPInputStream(bufferedInput, COMPRESSED_INPUT_BUFFER_SIZE);
+    }
+    if(numberOfDecompressionThreads > 1) {
+      /* decompress (multi-stream) bzip2 input concurrently, bytes are still provided in order */
+      return new OsmBzip2ParallelInputStream(bufferedInput, numberOfDecompressionThreads);
+    }
+    return new BufferedInputStream(new BZip2CompressorInputStream(bufferedInput, true), COMPRESSED_INPUT_BUFFER_SIZE);
+  }
   
-  /** Depending on the format create either an OSM or PBF reader based on local file specified by path
+  /** Depending on the format create either an OSM XML (possibly gzip or bzip2 compressed), o5m, or PBF reader based on local file specified by path
    * 
    * @param inputFile data source to create reader for
+   * @param numberOfDecodingThreads number of threads to decode PBF input (or decompress bzip2 compressed XML input) with, when 1 or less
+   *  decoding takes place on the calling thread
+   * @param persistPbfBlobIndex when true, PBF input is read using (and creating if needed) a blob index persisted next to the file
+   * @param memoryMappedPbfInput when true, PBF input is read through a memory mapping shared by all readers of the file
+   * @param osmNodeEnvelope OSM nodes outside this envelope may be skipped when a PBF blob index is available, null if all OSM nodes are required
    * @return osmReader created, null if not possible
    */
-  public static OsmReader createOsm4jReader(final File inputFile) {
+  private static OsmReader createOsm4jReader(final File inputFile,
+      int numberOfDecodingThreads, boolean persistPbfBlobIndex, boolean memoryMappedPbfInput, Envelope osmNodeEnvelope) {
     
     final boolean parseMetaData = false;
     try {
@@ -48,7 +114,29 @@ public class Osm4JUtils {
       case Osm4JUtils.OSM_XML_EXTENSION:
         return new OsmXmlReader(inputFile, parseMetaData);
       case Osm4JUtils.OSM_PBF_EXTENSION:
+        if(numberOfDecodingThreads > 1 || persistPbfBlobIndex || memoryMappedPbfInput) {
+          /* decode blobs concurrently, entities are still delivered in file order */
+          var pbfReader = new OsmPbfParallelReader(inputFile, numberOfDecodingThreads);
+          pbfReader.setUseBlobIndex(persistPbfBlobIndex);
+          pbfReader.setMemoryMapped(memoryMappedPbfInput);
+          pbfReader.setNodeEnvelope(osmNodeEnvelope);
+          return pbfReader;
+        }
         return new PbfReader(inputFile, parseMetaData);
+      case Osm4JUtils.OSM_O5M_EXTENSION:
+        return new OsmInputStreamReader(
+            () -> new BufferedInputStream(new FileInputStream(inputFile), COMPRESSED_INPUT_BUFFER_SIZE), input -> new O5mReader(input, parseMetaData));
+      case Osm4JUtils.GZIP_EXTENSION:
+      case Osm4JUtils.BZIP2_EXTENSION:
+        String compressionExtension = getCompressedOsmXmlExtension(inputFile.getName());
+        if(compressionExtension != null) {
+          return new OsmInputStreamReader(
+              () -> createDecompressedInputStream(new FileInputStream(inputFile), compressionExtension, numberOfDecodingThreads),
+              input -> new OsmXmlReader(input, parseMetaData));
+        }
+        LOGGER.warning(String.format("Only compressed OSM XML files are supported (*.%s.%s, *.%s.%s) for file: (%s), skip parsing",
+            OSM_XML_EXTENSION, GZIP_EXTENSION, OSM_XML_EXTENSION, BZIP2_EXTENSION, inputFile));
+        return null;
       default:
         LOGGER.warning(String.format("Unsupported OSM file format for file: (%s), skip parsing", inputFile));
         return null;
@@ -58,27 +146,134 @@ public class Osm4JUtils {
     }
     return null;    
   }
-  
-  /** Depending on the format create either an OSM or PBF reader
+
+  /** Depending on the format create either an OSM XML (possibly gzip or bzip2 compressed), o5m, or PBF reader
    * 
    * @param inputSource data source to create reader for
+   * @param numberOfDecodingThreads number of threads to decode (local) PBF input (or decompress bzip2 compressed XML input) with, when 1 or less
+   *  decoding takes place on the calling thread
+   * @param persistPbfBlobIndex when true, local PBF input is read using (and creating if needed) a blob index persisted next to the file
+   * @param memoryMappedPbfInput when true, local PBF input is read through a memory mapping shared by all readers of the file
+   * @param osmNodeEnvelope OSM nodes outside this envelope may be skipped when a PBF blob index is available, null if all OSM nodes are required
    * @return osmReader created, null if not possible
    */
-  public static OsmReader createOsm4jReader(URL inputSource) {           
+  private static OsmReader createOsm4jReader(URL inputSource,
+      int numberOfDecodingThreads, boolean persistPbfBlobIndex, boolean memoryMappedPbfInput, Envelope osmNodeEnvelope) {
     try{
       
       /* special treatment when local file */
       if(UrlUtils.isLocal(inputSource)) {
-        return createOsm4jReader(Paths.get(inputSource.toURI()).toFile());
+        return createOsm4jReader(
+            Paths.get(inputSource.toURI()).toFile(), numberOfDecodingThreads, persistPbfBlobIndex, memoryMappedPbfInput, osmNodeEnvelope);
+      }else if(inputSource.getPath().toLowerCase().endsWith("." + OSM_PBF_EXTENSION)) {
+        // Create a reader for (remote) PBF data, streamed sequentially
+        return new OsmInputStreamReader(
+            () -> new BufferedInputStream(inputSource.openStream(), COMPRESSED_INPUT_BUFFER_SIZE), input -> new PbfReader(input, false));
+      }else if(inputSource.getPath().toLowerCase().endsWith("." + OSM_O5M_EXTENSION)) {
+        // Create a reader for (remote) o5m data
+        return new OsmInputStreamReader(
+            () -> new BufferedInputStream(inputSource.openStream(), COMPRESSED_INPUT_BUFFER_SIZE), input -> new O5mReader(input, false));
       }else {
-        // Create a reader for (remote) XML data
-        return new OsmXmlReader(inputSource.openStream(), false);
+        // Create a reader for (remote, possibly compressed) XML data
+        String compressionExtension = getCompressedOsmXmlExtension(inputSource.getPath());
+        if(compressionExtension != null) {
+          return new OsmInputStreamReader(
+              () -> createDecompressedInputStream(inputSource.openStream(), compressionExtension, numberOfDecodingThreads),
+              input -> new OsmXmlReader(input, false));
+        }
+        return new OsmInputStreamReader(inputSource::openStream, input -> new OsmXmlReader(input, false));
       }
     }catch(Exception e) {
       LOGGER.warning(String.format("Open street map input source could not be accessed: (%s) skip parsing", inputSource.toString()));
     }
     return null;
   } 
+
+  /** Depending on the format create either an OSM or PBF reader based on local file specified by path. PBF input is decoded using
+   * the default number of decoding threads
+   * 
+   * @param inputFile data source to create reader for
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(final File inputFile) {
+    return createOsm4jReader(inputFile, OsmReaderSettings.DEFAULT_NUMBER_OF_DECODING_THREADS);
+  }
+
+  /** Depending on the format create either an OSM or PBF reader based on local file specified by path
+   * 
+   * @param inputFile data source to create reader for
+   * @param numberOfDecodingThreads number of threads to decode PBF input (or decompress bzip2 compressed XML input) with, when 1 or less decoding
+   *  takes place on the calling thread
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(final File inputFile, int numberOfDecodingThreads) {
+    return createOsm4jReader(inputFile, numberOfDecodingThreads,
+        OsmReaderSettings.DEFAULT_PERSIST_PBF_BLOB_INDEX, OsmReaderSettings.DEFAULT_MEMORY_MAPPED_PBF_INPUT, null);
+  }
+
+  /** Depending on the format create either an OSM or PBF reader based on local file specified by path, configured by the (PBF) reading options of the settings
+   * 
+   * @param inputFile data source to create reader for, overriding the input source of the settings
+   * @param settings providing the number of PBF decoding threads, use of a PBF blob index, and use of memory mapping
+   * @param osmNodeEnvelope OSM nodes outside this envelope may be skipped when a PBF blob index is available, null if all OSM nodes are required
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(final File inputFile, OsmReaderSettings settings, Envelope osmNodeEnvelope) {
+    return createOsm4jReader(inputFile, settings.getNumberOfDecodingThreads(),
+        settings.isPersistPbfBlobIndex(), settings.isMemoryMappedPbfInput(), osmNodeEnvelope);
+  }
+  
+  /** Depending on the format create either an OSM or PBF reader. PBF input is decoded using the default number of decoding threads
+   * 
+   * @param inputSource data source to create reader for
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(URL inputSource) {
+    return createOsm4jReader(inputSource, OsmReaderSettings.DEFAULT_NUMBER_OF_DECODING_THREADS);
+  }
+
+  /** Depending on the format create either an OSM or PBF reader
+   * 
+   * @param inputSource data source to create reader for
+   * @param numberOfDecodingThreads number of threads to decode (local) PBF input (or decompress bzip2 compressed XML input) with, when 1 or less
+   *  decoding takes place on the calling thread
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(URL inputSource, int numberOfDecodingThreads) {
+    return createOsm4jReader(inputSource, numberOfDecodingThreads,
+        OsmReaderSettings.DEFAULT_PERSIST_PBF_BLOB_INDEX, OsmReaderSettings.DEFAULT_MEMORY_MAPPED_PBF_INPUT, null);
+  }
+
+  /** Depending on the format create either an OSM or PBF reader, configured by the (PBF) reading options of the settings. Remote input is read from
+   * the remote input cache when activated on the settings, downloading it first when not yet cached
+   * 
+   * @param inputSource data source to create reader for, overriding the input source of the settings
+   * @param settings providing the number of PBF decoding threads, use of a PBF blob index, use of memory mapping, and use of the remote input cache
+   * @param osmNodeEnvelope OSM nodes outside this envelope may be skipped when a PBF blob index is available, null if all OSM nodes are required
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(URL inputSource, OsmReaderSettings settings, Envelope osmNodeEnvelope) {
+    if(settings.isCacheRemoteInputSource() && !UrlUtils.isLocal(inputSource)) {
+      try {
+        File cachedFile = new OsmRemoteSourceCache(
+            settings.getRemoteInputSourceCacheDirectory(), settings.getMaxRemoteInputSourceCacheSize()).collect(inputSource);
+        return createOsm4jReader(cachedFile, settings, osmNodeEnvelope);
+      }catch(Exception e) {
+        LOGGER.warning(String.format("Unable to cache remote input source (%s), streaming it instead: %s", inputSource, e.getMessage()));
+      }
+    }
+    return createOsm4jReader(inputSource, settings.getNumberOfDecodingThreads(),
+        settings.isPersistPbfBlobIndex(), settings.isMemoryMappedPbfInput(), osmNodeEnvelope);
+  }
+
+  /** Depending on the format create either an OSM or PBF reader for the input source of the settings
+   * 
+   * @param settings providing the input source, the (PBF) reading options, and the OSM nodes that may be skipped
+   * @return osmReader created, null if not possible
+   */
+  public static OsmReader createOsm4jReader(OsmReaderSettings settings) {
+    return createOsm4jReader(settings.getInputSource(), settings, settings.getOsmNodeRetentionEnvelope());
+  }
   
   /** Create a comparator for osm entities absed on their id. Can only be used  within each entittypes as across
    * entity types the ids are NOT unique
@@ -3,6 +3,7 @@ package org.goplanit.osm.util;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import org.goplanit.osm.converter.OsmBoundingPolygonFilter;
 import org.goplanit.osm.converter.network.OsmNetworkReaderData;
 import org.goplanit.utils.exceptions.PlanItException;
 import org.goplanit.utils.geo.PlanitJtsCrsUtils;
@@ -92,6 +93,20 @@ public class OsmBoundingAreaUtils {
     /* within or on bounding polygon yields true, false otherwise */
     return OsmNodeUtils.createPoint(osmNode).coveredBy(boundingPolygon);  
   }  
+
+  /** Verify if node resides on or within the zoning bounding polygon based on its compiled containment test. If no bounding area is defined
+   * or if no node is provided (null), false is returned by definition
+   *
+   * @param osmNode to verify
+   * @param boundingPolygonFilter compiled bounding polygon defining the area
+   * @return true when covered by bounding area, false otherwise
+   */
+  public static boolean isCoveredByZoningBoundingPolygon(OsmNode osmNode, OsmBoundingPolygonFilter boundingPolygonFilter) {
+    if(osmNode==null || boundingPolygonFilter==null) {
+      return false;
+    }
+    return boundingPolygonFilter.isCoveredBy(osmNode);
+  }
   
   /** Verify if OSM way has at least one node that resides within the zoning bounding polygon. If no bounding area is defined
    * or OSM way is null false is returned by definition
@@ -105,6 +120,28 @@ public class OsmBoundingAreaUtils {
     if(osmWay==null || boundingPolygon==null) {
       return false;
     }
+
+    for(int index=0;index<osmWay.getNumberOfNodes();++index) {
+      OsmNode osmNode = osmNodes.get(osmWay.getNodeId(index));
+      if(osmNode!=null && isCoveredByZoningBoundingPolygon(osmNode, boundingPolygon)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Verify if OSM way has at least one node that resides within the zoning bounding polygon based on its compiled containment test. If no bounding area is defined
+   * or OSM way is null false is returned by definition
+   *
+   * @param osmWay to verify
+   * @param osmNodes to collect nodes of way from
+   * @param boundingPolygonFilter compiled bounding polygon defining the area
+   * @return true when covered by bounding area, false otherwise
+   */
+  public static boolean isCoveredByZoningBoundingPolygon(OsmWay osmWay, Map<Long, OsmNode> osmNodes, OsmBoundingPolygonFilter boundingPolygonFilter) {
+    if(osmWay==null || boundingPolygonFilter==null) {
+      return false;
+    }
         
     /* check if at least a single node of the OSM way is present within bounding box of zoning, implicitly assuming
      * that zoning bounding box is smaller than that of network, since only nodes within network bounding box are checked
@@ -113,7 +150,7 @@ public class OsmBoundingAreaUtils {
     for(int index=0;index<osmWay.getNumberOfNodes();++index) {
       long osmNodeId = osmWay.getNodeId(index);
       OsmNode osmNode = osmNodes.get(osmNodeId);
-      if(osmNode!=null && isCoveredByZoningBoundingPolygon(osmNode, boundingPolygon)) {
+      if(osmNode!=null && boundingPolygonFilter.isCoveredBy(osmNode)) {
         coveredByBoundingPolygon = true;
         break;
       }
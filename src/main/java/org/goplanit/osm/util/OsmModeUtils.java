@@ -39,7 +39,7 @@ public class OsmModeUtils {
     for(String roadModeCategory : roadModeCategories) {
       String compositeKey = isprefix ? OsmTagUtils.createCompositeOsmKey(alteration, roadModeCategory) : OsmTagUtils.createCompositeOsmKey(roadModeCategory, alteration);      
       if(tags.containsKey(compositeKey)) {
-        String valueTag = tags.get(compositeKey).replaceAll(OsmTagUtils.VALUETAG_SPECIALCHAR_STRIP_REGEX, "");        
+        String valueTag = OsmTagUtils.normaliseValueTag(tags.get(compositeKey));        
         for(int index = 0 ; index < modeAccessValueTags.length ; ++index) {
           if(modeAccessValueTags[index].equals(valueTag)){
             foundModes.addAll(OsmRoadModeCategoryTags.getRoadModesByCategory(roadModeCategory));
@@ -53,7 +53,7 @@ public class OsmModeUtils {
     for(String roadMode : roadModes) {
       String compositeKey = isprefix ? OsmTagUtils.createCompositeOsmKey(alteration, roadMode) : OsmTagUtils.createCompositeOsmKey(roadMode, alteration);      
       if(tags.containsKey(compositeKey)){
-        String valueTag = tags.get(compositeKey).replaceAll(OsmTagUtils.VALUETAG_SPECIALCHAR_STRIP_REGEX, "");
+        String valueTag = OsmTagUtils.normaliseValueTag(tags.get(compositeKey));
         for(int index = 0 ; index < modeAccessValueTags.length ; ++index) {
           if(modeAccessValueTags[index].equals(valueTag)){
             foundModes.add(roadMode);
@@ -78,7 +78,7 @@ public class OsmModeUtils {
     /* osm mode */
     for(String osmMode : supportedOsmModes) {     
       if(tags.containsKey(osmMode)){
-        String valueTag = tags.get(osmMode).replaceAll(OsmTagUtils.VALUETAG_SPECIALCHAR_STRIP_REGEX, "");
+        String valueTag = OsmTagUtils.normaliseValueTag(tags.get(osmMode));
         for(int index = 0 ; index < modeAccessValueTags.length ; ++index) {
           if(modeAccessValueTags[index].equals(valueTag)){
             foundModes.add(osmMode);
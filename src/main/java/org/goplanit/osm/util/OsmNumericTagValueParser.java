@@ -0,0 +1,257 @@
+package org.goplanit.osm.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.goplanit.osm.tags.OsmSpeedTags;
+
+/**
+ * Parser of numeric OSM tag values, e.g. maxspeed=50, maxspeed=50 mph, maxspeed:lanes=60|60|40, lanes=2. Values are parsed by hand rather than by regular
+ * expressions, and malformed values result in a dedicated invalid result rather than an exception, such that parsing does not rely on exceptions for
+ * control flow. Numeric tag values comprise a small vocabulary, so results are cached per distinct raw value and repeated parsing costs a hash lookup.
+ *
+ * @author markr
+ *
+ */
+public class OsmNumericTagValueParser {
+
+  /** result of parsing an invalid integer value */
+  public static final int INVALID_INT = Integer.MIN_VALUE;
+
+  /** result of parsing an invalid decimal value */
+  public static final double INVALID_DOUBLE = Double.NaN;
+
+  /** separator of per lane values */
+  public static final char LANES_SEPARATOR = '|';
+
+  /** km/h per mile per hour */
+  private static final double KM_PER_HOUR_PER_MILE_PER_HOUR = 1.609344;
+
+  /** km/h per knot */
+  private static final double KM_PER_HOUR_PER_KNOT = 1.852;
+
+  /** maximum number of distinct raw values cached per cache */
+  private static final int MAX_CACHE_SIZE = 1 << 14;
+
+  /** parsed speed limits in km/h by raw value */
+  private static final Map<String, Double> MAX_SPEEDS_KMH = new ConcurrentHashMap<>();
+
+  /** parsed maximum speed limit across lanes in km/h by raw value */
+  private static final Map<String, Double> MAX_SPEEDS_LANES_KMH = new ConcurrentHashMap<>();
+
+  /** parsed integers by raw value */
+  private static final Map<String, Integer> INTEGERS = new ConcurrentHashMap<>();
+
+  /** Register parsed result in cache unless the cache is full, beyond which values are parsed on the fly
+   *
+   * @param <T> type of result
+   * @param cache to register in
+   * @param value raw value
+   * @param result parsed result
+   */
+  private static <T> void cache(final Map<String, T> cache, final String value, final T result) {
+    if(cache.size() < MAX_CACHE_SIZE) {
+      cache.put(value, result);
+    }
+  }
+
+  /** Verify if character is a digit
+   *
+   * @param c to verify
+   * @return true when digit, false otherwise
+   */
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /** Parse a speed limit within the given range of the value. The first number found is the speed limit, i.e., any text before it is ignored, and it is
+   * in km/h unless followed by the mph or knots unit
+   *
+   * @param value to parse
+   * @param begin of range (inclusive)
+   * @param end of range (exclusive)
+   * @return speed limit in km/h, {@link #INVALID_DOUBLE} when no speed limit is present
+   */
+  private static double parseMaxSpeedKmPerHour(final String value, final int begin, final int end) {
+    int index = begin;
+    while(index < end && !isDigit(value.charAt(index))) {
+      ++index;
+    }
+    if(index == end) {
+      return INVALID_DOUBLE;
+    }
+
+    double speedLimit = 0;
+    for(; index < end && isDigit(value.charAt(index)); ++index) {
+      speedLimit = 10 * speedLimit + (value.charAt(index) - '0');
+    }
+    if(index + 1 < end && value.charAt(index) == '.' && isDigit(value.charAt(index + 1))) {
+      double scale = 0.1;
+      for(++index; index < end && isDigit(value.charAt(index)); ++index) {
+        speedLimit += scale * (value.charAt(index) - '0');
+        scale /= 10;
+      }
+    }
+
+    /* unit (if any) follows the number, km/h is the default */
+    String remainder = value.substring(index, end);
+    if(remainder.contains(OsmSpeedTags.MILES_PER_HOUR)) {
+      speedLimit *= KM_PER_HOUR_PER_MILE_PER_HOUR;
+    }else if(remainder.contains(OsmSpeedTags.KNOTS)) {
+      speedLimit *= KM_PER_HOUR_PER_KNOT;
+    }
+    return speedLimit;
+  }
+
+  /** Parse the maximum speed limit across lanes
+   *
+   * @param value to parse, lanes separated by {@link #LANES_SEPARATOR}
+   * @return maximum speed limit in km/h, {@link #INVALID_DOUBLE} when any of the lanes has no valid speed limit
+   */
+  private static double parseMaxSpeedLanesMaximumKmPerHourUncached(final String value) {
+    double maxSpeedLimit = INVALID_DOUBLE;
+    int begin = 0;
+    while(begin <= value.length()) {
+      int end = value.indexOf(LANES_SEPARATOR, begin);
+      end = end < 0 ? value.length() : end;
+      double speedLimit = parseMaxSpeedKmPerHour(value, begin, end);
+      if(Double.isNaN(speedLimit)) {
+        return INVALID_DOUBLE;
+      }
+      maxSpeedLimit = Double.isNaN(maxSpeedLimit) ? speedLimit : Math.max(maxSpeedLimit, speedLimit);
+      begin = end + 1;
+    }
+    return maxSpeedLimit;
+  }
+
+  /** Parse an integer, surrounding whitespace is ignored
+   *
+   * @param value to parse
+   * @return parsed integer, {@link #INVALID_INT} when not a valid integer
+   */
+  private static int parseIntegerUncached(final String value) {
+    int begin = 0;
+    int end = value.length();
+    while(begin < end && Character.isWhitespace(value.charAt(begin))) {
+      ++begin;
+    }
+    while(end > begin && Character.isWhitespace(value.charAt(end - 1))) {
+      --end;
+    }
+    boolean negative = false;
+    if(begin < end && (value.charAt(begin) == '-' || value.charAt(begin) == '+')) {
+      negative = value.charAt(begin) == '-';
+      ++begin;
+    }
+    if(begin == end) {
+      return INVALID_INT;
+    }
+    long result = 0;
+    for(int index = begin; index < end; ++index) {
+      char c = value.charAt(index);
+      if(!isDigit(c)) {
+        return INVALID_INT;
+      }
+      result = 10 * result + (c - '0');
+      if(result > Integer.MAX_VALUE) {
+        return INVALID_INT;
+      }
+    }
+    return (int) (negative ? -result : result);
+  }
+
+  /** Parse an OSM maxspeed tag value, e.g. "50", "50 mph", and convert it to km/h if needed
+   *
+   * @param maxSpeedValue to parse
+   * @return speed limit in km/h, {@link #INVALID_DOUBLE} when null or not a valid speed limit, e.g. "none"
+   */
+  public static double parseMaxSpeedKmPerHour(final String maxSpeedValue) {
+    if(maxSpeedValue == null) {
+      return INVALID_DOUBLE;
+    }
+    Double speedLimit = MAX_SPEEDS_KMH.get(maxSpeedValue);
+    if(speedLimit == null) {
+      speedLimit = parseMaxSpeedKmPerHour(maxSpeedValue, 0, maxSpeedValue.length());
+      cache(MAX_SPEEDS_KMH, maxSpeedValue, speedLimit);
+    }
+    return speedLimit;
+  }
+
+  /** Parse an OSM maxspeed lanes tag value, e.g. "60|60|40", and collect the maximum speed limit across lanes in km/h
+   *
+   * @param maxSpeedLanesValue to parse
+   * @return maximum speed limit across lanes in km/h, {@link #INVALID_DOUBLE} when null or any of the lanes is not a valid speed limit
+   */
+  public static double parseMaxSpeedLanesMaximumKmPerHour(final String maxSpeedLanesValue) {
+    if(maxSpeedLanesValue == null) {
+      return INVALID_DOUBLE;
+    }
+    Double speedLimit = MAX_SPEEDS_LANES_KMH.get(maxSpeedLanesValue);
+    if(speedLimit == null) {
+      speedLimit = parseMaxSpeedLanesMaximumKmPerHourUncached(maxSpeedLanesValue);
+      cache(MAX_SPEEDS_LANES_KMH, maxSpeedLanesValue, speedLimit);
+    }
+    return speedLimit;
+  }
+
+  /** Parse an OSM maxspeed lanes tag value, e.g. "60|60|40", into the speed limit per lane
+   *
+   * @param maxSpeedLanesValue to parse
+   * @return speed limit per lane in km/h, where invalid lanes are {@link #INVALID_DOUBLE}, null when value is null
+   */
+  public static double[] parseMaxSpeedLanesKmPerHour(final String maxSpeedLanesValue) {
+    if(maxSpeedLanesValue == null) {
+      return null;
+    }
+    int numberOfLanes = 1;
+    for(int index = 0; index < maxSpeedLanesValue.length(); ++index) {
+      if(maxSpeedLanesValue.charAt(index) == LANES_SEPARATOR) {
+        ++numberOfLanes;
+      }
+    }
+    double[] speedLimits = new double[numberOfLanes];
+    int begin = 0;
+    for(int lane = 0; lane < numberOfLanes; ++lane) {
+      int end = maxSpeedLanesValue.indexOf(LANES_SEPARATOR, begin);
+      end = end < 0 ? maxSpeedLanesValue.length() : end;
+      speedLimits[lane] = parseMaxSpeedKmPerHour(maxSpeedLanesValue, begin, end);
+      begin = end + 1;
+    }
+    return speedLimits;
+  }
+
+  /** Parse an integer OSM tag value, e.g. lanes=2
+   *
+   * @param value to parse
+   * @return parsed integer, {@link #INVALID_INT} when null or not a valid integer
+   */
+  public static int parseInteger(final String value) {
+    if(value == null) {
+      return INVALID_INT;
+    }
+    Integer result = INTEGERS.get(value);
+    if(result == null) {
+      result = parseIntegerUncached(value);
+      cache(INTEGERS, value, result);
+    }
+    return result;
+  }
+
+  /** Verify if a parsed integer is valid
+   *
+   * @param parsedValue to verify
+   * @return true when valid, false otherwise
+   */
+  public static boolean isValid(final int parsedValue) {
+    return parsedValue != INVALID_INT;
+  }
+
+  /** Verify if a parsed decimal is valid
+   *
+   * @param parsedValue to verify
+   * @return true when valid, false otherwise
+   */
+  public static boolean isValid(final double parsedValue) {
+    return !Double.isNaN(parsedValue);
+  }
+}
@@ -4,9 +4,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import org.goplanit.osm.tags.OsmTags;
 import org.goplanit.utils.misc.StringUtils;
@@ -25,6 +27,85 @@ public class OsmTagUtils {
   /** regular expression used to identify non-word characters (a-z any case, 0-9 or _) or whitespace*/
   public static final String VALUETAG_SPECIALCHAR_STRIP_REGEX = "[^\\w\\s]";
 
+  /** maximum number of distinct raw value tags for which the normalised value is cached */
+  private static final int MAX_NORMALISED_VALUETAG_CACHE_SIZE = 1 << 16;
+
+  /** normalised value tags by raw value tag, values of tags are highly repetitive so normalisation is performed once per distinct value */
+  private static final Map<String, String> NORMALISED_VALUETAGS = new ConcurrentHashMap<>();
+
+  /** compiled patterns of regular expressions used to filter value tags other than {@link #VALUETAG_SPECIALCHAR_STRIP_REGEX} */
+  private static final Map<String, Pattern> VALUETAG_FILTER_PATTERNS = new ConcurrentHashMap<>();
+
+  /** Verify if character is stripped by {@link #VALUETAG_SPECIALCHAR_STRIP_REGEX}, i.e., it is not a word character nor whitespace
+   * 
+   * @param c character to verify
+   * @return true when stripped, false otherwise
+   */
+  private static boolean isSpecialCharacter(final char c) {
+    boolean isWordCharacter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    boolean isWhitespace = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    return !isWordCharacter && !isWhitespace;
+  }
+
+  /** Strip the special characters of a value tag without using a regular expression
+   * 
+   * @param valueTag to strip
+   * @return stripped value tag, the value tag itself when nothing is stripped
+   */
+  private static String stripSpecialCharacters(final String valueTag) {
+    int index = 0;
+    final int length = valueTag.length();
+    while(index < length && !isSpecialCharacter(valueTag.charAt(index))) {
+      ++index;
+    }
+    if(index == length) {
+      return valueTag;
+    }
+    var stripped = new StringBuilder(length - 1).append(valueTag, 0, index);
+    for(++index; index < length; ++index) {
+      char c = valueTag.charAt(index);
+      if(!isSpecialCharacter(c)) {
+        stripped.append(c);
+      }
+    }
+    return stripped.toString();
+  }
+
+  /** Normalise a value tag by removing all characters matched by {@link #VALUETAG_SPECIALCHAR_STRIP_REGEX}, e.g. "yes;" becomes "yes". Equivalent to, but
+   * considerably cheaper than, {@code valueTag.replaceAll(VALUETAG_SPECIALCHAR_STRIP_REGEX, "")}, since no regular expression is compiled or applied and
+   * normalised values are cached per distinct raw value
+   * 
+   * @param valueTag to normalise
+   * @return normalised value tag, null when value tag is null
+   */
+  public static String normaliseValueTag(final String valueTag) {
+    if(valueTag == null) {
+      return null;
+    }
+    String normalisedValueTag = NORMALISED_VALUETAGS.get(valueTag);
+    if(normalisedValueTag == null) {
+      normalisedValueTag = stripSpecialCharacters(valueTag);
+      /* bounded, beyond the maximum size values are normalised on the fly */
+      if(NORMALISED_VALUETAGS.size() < MAX_NORMALISED_VALUETAG_CACHE_SIZE) {
+        NORMALISED_VALUETAGS.put(valueTag, normalisedValueTag);
+      }
+    }
+    return normalisedValueTag;
+  }
+
+  /** Filter a value tag by removing all matches of the regular expression
+   * 
+   * @param valueTag to filter
+   * @param regEx to remove matches of
+   * @return filtered value tag
+   */
+  public static String filterValueTag(final String valueTag, final String regEx) {
+    if(VALUETAG_SPECIALCHAR_STRIP_REGEX.equals(regEx)) {
+      return normaliseValueTag(valueTag);
+    }
+    return VALUETAG_FILTER_PATTERNS.computeIfAbsent(regEx, Pattern::compile).matcher(valueTag).replaceAll("");
+  }
+
   
   /** Verify if the passed in value tag is present in the list of value tags provided
    * 
@@ -72,12 +153,10 @@ public class OsmTagUtils {
    * @return true when match is present, false otherwise
    */  
   public static boolean anyKeyMatchesAnyValueTag(final Map<String,String> tags, String regEx, final String[] keyTags, final String... valueTags) {
-    if(containsAnyKey(tags, keyTags)) {
-      for(int index=0; index < keyTags.length;++ index) {
-        String currentKey = keyTags[index];
-        if(tags.containsKey(currentKey) && matchesAnyValueTag(tags.get(currentKey).replaceAll(regEx, ""), valueTags)) {
-          return true;
-        }
+    for(int index=0; index < keyTags.length;++ index) {
+      String currentValue = tags.get(keyTags[index]);
+      if(currentValue != null && matchesAnyValueTag(filterValueTag(currentValue, regEx), valueTags)) {
+        return true;
       }
     }
     return false;
@@ -152,12 +231,12 @@ public class OsmTagUtils {
    * @return parsed integer
    */
   public static Integer getValueAsInt(Map<String, String> tags, String tagKey) {
-    try {
-      return Integer.parseInt(tags.get(tagKey));
-    }catch(NumberFormatException nfe){
+    int value = OsmNumericTagValueParser.parseInteger(tags.get(tagKey));
+    if(!OsmNumericTagValueParser.isValid(value)) {
       LOGGER.warning(String.format("Value for tag %s is not integer, tagging error", tagKey));
+      return null;
     }
-    return null;
+    return value;
   }
 
   /**
@@ -0,0 +1,151 @@
+package org.goplanit.osm.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.goplanit.osm.tags.OsmTagDictionary;
+
+import de.topobyte.osm4j.core.model.iface.OsmEntity;
+import de.topobyte.osm4j.core.model.iface.OsmTag;
+
+/**
+ * Read only {@code Map} view on the tags of an OSM entity, without copying them. Lookups scan the (few) tags of the entity directly, so verifying the tags
+ * of an entity allocates nothing, unlike {@code OsmModelUtil#getTagsAsMap(OsmEntity)} which creates a new hash map per entity.
+ * <p>
+ *   A view is reusable, i.e., it is pointed to the next entity via {@link #wrap(OsmEntity)}, and therefore must not be retained beyond the handling of the
+ *   entity it wraps. Use {@link #copy()} to obtain tags that may be retained, e.g., once an entity is deemed eligible for further processing. A view is not
+ *   thread safe.
+ * </p>
+ *
+ * @author markr
+ */
+public class OsmTagView extends AbstractMap<String, String> {
+
+  /** the entity whose tags are viewed, null if none */
+  private OsmEntity osmEntity = null;
+
+  /** the entry set view, created upon first use */
+  private Set<Entry<String, String>> entrySet = null;
+
+  /** Find index of tag with given key
+   *
+   * @param key to find
+   * @return index, negative when not present
+   */
+  private int indexOf(Object key) {
+    if(osmEntity == null || key == null) {
+      return -1;
+    }
+    final int numberOfTags = osmEntity.getNumberOfTags();
+    for(int index = 0; index < numberOfTags; ++index) {
+      if(key.equals(osmEntity.getTag(index).getKey())) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /** Point the view to the tags of the given entity
+   *
+   * @param osmEntity to view tags of
+   * @return this view
+   */
+  public OsmTagView wrap(OsmEntity osmEntity) {
+    this.osmEntity = osmEntity;
+    return this;
+  }
+
+  /** Copy the tags of the viewed entity into a regular (modifiable) map that may be retained. Known keys and values are interned, see
+   * {@link OsmTagDictionary}, such that retained tags share their strings regardless of the reader used
+   *
+   * @return copy of tags
+   */
+  public Map<String, String> copy() {
+    final int numberOfTags = size();
+    Map<String, String> tags = new HashMap<>(Math.max(4, (int) (numberOfTags / 0.75f) + 1));
+    for(int index = 0; index < numberOfTags; ++index) {
+      OsmTag tag = osmEntity.getTag(index);
+      tags.put(OsmTagDictionary.intern(tag.getKey()), OsmTagDictionary.intern(tag.getValue()));
+    }
+    return tags;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : osmEntity.getTag(index).getValue();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return osmEntity == null ? 0 : osmEntity.getNumberOfTags();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Iterating creates an entry per tag, prefer {@link #get(Object)} and {@link #containsKey(Object)} where possible
+   */
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    if(entrySet == null) {
+      entrySet = new AbstractSet<>() {
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+          return new Iterator<>() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+              return index < size();
+            }
+
+            @Override
+            public Entry<String, String> next() {
+              if(!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              OsmTag tag = osmEntity.getTag(index++);
+              return new SimpleImmutableEntry<>(tag.getKey(), tag.getValue());
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return OsmTagView.this.size();
+        }
+      };
+    }
+    return entrySet;
+  }
+}
@@ -5,9 +5,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.LongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.goplanit.osm.converter.OsmNodeData;
 import org.goplanit.osm.converter.network.OsmNetworkHandlerHelper;
 import org.goplanit.osm.converter.network.OsmNetworkReaderData;
 import org.goplanit.osm.tags.OsmDirectionTags;
@@ -169,19 +171,18 @@ public class OsmWayUtils {
     return isClockWise!=isForwardDirection;
   } 
   
-  /** Based on the passed in osmWay collect the coordinates on that way as a coordinate array. In case something goes wrong and missing
-   * nodes are found, the passed in consumer is called to deal with it. User can decide to throw an exception or do something else
-   * entirely. If no exception is thrown, the nodes that could be parsed will be returned
+  /** Based on the passed in osmWay collect the coordinates on that way as a coordinate array, where the coordinate of each referenced node is obtained
+   * via the lookup. In case something goes wrong and missing nodes are found, the passed in consumer is called to deal with it.
    * 
    * @param osmWay to extract node coordinates from
-   * @param osmNodes to collect nodes from by reference node ids in the way
+   * @param coordinateLookup to create the coordinate of a node by its id, null when not available
    * @param startNodeIndex reference
    * @param endNodeIndex reference
    * @param missingNodeConsumer callback in case of missing node found
    * @return coordinate array found, empty when no nodes were found available
    * @throws PlanItException thrown if error
    */
-  public static Coordinate[] createCoordinateArray(OsmWay osmWay, Map<Long,OsmNode> osmNodes, int startNodeIndex, int endNodeIndex, PlanitExceptionConsumer<Set<Long>> missingNodeConsumer) throws PlanItException{
+  private static Coordinate[] createCoordinateArray(OsmWay osmWay, LongFunction<Coordinate> coordinateLookup, int startNodeIndex, int endNodeIndex, PlanitExceptionConsumer<Set<Long>> missingNodeConsumer) throws PlanItException{
     Set<Long> missingNodes = null;
         
     /* in the special case the end node index is smaller than start node index (circular way) we "loop around" to accommodate this */
@@ -195,30 +196,30 @@ public class OsmWayUtils {
     }
     
     for(int index = startNodeIndex ; index <= stopIndex ; ++index) {
-      OsmNode osmNode = osmNodes.get(osmWay.getNodeId(index));
-      if(osmNode==null) {
+      Coordinate coordinate = coordinateLookup.apply(osmWay.getNodeId(index));
+      if(coordinate==null) {
         if(missingNodes==null) {
           missingNodes = new HashSet<Long>();
         }
         missingNodes.add(osmWay.getNodeId(index));
         continue;
       }
-      coordArray[index - startNodeIndex] = new Coordinate(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+      coordArray[index - startNodeIndex] = coordinate;
     }
     
     if(endNodeIndex < startNodeIndex) {
       /* supplement with coordinates from start to end node index */
       int offsetIndex = stopIndex - startNodeIndex + 1;
       for(int index = 0 ; index <= endNodeIndex ; ++index) {
-        OsmNode osmNode = osmNodes.get(osmWay.getNodeId(index));
-        if(osmNode==null) {
+        Coordinate coordinate = coordinateLookup.apply(osmWay.getNodeId(index));
+        if(coordinate==null) {
           if(missingNodes==null) {
             missingNodes = new HashSet<Long>();
           }
           missingNodes.add(osmWay.getNodeId(index));
           continue;
         }
-        coordArray[ offsetIndex + index] = new Coordinate(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+        coordArray[ offsetIndex + index] = coordinate;
       }      
     }
     
@@ -233,6 +234,45 @@ public class OsmWayUtils {
     return coordArray;
   }   
  
+  /** Based on the passed in osmWay collect the coordinates on that way as a coordinate array. In case something goes wrong and missing
+   * nodes are found, the passed in consumer is called to deal with it. User can decide to throw an exception or do something else
+   * entirely. If no exception is thrown, the nodes that could be parsed will be returned
+   * 
+   * @param osmWay to extract node coordinates from
+   * @param osmNodes to collect nodes from by reference node ids in the way
+   * @param startNodeIndex reference
+   * @param endNodeIndex reference
+   * @param missingNodeConsumer callback in case of missing node found
+   * @return coordinate array found, empty when no nodes were found available
+   * @throws PlanItException thrown if error
+   */
+  public static Coordinate[] createCoordinateArray(OsmWay osmWay, Map<Long,OsmNode> osmNodes, int startNodeIndex, int endNodeIndex, PlanitExceptionConsumer<Set<Long>> missingNodeConsumer) throws PlanItException{
+    LongFunction<Coordinate> coordinateLookup = osmNodeId -> {
+      OsmNode osmNode = osmNodes.get(osmNodeId);
+      return osmNode==null ? null : new Coordinate(OsmNodeUtils.getX(osmNode), OsmNodeUtils.getY(osmNode));
+    };
+    return createCoordinateArray(osmWay, coordinateLookup, startNodeIndex, endNodeIndex, missingNodeConsumer);
+  }
+
+  /** Same as {@link #createCoordinateArray(OsmWay, Map, int, int, PlanitExceptionConsumer)} except that the coordinates are obtained from the
+   * registered OSM nodes directly, without creating an OSM node instance per referenced node
+   * 
+   * @param osmWay to extract node coordinates from
+   * @param osmNodeData to collect registered node coordinates from by reference node ids in the way
+   * @param startNodeIndex reference
+   * @param endNodeIndex reference
+   * @param missingNodeConsumer callback in case of missing node found
+   * @return coordinate array found, empty when no nodes were found available
+   * @throws PlanItException thrown if error
+   */
+  public static Coordinate[] createCoordinateArray(OsmWay osmWay, OsmNodeData osmNodeData, int startNodeIndex, int endNodeIndex, PlanitExceptionConsumer<Set<Long>> missingNodeConsumer) throws PlanItException{
+    LongFunction<Coordinate> coordinateLookup = osmNodeId -> {
+      Coordinate coordinate = new Coordinate();
+      return osmNodeData.fillCoordinate(osmNodeId, coordinate) ? coordinate : null;
+    };
+    return createCoordinateArray(osmWay, coordinateLookup, startNodeIndex, endNodeIndex, missingNodeConsumer);
+  }
+
   /** Based on the passed in osmWay collect the coordinates on that way as a coordinate array. In case there are missing
    * nodes or something else goes wrong a PlanitException is thrown
    * 
@@ -401,6 +441,27 @@ public class OsmWayUtils {
     return  PlanitJtsUtils.createLineString(coordArray);
   }  
 
+  /**
+   * Identical to {@link #extractLineStringNoThrow(OsmWay, int, int, Map)}, except the coordinates are obtained from the registered OSM nodes directly
+   * 
+   * @param osmWay way to extract geometry from
+   * @param startNodeIndex to use
+   * @param endNodeIndex to use
+   * @param osmNodeData to consider
+   * @return line string instance representing the shape of the way
+   * @throws PlanItException thrown if error
+   */  
+  public static LineString extractLineStringNoThrow(OsmWay osmWay, int startNodeIndex, int endNodeIndex, OsmNodeData osmNodeData) throws PlanItException {
+    /* log -> no throw */
+    PlanitExceptionConsumer<Set<Long>> missingNodeConsumer = (missingNodes) -> {
+      if(missingNodes!=null) {
+        LOGGER.warning(String.format("Missing OSM nodes for OSM way %d: %s",osmWay.getId(), missingNodes));
+      }
+    };
+    Coordinate[] coordArray = createCoordinateArray(osmWay, osmNodeData, startNodeIndex, endNodeIndex, missingNodeConsumer);
+    return  PlanitJtsUtils.createLineString(coordArray);
+  }
+
   /** Identical to {@link OsmWayUtils#extractLineString}, except it does not throw exceptions, but simply logs any issues found
    * @param osmWay to extract geometry for
    * @param osmNodes to collect from
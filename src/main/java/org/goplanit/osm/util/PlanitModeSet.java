@@ -0,0 +1,207 @@
+package org.goplanit.osm.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.goplanit.utils.mode.Mode;
+
+/**
+ * Compact immutable set of PLANit modes, represented as a bit mask over the (dense) ids of the modes. Modes of a network are few, so the mask typically is a
+ * single word, and set algebra, equality and hashing are a handful of bitwise operations rather than operations on hash sets. This makes it suitable as a
+ * key in lookups that are performed for every OSM way.
+ * <p>
+ *   A mode set does not retain the modes themselves, to obtain them again provide the modes to select from, see {@link #toSet(Collection)}
+ * </p>
+ *
+ * @author markr
+ */
+public final class PlanitModeSet {
+
+  /** the empty set */
+  public static final PlanitModeSet EMPTY = new PlanitModeSet(new long[0]);
+
+  /** bits by mode id, without trailing zero words such that equal sets have equal words */
+  private final long[] words;
+
+  /** Create set from words, trimming trailing zero words
+   *
+   * @param words to use, not to be modified afterwards
+   * @return created set
+   */
+  private static PlanitModeSet of(long[] words) {
+    int length = words.length;
+    while(length > 0 && words[length - 1] == 0) {
+      --length;
+    }
+    if(length == 0) {
+      return EMPTY;
+    }
+    return new PlanitModeSet(length == words.length ? words : Arrays.copyOf(words, length));
+  }
+
+  /** Constructor
+   *
+   * @param words to use
+   */
+  private PlanitModeSet(long[] words) {
+    this.words = words;
+  }
+
+  /** Create set of the given modes
+   *
+   * @param modes to include, may be null
+   * @return created set
+   */
+  public static PlanitModeSet of(final Collection<? extends Mode> modes) {
+    if(modes == null || modes.isEmpty()) {
+      return EMPTY;
+    }
+    long[] words = new long[1];
+    for(Mode mode : modes) {
+      int index = (int) mode.getId();
+      int wordIndex = index >>> 6;
+      if(wordIndex >= words.length) {
+        words = Arrays.copyOf(words, wordIndex + 1);
+      }
+      words[wordIndex] |= 1L << index;
+    }
+    return of(words);
+  }
+
+  /** Union of this and the other set
+   *
+   * @param other set
+   * @return union
+   */
+  public PlanitModeSet union(final PlanitModeSet other) {
+    if(other.words.length > words.length) {
+      return other.union(this);
+    }
+    if(other.words.length == 0) {
+      return this;
+    }
+    long[] result = words.clone();
+    for(int index = 0; index < other.words.length; ++index) {
+      result[index] |= other.words[index];
+    }
+    return of(result);
+  }
+
+  /** Intersection of this and the other set
+   *
+   * @param other set
+   * @return intersection
+   */
+  public PlanitModeSet intersection(final PlanitModeSet other) {
+    long[] result = new long[Math.min(words.length, other.words.length)];
+    for(int index = 0; index < result.length; ++index) {
+      result[index] = words[index] & other.words[index];
+    }
+    return of(result);
+  }
+
+  /** Difference of this and the other set, i.e., modes in this set that are not in the other set
+   *
+   * @param other set
+   * @return difference
+   */
+  public PlanitModeSet difference(final PlanitModeSet other) {
+    if(words.length == 0 || other.words.length == 0) {
+      return this;
+    }
+    long[] result = words.clone();
+    for(int index = 0; index < Math.min(words.length, other.words.length); ++index) {
+      result[index] &= ~other.words[index];
+    }
+    return of(result);
+  }
+
+  /** Verify if mode is contained
+   *
+   * @param mode to verify
+   * @return true when contained, false otherwise
+   */
+  public boolean contains(final Mode mode) {
+    int index = (int) mode.getId();
+    int wordIndex = index >>> 6;
+    return wordIndex < words.length && (words[wordIndex] & (1L << index)) != 0;
+  }
+
+  /** Verify if set is empty
+   *
+   * @return true when empty, false otherwise
+   */
+  public boolean isEmpty() {
+    return words.length == 0;
+  }
+
+  /** Number of modes in the set
+   *
+   * @return size
+   */
+  public int size() {
+    int size = 0;
+    for(long word : words) {
+      size += Long.bitCount(word);
+    }
+    return size;
+  }
+
+  /** Collect the modes of this set
+   *
+   * @param modes to select from, e.g., the supported modes of a layer
+   * @return the modes that are contained in this set
+   */
+  public Set<Mode> toSet(final Collection<? extends Mode> modes) {
+    Set<Mode> result = new HashSet<>();
+    if(isEmpty()) {
+      return result;
+    }
+    for(Mode mode : modes) {
+      if(contains(mode)) {
+        result.add(mode);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(this == other) {
+      return true;
+    }
+    return other instanceof PlanitModeSet && Arrays.equals(words, ((PlanitModeSet) other).words);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(words);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    var builder = new StringBuilder("[");
+    for(int wordIndex = 0; wordIndex < words.length; ++wordIndex) {
+      long word = words[wordIndex];
+      while(word != 0) {
+        if(builder.length() > 1) {
+          builder.append(',');
+        }
+        builder.append((wordIndex << 6) + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    return builder.append(']').toString();
+  }
+}
@@ -4,10 +4,8 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.goplanit.osm.tags.OsmSpeedTags;
 import org.goplanit.utils.exceptions.PlanItException;
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.geo.PlanitJtsCrsUtils;
@@ -31,29 +29,15 @@ public class PlanitOsmUtils {
   
   /** the logger */
   static final Logger LOGGER = Logger.getLogger(PlanitOsmUtils.class.getCanonicalName());
-  
-  /**
-   * convert the unit string to a multipler with respect to km/h (the default unit for speed in OSM)
-   * 
-   * @param unitString the string containing the unit, e.g. "mph", "knots", etc
-   * @return multiplier the multiplier from x to km/h
-   * @throws PlanItException thrown when conversion not available
-   */
-  private static double determineMaxSpeedUnitMultiplierKmPerHour(final String unitString) throws PlanItException {
-    switch (unitString) {
-    case OsmSpeedTags.MILES_PER_HOUR:
-      return 0.621371;
-    case OsmSpeedTags.KNOTS:
-      return 0.539957;      
-    default:
-      throw new PlanItException(String.format("unit conversion to km/h not available from %s",unitString));
-    }
-  }  
     
   /** regular expression pattern([^0-9]*)([0-9]*\\.?[0-9]+).*(km/h|kmh|kph|mph|knots)?.* used to extract decimal values and unit (if any) where the decimal value is in group two 
-   * and the unit in group 3 (indicated by second section of round brackets)*/
-  public static final Pattern SPEED_LIMIT_PATTERN = Pattern.compile("([^0-9]*)([0-9]*\\.?[0-9]+).*(km/h|kmh|kph|mph|knots)?.*");    
- 
+   * and the unit in group 3 (indicated by second section of round brackets)
+   * 
+   * @deprecated no longer used to parse speed limits, use {@link OsmNumericTagValueParser} instead
+   */
+  @Deprecated
+  public static final Pattern SPEED_LIMIT_PATTERN = Pattern.compile("([^0-9]*)([0-9]*\\.?[0-9]+).*(km/h|kmh|kph|mph|knots)?.*");
+  
   /**
    * parse an OSM maxSpeedValue tag value and perform unit conversion to km/h if needed
    * @param maxSpeedValue string
@@ -63,22 +47,10 @@ public class PlanitOsmUtils {
   public static double parseMaxSpeedValueKmPerHour(final String maxSpeedValue) throws PlanItException {
     PlanItException.throwIfNull(maxSpeedValue, "max speed value is null");
     
-    double speedLimitKmh = -1;
-    /* split in parts where all that are not a valid numeric speed limit are removed and retained are the potential speed limits */
-    Matcher speedLimitMatcher = SPEED_LIMIT_PATTERN.matcher(maxSpeedValue);
-    if (!speedLimitMatcher.matches()){
-      throw new PlanItException(String.format("invalid value string encountered for maxSpeed: %s",maxSpeedValue));      
+    double speedLimitKmh = OsmNumericTagValueParser.parseMaxSpeedKmPerHour(maxSpeedValue);
+    if(!OsmNumericTagValueParser.isValid(speedLimitKmh)) {
+      throw new PlanItException(String.format("invalid value string encountered for maxSpeed: %s",maxSpeedValue));
     }
-
-    /* speed limit decimal value parsed is in group 2 */
-    if(speedLimitMatcher.group(2) !=null) {
-      speedLimitKmh = Double.parseDouble(speedLimitMatcher.group(2));
-    }
-    
-    /* speed limit unit value parsed is in group 3 (if any) */
-    if(speedLimitMatcher.group(3) != null){
-        speedLimitKmh *= determineMaxSpeedUnitMultiplierKmPerHour(speedLimitMatcher.group(3));
-    }  
     return speedLimitKmh;    
   }
 
@@ -92,10 +64,11 @@ public class PlanitOsmUtils {
   public static double[] parseMaxSpeedValueLanesKmPerHour(final String maxSpeedLanes) throws PlanItException {
     PlanItException.throwIfNull(maxSpeedLanes, "max speed lanes value is null");
     
-    String[] maxSpeedByLane = maxSpeedLanes.split("|");
-    double[] speedLimitKmh = new double[maxSpeedByLane.length];
-    for(int index=0;index<maxSpeedByLane.length;++index) {
-      speedLimitKmh[index] = parseMaxSpeedValueKmPerHour(maxSpeedByLane[index]);
+    double[] speedLimitKmh = OsmNumericTagValueParser.parseMaxSpeedLanesKmPerHour(maxSpeedLanes);
+    for(int index=0;index<speedLimitKmh.length;++index) {
+      if(!OsmNumericTagValueParser.isValid(speedLimitKmh[index])) {
+        throw new PlanItException(String.format("invalid value string encountered for maxSpeed lanes: %s",maxSpeedLanes));
+      }
     }
     return speedLimitKmh;
   }  
@@ -2,10 +2,13 @@ package org.goplanit.osm.test;
 
 import org.goplanit.logging.Logging;
 import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.osm.converter.OsmReaderSettings;
+import org.goplanit.osm.converter.OsmRemoteSourceCache;
 import org.goplanit.osm.converter.intermodal.OsmIntermodalReader;
 import org.goplanit.osm.converter.intermodal.OsmIntermodalReaderFactory;
 import org.goplanit.osm.converter.network.OsmNetworkReader;
 import org.goplanit.osm.converter.network.OsmNetworkReaderFactory;
+import org.goplanit.osm.converter.network.OsmNetworkSubsetCache;
 import org.goplanit.osm.tags.OsmHighwayTags;
 import org.goplanit.osm.tags.OsmRailwayTags;
 import org.goplanit.osm.tags.OsmRoadModeTags;
@@ -14,12 +17,28 @@ import org.goplanit.utils.misc.Pair;
 import org.goplanit.utils.mode.PredefinedModeType;
 import org.goplanit.zoning.Zoning;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,6 +60,9 @@ public class BasicOsmReaderTest {
   
   private static final String EXAMPLE_REMOTE_URL = "https://api.openstreetmap.org/api/0.6/map?bbox=13.465661,52.504055,13.469817,52.506204";
 
+  /** cache directory created by a test (if any), removed after each test */
+  private Path testCacheDirectory = null;
+
   /** configure for parsing road and pt infrastructure networks (activate rail and disable walk and cycle infrastructure)
    *
    * @param osmReader to configure
@@ -55,6 +77,63 @@ public class BasicOsmReaderTest {
     osmReader.getSettings().getNetworkSettings().activateRailwayParser(true);
   }
   
+  /** Remove a directory created by a test including its contents
+   *
+   * @param directory to remove, ignored when null
+   */
+  private static void deleteDirectory(Path directory) {
+    if(directory == null || !Files.exists(directory)) {
+      return;
+    }
+    try(var paths = Files.walk(directory)){
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }catch(IOException e) {
+      LOGGER.warning(String.format("Unable to remove test directory %s: %s", directory, e.getMessage()));
+    }
+  }
+
+  /** Create and start a local HTTP server as stand-in for a remote OSM source, serving the content with an ETag at each of the given paths, supporting
+   * range requests conditional on the ETag (If-Range)
+   *
+   * @param content to serve
+   * @param eTag of the content
+   * @param numberOfFullDownloads incremented for each request of the entire content
+   * @param rangeRequests to register range requests on
+   * @param paths to serve the content at
+   * @return started server
+   * @throws IOException thrown if error
+   */
+  private static HttpServer createRangeSupportingServer(
+      byte[] content, String eTag, AtomicInteger numberOfFullDownloads, List<String> rangeRequests, String... paths) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    for(String path : paths) {
+      server.createContext(path, exchange -> {
+        exchange.getResponseHeaders().add("ETag", eTag);
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if("HEAD".equals(exchange.getRequestMethod())) {
+          exchange.sendResponseHeaders(200, -1);
+        }else if(range != null && eTag.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+          rangeRequests.add(range);
+          int offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+          exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", offset, content.length - 1, content.length));
+          exchange.sendResponseHeaders(206, content.length - offset);
+          try(OutputStream output = exchange.getResponseBody()){
+            output.write(content, offset, content.length - offset);
+          }
+        }else {
+          numberOfFullDownloads.incrementAndGet();
+          exchange.sendResponseHeaders(200, content.length);
+          try(OutputStream output = exchange.getResponseBody()){
+            output.write(content);
+          }
+        }
+        exchange.close();
+      });
+    }
+    server.start();
+    return server;
+  }
+
   @BeforeAll
   public static void setUp() throws Exception {
     if (LOGGER == null) {
@@ -62,6 +141,12 @@ public class BasicOsmReaderTest {
     } 
   }
 
+  @AfterEach
+  public void removeTestCacheDirectory() {
+    deleteDirectory(testCacheDirectory);
+    testCacheDirectory = null;
+  }
+
   @AfterAll
   public static void tearDown() {
     Logging.closeLogger(LOGGER); 
@@ -153,6 +238,76 @@ public class BasicOsmReaderTest {
     }
   }
 
+  /**
+   * test sharing a single decode of the input source across the network and zoning reader yields the same network and zoning as
+   * osmReaderRoadAndPtTest, where each reader parses the input source itself
+   */
+  @Test
+  public void osmReaderSharedDecodeTest() {
+    try {
+      OsmIntermodalReader osmReader = OsmIntermodalReaderFactory.create(SYDNEYCBD_2023_OSM, CountryNames.AUSTRALIA);
+      configureForRoadAndPt(osmReader);
+      osmReader.getSettings().setShareDecodedOsmEntities(true);
+
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings().getNetworkSettings());
+      OsmPtSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings().getPublicTransportSettings());
+
+      Pair<MacroscopicNetwork, Zoning> resultPair = osmReader.read();
+      MacroscopicNetwork network = resultPair.first();
+      Zoning zoning = resultPair.second();
+
+      assertNotNull(network);
+      assertNotNull(zoning);
+
+      /* identical to osmReaderRoadAndPtTest */
+      assertEquals(1, network.getTransportLayers().size());
+      assertEquals(1234, network.getTransportLayers().getFirst().getLinks().size());
+      assertEquals(2437, network.getTransportLayers().getFirst().getLinkSegments().size());
+      assertEquals(1030, network.getTransportLayers().getFirst().getNodes().size());
+
+      assertEquals(0, zoning.getOdZones().size() );
+      assertEquals(104, zoning.getTransferZones().size() );
+      assertEquals(8, zoning.getTransferZoneGroups().size());
+      assertEquals(0, zoning.getOdConnectoids().size());
+      assertEquals(131, zoning.getTransferConnectoids().size());
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("osmReaderSharedDecodeTest");
+    }
+  }
+
+  /**
+   * test single pass parsing yields the same network as the default two pass parsing on the same configuration
+   */
+  @Test
+  public void osmReaderSinglePassTest() {
+    try {
+      OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_OSM, CountryNames.AUSTRALIA);
+      osmReader.getSettings().setSinglePassProcessing(true);
+
+      /* identical configuration to osmReaderRoadInfrastructureTest */
+      osmReader.getSettings().getHighwaySettings().deactivateOsmHighwayType(OsmHighwayTags.ROAD);
+      osmReader.getSettings().getHighwaySettings().overwriteCapacityMaxDensityDefaults(OsmHighwayTags.PRIMARY, 2200.0, 180.0);
+      osmReader.getSettings().getHighwaySettings().addAllowedOsmHighwayModes(OsmHighwayTags.SECONDARY, OsmRailwayTags.TRAM);
+
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+
+      MacroscopicNetwork network = osmReader.read();
+      assertNotNull(network);
+
+      assertEquals(network.getTransportLayers().size(), 1);
+      assertEquals(network.getTransportLayers().getFirst().getLinks().size(), 1075);
+      assertEquals(network.getTransportLayers().getFirst().getLinkSegments().size(), 2119);
+      assertEquals(network.getTransportLayers().getFirst().getNodes().size(), 882);
+
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("osmReaderSinglePassTest");
+    }
+  }
+
   /**
    * test *.osm.pbf format parsing on small network
    */
@@ -170,6 +325,105 @@ public class BasicOsmReaderTest {
     }
   }
 
+  /** Collect a textual signature of the links and nodes of the (first layer of the) network, comprising their external ids and geometries
+   *
+   * @param network to collect signature for
+   * @return sorted signatures of links and nodes
+   */
+  private static List<String> getLinkAndNodeSignatures(MacroscopicNetwork network) {
+    var signatures = new ArrayList<String>();
+    for(var link : network.getTransportLayers().getFirst().getLinks()) {
+      signatures.add("l" + link.getExternalId() + " " + link.getGeometry().toText());
+    }
+    for(var node : network.getTransportLayers().getFirst().getNodes()) {
+      signatures.add("n" + node.getExternalId() + " " + node.getPosition().toText());
+    }
+    Collections.sort(signatures);
+    return signatures;
+  }
+
+  /**
+   * test storing OSM node coordinates in a memory mapped file yields the same network as storing them on the heap
+   */
+  @Test
+  public void memoryMappedOsmNodeCoordinatesTest() {
+    try {
+      OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      MacroscopicNetwork heapNetwork = osmReader.read();
+      assertNotNull(heapNetwork);
+
+      testCacheDirectory = Files.createTempDirectory("planit-osm-node-coordinates-test");
+      osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      osmReader.getSettings().setMemoryMappedOsmNodeCoordinates(true);
+      osmReader.getSettings().setMemoryMappedOsmNodeCoordinatesDirectory(testCacheDirectory);
+      MacroscopicNetwork mappedNetwork = osmReader.read();
+      assertNotNull(mappedNetwork);
+
+      assertEquals(heapNetwork.getTransportLayers().size(), mappedNetwork.getTransportLayers().size());
+      assertEquals(heapNetwork.getTransportLayers().getFirst().getLinks().size(), mappedNetwork.getTransportLayers().getFirst().getLinks().size());
+      assertEquals(
+          heapNetwork.getTransportLayers().getFirst().getLinkSegments().size(), mappedNetwork.getTransportLayers().getFirst().getLinkSegments().size());
+      assertEquals(heapNetwork.getTransportLayers().getFirst().getNodes().size(), mappedNetwork.getTransportLayers().getFirst().getNodes().size());
+      assertEquals(getLinkAndNodeSignatures(heapNetwork), getLinkAndNodeSignatures(mappedNetwork));
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("memoryMappedOsmNodeCoordinatesTest");
+    }
+  }
+
+  /** Collect a sorted signature of the link segment type assigned to each link segment of all layers
+   *
+   * @param network to collect from
+   * @return link segment type signatures
+   */
+  private static List<String> getLinkSegmentTypeSignatures(MacroscopicNetwork network) {
+    var signatures = new ArrayList<String>();
+    for(var layer : network.getTransportLayers()) {
+      for(var linkSegment : layer.getLinkSegments()) {
+        var linkSegmentType = linkSegment.getLinkSegmentType();
+        String allowedModes = linkSegmentType.getAllowedModes().stream().map(mode -> mode.getXmlId()).sorted().collect(Collectors.joining(","));
+        signatures.add(String.format("%s l%s n%s n%s %s %s [%s]", layer.getXmlId(), linkSegment.getParentLink().getExternalId(),
+            linkSegment.getUpstreamVertex().getExternalId(), linkSegment.getDownstreamVertex().getExternalId(), linkSegmentType.getXmlId(),
+            linkSegmentType.getName(), allowedModes));
+      }
+    }
+    Collections.sort(signatures);
+    return signatures;
+  }
+
+  /**
+   * test resolving link segment types with the resolution cache yields the same link segment type per link segment as resolving each way
+   */
+  @Test
+  public void linkSegmentTypeResolutionCacheParityTest() {
+    try {
+      OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      osmReader.getSettings().activateRailwayParser(true);
+      MacroscopicNetwork cachedNetwork = osmReader.read();
+      assertNotNull(cachedNetwork);
+
+      osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      osmReader.getSettings().activateRailwayParser(true);
+      osmReader.getSettings().setLinkSegmentTypeResolutionCacheSize(0);
+      MacroscopicNetwork uncachedNetwork = osmReader.read();
+      assertNotNull(uncachedNetwork);
+
+      assertEquals(uncachedNetwork.getTransportLayers().size(), cachedNetwork.getTransportLayers().size());
+      List<String> uncachedSignatures = getLinkSegmentTypeSignatures(uncachedNetwork);
+      assertFalse(uncachedSignatures.isEmpty());
+      assertEquals(uncachedSignatures, getLinkSegmentTypeSignatures(cachedNetwork));
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("linkSegmentTypeResolutionCacheParityTest");
+    }
+  }
+
   /**
    * test if we can parse from cloud based URL instead of local fule
    */
@@ -193,5 +447,203 @@ public class BasicOsmReaderTest {
       fail();      
     }    
   }
-  
+
+  /**
+   * test if remote PBF input is downloaded once into the remote input cache and all passes are served from it, using a local HTTP server as stand-in
+   */
+  @Test
+  public void remotePbfCacheTest() {
+    HttpServer server = null;
+    try {
+      final byte[] content = Files.readAllBytes(Path.of(SYDNEYCBD_2023_PBF));
+      final AtomicInteger numberOfDownloads = new AtomicInteger();
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/sydneycbd_2023.osm.pbf", exchange -> {
+        exchange.getResponseHeaders().add("ETag", "\"sydneycbd-2023\"");
+        if("HEAD".equals(exchange.getRequestMethod())) {
+          exchange.sendResponseHeaders(200, -1);
+        }else {
+          numberOfDownloads.incrementAndGet();
+          exchange.sendResponseHeaders(200, content.length);
+          try(OutputStream output = exchange.getResponseBody()){
+            output.write(content);
+          }
+        }
+        exchange.close();
+      });
+      server.start();
+
+      URL remoteUrl = new URL(String.format("http://localhost:%d/sydneycbd_2023.osm.pbf", server.getAddress().getPort()));
+      OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(remoteUrl, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      testCacheDirectory = Files.createTempDirectory("planit-osm-cache-test");
+      osmReader.getSettings().setCacheRemoteInputSource(true);
+      osmReader.getSettings().setRemoteInputSourceCacheDirectory(testCacheDirectory);
+
+      MacroscopicNetwork network = osmReader.read();
+      assertNotNull(network);
+      assertEquals(1, numberOfDownloads.get());
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail();
+    }finally {
+      if(server != null) {
+        server.stop(0);
+      }
+    }
+  }
+
+  /**
+   * test the cached OSM subset yields the same network as a full read of the OSM source, is reused by a subsequent read with the same fingerprint, and
+   * replaces the outdated cache file when the fingerprint changes
+   */
+  @Test
+  public void osmSubsetCacheTest() {
+    try {
+      OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      MacroscopicNetwork fullNetwork = osmReader.read();
+      assertNotNull(fullNetwork);
+
+      /* first read creates the subset */
+      testCacheDirectory = Files.createTempDirectory("planit-osm-subset-test");
+      osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      osmReader.getSettings().setCacheOsmSubset(true);
+      osmReader.getSettings().setOsmSubsetCacheDirectory(testCacheDirectory);
+      MacroscopicNetwork subsetNetwork = osmReader.read();
+      assertNotNull(subsetNetwork);
+
+      assertEquals(fullNetwork.getTransportLayers().size(), subsetNetwork.getTransportLayers().size());
+      assertEquals(fullNetwork.getTransportLayers().getFirst().getLinks().size(), subsetNetwork.getTransportLayers().getFirst().getLinks().size());
+      assertEquals(
+          fullNetwork.getTransportLayers().getFirst().getLinkSegments().size(), subsetNetwork.getTransportLayers().getFirst().getLinkSegments().size());
+      assertEquals(fullNetwork.getTransportLayers().getFirst().getNodes().size(), subsetNetwork.getTransportLayers().getFirst().getNodes().size());
+
+      File[] subsetFiles = testCacheDirectory.toFile().listFiles();
+      assertEquals(1, subsetFiles.length);
+      File subsetFile = subsetFiles[0];
+      assertTrue(subsetFile.getName().endsWith(OsmNetworkSubsetCache.SUBSET_FILE_SUFFIX));
+
+      /* second read with the same fingerprint reuses the subset, i.e., it is not written again, so its (artificial) modification time is retained */
+      final long artificialSubsetModificationTime = 1000;
+      assertTrue(subsetFile.setLastModified(artificialSubsetModificationTime));
+      osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      osmReader.getSettings().setCacheOsmSubset(true);
+      osmReader.getSettings().setOsmSubsetCacheDirectory(testCacheDirectory);
+      subsetNetwork = osmReader.read();
+      assertNotNull(subsetNetwork);
+      assertEquals(fullNetwork.getTransportLayers().getFirst().getLinks().size(), subsetNetwork.getTransportLayers().getFirst().getLinks().size());
+      assertEquals(fullNetwork.getTransportLayers().getFirst().getNodes().size(), subsetNetwork.getTransportLayers().getFirst().getNodes().size());
+      assertEquals(artificialSubsetModificationTime, subsetFile.lastModified());
+
+      /* changing the activated OSM way types changes the fingerprint, the outdated subset is replaced */
+      osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      OsmNetworkSettingsTestCaseUtils.sydney2023MinimiseVerifiedWarnings(osmReader.getSettings());
+      osmReader.getSettings().getHighwaySettings().deactivateOsmHighwayType(OsmHighwayTags.ROAD);
+      osmReader.getSettings().setCacheOsmSubset(true);
+      osmReader.getSettings().setOsmSubsetCacheDirectory(testCacheDirectory);
+      assertNotNull(osmReader.read());
+      subsetFiles = testCacheDirectory.toFile().listFiles();
+      assertEquals(1, subsetFiles.length);
+      assertNotEquals(subsetFile.getName(), subsetFiles[0].getName());
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("osmSubsetCacheTest");
+    }
+  }
+
+  /**
+   * test if an interrupted download into the remote input cache is resumed through a range request, rather than downloaded again in full, using a local
+   * HTTP server supporting Range and If-Range as stand-in
+   */
+  @Test
+  public void remoteInputCacheResumeTest() {
+    HttpServer server = null;
+    try {
+      final byte[] content = Files.readAllBytes(Path.of(SYDNEYCBD_2023_PBF));
+      final String eTag = "\"sydneycbd-2023\"";
+      final AtomicInteger numberOfFullDownloads = new AtomicInteger();
+      final List<String> rangeRequests = new CopyOnWriteArrayList<>();
+      server = createRangeSupportingServer(content, eTag, numberOfFullDownloads, rangeRequests, "/sydneycbd_2023.osm.pbf");
+
+      URL remoteUrl = new URL(String.format("http://localhost:%d/sydneycbd_2023.osm.pbf", server.getAddress().getPort()));
+      testCacheDirectory = Files.createTempDirectory("planit-osm-cache-test");
+      var remoteSourceCache = new OsmRemoteSourceCache(testCacheDirectory, OsmReaderSettings.DEFAULT_MAX_REMOTE_INPUT_SOURCE_CACHE_SIZE);
+
+      File cachedFile = remoteSourceCache.collect(remoteUrl);
+      assertArrayEquals(content, Files.readAllBytes(cachedFile.toPath()));
+      assertEquals(1, numberOfFullDownloads.get());
+      assertTrue(rangeRequests.isEmpty());
+
+      /* simulate an interrupted download by truncating the cached file into a partial download */
+      final int truncatedLength = content.length / 3;
+      File partialFile = new File(cachedFile.getPath() + OsmRemoteSourceCache.PARTIAL_FILE_EXTENSION);
+      Files.write(partialFile.toPath(), Arrays.copyOf(content, truncatedLength));
+      Files.delete(cachedFile.toPath());
+
+      File resumedFile = remoteSourceCache.collect(remoteUrl);
+      assertEquals(cachedFile, resumedFile);
+      assertFalse(partialFile.exists());
+      assertArrayEquals(content, Files.readAllBytes(resumedFile.toPath()));
+      assertEquals(1, numberOfFullDownloads.get());
+      assertEquals(List.of(String.format("bytes=%d-", truncatedLength)), rangeRequests);
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("remoteInputCacheResumeTest");
+    }finally {
+      if(server != null) {
+        server.stop(0);
+      }
+    }
+  }
+
+  /**
+   * test if eviction from the remote input cache is limited to the files created by the cache and their sidecars, such that other files in the cache
+   * directory, as well as partial downloads, survive eviction
+   */
+  @Test
+  public void remoteInputCacheEvictionTest() {
+    HttpServer server = null;
+    try {
+      final byte[] content = Files.readAllBytes(Path.of(SYDNEYCBD_2023_PBF));
+      server = createRangeSupportingServer(
+          content, "\"sydneycbd-2023\"", new AtomicInteger(), new CopyOnWriteArrayList<>(), "/first.osm.pbf", "/second.osm.pbf");
+
+      testCacheDirectory = Files.createTempDirectory("planit-osm-cache-test");
+      Path foreignFile = Files.write(testCacheDirectory.resolve("foreign.osm.pbf"), new byte[] {1, 2, 3});
+      Path foreignKeyLikeFile = Files.write(testCacheDirectory.resolve("0123456789abcdef.txt"), new byte[] {1, 2, 3});
+      Path partialFile = Files.write(testCacheDirectory.resolve("fedcba9876543210.osm.pbf" + OsmRemoteSourceCache.PARTIAL_FILE_EXTENSION), new byte[] {1, 2, 3});
+
+      /* room for a single cached file only */
+      var remoteSourceCache = new OsmRemoteSourceCache(testCacheDirectory, content.length + 1024);
+      File firstCachedFile = remoteSourceCache.collect(new URL(String.format("http://localhost:%d/first.osm.pbf", server.getAddress().getPort())));
+      Path firstSidecarFile = Files.write(Path.of(firstCachedFile.getPath() + ".blobidx"), new byte[] {1, 2, 3});
+      assertTrue(firstCachedFile.isFile());
+
+      File secondCachedFile = remoteSourceCache.collect(new URL(String.format("http://localhost:%d/second.osm.pbf", server.getAddress().getPort())));
+      assertTrue(secondCachedFile.isFile());
+      assertArrayEquals(content, Files.readAllBytes(secondCachedFile.toPath()));
+
+      /* least recently used cached file is evicted with its sidecar, files not created by the cache are left untouched */
+      assertFalse(firstCachedFile.exists());
+      assertFalse(Files.exists(firstSidecarFile));
+      assertTrue(Files.exists(foreignFile));
+      assertTrue(Files.exists(foreignKeyLikeFile));
+      assertTrue(Files.exists(partialFile));
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("remoteInputCacheEvictionTest");
+    }finally {
+      if(server != null) {
+        server.stop(0);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,110 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.osm.converter.OsmBoundingPolygonFilter;
+import org.goplanit.utils.geo.PlanitJtsUtils;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import de.topobyte.osm4j.core.model.impl.Node;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on the compiled containment test of a bounding polygon, verified against the unprepared polygon
+ *
+ * @author markr
+ *
+ */
+public class OsmBoundingPolygonFilterTest {
+
+  /** concave (U shaped) polygon with a slanted side, spanning x 0-12 and y 0-10 */
+  private static final Polygon CONCAVE_POLYGON = new GeometryFactory().createPolygon(new Coordinate[] {
+      new Coordinate(0, 0), new Coordinate(10, 0), new Coordinate(12, 5), new Coordinate(10, 10), new Coordinate(7, 10), new Coordinate(7, 3),
+      new Coordinate(3, 3), new Coordinate(3, 10), new Coordinate(0, 10), new Coordinate(0, 0)});
+
+  /** Verify the filter agrees with {@code Point.within} and {@code Point.coveredBy} on the unprepared polygon
+   *
+   * @param filter to verify
+   * @param x coordinate
+   * @param y coordinate
+   * @return 1 when the location is on the boundary of the polygon, 0 otherwise
+   */
+  private static int assertSameAsPolygon(OsmBoundingPolygonFilter filter, double x, double y) {
+    Point point = PlanitJtsUtils.createPoint(x, y);
+    boolean within = point.within(CONCAVE_POLYGON);
+    boolean coveredBy = point.coveredBy(CONCAVE_POLYGON);
+    assertEquals(within, filter.isWithin(x, y), String.format("within (%s, %s)", x, y));
+    assertEquals(within, filter.isWithin(new Node(1, x, y)), String.format("within (%s, %s)", x, y));
+    assertEquals(coveredBy, filter.isCoveredBy(x, y), String.format("covered by (%s, %s)", x, y));
+    assertEquals(coveredBy, filter.isCoveredBy(new Node(1, x, y)), String.format("covered by (%s, %s)", x, y));
+    assertEquals(coveredBy, filter.isCoveredBy(point), String.format("covered by (%s, %s)", x, y));
+    return coveredBy && !within ? 1 : 0;
+  }
+
+  /**
+   * test sweeping locations over the inside, outside, and boundary cells of a concave polygon, including locations exactly on its edges and
+   * vertices, on cell edges, and outside of its envelope, for several grid resolutions
+   */
+  @Test
+  public void concavePolygonSweepTest() {
+    for(int cellsPerDimension : new int[] {1, 4, 8, 64}) {
+      var filter = new OsmBoundingPolygonFilter(CONCAVE_POLYGON, cellsPerDimension);
+      int numberOfWithin = 0;
+      int numberOfBoundary = 0;
+      int numberOfOutside = 0;
+
+      /* regular sweep, step divides the axis parallel edges, vertices, and cell edges (of 4 and 8 cells) exactly */
+      for(double x = -1; x <= 13; x += 0.125) {
+        for(double y = -1; y <= 11; y += 0.125) {
+          int onBoundary = assertSameAsPolygon(filter, x, y);
+          numberOfBoundary += onBoundary;
+          if(onBoundary == 0) {
+            if(filter.isWithin(x, y)) {
+              ++numberOfWithin;
+            }else {
+              ++numberOfOutside;
+            }
+          }
+        }
+      }
+
+      /* exactly on the slanted edges */
+      for(int index = 0; index <= 64; ++index) {
+        double fraction = index / 64.0;
+        numberOfBoundary += assertSameAsPolygon(filter, 10 + 2 * fraction, 5 * fraction);
+        numberOfBoundary += assertSameAsPolygon(filter, 12 - 2 * fraction, 5 + 5 * fraction);
+      }
+
+      /* random locations, in and around the envelope */
+      var random = new Random(cellsPerDimension);
+      for(int index = 0; index < 10000; ++index) {
+        assertSameAsPolygon(filter, random.nextDouble() * 14 - 1, random.nextDouble() * 12 - 1);
+      }
+
+      assertTrue(numberOfWithin > 0);
+      assertTrue(numberOfOutside > 0);
+      assertTrue(numberOfBoundary > 0);
+    }
+  }
+
+  /**
+   * test locations just inside and outside the axis parallel edges of the concave polygon, one ulp away from the edge
+   */
+  @Test
+  public void edgeProximityTest() {
+    var filter = new OsmBoundingPolygonFilter(CONCAVE_POLYGON);
+    for(double edge : new double[] {0, 3, 7, 10}) {
+      for(double along = 0.5; along < 10; along += 0.5) {
+        for(double offset : new double[] {-Math.ulp(edge), 0, Math.ulp(edge)}) {
+          assertSameAsPolygon(filter, edge + offset, along);
+          assertSameAsPolygon(filter, along, edge + offset);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,501 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.osm.converter.OsmBzip2ParallelInputStream;
+import org.goplanit.osm.converter.OsmPbfBlobIndex;
+import org.goplanit.osm.converter.OsmPbfParallelReader;
+import org.goplanit.osm.converter.network.OsmNetworkReader;
+import org.goplanit.osm.converter.network.OsmNetworkReaderFactory;
+import org.goplanit.osm.util.Osm4JUtils;
+import org.goplanit.utils.locale.CountryNames;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.topobyte.osm4j.core.access.DefaultOsmHandler;
+import de.topobyte.osm4j.core.access.OsmInputException;
+import de.topobyte.osm4j.core.access.OsmReader;
+import de.topobyte.osm4j.core.model.iface.OsmEntity;
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.iface.OsmRelation;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.pbf.seq.PbfReader;
+import de.topobyte.osm4j.xml.dynsax.OsmXmlReader;
+import de.topobyte.osm4j.xml.output.OsmXmlOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on decoding OSM input, verifying that the readers used for the various input formats and decoding strategies deliver the same entities
+ *
+ * @author markr
+ *
+ */
+public class OsmInputDecodingTest {
+
+  private static Logger LOGGER;
+
+  private static final String RESOURCE_DIR = Path.of(".","src","test","resources").toString();
+
+  private static final File SYDNEYCBD_PBF = Path.of(RESOURCE_DIR,"osm","sydney-cbd","sydneycbd.osm.pbf").toFile();
+
+  /** small o5m file with meta data, string table references, and resets between entity types */
+  private static final File SYDNEYCBD_SAMPLE_O5M = Path.of(RESOURCE_DIR,"osm","o5m","sydneycbd-sample.o5m").toFile();
+
+  /** fresh directory per test for files created by the test, removed afterwards */
+  @TempDir
+  Path testDir;
+
+  /**
+   * Handler that records a textual signature of every entity it receives, in order of delivery, comprising the entity id, tags, and its coordinates (nodes),
+   * node ids (ways), or members (relations)
+   */
+  private static class RecordingHandler extends DefaultOsmHandler {
+
+    /** recorded signatures of nodes, ways, and relations in order of delivery */
+    final List<String> signatures = new ArrayList<>();
+
+    /** number of recorded nodes */
+    int numberOfNodes = 0;
+
+    /** number of recorded ways */
+    int numberOfWays = 0;
+
+    /** number of recorded relations */
+    int numberOfRelations = 0;
+
+    /** when true coordinates are recorded at the resolution of OSM, i.e., 1e-7 degrees, otherwise exactly */
+    private final boolean roundCoordinates;
+
+    /** Constructor
+     *
+     * @param roundCoordinates when true record coordinates at the resolution of OSM, for comparison across formats that store coordinates differently
+     */
+    RecordingHandler(boolean roundCoordinates) {
+      this.roundCoordinates = roundCoordinates;
+    }
+
+    /** Append a coordinate to the signature
+     *
+     * @param builder of the signature
+     * @param coordinate to append
+     * @return builder
+     */
+    private StringBuilder appendCoordinate(StringBuilder builder, double coordinate) {
+      return builder.append(' ').append(roundCoordinates ? String.valueOf(Math.round(coordinate * 1e7)) : String.valueOf(coordinate));
+    }
+
+    /** Append the tags of the entity to the signature
+     *
+     * @param builder of the signature
+     * @param osmEntity to append tags of
+     * @return builder
+     */
+    private static StringBuilder appendTags(StringBuilder builder, OsmEntity osmEntity) {
+      for(int index = 0; index < osmEntity.getNumberOfTags(); ++index) {
+        builder.append(' ').append(osmEntity.getTag(index).getKey()).append('=').append(osmEntity.getTag(index).getValue());
+      }
+      return builder;
+    }
+
+    @Override
+    public void handle(OsmNode osmNode) {
+      var builder = new StringBuilder("n").append(osmNode.getId());
+      appendCoordinate(appendCoordinate(builder, osmNode.getLongitude()), osmNode.getLatitude());
+      signatures.add(appendTags(builder, osmNode).toString());
+      ++numberOfNodes;
+    }
+
+    @Override
+    public void handle(OsmWay osmWay) {
+      var builder = new StringBuilder("w").append(osmWay.getId());
+      for(int index = 0; index < osmWay.getNumberOfNodes(); ++index) {
+        builder.append(' ').append(osmWay.getNodeId(index));
+      }
+      signatures.add(appendTags(builder, osmWay).toString());
+      ++numberOfWays;
+    }
+
+    @Override
+    public void handle(OsmRelation osmRelation) {
+      var builder = new StringBuilder("r").append(osmRelation.getId());
+      for(int index = 0; index < osmRelation.getNumberOfMembers(); ++index) {
+        var member = osmRelation.getMember(index);
+        builder.append(' ').append(member.getType()).append(member.getId()).append(':').append(member.getRole());
+      }
+      signatures.add(appendTags(builder, osmRelation).toString());
+      ++numberOfRelations;
+    }
+  }
+
+  /** Read all entities with the given reader
+   *
+   * @param osmReader to read with
+   * @return handler with the recorded entities
+   * @throws Exception thrown if error
+   */
+  static RecordingHandler readAll(OsmReader osmReader) throws Exception {
+    return readAll(osmReader, false);
+  }
+
+  /** Read all entities with the given reader
+   *
+   * @param osmReader to read with
+   * @param roundCoordinates when true record coordinates at the resolution of OSM rather than exactly
+   * @return handler with the recorded entities
+   * @throws Exception thrown if error
+   */
+  static RecordingHandler readAll(OsmReader osmReader, boolean roundCoordinates) throws Exception {
+    var handler = new RecordingHandler(roundCoordinates);
+    osmReader.setHandler(handler);
+    osmReader.read();
+    return handler;
+  }
+
+  /** Convert all entities of an OSM file to OSM XML
+   *
+   * @param osmReader to read entities with
+   * @return OSM XML
+   * @throws Exception thrown if error
+   */
+  static byte[] toOsmXml(OsmReader osmReader) throws Exception {
+    var xml = new ByteArrayOutputStream();
+    var xmlOutput = new OsmXmlOutputStream(xml, false);
+    osmReader.setHandler(new DefaultOsmHandler() {
+      @Override
+      public void handle(OsmNode osmNode) throws IOException {
+        xmlOutput.write(osmNode);
+      }
+
+      @Override
+      public void handle(OsmWay osmWay) throws IOException {
+        xmlOutput.write(osmWay);
+      }
+
+      @Override
+      public void handle(OsmRelation osmRelation) throws IOException {
+        xmlOutput.write(osmRelation);
+      }
+
+      @Override
+      public void complete() throws IOException {
+        xmlOutput.complete();
+      }
+    });
+    osmReader.read();
+    return xml.toByteArray();
+  }
+
+  /** Compress OSM XML as a concatenation of independent bzip2 streams, as parallel compressors (e.g. pbzip2) do. The XML is split between lines
+   * into parts of (roughly) the given size, each compressed as a stream of its own. An XML comment of incompressible content is appended to each part,
+   * such that the compressed input spans multiple segments of the parallel decompressor
+   *
+   * @param xml to compress
+   * @param partSize of the uncompressed parts
+   * @param commentSize of the comment appended to each part
+   * @return multi-stream bzip2 compressed XML, and the uncompressed XML including comments
+   * @throws IOException thrown if error
+   */
+  static byte[][] toMultiStreamBzip2(byte[] xml, int partSize, int commentSize) throws IOException {
+    var random = new Random(42);
+    var compressed = new ByteArrayOutputStream();
+    var uncompressed = new ByteArrayOutputStream();
+    int begin = 0;
+    while(begin < xml.length) {
+      int end = Math.min(xml.length, begin + partSize);
+      while(end < xml.length && xml[end - 1] != '\n') {
+        ++end;
+      }
+      var comment = new StringBuilder("<!-- ");
+      for(int index = 0; index < commentSize; ++index) {
+        comment.append((char) ('a' + random.nextInt(26)));
+      }
+      byte[] commentBytes = comment.append(" -->\n").toString().getBytes(StandardCharsets.UTF_8);
+
+      var part = new ByteArrayOutputStream();
+      try(var bzip2Output = new BZip2CompressorOutputStream(part)){
+        bzip2Output.write(xml, begin, end - begin);
+        bzip2Output.write(commentBytes);
+      }
+      part.writeTo(compressed);
+      uncompressed.write(xml, begin, end - begin);
+      uncompressed.write(commentBytes);
+      begin = end;
+    }
+    return new byte[][] {compressed.toByteArray(), uncompressed.toByteArray()};
+  }
+
+  /** Verify both handlers recorded the same entities in the same order
+   *
+   * @param expected handler
+   * @param actual handler
+   */
+  static void assertSameEntities(RecordingHandler expected, RecordingHandler actual) {
+    assertEquals(expected.numberOfNodes, actual.numberOfNodes);
+    assertEquals(expected.numberOfWays, actual.numberOfWays);
+    assertEquals(expected.numberOfRelations, actual.numberOfRelations);
+    assertEquals(expected.signatures, actual.signatures);
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(OsmInputDecodingTest.class);
+    }
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+  }
+
+  /**
+   * test the parallel PBF reader delivers exactly the same node, way, and relation ids, tags, coordinates, and order as the sequential osm4j PBF reader
+   */
+  @Test
+  public void pbfParallelReaderParityTest() {
+    try {
+      RecordingHandler sequential = readAll(new PbfReader(SYDNEYCBD_PBF, false));
+      assertTrue(sequential.numberOfNodes > 0);
+      assertTrue(sequential.numberOfWays > 0);
+      assertTrue(sequential.numberOfRelations > 0);
+
+      assertSameEntities(sequential, readAll(new OsmPbfParallelReader(SYDNEYCBD_PBF, 1)));
+      assertSameEntities(sequential, readAll(new OsmPbfParallelReader(SYDNEYCBD_PBF, 4)));
+
+      var memoryMappedReader = new OsmPbfParallelReader(SYDNEYCBD_PBF, 4);
+      memoryMappedReader.setMemoryMapped(true);
+      assertSameEntities(sequential, readAll(memoryMappedReader));
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("pbfParallelReaderParityTest");
+    }
+  }
+
+  /**
+   * test a PBF blob index is written upon the first read, reused on subsequent reads, and invalidated when the size or modification time of the PBF file
+   * changes, while the indexed reads deliver the same entities as a sequential read
+   */
+  @Test
+  public void pbfBlobIndexTest() {
+    try {
+      File pbfFile = Files.copy(SYDNEYCBD_PBF.toPath(), testDir.resolve(SYDNEYCBD_PBF.getName())).toFile();
+      File indexFile = OsmPbfBlobIndex.getIndexFile(pbfFile);
+      RecordingHandler sequential = readAll(new PbfReader(pbfFile, false));
+
+      /* write */
+      assertNull(OsmPbfBlobIndex.load(pbfFile));
+      var indexedReader = new OsmPbfParallelReader(pbfFile, 2);
+      indexedReader.setUseBlobIndex(true);
+      assertSameEntities(sequential, readAll(indexedReader));
+      assertTrue(indexFile.isFile());
+      OsmPbfBlobIndex blobIndex = OsmPbfBlobIndex.load(pbfFile);
+      assertNotNull(blobIndex);
+      assertFalse(blobIndex.getEntries().isEmpty());
+      assertTrue(blobIndex.getEntries().get(0).isHeader());
+      try(var files = Files.list(testDir)){
+        /* no temporary files are left behind */
+        assertEquals(2, files.count());
+      }
+
+      /* reuse, an index that is reused is not written again, so its (artificial) modification time is retained */
+      final long artificialIndexModificationTime = 1000;
+      assertTrue(indexFile.setLastModified(artificialIndexModificationTime));
+      indexedReader = new OsmPbfParallelReader(pbfFile, 2);
+      indexedReader.setUseBlobIndex(true);
+      assertSameEntities(sequential, readAll(indexedReader));
+      assertEquals(artificialIndexModificationTime, indexFile.lastModified());
+
+      /* invalidate on modification time, upon reading the index is recreated */
+      assertTrue(pbfFile.setLastModified(pbfFile.lastModified() - 60_000));
+      assertNull(OsmPbfBlobIndex.load(pbfFile));
+      indexedReader = new OsmPbfParallelReader(pbfFile, 2);
+      indexedReader.setUseBlobIndex(true);
+      assertSameEntities(sequential, readAll(indexedReader));
+      assertNotEquals(artificialIndexModificationTime, indexFile.lastModified());
+      assertNotNull(OsmPbfBlobIndex.load(pbfFile));
+
+      /* invalidate on size */
+      final long lastModified = pbfFile.lastModified();
+      Files.write(pbfFile.toPath(), new byte[] {0}, StandardOpenOption.APPEND);
+      assertTrue(pbfFile.setLastModified(lastModified));
+      assertNull(OsmPbfBlobIndex.load(pbfFile));
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("pbfBlobIndexTest");
+    }
+  }
+
+  /**
+   * test multi-stream bzip2 compressed OSM XML decompressed by the parallel input stream yields the same bytes and entities as sequential decompression
+   */
+  @Test
+  public void bzip2ParallelInputStreamTest() {
+    try {
+      RecordingHandler pbfEntities = readAll(new PbfReader(SYDNEYCBD_PBF, false));
+      byte[][] multiStreamBzip2 = toMultiStreamBzip2(toOsmXml(new PbfReader(SYDNEYCBD_PBF, false)), 1 << 16, 1 << 16);
+      byte[] compressed = multiStreamBzip2[0];
+      byte[] uncompressed = multiStreamBzip2[1];
+      /* spans multiple segments of the parallel decompressor, which are cut after (at least) 1MB of compressed input */
+      assertTrue(compressed.length > 1 << 20);
+
+      try(InputStream sequentialInput = new BZip2CompressorInputStream(new ByteArrayInputStream(compressed), true);
+          InputStream parallelInput = new OsmBzip2ParallelInputStream(new ByteArrayInputStream(compressed), 4)){
+        assertArrayEquals(uncompressed, sequentialInput.readAllBytes());
+        assertArrayEquals(uncompressed, parallelInput.readAllBytes());
+      }
+
+      RecordingHandler sequential;
+      try(InputStream sequentialInput = new BZip2CompressorInputStream(new ByteArrayInputStream(compressed), true)){
+        sequential = readAll(new OsmXmlReader(sequentialInput, false));
+      }
+      RecordingHandler parallel;
+      try(InputStream parallelInput = new OsmBzip2ParallelInputStream(new ByteArrayInputStream(compressed), 4)){
+        parallel = readAll(new OsmXmlReader(parallelInput, false));
+      }
+      assertEquals(pbfEntities.numberOfNodes, sequential.numberOfNodes);
+      assertEquals(pbfEntities.numberOfWays, sequential.numberOfWays);
+      assertEquals(pbfEntities.numberOfRelations, sequential.numberOfRelations);
+      assertSameEntities(sequential, parallel);
+
+      /* reader created by the factory decompresses in parallel, supports multiple passes, and releases its worker threads also when reading stops early */
+      File bzip2File = testDir.resolve("sydneycbd.osm.bz2").toFile();
+      Files.write(bzip2File.toPath(), compressed);
+      OsmReader bzip2Reader = Osm4JUtils.createOsm4jReader(bzip2File, 4);
+      assertNotNull(bzip2Reader);
+      assertSameEntities(sequential, readAll(bzip2Reader));
+      assertSameEntities(sequential, readAll(bzip2Reader));
+
+      bzip2Reader.setHandler(new DefaultOsmHandler() {
+        @Override
+        public void handle(OsmWay osmWay) throws IOException {
+          throw new IOException("stop reading upon first way");
+        }
+      });
+      assertThrows(OsmInputException.class, bzip2Reader::read);
+      long deadline = System.currentTimeMillis() + 10000;
+      while(hasLiveBzip2DecompressorThreads() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertFalse(hasLiveBzip2DecompressorThreads());
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("bzip2ParallelInputStreamTest");
+    }
+  }
+
+  /** Verify if any worker thread of a parallel bzip2 decompressor is still alive
+   *
+   * @return true when alive, false otherwise
+   */
+  private static boolean hasLiveBzip2DecompressorThreads() {
+    return Thread.getAllStackTraces().keySet().stream().anyMatch(
+        thread -> thread.isAlive() && thread.getName().startsWith("planit-osm-bzip2-decompressor-"));
+  }
+
+  /** Read the network of the given OSM source with default settings
+   *
+   * @param inputFile to read
+   * @return network
+   */
+  private static MacroscopicNetwork readNetwork(File inputFile) {
+    OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(inputFile.getPath(), CountryNames.AUSTRALIA);
+    MacroscopicNetwork network = osmReader.read();
+    assertNotNull(network);
+    return network;
+  }
+
+  /** Verify both networks have the same number of links, link segments, and nodes
+   *
+   * @param expected network
+   * @param actual network
+   */
+  private static void assertSameNetworkSize(MacroscopicNetwork expected, MacroscopicNetwork actual) {
+    assertEquals(expected.getTransportLayers().size(), actual.getTransportLayers().size());
+    assertEquals(expected.getTransportLayers().getFirst().getLinks().size(), actual.getTransportLayers().getFirst().getLinks().size());
+    assertEquals(expected.getTransportLayers().getFirst().getLinkSegments().size(), actual.getTransportLayers().getFirst().getLinkSegments().size());
+    assertEquals(expected.getTransportLayers().getFirst().getNodes().size(), actual.getTransportLayers().getFirst().getNodes().size());
+  }
+
+  /**
+   * test gzip compressed OSM XML (*.osm.gz) input is read through the reader factories, yielding the same entities and network as the PBF source it was
+   * created from
+   */
+  @Test
+  public void gzipInputTest() {
+    try {
+      RecordingHandler pbfEntities = readAll(new PbfReader(SYDNEYCBD_PBF, false), true);
+      MacroscopicNetwork pbfNetwork = readNetwork(SYDNEYCBD_PBF);
+
+      File gzipFile = testDir.resolve("sydneycbd.osm.gz").toFile();
+      try(var gzipOutput = new GZIPOutputStream(Files.newOutputStream(gzipFile.toPath()))){
+        gzipOutput.write(toOsmXml(new PbfReader(SYDNEYCBD_PBF, false)));
+      }
+      OsmReader gzipReader = Osm4JUtils.createOsm4jReader(gzipFile);
+      assertNotNull(gzipReader);
+      assertSameEntities(pbfEntities, readAll(gzipReader, true));
+      assertSameNetworkSize(pbfNetwork, readNetwork(gzipFile));
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("gzipInputTest");
+    }
+  }
+
+  /**
+   * test o5m (*.o5m) input is read through the reader factory, yielding the entities of the o5m file in order. The file uses meta data, string table
+   * references, and delta coding of coordinates, node references and (per member type) relation members, with resets between entity types. The same
+   * reader is used twice, since each read opens the file anew
+   */
+  @Test
+  public void o5mInputTest() {
+    try {
+      var expectedSignatures = List.of(
+          "n1001 1512070000 -338700000 highway=traffic_signals",
+          "n1002 1512075000 -338705000",
+          "n1003 1512080000 -338710000 public_transport=stop_position bus=yes",
+          "n1005 1512068000 -338712000 highway=traffic_signals",
+          "w2001 1001 1002 1003 highway=residential name=George Street",
+          "w2002 1003 1005 1001 highway=residential oneway=yes",
+          "r3001 Node1003:stop Way2001: Way2002: type=route route=bus");
+
+      OsmReader o5mReader = Osm4JUtils.createOsm4jReader(SYDNEYCBD_SAMPLE_O5M);
+      assertNotNull(o5mReader);
+      for(int pass = 0; pass < 2; ++pass) {
+        RecordingHandler o5mEntities = readAll(o5mReader, true);
+        assertEquals(4, o5mEntities.numberOfNodes);
+        assertEquals(2, o5mEntities.numberOfWays);
+        assertEquals(1, o5mEntities.numberOfRelations);
+        assertEquals(expectedSignatures, o5mEntities.signatures);
+      }
+    }catch(Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("o5mInputTest");
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.osm.converter.network.OsmLocationIndex;
+import org.goplanit.utils.geo.PlanitJtsUtils;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Point;
+
+import de.topobyte.osm4j.core.model.impl.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on the index of values by location used by the network layers
+ *
+ * @author markr
+ *
+ */
+public class OsmLocationIndexTest {
+
+  /**
+   * test that locations are matched exactly, consistent with point equality, such that nearby (generated) locations remain distinct
+   */
+  @Test
+  public void exactLocationTest() {
+    var locationIndex = new OsmLocationIndex<String>();
+
+    Point location = PlanitJtsUtils.createPoint(151.2070001, -33.8700001);
+    /* closer than the 1e-7 precision of OSM coordinates, for example a generated location on a link */
+    Point nearbyLocation = PlanitJtsUtils.createPoint(151.20700012, -33.87000014);
+    assertNotEquals(location, nearbyLocation);
+
+    assertNull(locationIndex.put(location, "a"));
+    assertFalse(locationIndex.containsKey(nearbyLocation));
+    assertNull(locationIndex.get(nearbyLocation));
+    assertNull(locationIndex.put(nearbyLocation, "b"));
+    assertEquals(2, locationIndex.size());
+    assertEquals("a", locationIndex.get(location));
+    assertEquals("b", locationIndex.get(nearbyLocation));
+
+    /* lookups by coordinates, point, and OSM node agree */
+    var osmNode = new Node(1, 151.2070001, -33.8700001);
+    assertTrue(locationIndex.containsKey(osmNode));
+    assertEquals("a", locationIndex.get(osmNode));
+    assertEquals("a", locationIndex.get(151.2070001, -33.8700001));
+    assertEquals("a", locationIndex.get(PlanitJtsUtils.createPoint(151.2070001, -33.8700001)));
+
+    /* replacing the value retains the first registered point */
+    Point sameLocation = PlanitJtsUtils.createPoint(151.2070001, -33.8700001);
+    assertEquals("a", locationIndex.put(sameLocation, "c"));
+    assertEquals(2, locationIndex.size());
+    assertEquals("c", locationIndex.get(location));
+    assertSame(location, locationIndex.getLocation(151.2070001, -33.8700001));
+    assertNull(locationIndex.getLocation(0, 0));
+
+    /* negative zero is the same location as zero, as for points */
+    assertNull(locationIndex.put(0.0, -0.0, PlanitJtsUtils.createPoint(0.0, -0.0), "zero"));
+    assertEquals("zero", locationIndex.get(-0.0, 0.0));
+    assertEquals("zero", locationIndex.get(PlanitJtsUtils.createPoint(0.0, 0.0)));
+
+    locationIndex.clear();
+    assertEquals(0, locationIndex.size());
+    assertFalse(locationIndex.containsKey(location));
+  }
+
+  /**
+   * test growing the index with many nearby locations, compared with a map keyed by point as well as the point based view
+   */
+  @Test
+  public void locationIndexGrowthTest() {
+    var locationIndex = new OsmLocationIndex<Integer>();
+    var expected = new HashMap<Point, Integer>();
+
+    /* locations 1e-8 degrees apart, i.e., below OSM precision */
+    for(int index = 0; index < 5000; ++index) {
+      Point location = PlanitJtsUtils.createPoint(151.2 + (index % 100) * 1e-8, -33.8 - (index / 100) * 1e-8);
+      locationIndex.put(location, index);
+      expected.put(location, index);
+    }
+    assertEquals(expected.size(), locationIndex.size());
+    for(var entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), locationIndex.get(entry.getKey()));
+    }
+
+    Map<Point, Integer> view = locationIndex.asMap();
+    assertEquals(expected.size(), view.size());
+    assertEquals(expected.size(), view.entrySet().size());
+    for(var entry : view.entrySet()) {
+      assertEquals(expected.get(entry.getKey()), entry.getValue());
+    }
+    assertTrue(view.containsKey(PlanitJtsUtils.createPoint(151.2, -33.8)));
+    assertFalse(view.containsKey(PlanitJtsUtils.createPoint(151.2, -33.9)));
+  }
+}
@@ -0,0 +1,245 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.osm.converter.OsmNodeCoordinateFile;
+import org.goplanit.osm.converter.OsmNodeData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.impl.Node;
+import de.topobyte.osm4j.core.model.impl.Tag;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on the storage of OSM nodes retained during parsing, i.e., OSM node data and its memory mapped coordinates
+ *
+ * @author markr
+ *
+ */
+public class OsmNodeDataTest {
+
+  /** fresh directory per test for files created by the test, removed afterwards */
+  @TempDir
+  Path testDir;
+
+  /** Pre-register and register an OSM node
+   *
+   * @param osmNodeData to register on
+   * @param osmNode to register
+   */
+  private static void register(OsmNodeData osmNodeData, OsmNode osmNode) {
+    osmNodeData.preRegisterEligibleOsmNode(osmNode.getId());
+    osmNodeData.registerEligibleOsmNode(osmNode);
+  }
+
+  /** Verify the registered OSM node is available with the given coordinates
+   *
+   * @param osmNodeData to verify
+   * @param osmNodeId to verify
+   * @param longitude expected
+   * @param latitude expected
+   */
+  private static void assertRegistered(OsmNodeData osmNodeData, long osmNodeId, double longitude, double latitude) {
+    assertTrue(osmNodeData.containsOsmNode(osmNodeId));
+    OsmNode osmNode = osmNodeData.getRegisteredOsmNode(osmNodeId);
+    assertNotNull(osmNode);
+    assertEquals(osmNodeId, osmNode.getId());
+    assertEquals(longitude, osmNode.getLongitude());
+    assertEquals(latitude, osmNode.getLatitude());
+  }
+
+  /**
+   * test the open addressing hash table of OSM node data beyond its initial capacity (load factor 0.6 of 4096 slots), where coordinates are also
+   * collected without creating OSM node instances
+   */
+  @Test
+  public void osmNodeDataGrowthTest() {
+    var osmNodeData = new OsmNodeData();
+    long initialNumberOfAllocatedBytes = osmNodeData.getNumberOfAllocatedBytes();
+
+    /* negative and positive ids with colliding low bits */
+    int numberOfOsmNodes = 5000;
+    for(int index = 0; index < numberOfOsmNodes; ++index) {
+      long osmNodeId = (index % 2 == 0 ? 1L : -1L) * index * 4096L;
+      register(osmNodeData, new Node(osmNodeId, index / 1000.0, -index / 1000.0));
+    }
+    assertTrue(osmNodeData.getNumberOfAllocatedBytes() > initialNumberOfAllocatedBytes);
+    assertEquals(numberOfOsmNodes, osmNodeData.getRegisteredOsmNodes().size());
+
+    var coordinate = new Coordinate();
+    for(int index = 0; index < numberOfOsmNodes; ++index) {
+      long osmNodeId = (index % 2 == 0 ? 1L : -1L) * index * 4096L;
+      assertRegistered(osmNodeData, osmNodeId, index / 1000.0, -index / 1000.0);
+      assertTrue(osmNodeData.fillCoordinate(osmNodeId, coordinate));
+      assertEquals(index / 1000.0, coordinate.getX());
+      assertEquals(-index / 1000.0, coordinate.getY());
+    }
+    assertFalse(osmNodeData.containsOsmNode(1));
+    assertFalse(osmNodeData.fillCoordinate(1, coordinate));
+  }
+
+  /**
+   * test removal from the open addressing hash table of OSM node data: remaining OSM nodes stay available across removed slots, and registering removed
+   * OSM nodes again reuses their slots (and coordinate positions) rather than growing the table
+   */
+  @Test
+  public void osmNodeDataRemovalTest() {
+    var osmNodeData = new OsmNodeData();
+
+    /* below the load factor of the initial table */
+    int numberOfOsmNodes = 2000;
+    for(long osmNodeId = 0; osmNodeId < numberOfOsmNodes; ++osmNodeId) {
+      register(osmNodeData, new Node(osmNodeId, osmNodeId, -osmNodeId));
+    }
+    long numberOfAllocatedBytes = osmNodeData.getNumberOfAllocatedBytes();
+
+    osmNodeData.removeRegisteredOsmNodesIf(entry -> entry.getKey() % 2 == 0);
+    assertEquals(numberOfOsmNodes / 2, osmNodeData.getRegisteredOsmNodes().size());
+    var coordinate = new Coordinate();
+    for(long osmNodeId = 0; osmNodeId < numberOfOsmNodes; ++osmNodeId) {
+      if(osmNodeId % 2 == 0) {
+        assertFalse(osmNodeData.containsOsmNode(osmNodeId));
+        assertNull(osmNodeData.getRegisteredOsmNode(osmNodeId));
+        assertFalse(osmNodeData.fillCoordinate(osmNodeId, coordinate));
+      }else {
+        assertRegistered(osmNodeData, osmNodeId, osmNodeId, -osmNodeId);
+      }
+    }
+
+    /* re-register removed OSM nodes with other coordinates, reusing their removed slots, so no growth */
+    for(long osmNodeId = 0; osmNodeId < numberOfOsmNodes; osmNodeId += 2) {
+      register(osmNodeData, new Node(osmNodeId, osmNodeId + 0.5, -osmNodeId - 0.5));
+    }
+    assertEquals(numberOfAllocatedBytes, osmNodeData.getNumberOfAllocatedBytes());
+    assertEquals(numberOfOsmNodes, osmNodeData.getRegisteredOsmNodes().size());
+    for(long osmNodeId = 0; osmNodeId < numberOfOsmNodes; ++osmNodeId) {
+      if(osmNodeId % 2 == 0) {
+        assertRegistered(osmNodeData, osmNodeId, osmNodeId + 0.5, -osmNodeId - 0.5);
+      }else {
+        assertRegistered(osmNodeData, osmNodeId, osmNodeId, -osmNodeId);
+      }
+    }
+
+    /* remove and register again repeatedly, removed slots are reused each time */
+    for(int iteration = 0; iteration < 10; ++iteration) {
+      osmNodeData.removeRegisteredOsmNodesIf(entry -> entry.getKey() < numberOfOsmNodes / 2);
+      for(long osmNodeId = 0; osmNodeId < numberOfOsmNodes / 2; ++osmNodeId) {
+        register(osmNodeData, new Node(osmNodeId, iteration, -iteration));
+      }
+    }
+    assertEquals(numberOfAllocatedBytes, osmNodeData.getNumberOfAllocatedBytes());
+    assertRegistered(osmNodeData, 0, 9, -9);
+    assertRegistered(osmNodeData, numberOfOsmNodes - 1, numberOfOsmNodes - 1, -(numberOfOsmNodes - 1));
+  }
+
+  /**
+   * test appending and finding records in the memory mapped coordinate file, including the first and last record, absent ids, and rejection of ids
+   * that are not in ascending order
+   */
+  @Test
+  public void osmNodeCoordinateFileTest() {
+    var coordinateFile = new OsmNodeCoordinateFile(testDir);
+    assertEquals(Long.MIN_VALUE, coordinateFile.getLastOsmNodeId());
+    assertTrue(coordinateFile.find(1) < 0);
+
+    for(long osmNodeId = 10; osmNodeId <= 100; osmNodeId += 10) {
+      assertTrue(coordinateFile.append(osmNodeId, osmNodeId / 10.0, -osmNodeId / 10.0));
+    }
+    assertEquals(10, coordinateFile.size());
+    assertEquals(100, coordinateFile.getLastOsmNodeId());
+
+    /* not ascending */
+    assertFalse(coordinateFile.append(100, 0, 0));
+    assertFalse(coordinateFile.append(55, 0, 0));
+    assertEquals(10, coordinateFile.size());
+
+    /* first, middle, and last record */
+    assertEquals(0, coordinateFile.find(10));
+    assertEquals(4, coordinateFile.find(50));
+    assertEquals(9, coordinateFile.find(100));
+    assertEquals(100, coordinateFile.getOsmNodeId(9));
+    assertEquals(10.0, coordinateFile.getLongitude(9));
+    assertEquals(-10.0, coordinateFile.getLatitude(9));
+
+    /* absent: before first, in between, after last */
+    assertTrue(coordinateFile.find(5) < 0);
+    assertTrue(coordinateFile.find(55) < 0);
+    assertTrue(coordinateFile.find(105) < 0);
+
+    coordinateFile.setCoordinates(9, 1.5, 2.5);
+    assertEquals(1.5, coordinateFile.getLongitude(9));
+    assertEquals(2.5, coordinateFile.getLatitude(9));
+
+    /* backing file is removed upon closing */
+    coordinateFile.close();
+    File[] remainingFiles = testDir.toFile().listFiles();
+    assertNotNull(remainingFiles);
+    assertEquals(0, remainingFiles.length);
+  }
+
+  /**
+   * test OSM node data with memory mapped coordinates: untagged OSM nodes in ascending order are stored in the file, while OSM nodes out of order and
+   * tagged OSM nodes fall back to the heap. Removal marks records in the file by NaN coordinates, after which they are absent until registered again
+   */
+  @Test
+  public void memoryMappedOsmNodeDataTest() {
+    var osmNodeData = new OsmNodeData();
+    osmNodeData.activateMemoryMappedCoordinates(testDir);
+    assertTrue(osmNodeData.isMemoryMappedCoordinatesActivated());
+
+    register(osmNodeData, new Node(10, 151.1, -33.1));
+    register(osmNodeData, new Node(20, 151.2, -33.2));
+    register(osmNodeData, new Node(30, 151.3, -33.3));
+    /* out of order, falls back to the heap */
+    register(osmNodeData, new Node(25, 151.25, -33.25));
+    /* tagged, falls back to the heap */
+    var taggedOsmNode = new Node(35, 151.35, -33.35, List.of(new Tag("highway", "traffic_signals")));
+    register(osmNodeData, taggedOsmNode);
+    /* last record of the file */
+    register(osmNodeData, new Node(40, 151.4, -33.4));
+
+    assertRegistered(osmNodeData, 10, 151.1, -33.1);
+    assertRegistered(osmNodeData, 20, 151.2, -33.2);
+    assertRegistered(osmNodeData, 25, 151.25, -33.25);
+    assertRegistered(osmNodeData, 30, 151.3, -33.3);
+    assertSame(taggedOsmNode, osmNodeData.getRegisteredOsmNode(35));
+    assertRegistered(osmNodeData, 40, 151.4, -33.4);
+    assertFalse(osmNodeData.containsOsmNode(45));
+    assertNull(osmNodeData.getRegisteredOsmNode(45));
+    assertEquals(6, osmNodeData.getRegisteredOsmNodes().size());
+
+    /* registering again overwrites the coordinates in the file */
+    osmNodeData.registerEligibleOsmNode(new Node(20, 150.2, -32.2));
+    assertRegistered(osmNodeData, 20, 150.2, -32.2);
+
+    /* remove OSM nodes from the file (including its last record) and the heap */
+    osmNodeData.removeRegisteredOsmNodesIf(entry -> entry.getKey() == 20 || entry.getKey() == 25 || entry.getKey() == 40);
+    for(long osmNodeId : new long[] {20, 25, 40}) {
+      assertFalse(osmNodeData.containsOsmNode(osmNodeId));
+      assertFalse(osmNodeData.containsPreregisteredOsmNode(osmNodeId));
+      assertNull(osmNodeData.getRegisteredOsmNode(osmNodeId));
+    }
+    assertEquals(3, osmNodeData.getRegisteredOsmNodes().size());
+    assertRegistered(osmNodeData, 10, 151.1, -33.1);
+    assertRegistered(osmNodeData, 30, 151.3, -33.3);
+
+    /* registering a removed OSM node again revives its record in the file */
+    register(osmNodeData, new Node(40, 152.4, -34.4));
+    assertRegistered(osmNodeData, 40, 152.4, -34.4);
+    register(osmNodeData, new Node(20, 152.2, -34.2));
+    assertRegistered(osmNodeData, 20, 152.2, -34.2);
+
+    /* backing file is removed upon reset */
+    osmNodeData.reset();
+    assertFalse(osmNodeData.containsOsmNode(10));
+    File[] remainingFiles = testDir.toFile().listFiles();
+    assertNotNull(remainingFiles);
+    assertEquals(0, remainingFiles.length);
+  }
+}
@@ -0,0 +1,164 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.osm.converter.OsmNodeIdBitSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on the compressed set of OSM node ids, verified against a sorted set of the same ids
+ *
+ * @author markr
+ *
+ */
+public class OsmNodeIdBitSetTest {
+
+  /** number of ids per chunk of the bit set */
+  private static final long CHUNK_SIZE = 1L << 16;
+
+  /** Verify the bit set contains exactly the expected ids, iterated in the same (ascending) order
+   *
+   * @param bitSet to verify
+   * @param expectedIds to compare with
+   */
+  private static void assertSameIds(OsmNodeIdBitSet bitSet, TreeSet<Long> expectedIds) {
+    assertEquals(expectedIds.size(), bitSet.cardinality());
+    PrimitiveIterator.OfLong iter = bitSet.iterator();
+    for(long expectedId : expectedIds) {
+      assertTrue(iter.hasNext());
+      assertEquals(expectedId, iter.nextLong());
+      assertTrue(bitSet.get(expectedId));
+    }
+    assertFalse(iter.hasNext());
+    assertThrows(NoSuchElementException.class, iter::nextLong);
+  }
+
+  /**
+   * test marking, unmarking, and iterating over ids across chunk boundaries including negative ids and the extremes of the id range
+   */
+  @Test
+  public void osmNodeIdBitSetBasicTest() {
+    var bitSet = new OsmNodeIdBitSet();
+    var expectedIds = new TreeSet<Long>();
+    assertSameIds(bitSet, expectedIds);
+    assertFalse(bitSet.get(0));
+    assertFalse(bitSet.clear(0));
+
+    long[] ids = new long[] {0, 1, -1, CHUNK_SIZE - 1, CHUNK_SIZE, -CHUNK_SIZE, -CHUNK_SIZE - 1, 123456789L, -123456789L, Long.MIN_VALUE, Long.MAX_VALUE};
+    for(long id : ids) {
+      assertTrue(bitSet.set(id));
+      expectedIds.add(id);
+    }
+    for(long id : ids) {
+      assertFalse(bitSet.set(id));
+    }
+    assertSameIds(bitSet, expectedIds);
+    assertFalse(bitSet.get(2));
+    assertFalse(bitSet.get(-2));
+    assertFalse(bitSet.get(Long.MIN_VALUE + 1));
+
+    /* clear, including the only id in its chunk */
+    for(long id : new long[] {-1, CHUNK_SIZE, Long.MIN_VALUE}) {
+      assertTrue(bitSet.clear(id));
+      assertFalse(bitSet.clear(id));
+      assertFalse(bitSet.get(id));
+      expectedIds.remove(id);
+    }
+    assertSameIds(bitSet, expectedIds);
+
+    bitSet.clear();
+    assertSameIds(bitSet, new TreeSet<>());
+    assertEquals(0, bitSet.getNumberOfAllocatedBytes());
+  }
+
+  /**
+   * test a single chunk of negative ids crossing the threshold from array to bitmap container and back again, while the contents remain identical
+   */
+  @Test
+  public void osmNodeIdBitSetConversionTest() {
+    var bitSet = new OsmNodeIdBitSet();
+    var expectedIds = new TreeSet<Long>();
+    long chunkStart = -7 * CHUNK_SIZE;
+
+    /* fill array container up to its maximum size, every third position */
+    for(int index = 0; index < OsmNodeIdBitSet.MAX_ARRAY_CONTAINER_SIZE; ++index) {
+      long id = chunkStart + 3L * index;
+      assertTrue(bitSet.set(id));
+      expectedIds.add(id);
+    }
+    assertSameIds(bitSet, expectedIds);
+
+    /* exceed it, converts to bitmap container */
+    for(long id = chunkStart + 1; id < chunkStart + 3L * 100; id += 3) {
+      assertTrue(bitSet.set(id));
+      expectedIds.add(id);
+    }
+    assertFalse(bitSet.set(chunkStart + 1));
+    assertSameIds(bitSet, expectedIds);
+    assertFalse(bitSet.get(chunkStart - 1));
+    assertFalse(bitSet.get(chunkStart + CHUNK_SIZE));
+
+    /* clear down to the conversion back to an array container, which is smaller than a bitmap */
+    long bitmapBytes = bitSet.getNumberOfAllocatedBytes();
+    while(expectedIds.size() > OsmNodeIdBitSet.MAX_ARRAY_CONTAINER_SIZE / 2 + 1) {
+      long id = expectedIds.pollLast();
+      assertTrue(bitSet.clear(id));
+      assertFalse(bitSet.get(id));
+    }
+    assertSameIds(bitSet, expectedIds);
+    assertEquals(bitmapBytes, bitSet.getNumberOfAllocatedBytes());
+
+    long id = expectedIds.pollFirst();
+    assertTrue(bitSet.clear(id));
+    assertSameIds(bitSet, expectedIds);
+    assertTrue(bitSet.getNumberOfAllocatedBytes() < bitmapBytes);
+
+    /* and convert to bitmap again */
+    for(id = chunkStart + 2; id < chunkStart + CHUNK_SIZE; id += 3) {
+      bitSet.set(id);
+      expectedIds.add(id);
+    }
+    assertSameIds(bitSet, expectedIds);
+
+    /* clearing all ids removes the chunk altogether */
+    for(long expectedId : expectedIds) {
+      assertTrue(bitSet.clear(expectedId));
+    }
+    assertSameIds(bitSet, new TreeSet<>());
+    assertEquals(0, bitSet.getNumberOfAllocatedBytes());
+  }
+
+  /**
+   * test random marking and unmarking over a few chunks around zero, such that chunks repeatedly convert between containers, compared with a sorted set
+   */
+  @Test
+  public void osmNodeIdBitSetRandomTest() {
+    var bitSet = new OsmNodeIdBitSet();
+    var expectedIds = new TreeSet<Long>();
+    var random = new Random(42);
+
+    int numberOfIds = (int) (4 * CHUNK_SIZE);
+    for(int round = 0; round < 6; ++round) {
+      /* alternate between filling (~60% of the ids marked) and thinning out (~1% of the ids marked), crossing the thresholds each round */
+      boolean fill = round % 2 == 0;
+      int numberOfDraws = fill ? numberOfIds : 4 * numberOfIds;
+      for(int index = 0; index < numberOfDraws; ++index) {
+        long id = (long) random.nextInt(numberOfIds) - 2 * CHUNK_SIZE;
+        if(fill) {
+          assertEquals(expectedIds.add(id), bitSet.set(id));
+        }else {
+          assertEquals(expectedIds.remove(id), bitSet.clear(id));
+        }
+        if(random.nextInt(2) == 0) {
+          assertEquals(expectedIds.contains(id + 1), bitSet.get(id + 1));
+        }
+      }
+      assertSameIds(bitSet, expectedIds);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.osm.util.OsmNumericTagValueParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on parsing numeric OSM tag values, e.g. maxspeed, maxspeed:lanes, and lanes
+ *
+ * @author markr
+ *
+ */
+public class OsmNumericTagValueParserTest {
+
+  /** tolerance for comparing parsed speed limits */
+  private static final double EPSILON = 1e-6;
+
+  /**
+   * test parsing of maxspeed values, with and without unit, and invalid values
+   */
+  @Test
+  public void parseMaxSpeedTest() {
+    assertEquals(50.0, OsmNumericTagValueParser.parseMaxSpeedKmPerHour("50"), EPSILON);
+    assertEquals(50 * 1.609344, OsmNumericTagValueParser.parseMaxSpeedKmPerHour("50 mph"), EPSILON);
+    assertEquals(10 * 1.852, OsmNumericTagValueParser.parseMaxSpeedKmPerHour("10 knots"), EPSILON);
+
+    /* repeated parsing is served from cache with the same result */
+    assertEquals(50 * 1.609344, OsmNumericTagValueParser.parseMaxSpeedKmPerHour("50 mph"), EPSILON);
+
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseMaxSpeedKmPerHour("none")));
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseMaxSpeedKmPerHour(null)));
+  }
+
+  /**
+   * test parsing of maxspeed:lanes values, both per lane and the maximum across lanes, including a value with a missing lane
+   */
+  @Test
+  public void parseMaxSpeedLanesTest() {
+    assertEquals(60.0, OsmNumericTagValueParser.parseMaxSpeedLanesMaximumKmPerHour("60|60|40"), EPSILON);
+    assertArrayEquals(new double[] {60.0, 60.0, 40.0}, OsmNumericTagValueParser.parseMaxSpeedLanesKmPerHour("60|60|40"), EPSILON);
+
+    /* missing speed limit of second lane invalidates the maximum, and is invalid for that lane only */
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseMaxSpeedLanesMaximumKmPerHour("60|")));
+    double[] speedLimits = OsmNumericTagValueParser.parseMaxSpeedLanesKmPerHour("60|");
+    assertEquals(2, speedLimits.length);
+    assertEquals(60.0, speedLimits[0], EPSILON);
+    assertFalse(OsmNumericTagValueParser.isValid(speedLimits[1]));
+
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseMaxSpeedLanesMaximumKmPerHour("none")));
+    assertNull(OsmNumericTagValueParser.parseMaxSpeedLanesKmPerHour(null));
+  }
+
+  /**
+   * test parsing of integer values, e.g. lanes, where surrounding whitespace is ignored and multiple values are invalid
+   */
+  @Test
+  public void parseIntegerTest() {
+    assertEquals(2, OsmNumericTagValueParser.parseInteger("2"));
+    assertEquals(2, OsmNumericTagValueParser.parseInteger(" 2 "));
+
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseInteger("2;3")));
+    assertEquals(OsmNumericTagValueParser.INVALID_INT, OsmNumericTagValueParser.parseInteger("2;3"));
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseInteger("none")));
+    assertFalse(OsmNumericTagValueParser.isValid(OsmNumericTagValueParser.parseInteger(null)));
+  }
+}
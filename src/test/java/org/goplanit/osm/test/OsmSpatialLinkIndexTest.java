@@ -0,0 +1,226 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.osm.converter.network.OsmNetworkReader;
+import org.goplanit.osm.converter.network.OsmNetworkReaderFactory;
+import org.goplanit.osm.converter.zoning.OsmSpatialLinkIndex;
+import org.goplanit.utils.geo.PlanitJtsUtils;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLink;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinks;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.index.quadtree.Quadtree;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on the spatial link index used during zoning parsing, verified against a plain quadtree maintained alongside it
+ *
+ * @author markr
+ *
+ */
+public class OsmSpatialLinkIndexTest {
+
+  private static Logger LOGGER;
+
+  private static final String SYDNEYCBD_2023_PBF = Path.of(".","src","test","resources","osm","sydney-cbd","sydneycbd_2023.osm.pbf").toString();
+
+  /**
+   * Plain quadtree of links as reference, tracking the envelope each link was inserted with to be able to remove it
+   */
+  private static class ReferenceLinkIndex {
+
+    /** the quadtree */
+    private final Quadtree quadtree = new Quadtree();
+
+    /** envelope each link was inserted with */
+    private final Map<MacroscopicLink, Envelope> linkEnvelopes = new HashMap<>();
+
+    /** Remove links
+     *
+     * @param links to remove
+     */
+    private void remove(Collection<MacroscopicLink> links) {
+      for(MacroscopicLink link : links) {
+        Envelope envelope = linkEnvelopes.remove(link);
+        if(envelope != null) {
+          quadtree.remove(envelope, link);
+        }
+      }
+    }
+
+    /** Add links based on their current geometry, replacing them when present
+     *
+     * @param links to add
+     */
+    private void add(Collection<MacroscopicLink> links) {
+      remove(links);
+      for(MacroscopicLink link : links) {
+        Envelope envelope = link.createEnvelope();
+        quadtree.insert(envelope, link);
+        linkEnvelopes.put(link, envelope);
+      }
+    }
+
+    /** Find links whose geometry intersects the bounding box
+     *
+     * @param searchBoundingBox to use
+     * @return links found
+     */
+    private Set<MacroscopicLink> query(Envelope searchBoundingBox) {
+      Polygon searchArea = PlanitJtsUtils.create2DPolygon(searchBoundingBox);
+      Set<MacroscopicLink> result = new HashSet<>();
+      for(Object item : quadtree.query(searchBoundingBox)) {
+        MacroscopicLink link = (MacroscopicLink) item;
+        if(link.getGeometry() != null && searchArea.intersects(link.getGeometry())) {
+          result.add(link);
+        }
+      }
+      return result;
+    }
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(OsmSpatialLinkIndexTest.class);
+    }
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+  }
+
+  /** Move the geometry of the links, as happens when links are broken
+   *
+   * @param links to move
+   * @param offset to move by (in both dimensions)
+   */
+  private static void moveGeometry(Collection<MacroscopicLink> links, double offset) {
+    for(MacroscopicLink link : links) {
+      LineString movedGeometry = (LineString) AffineTransformation.translationInstance(offset, -offset).transform(link.getGeometry());
+      link.setGeometry(movedGeometry);
+    }
+  }
+
+  /** Verify the index and the reference yield identical results for random search boxes within (and around) the given envelope
+   *
+   * @param linkIndex to verify
+   * @param referenceIndex to compare with
+   * @param envelope to search in
+   * @param random to use
+   */
+  private static void assertSameQueryResults(OsmSpatialLinkIndex linkIndex, ReferenceLinkIndex referenceIndex, Envelope envelope, Random random) {
+    int numberOfFound = 0;
+    for(int index = 0; index < 500; ++index) {
+      double size = random.nextDouble() * envelope.getWidth() / 10;
+      double minX = envelope.getMinX() - size + random.nextDouble() * (envelope.getWidth() + size);
+      double minY = envelope.getMinY() - size + random.nextDouble() * (envelope.getHeight() + size);
+      Envelope searchBoundingBox = new Envelope(minX, minX + size, minY, minY + size);
+
+      Set<MacroscopicLink> expected = referenceIndex.query(searchBoundingBox);
+      assertEquals(expected, new HashSet<>(linkIndex.query(searchBoundingBox)), String.format("query %s", searchBoundingBox));
+      numberOfFound += expected.size();
+    }
+    assertTrue(numberOfFound > 0);
+
+    /* entire envelope */
+    assertEquals(referenceIndex.query(envelope), new HashSet<>(linkIndex.query(envelope)));
+  }
+
+  /**
+   * test removing and (re-)adding links, with modified geometries, through the overlay and tombstones of the index, comparing query results with a
+   * plain quadtree after each modification
+   */
+  @Test
+  public void removeAndReinsertTest() {
+    try {
+      OsmNetworkReader osmReader = OsmNetworkReaderFactory.create(SYDNEYCBD_2023_PBF, CountryNames.AUSTRALIA);
+      MacroscopicNetwork network = osmReader.read();
+
+      Collection<MacroscopicLinks> linksCollection = new ArrayList<>();
+      List<MacroscopicLink> allLinks = new ArrayList<>();
+      for(MacroscopicNetworkLayer layer : network.getTransportLayers()) {
+        linksCollection.add(layer.getLinks());
+        layer.getLinks().forEach(allLinks::add);
+      }
+      assertTrue(allLinks.size() > 1000);
+
+      var linkIndex = new OsmSpatialLinkIndex(linksCollection);
+      var referenceIndex = new ReferenceLinkIndex();
+      referenceIndex.add(allLinks);
+      Envelope envelope = new Envelope();
+      allLinks.forEach(link -> envelope.expandToInclude(link.createEnvelope()));
+
+      var random = new Random(1);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+      assertEquals(0, linkIndex.getNumberOfModifiedLinks());
+
+      /* remove links from the base (tombstones) */
+      List<MacroscopicLink> removedLinks = new ArrayList<>(allLinks.subList(0, allLinks.size() / 10));
+      linkIndex.remove(removedLinks);
+      referenceIndex.remove(removedLinks);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+      assertEquals(removedLinks.size(), linkIndex.getNumberOfModifiedLinks());
+
+      /* re-insert half of them with a modified geometry (overlay) */
+      List<MacroscopicLink> reinsertedLinks = new ArrayList<>(removedLinks.subList(0, removedLinks.size() / 2));
+      moveGeometry(reinsertedLinks, 0.0005);
+      linkIndex.add(reinsertedLinks);
+      referenceIndex.add(reinsertedLinks);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+
+      /* add base links that were never removed with a modified geometry, their base version is stale */
+      List<MacroscopicLink> modifiedBaseLinks = new ArrayList<>(allLinks.subList(allLinks.size() / 2, allLinks.size() / 2 + 50));
+      moveGeometry(modifiedBaseLinks, -0.0003);
+      linkIndex.add(modifiedBaseLinks);
+      referenceIndex.add(modifiedBaseLinks);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+
+      /* modify overlay links again and replace them, the geometry at insertion is used for removal from the overlay */
+      List<MacroscopicLink> replacedLinks = new ArrayList<>(reinsertedLinks.subList(0, reinsertedLinks.size() / 2));
+      moveGeometry(replacedLinks, 0.001);
+      linkIndex.add(replacedLinks);
+      referenceIndex.add(replacedLinks);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+
+      /* remove overlay links after modifying their geometry, without re-adding them */
+      List<MacroscopicLink> removedOverlayLinks = new ArrayList<>(reinsertedLinks.subList(reinsertedLinks.size() / 2, reinsertedLinks.size()));
+      moveGeometry(removedOverlayLinks, 0.002);
+      linkIndex.remove(removedOverlayLinks);
+      referenceIndex.remove(removedOverlayLinks);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+
+      /* and re-insert all removed links once more */
+      linkIndex.add(removedLinks);
+      referenceIndex.add(removedLinks);
+      assertSameQueryResults(linkIndex, referenceIndex, envelope, random);
+      /* tombstoned in the base and present in the overlay */
+      assertEquals(2 * (removedLinks.size() + modifiedBaseLinks.size()), linkIndex.getNumberOfModifiedLinks());
+    } catch (Exception e) {
+      LOGGER.severe(e.getMessage());
+      e.printStackTrace();
+      fail("removeAndReinsertTest");
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.goplanit.osm.test;
+
+import org.goplanit.osm.util.PlanitModeSet;
+import org.goplanit.utils.mode.Mode;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests on the compact mode sets used to look up modified link segment types, including modes with ids beyond a single word of the bit mask
+ *
+ * @author markr
+ *
+ */
+public class PlanitModeSetTest {
+
+  /** modes by their id, including ids beyond the first 64 bit word */
+  private static final List<Mode> MODES = new ArrayList<>();
+
+  static {
+    for(long id = 0; id < 140; ++id) {
+      MODES.add(createMode(id));
+    }
+  }
+
+  /** Create a mode with the given id, only its id is used by mode sets
+   *
+   * @param id of the mode
+   * @return mode
+   */
+  private static Mode createMode(long id) {
+    return (Mode) Proxy.newProxyInstance(Mode.class.getClassLoader(), new Class<?>[] {Mode.class}, (proxy, method, args) -> {
+      switch(method.getName()) {
+        case "getId":
+          return id;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return Long.hashCode(id);
+        case "toString":
+          return "mode" + id;
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+
+  /** Create mode set of the modes with the given ids
+   *
+   * @param ids of the modes
+   * @return mode set
+   */
+  private static PlanitModeSet modeSet(int... ids) {
+    List<Mode> modes = new ArrayList<>();
+    for(int id : ids) {
+      modes.add(MODES.get(id));
+    }
+    return PlanitModeSet.of(modes);
+  }
+
+  /** Verify the mode sets are equal, including their hash codes
+   *
+   * @param expected mode set
+   * @param actual mode set
+   */
+  private static void assertSameModeSet(PlanitModeSet expected, PlanitModeSet actual) {
+    assertEquals(expected, actual);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(expected.size(), actual.size());
+  }
+
+  /**
+   * test creating mode sets, including empty sets and modes beyond the first word
+   */
+  @Test
+  public void modeSetCreationTest() {
+    assertSame(PlanitModeSet.EMPTY, PlanitModeSet.of(null));
+    assertSame(PlanitModeSet.EMPTY, PlanitModeSet.of(Collections.emptySet()));
+    assertTrue(PlanitModeSet.EMPTY.isEmpty());
+    assertEquals(0, PlanitModeSet.EMPTY.size());
+    assertEquals("[]", PlanitModeSet.EMPTY.toString());
+
+    PlanitModeSet modeSet = modeSet(70, 0, 63, 64, 5, 70);
+    assertFalse(modeSet.isEmpty());
+    assertEquals(5, modeSet.size());
+    assertEquals("[0,5,63,64,70]", modeSet.toString());
+    for(Mode mode : MODES) {
+      long id = mode.getId();
+      assertEquals(id == 0 || id == 5 || id == 63 || id == 64 || id == 70, modeSet.contains(mode));
+    }
+    assertEquals(Set.of(MODES.get(0), MODES.get(5), MODES.get(63), MODES.get(64), MODES.get(70)), modeSet.toSet(MODES));
+    assertTrue(PlanitModeSet.EMPTY.toSet(MODES).isEmpty());
+    /* only modes selected from are collected */
+    assertEquals(Set.of(MODES.get(5)), modeSet.toSet(MODES.subList(1, 10)));
+
+    /* order and duplicates do not matter */
+    assertSameModeSet(modeSet, modeSet(0, 5, 63, 64, 70));
+  }
+
+  /**
+   * test union, intersection, and difference, within a single word and across words
+   */
+  @Test
+  public void modeSetAlgebraTest() {
+    PlanitModeSet low = modeSet(1, 2, 3);
+    PlanitModeSet high = modeSet(2, 64, 130);
+
+    assertSameModeSet(modeSet(1, 2, 3, 64, 130), low.union(high));
+    assertSameModeSet(modeSet(1, 2, 3, 64, 130), high.union(low));
+    assertSameModeSet(low, low.union(PlanitModeSet.EMPTY));
+    assertSameModeSet(high, PlanitModeSet.EMPTY.union(high));
+
+    assertSameModeSet(modeSet(2), low.intersection(high));
+    assertSameModeSet(modeSet(2), high.intersection(low));
+    assertSameModeSet(PlanitModeSet.EMPTY, low.intersection(PlanitModeSet.EMPTY));
+    assertSameModeSet(PlanitModeSet.EMPTY, modeSet(1).intersection(modeSet(64)));
+
+    assertSameModeSet(modeSet(1, 3), low.difference(high));
+    assertSameModeSet(modeSet(64, 130), high.difference(low));
+    assertSameModeSet(low, low.difference(PlanitModeSet.EMPTY));
+    assertSameModeSet(PlanitModeSet.EMPTY, PlanitModeSet.EMPTY.difference(high));
+    assertSameModeSet(PlanitModeSet.EMPTY, high.difference(high));
+    assertSameModeSet(modeSet(130), high.difference(modeSet(2, 64, 100)));
+  }
+
+  /**
+   * test equality and hashing of mode sets whose higher words became empty, which are trimmed such that they equal sets created directly
+   */
+  @Test
+  public void modeSetTrimmingTest() {
+    PlanitModeSet wide = modeSet(1, 64, 130);
+
+    /* removing the modes beyond the first word trims the mask */
+    PlanitModeSet trimmed = wide.difference(modeSet(64, 130));
+    assertSameModeSet(modeSet(1), trimmed);
+    assertSameModeSet(modeSet(1), wide.intersection(modeSet(1, 2)));
+    assertSameModeSet(modeSet(1, 64), wide.difference(modeSet(130)));
+    assertSameModeSet(PlanitModeSet.EMPTY, wide.difference(wide));
+    assertTrue(wide.difference(wide).isEmpty());
+    assertNotEquals(modeSet(1), modeSet(65));
+    assertNotEquals(modeSet(1), modeSet(1, 65));
+
+    /* trimmed sets are found as keys of sets created directly and vice versa */
+    var valuesByModeSet = new HashMap<PlanitModeSet, String>();
+    valuesByModeSet.put(modeSet(1), "one");
+    valuesByModeSet.put(PlanitModeSet.EMPTY, "none");
+    valuesByModeSet.put(modeSet(1, 64), "wide");
+    assertEquals("one", valuesByModeSet.get(trimmed));
+    assertEquals("none", valuesByModeSet.get(wide.difference(wide)));
+    assertEquals("wide", valuesByModeSet.get(wide.difference(modeSet(130))));
+    assertNull(valuesByModeSet.get(wide));
+  }
+}